@@ -2,8 +2,11 @@ package org.usfirst.frc.team449.pathgen;
 
 import jaci.pathfinder.Trajectory;
 
-import java.util.Arrays;
-
+/**
+ * Integrates the kinematics of a tank drive following a pair of profiles to find the angle, and
+ * optionally the position, of the robot at each point. Everything is done in one pass over the
+ * segments without allocating per point.
+ */
 public class CalculateMPAngles {
 
     private double wheelBaseDiameter;
@@ -15,80 +18,92 @@ public class CalculateMPAngles {
         this.dt = dt;
     }
 
-    public double[] calculateAngles(Trajectory leftTraj, Trajectory rightTraj) {
-        //Time, Left X, Left Y, Right X, Right Y, Angle
-        double[][] valuesAtAllTimes = new double[leftTraj.length()][6];
-        double[] valuesAtCurrentTime = new double[6];
-        double perpendicular,
-                deltaLeft,
-                deltaRight,
-                diffTerm,
-                theta,
-                rightR,
-                leftR,
-                vectorTheta,
-                vectorDistanceWithoutR;
-        valuesAtCurrentTime[0] = 0.;
-        valuesAtCurrentTime[1] = 0.;
-        valuesAtCurrentTime[2] = wheelBaseDiameter / 2.;
-        valuesAtCurrentTime[3] = 0.;
-        valuesAtCurrentTime[4] = -wheelBaseDiameter / 2.;
-        valuesAtCurrentTime[5] = 0.;
-        valuesAtAllTimes[0] = valuesAtCurrentTime;
-        for (int i = 1; i < leftTraj.length(); i++) {
-            valuesAtCurrentTime = Arrays.copyOf(valuesAtAllTimes[i-1], 6);
-//    Get the angle the robot is facing.
-            perpendicular = valuesAtCurrentTime[5];
-//    Add the change in time
-            valuesAtCurrentTime[0] += dt;
-//    Figure out linear change for each side using position or velocity
-            deltaLeft = leftTraj.get(i).position - leftTraj.get(i - 1).position;
-            deltaRight = rightTraj.get(i).position - rightTraj.get(i - 1).position;
-
-            diffTerm = deltaRight - deltaLeft;
-//    So in this next part, we figure out the turning center of the robot
-//    and the angle it turns around that center. Note that the turning center is
-//    often outside of the robot.
-
-//    Calculate how much we turn first, because if theta = 0, turning center is infinitely far away and can't be calcualted.
-            theta = diffTerm / wheelBaseDiameter;
+    /**
+     * Receives the pose of the robot at each point of a profile, in order.
+     */
+    @FunctionalInterface
+    public interface PoseConsumer {
 
-            valuesAtCurrentTime[5] += theta;
-
-//     If theta is 0, we're going straight and need to treat it as a special case.
-            if (theta == 0) {
-                valuesAtCurrentTime[1] += deltaLeft * Math.cos(perpendicular);
-                valuesAtCurrentTime[2] += deltaLeft * Math.sin(perpendicular);
-                valuesAtCurrentTime[3] += deltaRight * Math.cos(perpendicular);
-                valuesAtCurrentTime[4] += deltaRight * Math.sin(perpendicular);
-            } else {
-
-//      We do this with sectors, so this is the radius of the turning circle for the
-//      left and right sides. They just differ by the diameter of the wheelbase.
-                rightR = (wheelBaseDiameter / 2) * (deltaRight + deltaLeft) / diffTerm + wheelBaseDiameter / 2;
-                leftR = rightR - wheelBaseDiameter;
+        /**
+         * @param time    The time since the start of the profile, in seconds.
+         * @param x       The distance forwards from the starting point, in the units of the profile.
+         * @param y       The distance to the left of the starting point, in the units of the profile.
+         * @param heading The angle counterclockwise from the starting heading, in radians.
+         */
+        void accept(double time, double x, double y, double heading);
+    }
 
-//      This is the angle for the vector pointing towards the new position of each
-//      wheel.
-//      To understand why this formula is correct, overlay isosceles triangles on the sectors
-                vectorTheta = (valuesAtAllTimes[i-1][5] + valuesAtCurrentTime[5]) / 2;
+    /**
+     * @param leftTraj  The left side of the profile.
+     * @param rightTraj The right side of the profile.
+     * @return The angle of the robot at each point, in degrees.
+     */
+    public double[] calculateAngles(Trajectory leftTraj, Trajectory rightTraj) {
+        double[] angles = new double[leftTraj.length()];
+        calculateAngles(leftTraj.segments, rightTraj.segments, angles);
+        return angles;
+    }
 
-//      The is the length of the vector pointing towards the new position of each
-//      wheel divided by the radius of the turning circle.
-                vectorDistanceWithoutR = 2 * Math.sin(theta / 2);
+    /**
+     * Finds the angle of the robot at each point. The angle only depends on how far each side has gone,
+     * so this needs no trig.
+     *
+     * @param left   The segments of the left side of the profile.
+     * @param right  The segments of the right side, the same length as the left.
+     * @param angles The array to fill with the angle at each point, in degrees. Must be at least as long
+     *               as the profile.
+     */
+    public void calculateAngles(Trajectory.Segment[] left, Trajectory.Segment[] right, double[] angles) {
+        checkLengths(left, right);
+        double theta = 0;
+        double prevLeft = left.length > 0 ? left[0].position : 0;
+        double prevRight = right.length > 0 ? right[0].position : 0;
+        for (int i = 0; i < left.length; i++) {
+            double leftPos = left[i].position;
+            double rightPos = right[i].position;
+            theta += ((rightPos - prevRight) - (leftPos - prevLeft)) / wheelBaseDiameter;
+            angles[i] = Math.toDegrees(theta);
+            prevLeft = leftPos;
+            prevRight = rightPos;
+        }
+    }
 
-                valuesAtCurrentTime[1] += vectorDistanceWithoutR * leftR * Math.cos(vectorTheta);
-                valuesAtCurrentTime[2] += vectorDistanceWithoutR * leftR * Math.sin(vectorTheta);
-                valuesAtCurrentTime[3] += vectorDistanceWithoutR * rightR * Math.cos(vectorTheta);
-                valuesAtCurrentTime[4] += vectorDistanceWithoutR * rightR * Math.sin(vectorTheta);
+    /**
+     * Finds the pose of the center of the robot at each point, starting from the origin facing along x.
+     *
+     * @param left     The segments of the left side of the profile.
+     * @param right    The segments of the right side, the same length as the left.
+     * @param consumer Given the pose at each point, in order.
+     */
+    public void calculatePoses(Trajectory.Segment[] left, Trajectory.Segment[] right, PoseConsumer consumer) {
+        checkLengths(left, right);
+        double x = 0, y = 0, theta = 0;
+        double prevLeft = left.length > 0 ? left[0].position : 0;
+        double prevRight = right.length > 0 ? right[0].position : 0;
+        for (int i = 0; i < left.length; i++) {
+            double deltaLeft = left[i].position - prevLeft;
+            double deltaRight = right[i].position - prevRight;
+            double deltaTheta = (deltaRight - deltaLeft) / wheelBaseDiameter;
+            double distance = (deltaLeft + deltaRight) / 2;
+            if (deltaTheta != 0) {
+                //The center moves along an arc of radius distance / deltaTheta, so its straight-line move is
+                // the chord of that arc, pointed halfway between the old and new headings.
+                distance *= 2 * Math.sin(deltaTheta / 2) / deltaTheta;
             }
-            valuesAtAllTimes[i] = valuesAtCurrentTime;
+            double vectorTheta = theta + deltaTheta / 2;
+            x += distance * Math.cos(vectorTheta);
+            y += distance * Math.sin(vectorTheta);
+            theta += deltaTheta;
+            consumer.accept(i * dt, x, y, theta);
+            prevLeft = left[i].position;
+            prevRight = right[i].position;
         }
-        double[] angles = new double[leftTraj.length()];
-        for (int i = 0; i < valuesAtAllTimes.length; i++) {
-            valuesAtCurrentTime = valuesAtAllTimes[i];
-            angles[i] = Math.toDegrees(valuesAtCurrentTime[5]);
+    }
+
+    private static void checkLengths(Trajectory.Segment[] left, Trajectory.Segment[] right) {
+        if (left.length != right.length) {
+            throw new IllegalArgumentException("Left and right profiles have different lengths: " + left.length
+                    + " and " + right.length);
         }
-        return (angles);
     }
 }
@@ -0,0 +1,137 @@
+package org.usfirst.frc.team449.pathgen;
+
+import jaci.pathfinder.Trajectory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes generated profiles to files, either as the CSVs the robot has always read or as the
+ * {@code Path} message in path.proto, and the poses they drive through.
+ */
+public class PathWriter {
+
+    /**
+     * Make constructor private so it can't be called
+     */
+    private PathWriter() {
+    }
+
+    /**
+     * Writes one side of a profile as a CSV: the number of points, then a line of position, velocity,
+     * acceleration, dt and angle for each point.
+     *
+     * @param file       The file to write.
+     * @param trajectory The side of the profile.
+     * @param angles     The angle of the robot at each point, in degrees.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeCsv(Path file, Trajectory trajectory, double[] angles) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            int length = trajectory.length();
+            out.write(Integer.toString(length));
+            out.write('\n');
+            for (int i = 0; i < length; i++) {
+                Trajectory.Segment segment = trajectory.segments[i];
+                out.write(Double.toString(segment.position));
+                out.write(",\t");
+                out.write(Double.toString(segment.velocity));
+                out.write(",\t");
+                out.write(Double.toString(segment.acceleration));
+                out.write(",\t");
+                out.write(Double.toString(segment.dt));
+                out.write(",\t");
+                out.write(Double.toString(angles[i]));
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Writes the pose of the robot at each point of a profile as a CSV with a header, for plotting the
+     * path it should drive.
+     *
+     * @param file       The file to write.
+     * @param left       The left side of the profile.
+     * @param right      The right side of the profile.
+     * @param calculator Integrates the sides into poses.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writePoses(Path file, Trajectory left, Trajectory right, CalculateMPAngles calculator)
+            throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("time,x,y,headingRadians\n");
+            try {
+                calculator.calculatePoses(left.segments, right.segments, (time, x, y, heading) -> {
+                    try {
+                        out.write(time + "," + x + "," + y + "," + heading + "\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Writes both sides of a profile as a serialized {@code Path} message from path.proto. The message
+     * is simple enough to encode by hand, which saves this tool depending on protobuf.
+     *
+     * @param file  The file to write.
+     * @param left  The left side of the profile.
+     * @param right The right side of the profile.
+     * @param dt    The time between points, in seconds.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeProto(Path file, Trajectory left, Trajectory right, double dt) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            writeRepeated(out, 1, left, 0);
+            writeRepeated(out, 2, left, 1);
+            writeRepeated(out, 3, left, 2);
+            writeRepeated(out, 4, right, 0);
+            writeRepeated(out, 5, right, 1);
+            writeRepeated(out, 6, right, 2);
+            writeDouble(out, 7, dt);
+        }
+    }
+
+    /**
+     * Writes one of position, velocity or acceleration for every point of a side. proto2 doesn't pack
+     * repeated fields unless asked to, so each value gets its own tag.
+     *
+     * @param out        The stream to write to.
+     * @param field      The number of the field in path.proto.
+     * @param trajectory The side of the profile.
+     * @param which      0 for position, 1 for velocity, 2 for acceleration.
+     * @throws IOException If the stream can't be written.
+     */
+    private static void writeRepeated(DataOutputStream out, int field, Trajectory trajectory, int which)
+            throws IOException {
+        for (Trajectory.Segment segment : trajectory.segments) {
+            writeDouble(out, field, which == 0 ? segment.position
+                    : which == 1 ? segment.velocity : segment.acceleration);
+        }
+    }
+
+    /**
+     * Writes a double field. Every field in path.proto is numbered under 16, so the tag is one byte.
+     *
+     * @param out   The stream to write to.
+     * @param field The number of the field.
+     * @param value The value.
+     * @throws IOException If the stream can't be written.
+     */
+    private static void writeDouble(DataOutputStream out, int field, double value) throws IOException {
+        // Wire type 1 is a 64-bit value, which protobuf stores little-endian.
+        out.writeByte(field << 3 | 1);
+        out.writeLong(Long.reverseBytes(Double.doubleToRawLongBits(value)));
+    }
+}
@@ -1,74 +1,275 @@
 package org.usfirst.frc.team449.pathgen;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import jaci.pathfinder.Pathfinder;
 import jaci.pathfinder.Trajectory;
-import jaci.pathfinder.Waypoint;
 import jaci.pathfinder.modifiers.TankModifier;
-import java.io.FileWriter;
+
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Generates a motion profile that hits any number of waypoints.
+ * Generates motion profiles that hit any number of waypoints, from a directory of YAML or JSON files
+ * with one profile each. Profiles are generated in parallel, and ones whose file and settings haven't
+ * changed since the last run are skipped.
+ *
+ * <pre>
+ * Usage: Pathgen [--in dir] [--out dir] [--robot name] [--format csv,proto,pose] [--jobs n] [--force]
+ *                [--wheelbase feet] [--dt seconds] [--max-vel fps] [--max-accel fps^2] [--max-jerk fps^3]
+ *                [--fit hermite_cubic|hermite_quintic]
+ * </pre>
  */
 public class Pathgen {
 
-    public static void main(String[] args) throws IOException {
+    /**
+     * Bump this when the output changes for the same input, so old outputs get regenerated.
+     */
+    private static final int OUTPUT_VERSION = 2;
+
+    /**
+     * How each profile came out.
+     */
+    private enum Result {
+        GENERATED, SKIPPED, FAILED
+    }
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+
+    private Path inDir = Paths.get("profiles");
+    private Path outDir = Paths.get(".");
+    private String robotName = "robot2019";
+    private boolean writeCsv = true;
+    private boolean writeProto = false;
+    private boolean writePoses = false;
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    private boolean force = false;
+
+    //Calculated by driving each wheel n inches in opposite directions, then taking the angle moved, theta, and finding
+    // the circumference of a circle moved by the robot via C = 360 * n / theta
+    //You then find the diameter via C / pi.
+    private double wheelbase = 2.14;
 
-        //Calculated by driving each wheel n inches in opposite directions, then taking the angle moved, θ, and finding
-        // the circumference of a circle moved by the robot via C = 360 * n / θ
-        //You then find the diameter via C / π.
-        final double robot2019Wheelbase = 2.14;
+    //Units are seconds, feet/second, feet/(second^2), and feet/(second^3)
+    private double dt = 0.05;
+    private double maxVelocity = 4.;
+    private double maxAcceleration = 4.5;
+    private double maxJerk = 15.;
+    private Trajectory.FitMethod fitMethod = Trajectory.FitMethod.HERMITE_QUINTIC;
 
-        // Don't forget
-        final double robot2019Length = 38.25;
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Pathgen pathgen = new Pathgen();
+        try {
+            pathgen.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        if (!pathgen.run()) {
+            System.exit(1);
+        }
+    }
 
-        //Exaqmple waypoint, for reference
-        Waypoint[] example = new Waypoint[]{
-                new Waypoint(0,0,0),
-                new Waypoint(10,0, 0)
-        };
+    /**
+     * Reads the command line into the settings.
+     *
+     * @param args The command line arguments.
+     * @throws IllegalArgumentException If an argument isn't recognized or is missing its value.
+     */
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--force")) {
+                force = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--in":
+                    inDir = Paths.get(value);
+                    break;
+                case "--out":
+                    outDir = Paths.get(value);
+                    break;
+                case "--robot":
+                    robotName = value;
+                    break;
+                case "--format":
+                    List<String> formats = Arrays.asList(value.toLowerCase(Locale.ROOT).split(","));
+                    writeCsv = formats.contains("csv");
+                    writeProto = formats.contains("proto");
+                    writePoses = formats.contains("pose");
+                    if (!writeCsv && !writeProto && !writePoses) {
+                        throw new IllegalArgumentException("--format must include csv, proto or pose");
+                    }
+                    break;
+                case "--jobs":
+                    jobs = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--wheelbase":
+                    wheelbase = Double.parseDouble(value);
+                    break;
+                case "--dt":
+                    dt = Double.parseDouble(value);
+                    break;
+                case "--max-vel":
+                    maxVelocity = Double.parseDouble(value);
+                    break;
+                case "--max-accel":
+                    maxAcceleration = Double.parseDouble(value);
+                    break;
+                case "--max-jerk":
+                    maxJerk = Double.parseDouble(value);
+                    break;
+                case "--fit":
+                    fitMethod = Trajectory.FitMethod.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+    }
 
-        Map<String, Waypoint[]> profiles = new HashMap<>();
-//        profiles.put("example", example);
+    /**
+     * Generates every profile in the input directory.
+     *
+     * @return true if every profile was generated or skipped, false if any failed.
+     * @throws IOException          If the input directory can't be read or the output one can't be made.
+     * @throws InterruptedException If interrupted while waiting for the profiles.
+     */
+    private boolean run() throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(inDir)) {
+            files = listing.filter(Pathgen::isProfileFile).sorted().collect(Collectors.toList());
+        }
+        Files.createDirectories(outDir);
 
-        final String ROBOT_NAME = "robot2019";
+        //Each profile is independent, so spread them over a pool of our own instead of the common one.
+        ForkJoinPool pool = new ForkJoinPool(jobs);
+        List<Result> results;
+        try {
+            results = pool.submit(() -> files.parallelStream().map(this::process).collect(Collectors.toList())).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
 
-        double dt = 0.05;
-        Trajectory.Config config = new Trajectory.Config(Trajectory.FitMethod.HERMITE_QUINTIC, Trajectory.Config.SAMPLES_HIGH,
-                dt, 4., 4.5, 15.); //Units are seconds, feet/second, feet/(second^2), and feet/(second^3)
+        long generated = results.stream().filter(r -> r == Result.GENERATED).count();
+        long skipped = results.stream().filter(r -> r == Result.SKIPPED).count();
+        long failed = results.stream().filter(r -> r == Result.FAILED).count();
+        System.out.println("Generated " + generated + ", skipped " + skipped + " unchanged, " + failed + " failed");
+        return failed == 0;
+    }
 
-        CalculateMPAngles calculateMPAngles = new CalculateMPAngles(robot2019Wheelbase, dt);
+    /**
+     * @param file A file in the input directory.
+     * @return Whether it's a file profiles can be read from.
+     */
+    private static boolean isProfileFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(file) && (name.endsWith(".json") || name.endsWith(".yml") || name.endsWith(".yaml"));
+    }
 
-        for (String profile : profiles.keySet()) {
-            Trajectory trajectory = Pathfinder.generate(profiles.get(profile), config);
+    /**
+     * Reads one profile and generates it, unless it hasn't changed since it was last generated.
+     *
+     * @param file The file to read the profile from.
+     * @return How it went. Failures are reported here, so one bad file doesn't stop the rest.
+     */
+    private Result process(Path file) {
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            String fileName = file.getFileName().toString();
+            ObjectMapper mapper = fileName.toLowerCase(Locale.ROOT).endsWith(".json") ? jsonMapper : yamlMapper;
+            ProfileSpec spec = mapper.readValue(bytes, ProfileSpec.class);
 
-            TankModifier tm = new TankModifier(trajectory).modify(robot2019Wheelbase); //Units are feet
+            String name = spec.name != null ? spec.name : fileName.substring(0, fileName.lastIndexOf('.'));
+            double profileDt = spec.dt != null ? spec.dt : dt;
+            double profileWheelbase = spec.wheelbase != null ? spec.wheelbase : wheelbase;
+            Trajectory.Config config = new Trajectory.Config(
+                    spec.fitMethod != null ? spec.fitMethod : fitMethod, Trajectory.Config.SAMPLES_HIGH, profileDt,
+                    spec.maxVelocity != null ? spec.maxVelocity : maxVelocity,
+                    spec.maxAcceleration != null ? spec.maxAcceleration : maxAcceleration,
+                    spec.maxJerk != null ? spec.maxJerk : maxJerk);
 
-            FileWriter lfw = new FileWriter(ROBOT_NAME + "Left" + profile + "Profile.csv", false);
-            FileWriter rfw = new FileWriter(ROBOT_NAME + "Right" + profile + "Profile.csv", false);
-          
-            double[] angles = calculateMPAngles.calculateAngles(tm.getLeftTrajectory(), tm.getRightTrajectory());
+            Path leftCsv = outDir.resolve(robotName + "Left" + name + "Profile.csv");
+            Path rightCsv = outDir.resolve(robotName + "Right" + name + "Profile.csv");
+            Path proto = outDir.resolve(robotName + name + "Profile.pb");
+            Path poses = outDir.resolve(robotName + name + "Pose.csv");
+            Path hashFile = outDir.resolve(robotName + name + "Profile.hash");
 
-            lfw.write(tm.getLeftTrajectory().length() + "\n");
-            for (int i = 0; i < tm.getLeftTrajectory().length(); i++) {
-                lfw.write(tm.getLeftTrajectory().get(i).position + ",\t" + tm.getLeftTrajectory().get(i).velocity + ",\t"
-                        + tm.getLeftTrajectory().get(i).acceleration + ",\t" + tm.getLeftTrajectory().get(i).dt + ",\t" + angles[i]);
-                lfw.write("\n");
+            String hash = hash(bytes, name, config, profileWheelbase);
+            boolean outputsExist = (!writeCsv || Files.exists(leftCsv) && Files.exists(rightCsv))
+                    && (!writeProto || Files.exists(proto)) && (!writePoses || Files.exists(poses));
+            if (!force && outputsExist && Files.exists(hashFile)
+                    && hash.equals(new String(Files.readAllBytes(hashFile), StandardCharsets.US_ASCII))) {
+                return Result.SKIPPED;
             }
 
-            rfw.write(tm.getRightTrajectory().length() + "\n");
-            for (int i = 0; i < tm.getRightTrajectory().length(); i++) {
-                rfw.write(tm.getRightTrajectory().get(i).position + ",\t" + tm.getRightTrajectory().get(i).velocity + ",\t"
-                        + tm.getLeftTrajectory().get(i).acceleration + ",\t" + tm.getRightTrajectory().get(i).dt + ",\t" + angles[i]);
-                rfw.write("\n");
+            Trajectory trajectory = Pathfinder.generate(spec.toPathfinderWaypoints(), config);
+            TankModifier tm = new TankModifier(trajectory).modify(profileWheelbase); //Units are feet
+            Trajectory left = tm.getLeftTrajectory();
+            Trajectory right = tm.getRightTrajectory();
+
+            CalculateMPAngles calculateMPAngles = new CalculateMPAngles(profileWheelbase, profileDt);
+            if (writeCsv) {
+                double[] angles = calculateMPAngles.calculateAngles(left, right);
+                PathWriter.writeCsv(leftCsv, left, angles);
+                PathWriter.writeCsv(rightCsv, right, angles);
+            }
+            if (writeProto) {
+                PathWriter.writeProto(proto, left, right, profileDt);
+            }
+            if (writePoses) {
+                PathWriter.writePoses(poses, left, right, calculateMPAngles);
             }
+            //Written last, so a run that dies partway through regenerates the profile next time.
+            Files.write(hashFile, hash.getBytes(StandardCharsets.US_ASCII));
+            System.out.println("Generated " + name + " (" + left.length() + " points) from " + fileName);
+            return Result.GENERATED;
+        } catch (Exception e) {
+            System.err.println("Failed to generate " + file + ": " + e);
+            return Result.FAILED;
+        }
+    }
 
-            lfw.flush();
-            lfw.close();
-            rfw.flush();
-            rfw.close();
+    /**
+     * @return A hash of everything that goes into a profile's outputs, to tell whether they're stale.
+     */
+    private String hash(byte[] fileBytes, String name, Trajectory.Config config, double profileWheelbase) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(fileBytes);
+        String settings = OUTPUT_VERSION + "|" + robotName + "|" + name + "|" + writeCsv + "|" + writeProto
+                + "|" + writePoses + "|" + config.fit + "|" + config.sample_count + "|" + config.dt
+                + "|" + config.max_velocity + "|" + config.max_acceleration + "|" + config.max_jerk
+                + "|" + profileWheelbase;
+        digest.update(settings.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
         }
+        return hex.toString();
     }
-}
\ No newline at end of file
+}
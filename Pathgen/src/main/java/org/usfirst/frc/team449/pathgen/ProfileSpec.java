@@ -0,0 +1,82 @@
+package org.usfirst.frc.team449.pathgen;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jaci.pathfinder.Pathfinder;
+import jaci.pathfinder.Trajectory;
+import jaci.pathfinder.Waypoint;
+
+import java.util.List;
+
+/**
+ * A profile to generate, as read from a YAML or JSON file. Everything but the waypoints is optional
+ * and falls back to the defaults given on the command line.
+ *
+ * <pre>
+ * waypoints:       # x (feet), y (feet), angle (degrees)
+ *   - [0, 0, 0]
+ *   - [10, 5, 45]
+ * maxVelocity: 4.  # feet/second
+ * </pre>
+ */
+public class ProfileSpec {
+
+    /**
+     * The name of the profile, used in the names of the output files. Defaults to the file name.
+     */
+    public final String name;
+
+    /**
+     * The points to hit, each as x and y in feet and the angle in degrees.
+     */
+    public final List<double[]> waypoints;
+
+    /**
+     * Overrides of the defaults, or null to use them.
+     */
+    public final Double dt, maxVelocity, maxAcceleration, maxJerk, wheelbase;
+
+    /**
+     * The spline to fit, or null to use the default.
+     */
+    public final Trajectory.FitMethod fitMethod;
+
+    @JsonCreator
+    public ProfileSpec(@JsonProperty("name") String name,
+                       @JsonProperty(value = "waypoints", required = true) List<double[]> waypoints,
+                       @JsonProperty("dt") Double dt,
+                       @JsonProperty("maxVelocity") Double maxVelocity,
+                       @JsonProperty("maxAcceleration") Double maxAcceleration,
+                       @JsonProperty("maxJerk") Double maxJerk,
+                       @JsonProperty("wheelbase") Double wheelbase,
+                       @JsonProperty("fitMethod") Trajectory.FitMethod fitMethod) {
+        if (waypoints.size() < 2) {
+            throw new IllegalArgumentException("A profile needs at least 2 waypoints");
+        }
+        for (double[] waypoint : waypoints) {
+            if (waypoint.length != 3) {
+                throw new IllegalArgumentException("Each waypoint must be [x, y, degrees]");
+            }
+        }
+        this.name = name;
+        this.waypoints = waypoints;
+        this.dt = dt;
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+        this.maxJerk = maxJerk;
+        this.wheelbase = wheelbase;
+        this.fitMethod = fitMethod;
+    }
+
+    /**
+     * @return The waypoints, in the form Pathfinder takes them.
+     */
+    public Waypoint[] toPathfinderWaypoints() {
+        Waypoint[] result = new Waypoint[waypoints.size()];
+        for (int i = 0; i < result.length; i++) {
+            double[] waypoint = waypoints.get(i);
+            result[i] = new Waypoint(waypoint[0], waypoint[1], Pathfinder.d2r(waypoint[2]));
+        }
+        return result;
+    }
+}
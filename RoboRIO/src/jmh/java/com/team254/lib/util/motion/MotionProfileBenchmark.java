@@ -0,0 +1,36 @@
+package com.team254.lib.util.motion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+
+/** Benchmarks sampling a trapezoidal {@link MotionProfile}, which followers do every loop. */
+@State(Scope.Thread)
+public class MotionProfileBenchmark {
+
+  private MotionProfile profile;
+  /** The duration of the profile, in seconds. */
+  private double duration;
+  /** The time to sample at next, in seconds. */
+  private double t;
+
+  @Setup
+  public void setup() {
+    this.profile =
+        MotionProfileGenerator.generateProfile(
+            new MotionProfileConstraints(10, 8),
+            new MotionProfileGoal(20),
+            new MotionState(0, 0, 0, 0));
+    this.duration = this.profile.endTime() - this.profile.startTime();
+  }
+
+  @Benchmark
+  public Optional<MotionState> stateByTime() {
+    this.t += 0.02;
+    if (this.t > this.duration) this.t = 0;
+    return this.profile.stateByTime(this.profile.startTime() + this.t);
+  }
+}
@@ -0,0 +1,46 @@
+package org.usfirst.frc.team449.robot.components;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Benchmarks looking up a value in a {@link MapInterpolationComponent}, like a shooter table. */
+@State(Scope.Thread)
+public class MapInterpolationComponentBenchmark {
+
+  /** The interpolation method to use. */
+  @Param({"LINEAR", "COSINE", "CUBIC"})
+  public String method;
+
+  /** The number of entries in the table. */
+  @Param({"8", "64"})
+  public int entries;
+
+  private MapInterpolationComponent component;
+  /** The input, stepped every call so it doesn't always land in the same segment. */
+  private double x;
+
+  @Setup
+  public void setup() {
+    final List<Map.Entry<Double, Double>> table = new ArrayList<>(this.entries);
+    for (int i = 0; i < this.entries; i++) {
+      table.add(Map.entry((double) i, 1000. + 50. * i + 3. * i * i));
+    }
+    this.component =
+        new MapInterpolationComponent(
+            MapInterpolationComponent.InterpolationMethod.valueOf(this.method), table);
+  }
+
+  @Benchmark
+  public double calculate() {
+    this.x += 0.37;
+    if (this.x >= this.entries - 1) this.x -= this.entries - 1;
+    return this.component.calculate(this.x);
+  }
+}
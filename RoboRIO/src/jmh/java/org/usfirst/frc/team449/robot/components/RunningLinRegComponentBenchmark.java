@@ -0,0 +1,63 @@
+package org.usfirst.frc.team449.robot.components;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the running linear regression the PDP and Talons use to estimate resistance, once per
+ * loop.
+ */
+@State(Scope.Thread)
+public class RunningLinRegComponentBenchmark {
+
+  /** The size of the window. */
+  @Param({"10", "250"})
+  public int bufferSize;
+
+  private RunningLinRegComponent linReg;
+  private final LinRegFit fit = new LinRegFit();
+  /** The x of the next point. */
+  private double x;
+
+  @Setup
+  public void setup() {
+    this.linReg = new RunningLinRegComponent(this.bufferSize, 0);
+    // Fill the window so every add has to pop a point too.
+    for (int i = 0; i < this.bufferSize; i++) {
+      this.addNextPoint();
+    }
+  }
+
+  /** Adds a noisy point on a line. */
+  private void addNextPoint() {
+    this.x += 0.1;
+    if (this.x > 40) this.x = 0;
+    this.linReg.addPoint(this.x, 12.5 - 0.02 * this.x + 0.01 * Math.sin(this.x * 7));
+  }
+
+  @Benchmark
+  public void addPoint() {
+    this.addNextPoint();
+  }
+
+  @Benchmark
+  public double getSlope() {
+    return this.linReg.getSlope();
+  }
+
+  @Benchmark
+  public double addPointAndGetSlope() {
+    this.addNextPoint();
+    return this.linReg.getSlope();
+  }
+
+  @Benchmark
+  public double addPointAndFit() {
+    this.addNextPoint();
+    this.linReg.fit(this.fit);
+    return this.fit.getSlope() + this.fit.getIntercept();
+  }
+}
@@ -0,0 +1,56 @@
+package org.usfirst.frc.team449.robot.components;
+
+import edu.wpi.first.wpilibj.controller.SimpleMotorFeedforward;
+import edu.wpi.first.wpilibj.geometry.Pose2d;
+import edu.wpi.first.wpilibj.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.kinematics.DifferentialDriveKinematics;
+import edu.wpi.first.wpilibj.trajectory.Trajectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks generating a typical autonomous trajectory, against getting it from the {@link
+ * TrajectoryCache}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TrajectoryGenerationQuinticComponentBenchmark {
+
+  private TrajectoryGenerationQuinticComponent component;
+
+  @Setup
+  public void setup() {
+    this.component =
+        new TrajectoryGenerationQuinticComponent(
+            new SimpleMotorFeedforward(0.2, 2.5, 0.4),
+            new DifferentialDriveKinematics(0.6),
+            3.,
+            2.,
+            List.of(
+                new Pose2d(0, 0, Rotation2d.fromDegrees(0)),
+                new Pose2d(2, 1, Rotation2d.fromDegrees(30)),
+                new Pose2d(4, 1.5, Rotation2d.fromDegrees(0)),
+                new Pose2d(6, 0, Rotation2d.fromDegrees(-45))),
+            false);
+  }
+
+  @Benchmark
+  public Trajectory generateTrajectory() {
+    return this.component.generateTrajectory();
+  }
+
+  /** A cache hit, which is what the main loop sees once the trajectory's been generated. */
+  @Benchmark
+  public Trajectory getTrajectory() {
+    return this.component.getTrajectory();
+  }
+}
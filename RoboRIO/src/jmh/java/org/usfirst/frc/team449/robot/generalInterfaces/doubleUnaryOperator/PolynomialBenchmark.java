@@ -0,0 +1,43 @@
+package org.usfirst.frc.team449.robot.generalInterfaces.doubleUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+
+/** Benchmarks evaluating a {@link Polynomial} like the ones used for joystick curves. */
+@State(Scope.Thread)
+public class PolynomialBenchmark {
+
+  /** A curve with fractional powers, like the ones in the maps. */
+  private Polynomial fractional;
+  /** A curve with only integer powers. */
+  private Polynomial integer;
+  /** The input, stepped every call so the result can't be constant-folded. */
+  private double x;
+
+  @Setup
+  public void setup() {
+    this.fractional = new Polynomial(Map.of(0.5, 0.4, 1., 0.2, 3., 0.4), null);
+    this.integer = new Polynomial(Map.of(1., 0.5, 2., 0.3, 3., 0.2), null);
+  }
+
+  /** Steps the input through [-1, 1). */
+  private double nextX() {
+    this.x += 0.01;
+    if (this.x >= 1) this.x -= 2;
+    return this.x;
+  }
+
+  @Benchmark
+  public double applyFractionalPowers() {
+    return this.fractional.applyAsDouble(this.nextX());
+  }
+
+  @Benchmark
+  public double applyIntegerPowers() {
+    return this.integer.applyAsDouble(this.nextX());
+  }
+}
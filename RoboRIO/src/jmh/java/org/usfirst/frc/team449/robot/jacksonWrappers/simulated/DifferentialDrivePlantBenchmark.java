@@ -0,0 +1,51 @@
+package org.usfirst.frc.team449.robot.jacksonWrappers.simulated;
+
+import edu.wpi.first.wpilibj.controller.SimpleMotorFeedforward;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks a loop's step of the simulated drivetrain and of a single simulated motor, which bound
+ * how much faster than real time the headless simulation can run.
+ */
+@State(Scope.Thread)
+public class DifferentialDrivePlantBenchmark {
+
+  /** The drive's low gear feedforwards from the map. */
+  private final SimpleMotorFeedforward left = new SimpleMotorFeedforward(0.128, 5.23, 0.0698),
+      right = new SimpleMotorFeedforward(0.139, 5.17, 0.0554);
+
+  private DifferentialDrivePlant plant;
+  private SimulatedMotor motor;
+  /** The voltage applied, swept so the plant keeps accelerating and reversing. */
+  private double volts;
+
+  @Setup
+  public void setup() {
+    this.plant = new DifferentialDrivePlant(0.61755, 0.8);
+    this.motor =
+        new SimulatedMotor(() -> this.volts, SimulatedMotor.Motor.NEO, 3, 0.128, 2.5, 0.033);
+  }
+
+  /** Sweeps the voltage between -12 and 12. */
+  private void nextVolts() {
+    this.volts += 0.37;
+    if (this.volts > 12) this.volts = -12;
+  }
+
+  @Benchmark
+  public double plantStep() {
+    this.nextVolts();
+    this.plant.step(this.volts, 0.9 * this.volts, this.left, this.right, 0.02);
+    return this.plant.getHeadingRadians();
+  }
+
+  @Benchmark
+  public double motorStep() {
+    this.nextVolts();
+    this.motor.updatePhysics(0.02);
+    return this.motor.getPosition();
+  }
+}
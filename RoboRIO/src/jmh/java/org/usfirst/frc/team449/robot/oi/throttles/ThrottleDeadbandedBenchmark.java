@@ -0,0 +1,42 @@
+package org.usfirst.frc.team449.robot.oi.throttles;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the smoothing and deadbanding in {@link ThrottleDeadbanded#getValue()}. The joystick
+ * is replaced with a synthetic signal, since reading a real one needs the HAL.
+ */
+@State(Scope.Thread)
+public class ThrottleDeadbandedBenchmark {
+
+  private ThrottleDeadbanded throttle;
+
+  @Setup
+  public void setup() {
+    this.throttle = new SyntheticThrottle();
+  }
+
+  @Benchmark
+  public double getValue() {
+    return this.throttle.getValue();
+  }
+
+  /** A throttle whose stick is a slow sine wave. */
+  private static class SyntheticThrottle extends ThrottleDeadbanded {
+    /** The phase of the sine wave. */
+    private double phase;
+
+    SyntheticThrottle() {
+      super(null, 1, 0.08, null, false);
+    }
+
+    @Override
+    public double pidGet() {
+      this.phase += 0.05;
+      return Math.sin(this.phase);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package org.usfirst.frc.team449.robot.other;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks updating and reading a {@link DebouncerEx} with a full buffer. */
+@State(Scope.Thread)
+public class DebouncerExBenchmark {
+
+  /** The number of samples in the buffer. */
+  @Param({"5", "50"})
+  public int bufferSize;
+
+  private DebouncerEx debouncer;
+  /** The number of updates so far, used to make a noisy input. */
+  private int updates;
+
+  @Setup
+  public void setup() {
+    this.debouncer = new DebouncerEx(this.bufferSize);
+    for (int i = 0; i < this.bufferSize; i++) {
+      this.debouncer.update(this.nextState());
+    }
+  }
+
+  /** @return A state that's true about two thirds of the time. */
+  private boolean nextState() {
+    return this.updates++ % 3 != 0;
+  }
+
+  @Benchmark
+  public boolean update() {
+    this.debouncer.update(this.nextState());
+    return this.debouncer.get();
+  }
+}
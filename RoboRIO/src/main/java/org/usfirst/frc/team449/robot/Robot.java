@@ -10,8 +10,15 @@ import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import io.github.oblarg.oblog.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.components.TrajectoryCache;
+import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.MotorContainer;
+import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.StatusFrameUsage;
 import org.usfirst.frc.team449.robot.javamaps.MapTemplate;
 import org.usfirst.frc.team449.robot.other.Clock;
+import org.usfirst.frc.team449.robot.other.LoopProfiler;
+import org.usfirst.frc.team449.robot.telemetry.BinaryTelemetryLogger;
+import org.usfirst.frc.team449.robot.telemetry.TelemetryPublisher;
+import org.usfirst.frc.team449.robot.telemetry.TelemetryType;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -49,6 +56,20 @@ public class Robot extends TimedRobot {
   /** The object constructed directly from the yaml map. */
   @NotNull protected final RobotMap robotMap = Objects.requireNonNull(loadMap());
 
+  /** Profiler stages for the whole of robotPeriodic and for each step within it. */
+  @NotNull
+  private final LoopProfiler.Stage loopStage = LoopProfiler.createStage("Loop"),
+      clockStage = LoopProfiler.createStage("Clock"),
+      motorStage = LoopProfiler.createStage("Motors"),
+      updaterStage = LoopProfiler.createStage("Updater"),
+      loggerStage = LoopProfiler.createStage("Logger"),
+      schedulerStage = LoopProfiler.createStage("Scheduler");
+
+  /** The telemetry channels for loop time, battery voltage and total current. */
+  private int loopChannel, voltageChannel, currentChannel;
+  /** Whether the telemetry logger was started. */
+  private boolean recordTelemetry;
+
   /** The method that runs when the robot is turned on. Initializes all subsystems from the map. */
   public static @Nullable RobotMap loadMap() {
     try {
@@ -203,6 +224,10 @@ public class Robot extends TimedRobot {
     // Set up start time
     Clock.setStartTime();
 
+    // Allocation auditing is cheap in sim, where garbage hunting happens; the dashboard can turn it
+    // on for the real robot.
+    LoopProfiler.setAllocationAuditing(RobotBase.isSimulation());
+
     // Yes this should be a print statement, it's useful to know that robotInit started.
     System.out.println("Started robotInit.");
 
@@ -211,9 +236,27 @@ public class Robot extends TimedRobot {
     }
 
     // Read sensors
+    MotorContainer.getInstance().update();
     this.robotMap.getUpdater().run();
 
+    // Everything built from the map has added its channels by now, so the logger can start.
+    // Unit tests and headless simulations run too often to leave files behind every time.
+    final BinaryTelemetryLogger telemetry = isUnitTesting() ? null : this.robotMap.getTelemetry();
+    if (telemetry != null) {
+      this.recordTelemetry = true;
+      this.loopChannel = telemetry.addChannel("Loop/millis", TelemetryType.DOUBLE);
+      this.voltageChannel = telemetry.addChannel("PDP/voltage", TelemetryType.DOUBLE);
+      this.currentChannel = telemetry.addChannel("PDP/current", TelemetryType.DOUBLE);
+      telemetry.start();
+    }
+
+    // The map's trajectories were registered as it was built; get them ready off the main thread.
+    TrajectoryCache.pregenerate(!isUnitTesting());
+
     Logger.configureLoggingAndConfig(this.robotMap, false);
+    if (this.robotMap.getTelemetryPublisher() != null) {
+      this.robotMap.getTelemetryPublisher().bindOblogOverrides(this.robotMap);
+    }
     Shuffleboard.setRecordingFileNameFormat("log-${time}");
     Shuffleboard.startRecording();
 
@@ -225,14 +268,54 @@ public class Robot extends TimedRobot {
 
   @Override
   public void robotPeriodic() {
+    this.loopStage.start();
     // save current time
+    this.clockStage.start();
     Clock.updateTime();
+    this.clockStage.end();
+    // Read the status of every motor at once
+    this.motorStage.start();
+    MotorContainer.getInstance().update();
+    this.motorStage.end();
     // Read sensors
+    this.updaterStage.start();
     this.robotMap.getUpdater().run();
+    this.updaterStage.end();
     // update shuffleboard
-    Logger.updateEntries();
+    this.loggerStage.start();
+    // Telemetry reads every getter it's given, so it says nothing about which frames are needed.
+    StatusFrameUsage.beginUntracked();
+    try {
+      final TelemetryPublisher publisher = this.robotMap.getTelemetryPublisher();
+      if (publisher != null) {
+        publisher.update();
+      } else {
+        Logger.updateEntries();
+      }
+    } finally {
+      StatusFrameUsage.endUntracked();
+    }
+    this.loggerStage.end();
     // Run all commands. This is a WPILib thing you don't really have to worry about.
+    this.schedulerStage.start();
     CommandScheduler.getInstance().run();
+    this.schedulerStage.end();
+    this.loopStage.end();
+    // Publish loop timing
+    LoopProfiler.endLoop();
+    // Record telemetry; this only copies into a queue, the file is written on another thread.
+    final BinaryTelemetryLogger telemetry = this.robotMap.getTelemetry();
+    if (this.recordTelemetry && telemetry != null) {
+      telemetry.logDouble(this.loopChannel, this.loopStage.getLastMillis());
+      telemetry.logDouble(this.voltageChannel, this.robotMap.getPDP().getVoltage());
+      telemetry.logDouble(this.currentChannel, this.robotMap.getPDP().getTotalCurrent());
+    }
+  }
+
+  /** @return The object constructed from the map. */
+  @NotNull
+  public RobotMap getRobotMap() {
+    return this.robotMap;
   }
 
   /** Run when we first enable in teleop. */
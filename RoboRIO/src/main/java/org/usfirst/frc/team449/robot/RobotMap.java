@@ -11,6 +11,8 @@ import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.MotorContainer;
 import org.usfirst.frc.team449.robot.jacksonWrappers.MappedJoystick;
 import org.usfirst.frc.team449.robot.jacksonWrappers.PDP;
+import org.usfirst.frc.team449.robot.telemetry.BinaryTelemetryLogger;
+import org.usfirst.frc.team449.robot.telemetry.TelemetryPublisher;
 
 import java.util.Iterator;
 import java.util.List;
@@ -22,11 +24,11 @@ public class RobotMap {
 
   @NotNull private final MotorContainer motors = MotorContainer.getInstance();
 
-  //    /**
-  //     * The logger for recording events and telemetry data.
-  //     */
-  //    @NotNull
-  //    private final Logger logger;
+  /** The logger for recording high-rate telemetry data, or null to not record it. */
+  @Nullable private final BinaryTelemetryLogger telemetry;
+
+  /** The publisher for sending telemetry to the dashboard, or null to update Oblog every loop. */
+  @Nullable private final TelemetryPublisher telemetryPublisher;
 
   /** A runnable that updates cached variables. */
   @NotNull private final Runnable updater;
@@ -46,6 +48,10 @@ public class RobotMap {
    * @param updater A runnable that updates cached variables.
    * @param commands A container to hold all of the robot's commands.
    * @param useCameraServer Whether the camera server should be run. Defaults to false.
+   * @param telemetry The logger for recording high-rate telemetry data. Can be null to not record
+   *     it.
+   * @param telemetryPublisher The publisher for sending telemetry to the dashboard under a
+   *     bandwidth budget. Can be null to update every Oblog entry every loop.
    */
   @JsonCreator
   public RobotMap(
@@ -55,21 +61,23 @@ public class RobotMap {
       @NotNull @JsonProperty(required = true) final Runnable updater,
       @NotNull @JsonProperty(required = true) final CommandContainer commands,
       @Nullable final List<MappedJoystick> joysticks,
-      final boolean useCameraServer) {
+      final boolean useCameraServer,
+      @Nullable final BinaryTelemetryLogger telemetry,
+      @Nullable final TelemetryPublisher telemetryPublisher) {
     this.updater = updater;
+    this.telemetry = telemetry;
+    this.telemetryPublisher = telemetryPublisher;
     this.pdp = pdp;
     this.useCameraServer = useCameraServer;
     this.subsystems = subsystems;
     this.commands = commands;
   }
 
-  //    /**
-  //     * @return The logger for recording events and telemetry data.
-  //     */
-  //    @NotNull
-  //    public Logger getLogger() {
-  //        return logger;
-  //    }
+  /** @return The logger for recording high-rate telemetry data, or null to not record it. */
+  @Nullable
+  public BinaryTelemetryLogger getTelemetry() {
+    return this.telemetry;
+  }
 
   /** @return The commands to be run when first enabled in autonomous mode. */
   @Nullable
@@ -106,6 +114,24 @@ public class RobotMap {
     return this.commands.getRobotStartupCommand().iterator();
   }
 
+  /** @return The publisher for sending telemetry to the dashboard, or null to update Oblog. */
+  @Nullable
+  public TelemetryPublisher getTelemetryPublisher() {
+    return this.telemetryPublisher;
+  }
+
+  /** @return The robot's subsystems. */
+  @NotNull
+  public List<Subsystem> getSubsystems() {
+    return this.subsystems;
+  }
+
+  /** @return The PDP. */
+  @NotNull
+  public PDP getPDP() {
+    return this.pdp;
+  }
+
   /** @return A runnable that updates cached variables. */
   @NotNull
   public Runnable getUpdater() {
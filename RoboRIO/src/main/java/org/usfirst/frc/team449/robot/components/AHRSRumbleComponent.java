@@ -5,19 +5,27 @@ import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.drive.unidirectional.DriveUnidirectionalWithGyro;
 import org.usfirst.frc.team449.robot.generalInterfaces.rumbleable.Rumbleable;
 import org.usfirst.frc.team449.robot.jacksonWrappers.MappedAHRS;
 import org.usfirst.frc.team449.robot.other.Clock;
 
 import java.util.List;
 
-/** A component to rumble controllers based off the jerk measurements from an AHRS. */
+/**
+ * A component to rumble controllers based off the jerk measurements from an AHRS, or from a drive's
+ * filtered acceleration, which is much less noisy to differentiate.
+ */
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 public class AHRSRumbleComponent implements Runnable {
 
   /** The NavX to get jerk measurements from. */
   @NotNull private final MappedAHRS ahrs;
 
+  /** The drive whose filtered acceleration to use instead of the NavX's, or null to use it. */
+  @Nullable private final DriveUnidirectionalWithGyro drive;
+
   /** The things to rumble. */
   @NotNull private final List<Rumbleable> rumbleables;
 
@@ -51,8 +59,8 @@ public class AHRSRumbleComponent implements Runnable {
   /** Variables for per-call acceleration calculation. Fields to avoid garbage collection. */
   private double frontBack, leftRight;
 
-  /** The time at which the acceleration was last measured. */
-  private long timeLastCalled;
+  /** The time at which the acceleration was last measured, in seconds, or NaN before then. */
+  private double timeLastCalled;
 
   /**
    * Default constructor.
@@ -65,6 +73,8 @@ public class AHRSRumbleComponent implements Runnable {
    * @param yIsFrontBack Whether the NavX Y-axis measures forwards-back jerk or left-right jerk.
    *     Defaults to false.
    * @param invertLeftRight Whether to invert the left-right jerk measurement. Defaults to false.
+   * @param drive The drive whose filtered acceleration to use instead of the NavX's, in which case
+   *     the jerks are in the drive's units. Defaults to using the NavX.
    */
   @JsonCreator
   public AHRSRumbleComponent(
@@ -73,14 +83,16 @@ public class AHRSRumbleComponent implements Runnable {
       @JsonProperty(required = true) final double minJerk,
       @JsonProperty(required = true) final double maxJerk,
       final boolean yIsFrontBack,
-      final boolean invertLeftRight) {
+      final boolean invertLeftRight,
+      @Nullable final DriveUnidirectionalWithGyro drive) {
     this.ahrs = ahrs;
+    this.drive = drive;
     this.rumbleables = rumbleables;
     this.minJerk = minJerk;
     this.maxJerk = maxJerk;
     this.yIsFrontBack = yIsFrontBack;
     this.invertLeftRight = invertLeftRight;
-    this.timeLastCalled = 0;
+    this.timeLastCalled = Double.NaN;
     this.lastFrontBackAccel = 0;
     this.lastLeftRightAccel = 0;
   }
@@ -88,16 +100,30 @@ public class AHRSRumbleComponent implements Runnable {
   /** Read the NavX jerk data and rumble the joysticks based off of it. */
   @Override
   public void run() {
-    // TODO Both branches of this if statement are the exact same!
-    if (this.yIsFrontBack) {
+    if (this.drive != null) {
+      // Already relative to the robot, so the NavX's axes don't matter.
+      this.frontBack = Math.abs(this.drive.getForwardAccelEstimate());
+      this.leftRight = this.drive.getLateralAccelEstimate() * (this.invertLeftRight ? -1 : 1);
+    } else if (this.yIsFrontBack) {
+      // TODO Both branches of this if statement are the exact same!
       // Put an abs() here because we can't differentiate front vs back when rumbling, so we only
       // care about
       // magnitude.
-      this.frontBack = Math.abs(this.ahrs.getYAccel());
-      this.leftRight = this.ahrs.getXAccel() * (this.invertLeftRight ? -1 : 1);
+      this.frontBack = Math.abs(this.ahrs.getCachedYAccel());
+      this.leftRight = this.ahrs.getCachedXAccel() * (this.invertLeftRight ? -1 : 1);
     } else {
-      this.frontBack = Math.abs(this.ahrs.getYAccel());
-      this.leftRight = this.ahrs.getXAccel() * (this.invertLeftRight ? -1 : 1);
+      this.frontBack = Math.abs(this.ahrs.getCachedYAccel());
+      this.leftRight = this.ahrs.getCachedXAccel() * (this.invertLeftRight ? -1 : 1);
+    }
+
+    final double now = Clock.currentTimeSeconds();
+    final double dt = now - this.timeLastCalled;
+    // The first call, or two in the same loop, has nothing to differentiate against.
+    if (!(dt > 0)) {
+      this.lastLeftRightAccel = this.leftRight;
+      this.lastFrontBackAccel = this.frontBack;
+      this.timeLastCalled = now;
+      return;
     }
 
     // Left is negative jerk, so we subtract it from left so that when we're going left, left is
@@ -105,10 +131,10 @@ public class AHRSRumbleComponent implements Runnable {
     // versa
     this.left =
         ((this.frontBack - this.lastFrontBackAccel) - (this.leftRight - this.lastLeftRightAccel))
-            / (Clock.currentTimeMillis() - this.timeLastCalled);
+            / dt;
     this.right =
         ((this.frontBack - this.lastFrontBackAccel) + (this.leftRight - this.lastLeftRightAccel))
-            / (Clock.currentTimeMillis() - this.timeLastCalled);
+            / dt;
 
     if (this.left > this.minJerk) {
       this.left = (this.left - this.minJerk) / this.maxJerk;
@@ -128,6 +154,6 @@ public class AHRSRumbleComponent implements Runnable {
 
     this.lastLeftRightAccel = this.leftRight;
     this.lastFrontBackAccel = this.frontBack;
-    this.timeLastCalled = Clock.currentTimeMillis();
+    this.timeLastCalled = now;
   }
 }
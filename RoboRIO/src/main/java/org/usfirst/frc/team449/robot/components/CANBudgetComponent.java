@@ -0,0 +1,203 @@
+package org.usfirst.frc.team449.robot.components;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import edu.wpi.first.wpilibj.RobotState;
+import io.github.oblarg.oblog.Loggable;
+import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.MotorContainer;
+import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.SmartMotor;
+import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.StatusFrameUsage;
+import org.usfirst.frc.team449.robot.generalInterfaces.updatable.Updatable;
+
+import java.util.List;
+
+import static org.usfirst.frc.team449.robot.other.Util.getLogPrefix;
+
+/**
+ * Chooses status frame periods for every motor in the {@link MotorContainer} so that the CAN bus
+ * stays under a target utilization.
+ *
+ * <p>For the first few enabled loops this only watches which status frames are read (see {@link
+ * StatusFrameUsage}). Disabled loops don't count, since most subsystems aren't read until the robot
+ * runs. After that, frames nobody read are slowed down to their idle period, frames that were set
+ * in the map are left alone, and the remaining frames are all slowed down by the same factor until
+ * the estimated load fits the target. The periods are chosen again whenever a frame is read for the
+ * first time, so something first used later in the match, like a climber's current, goes back to
+ * being sent often instead of staying at its idle period. Otherwise they're left alone, since
+ * changing them costs CAN traffic of its own.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class CANBudgetComponent implements Updatable, Loggable {
+
+  /** The bit rate of the roboRIO CAN bus, in bits per second. */
+  private static final double BUS_BITS_PER_SECOND = 1_000_000;
+  /** The size of an extended frame with an 8 byte payload, including worst-case bit stuffing. */
+  private static final double BITS_PER_FRAME = 160;
+
+  /** The fraction of the bus the frames should be fit into. */
+  private final double targetUtilization;
+  /** The number of enabled loops to watch which frames are read for before changing periods. */
+  private final int warmupLoops;
+  /** The frames per second sent by each motor controller for control, which can't be changed. */
+  private final double controlFramesPerSecond;
+  /** The frames per second sent by everything on the bus that isn't a motor, e.g. the PDP. */
+  private final double otherFramesPerSecond;
+
+  /** The number of enabled loops run so far. */
+  private int loops;
+  /** Whether the periods have been chosen and applied yet. */
+  private boolean applied;
+  /** The number of first uses of frames as of when the periods were last chosen. */
+  private int firstUsesApplied;
+
+  /**
+   * Default constructor.
+   *
+   * @param targetUtilization The fraction of the bus the frames should be fit into. Defaults to
+   *     0.6, since utilization above ~70% starts to cause dropped frames.
+   * @param warmupLoops The number of enabled loops to watch which frames are read for before
+   *     changing any periods. Should be long enough for every subsystem to be read at least once.
+   *     Defaults to 250, which is 5 seconds.
+   * @param controlFramesPerSecond The frames per second sent by each motor controller for control.
+   *     Defaults to 100.
+   * @param otherFramesPerSecond The frames per second sent by everything on the bus that isn't a
+   *     motor. Defaults to 100, which covers the PDP and PCM.
+   */
+  @JsonCreator
+  public CANBudgetComponent(
+      @Nullable final Double targetUtilization,
+      @Nullable final Integer warmupLoops,
+      @Nullable final Double controlFramesPerSecond,
+      @Nullable final Double otherFramesPerSecond) {
+    this.targetUtilization = targetUtilization != null ? targetUtilization : 0.6;
+    this.warmupLoops = warmupLoops != null ? warmupLoops : 250;
+    this.controlFramesPerSecond = controlFramesPerSecond != null ? controlFramesPerSecond : 100;
+    this.otherFramesPerSecond = otherFramesPerSecond != null ? otherFramesPerSecond : 100;
+  }
+
+  /**
+   * @param periodMillis The period of a frame, in milliseconds.
+   * @return How many times per second the frame is sent.
+   */
+  private static double framesPerSecond(final int periodMillis) {
+    return 1000. / periodMillis;
+  }
+
+  /**
+   * @param framesPerSecond A number of frames sent per second.
+   * @return The fraction of the bus that many frames takes up.
+   */
+  private static double utilization(final double framesPerSecond) {
+    return framesPerSecond * BITS_PER_FRAME / BUS_BITS_PER_SECOND;
+  }
+
+  /**
+   * Counts enabled loops and chooses the periods once the warmup is over, then again whenever a
+   * frame is read for the first time.
+   */
+  @Override
+  public void update() {
+    if (this.applied) {
+      if (StatusFrameUsage.getFirstUses() != this.firstUsesApplied) this.apply();
+      return;
+    }
+    if (!RobotState.isEnabled() || ++this.loops < this.warmupLoops) return;
+    this.applied = true;
+    this.apply();
+  }
+
+  /**
+   * Chooses a period for every frame that isn't pinned and sends the ones that changed to the
+   * controller.
+   */
+  private void apply() {
+    // Taken first, so a frame first read while this runs gets another pass.
+    this.firstUsesApplied = StatusFrameUsage.getFirstUses();
+    final List<SmartMotor> motors = MotorContainer.getInstance().getMotors();
+
+    // Load that can't be changed, or that is set to the idle period regardless of the budget.
+    double fixedLoad = this.otherFramesPerSecond;
+    // Load of the used frames if they were all sent at their preferred period.
+    double usedLoad = 0;
+    for (int i = 0; i < motors.size(); i++) {
+      final StatusFrameUsage usage = motors.get(i).getStatusFrameUsage();
+      fixedLoad += this.controlFramesPerSecond;
+      if (usage == null) continue;
+      for (int frame = 0; frame < usage.getFrameCount(); frame++) {
+        final StatusFrameUsage.Frame f = usage.getFrame(frame);
+        if (usage.isPinned(frame)) {
+          fixedLoad += framesPerSecond(f.getPeriodMillis());
+        } else if (!usage.isUsed(frame)) {
+          fixedLoad += framesPerSecond(f.getIdlePeriodMillis());
+        } else {
+          usedLoad += framesPerSecond(f.getUsedPeriodMillis());
+        }
+      }
+    }
+
+    // Slow every used frame down by the same factor until it all fits.
+    final double available =
+        this.targetUtilization * BUS_BITS_PER_SECOND / BITS_PER_FRAME - fixedLoad;
+    final double scale =
+        usedLoad <= available ? 1 : available > 0 ? usedLoad / available : Double.MAX_VALUE;
+
+    for (int i = 0; i < motors.size(); i++) {
+      final SmartMotor motor = motors.get(i);
+      final StatusFrameUsage usage = motor.getStatusFrameUsage();
+      if (usage == null) continue;
+      for (int frame = 0; frame < usage.getFrameCount(); frame++) {
+        if (usage.isPinned(frame)) continue;
+        final StatusFrameUsage.Frame f = usage.getFrame(frame);
+        final int idle = f.getIdlePeriodMillis();
+        final int period =
+            usage.isUsed(frame)
+                ? (int) Math.min(idle, Math.ceil(f.getUsedPeriodMillis() * scale))
+                : idle;
+        if (period != f.getPeriodMillis()) {
+          f.setPeriodMillis(period);
+        }
+      }
+    }
+
+    System.out.println(
+        getLogPrefix(this)
+            + "Set status frame periods for "
+            + motors.size()
+            + " motors, estimated CAN utilization is now "
+            + Math.round(this.getEstimatedUtilization() * 100)
+            + "%");
+    if (scale > 1) {
+      System.out.println(
+          getLogPrefix(this)
+              + "Used status frames had to be slowed down by a factor of "
+              + scale
+              + " to fit the target utilization");
+    }
+  }
+
+  /** @return The fraction of the CAN bus the current frame periods are estimated to take up. */
+  @Log
+  public double getEstimatedUtilization() {
+    final List<SmartMotor> motors = MotorContainer.getInstance().getMotors();
+    double load = this.otherFramesPerSecond;
+    for (int i = 0; i < motors.size(); i++) {
+      load += this.controlFramesPerSecond;
+      final StatusFrameUsage usage = motors.get(i).getStatusFrameUsage();
+      if (usage == null) continue;
+      for (int frame = 0; frame < usage.getFrameCount(); frame++) {
+        load += framesPerSecond(usage.getFrame(frame).getPeriodMillis());
+      }
+    }
+    return utilization(load);
+  }
+
+  /** @return Whether the frame periods have been chosen yet. */
+  @Log
+  public boolean isApplied() {
+    return this.applied;
+  }
+}
@@ -0,0 +1,116 @@
+package org.usfirst.frc.team449.robot.components;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A running linear regression that weights points by how recent they are instead of using a fixed
+ * window, so it tracks slow drift, like battery resistance rising over a match, with no buffers.
+ * Each new point multiplies the weight of every older one by the forgetting factor.
+ */
+public class ExponentialLinRegComponent implements LinRegComponent {
+
+  /** The factor every point's weight is multiplied by each time a point is added. */
+  private final double forgettingFactor;
+  /** The minimum R^2 value considered significant. */
+  private final double rSquaredThreshhold;
+  /** The minimum number of points needed before a fit is made. */
+  private final int minPoints;
+  /** The total weight of all points. */
+  private double weight;
+  /** The number of points added, saturating at {@link Integer#MAX_VALUE}. */
+  private int numPoints;
+  /** The weighted means of the x's and y's. */
+  private double xMean, yMean;
+  /** The weighted sums of squared deviations of the x's and y's from their means. */
+  private double xxSum, yySum;
+  /** The weighted sum of products of the x and y deviations from their means. */
+  private double xySum;
+
+  /** The fit used by {@link #getSlope()} and {@link #getIntercept()}. Field to avoid garbage. */
+  @NotNull private final LinRegFit fit = new LinRegFit();
+
+  /**
+   * Default constructor.
+   *
+   * @param forgettingFactor The factor every point's weight is multiplied by each time a point is
+   *     added, between 0 and 1. The fit effectively covers the last 1 / (1 - forgettingFactor)
+   *     points.
+   * @param rSquaredThreshhold The minimum R^2 value considered significant enough to return the
+   *     regression slope instead of NaN. Defaults to 0.
+   * @param minPoints The minimum number of points needed before a fit is made. Defaults to 10.
+   */
+  @JsonCreator
+  public ExponentialLinRegComponent(
+      @JsonProperty(required = true) final double forgettingFactor,
+      final double rSquaredThreshhold,
+      @Nullable final Integer minPoints) {
+    if (!(forgettingFactor > 0 && forgettingFactor <= 1)) {
+      throw new IllegalArgumentException("The forgetting factor must be in (0, 1].");
+    }
+    this.forgettingFactor = forgettingFactor;
+    this.rSquaredThreshhold = rSquaredThreshhold;
+    this.minPoints = minPoints != null ? Math.max(2, minPoints) : 10;
+  }
+
+  /**
+   * Adds a point, decaying the weight of every older one.
+   *
+   * @param x The x point to add.
+   * @param y The y point to add
+   */
+  @Override
+  public void addPoint(final double x, final double y) {
+    this.weight = this.weight * this.forgettingFactor + 1;
+    if (this.numPoints < Integer.MAX_VALUE) this.numPoints++;
+
+    final double dx = x - this.xMean, dy = y - this.yMean;
+    this.xMean += dx / this.weight;
+    this.yMean += dy / this.weight;
+    this.xxSum = this.xxSum * this.forgettingFactor + dx * (x - this.xMean);
+    this.yySum = this.yySum * this.forgettingFactor + dy * (y - this.yMean);
+    this.xySum = this.xySum * this.forgettingFactor + dx * (y - this.yMean);
+  }
+
+  /**
+   * Fits a line to the weighted points. Doesn't allocate.
+   *
+   * @param out The holder to write the slope, intercept and R^2 into.
+   * @return Whether R^2 is above the threshold.
+   */
+  @Override
+  public boolean fit(@NotNull final LinRegFit out) {
+    if (this.numPoints < this.minPoints || this.xxSum <= 0) {
+      out.clear(this.numPoints);
+      return false;
+    }
+    final double slope = this.xySum / this.xxSum;
+    final double rSquared =
+        this.yySum > 0 ? this.xySum * this.xySum / (this.xxSum * this.yySum) : 1;
+    final boolean significant = rSquared > this.rSquaredThreshhold;
+    out.set(slope, this.yMean - slope * this.xMean, rSquared, this.numPoints, significant);
+    return significant;
+  }
+
+  /** @return The current slope of the linear regression line, or NaN if it isn't significant. */
+  @Override
+  public double getSlope() {
+    return this.fit(this.fit) ? this.fit.slope : Double.NaN;
+  }
+
+  /**
+   * @return The current y-intercept of the linear regression line, or NaN if it isn't
+   *     significant.
+   */
+  @Override
+  public double getIntercept() {
+    return this.fit(this.fit) ? this.fit.intercept : Double.NaN;
+  }
+
+  /** @return The total weight of the points, i.e. the effective number of points in the fit. */
+  public double getEffectivePoints() {
+    return this.weight;
+  }
+}
@@ -0,0 +1,228 @@
+package org.usfirst.frc.team449.robot.components;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A 2-D lookup table, e.g. flywheel speed by distance and angle to the target, that interpolates
+ * between grid points. Stored as primitive arrays, so {@link InterpolationGrid#calculate(double,
+ * double)} doesn't box or allocate.
+ *
+ * <p>Inputs outside the grid are clamped to its edges, since extrapolating in two dimensions at
+ * once is rarely trustworthy for tuning data.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class InterpolationGrid {
+
+  /** The keys along the first axis, strictly increasing. */
+  @NotNull private final double[] xKeys;
+  /** The keys along the second axis, strictly increasing. */
+  @NotNull private final double[] yKeys;
+  /** The value at each grid point, indexed [x * yKeys.length + y]. */
+  @NotNull private final double[] values;
+  /** The method used between grid points. */
+  @NotNull private final Method method;
+
+  /**
+   * Default constructor.
+   *
+   * @param method The method used between grid points.
+   * @param xKeys The keys along the first axis, strictly increasing.
+   * @param yKeys The keys along the second axis, strictly increasing.
+   * @param values The value at each grid point, as one list per x key with one value per y key.
+   */
+  @JsonCreator
+  public InterpolationGrid(
+      @NotNull @JsonProperty(required = true) final Method method,
+      @NotNull @JsonProperty(required = true) final List<Double> xKeys,
+      @NotNull @JsonProperty(required = true) final List<Double> yKeys,
+      @NotNull @JsonProperty(required = true) final List<List<Double>> values) {
+    this.method = method;
+    this.xKeys = toIncreasingArray(xKeys);
+    this.yKeys = toIncreasingArray(yKeys);
+    if (values.size() != this.xKeys.length) {
+      throw new IllegalArgumentException("The grid needs one row of values per x key.");
+    }
+    this.values = new double[this.xKeys.length * this.yKeys.length];
+    for (int x = 0; x < this.xKeys.length; x++) {
+      final List<Double> row = values.get(x);
+      if (row.size() != this.yKeys.length) {
+        throw new IllegalArgumentException("Every row of the grid needs one value per y key.");
+      }
+      for (int y = 0; y < this.yKeys.length; y++) {
+        this.values[x * this.yKeys.length + y] = row.get(y);
+      }
+    }
+  }
+
+  /**
+   * @param keys Keys that should be strictly increasing.
+   * @return The keys as an array.
+   * @throws IllegalArgumentException if there are no keys or they aren't strictly increasing.
+   */
+  @NotNull
+  private static double[] toIncreasingArray(@NotNull final List<Double> keys) {
+    if (keys.isEmpty()) throw new IllegalArgumentException("The grid needs at least one key.");
+    final double[] array = new double[keys.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = keys.get(i);
+      if (i > 0 && array[i] <= array[i - 1]) {
+        throw new IllegalArgumentException("Grid keys must be strictly increasing.");
+      }
+    }
+    return array;
+  }
+
+  /**
+   * Finds the segment a key is in.
+   *
+   * @param keys The keys along an axis.
+   * @param x A key within the range of the keys.
+   * @return The index of the last key that is less than or equal to x, at most the second to last.
+   */
+  private static int segmentOf(@NotNull final double[] keys, final double x) {
+    int low = 0, high = keys.length - 2;
+    while (low < high) {
+      final int mid = (low + high + 1) >>> 1;
+      if (keys[mid] <= x) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Evaluates a cubic Hermite segment with Catmull-Rom tangents, using one-sided tangents at the
+   * ends of an axis.
+   *
+   * @param keys The keys along the axis.
+   * @param segment The index of the first key of the segment.
+   * @param t How far across the segment to evaluate, from 0 to 1.
+   * @param before The value at the key before the segment, ignored if there isn't one.
+   * @param start The value at the start of the segment.
+   * @param end The value at the end of the segment.
+   * @param after The value at the key after the segment, ignored if there isn't one.
+   * @return The interpolated value.
+   */
+  private static double catmullRom(
+      @NotNull final double[] keys,
+      final int segment,
+      final double t,
+      final double before,
+      final double start,
+      final double end,
+      final double after) {
+    final double width = keys[segment + 1] - keys[segment];
+    final double m0 =
+        segment > 0
+            ? (end - before) / (keys[segment + 1] - keys[segment - 1]) * width
+            : end - start;
+    final double m1 =
+        segment + 2 < keys.length
+            ? (after - start) / (keys[segment + 2] - keys[segment]) * width
+            : end - start;
+    final double rise = end - start;
+    return ((((-2 * rise + m0 + m1) * t) + (3 * rise - 2 * m0 - m1)) * t + m0) * t + start;
+  }
+
+  /**
+   * @param x An index along the first axis.
+   * @param y An index along the second axis.
+   * @return The value at that grid point, with indices clamped to the grid.
+   */
+  private double at(final int x, final int y) {
+    final int clampedX = Math.max(0, Math.min(this.xKeys.length - 1, x));
+    final int clampedY = Math.max(0, Math.min(this.yKeys.length - 1, y));
+    return this.values[clampedX * this.yKeys.length + clampedY];
+  }
+
+  /**
+   * Interpolates along the second axis within one row.
+   *
+   * @param x The index of the row.
+   * @param segment The segment along the second axis.
+   * @param t How far across the segment to evaluate, from 0 to 1.
+   * @return The interpolated value.
+   */
+  private double alongY(final int x, final int segment, final double t) {
+    if (this.method == Method.BILINEAR) {
+      return this.at(x, segment) * (1 - t) + this.at(x, segment + 1) * t;
+    }
+    return catmullRom(
+        this.yKeys,
+        segment,
+        t,
+        this.at(x, segment - 1),
+        this.at(x, segment),
+        this.at(x, segment + 1),
+        this.at(x, segment + 2));
+  }
+
+  /**
+   * Looks up a value in the grid, interpolating between grid points.
+   *
+   * @param x The key along the first axis.
+   * @param y The key along the second axis.
+   * @return The interpolated value at (x, y).
+   */
+  public double calculate(final double x, final double y) {
+    final double clampedX = Math.max(this.xKeys[0], Math.min(this.xKeys[this.xKeys.length - 1], x));
+    final double clampedY = Math.max(this.yKeys[0], Math.min(this.yKeys[this.yKeys.length - 1], y));
+
+    // Axes with a single key have nothing to interpolate along.
+    final int ySegment = this.yKeys.length > 1 ? segmentOf(this.yKeys, clampedY) : 0;
+    final double ty =
+        this.yKeys.length > 1
+            ? (clampedY - this.yKeys[ySegment])
+                / (this.yKeys[ySegment + 1] - this.yKeys[ySegment])
+            : 0;
+    if (this.xKeys.length == 1) {
+      return this.yKeys.length > 1 ? this.alongY(0, ySegment, ty) : this.values[0];
+    }
+    final int xSegment = segmentOf(this.xKeys, clampedX);
+    final double tx =
+        (clampedX - this.xKeys[xSegment]) / (this.xKeys[xSegment + 1] - this.xKeys[xSegment]);
+
+    if (this.yKeys.length == 1) {
+      return this.method == Method.BILINEAR
+          ? this.at(xSegment, 0) * (1 - tx) + this.at(xSegment + 1, 0) * tx
+          : catmullRom(
+              this.xKeys,
+              xSegment,
+              tx,
+              this.at(xSegment - 1, 0),
+              this.at(xSegment, 0),
+              this.at(xSegment + 1, 0),
+              this.at(xSegment + 2, 0));
+    }
+
+    final double start = this.alongY(xSegment, ySegment, ty);
+    final double end = this.alongY(xSegment + 1, ySegment, ty);
+    if (this.method == Method.BILINEAR) {
+      return start * (1 - tx) + end * tx;
+    }
+    return catmullRom(
+        this.xKeys,
+        xSegment,
+        tx,
+        this.alongY(xSegment - 1, ySegment, ty),
+        start,
+        end,
+        this.alongY(xSegment + 2, ySegment, ty));
+  }
+
+  /** The ways to interpolate between grid points. */
+  public enum Method {
+    /** Linear along each axis. */
+    BILINEAR,
+    /** Catmull-Rom spline along each axis, using the 4x4 grid points around the input. */
+    BICUBIC
+  }
+}
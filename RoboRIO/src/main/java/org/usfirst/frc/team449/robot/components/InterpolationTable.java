@@ -0,0 +1,233 @@
+package org.usfirst.frc.team449.robot.components;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable lookup table that interpolates between entries, stored as sorted primitive arrays.
+ *
+ * <p>Segments are found with a binary search, and the cubic methods precompute the coefficients of
+ * each segment when the table is built, so {@link InterpolationTable#calculate(double)} doesn't box
+ * or allocate.
+ */
+public final class InterpolationTable {
+
+  /** The keys, sorted in increasing order with no duplicates. */
+  @NotNull private final double[] keys;
+  /** The value at each key. */
+  @NotNull private final double[] values;
+  /** The method used between keys. */
+  @NotNull private final MapInterpolationComponent.InterpolationMethod method;
+  /** What to do outside the range of the keys. */
+  @NotNull private final Extrapolation extrapolation;
+  /**
+   * The coefficients of each segment's polynomial in t, where t goes from 0 to 1 across the
+   * segment, four per segment in increasing order of power.
+   */
+  @NotNull private final double[] coefficients;
+  /** The slope of the table at the first and last keys, used for linear extrapolation. */
+  private final double startSlope, endSlope;
+
+  /**
+   * Default constructor.
+   *
+   * @param method The method to use between keys.
+   * @param extrapolation What to do outside the range of the keys.
+   * @param entries The entries of the table, in any order. If a key appears more than once, the
+   *     last entry with it is used.
+   */
+  public InterpolationTable(
+      @NotNull final MapInterpolationComponent.InterpolationMethod method,
+      @NotNull final Extrapolation extrapolation,
+      @NotNull final List<Map.Entry<Double, Double>> entries) {
+    if (entries.isEmpty()) {
+      throw new IllegalArgumentException("An interpolation table needs at least one entry.");
+    }
+    this.method = method;
+    this.extrapolation = extrapolation;
+
+    // Sorting and removing duplicates only happens once, so a TreeMap is fine here.
+    final TreeMap<Double, Double> sorted = new TreeMap<>();
+    for (final Map.Entry<Double, Double> entry : entries) {
+      sorted.put(entry.getKey(), entry.getValue());
+    }
+    final int count = sorted.size();
+    this.keys = new double[count];
+    this.values = new double[count];
+    int i = 0;
+    for (final Map.Entry<Double, Double> entry : sorted.entrySet()) {
+      this.keys[i] = entry.getKey();
+      this.values[i] = entry.getValue();
+      i++;
+    }
+
+    final double[] tangents = this.tangents();
+    this.coefficients = new double[Math.max(0, count - 1) * 4];
+    for (int segment = 0; segment + 1 < count; segment++) {
+      final double width = this.keys[segment + 1] - this.keys[segment];
+      final double rise = this.values[segment + 1] - this.values[segment];
+      final int c = segment * 4;
+      this.coefficients[c] = this.values[segment];
+      switch (method) {
+        case LINEAR:
+        case COSINE:
+          this.coefficients[c + 1] = rise;
+          break;
+        default:
+          // Cubic Hermite form, with the tangents scaled to the width of the segment.
+          final double m0 = tangents[segment] * width, m1 = tangents[segment + 1] * width;
+          this.coefficients[c + 1] = m0;
+          this.coefficients[c + 2] = 3 * rise - 2 * m0 - m1;
+          this.coefficients[c + 3] = -2 * rise + m0 + m1;
+      }
+    }
+
+    if (count < 2 || method == MapInterpolationComponent.InterpolationMethod.COSINE) {
+      // Cosine interpolation is flat at every key.
+      this.startSlope = 0;
+      this.endSlope = 0;
+    } else if (method == MapInterpolationComponent.InterpolationMethod.LINEAR) {
+      this.startSlope = (this.values[1] - this.values[0]) / (this.keys[1] - this.keys[0]);
+      this.endSlope =
+          (this.values[count - 1] - this.values[count - 2])
+              / (this.keys[count - 1] - this.keys[count - 2]);
+    } else {
+      this.startSlope = tangents[0];
+      this.endSlope = tangents[count - 1];
+    }
+  }
+
+  /**
+   * Finds the slope of the curve at each key for the cubic methods.
+   *
+   * @return The slope at each key.
+   */
+  @NotNull
+  private double[] tangents() {
+    final int count = this.keys.length;
+    final double[] tangents = new double[count];
+    if (count < 2) return tangents;
+
+    // Catmull-Rom tangents, generalized to unevenly spaced keys, with one-sided ends.
+    for (int i = 0; i < count; i++) {
+      final int before = Math.max(0, i - 1), after = Math.min(count - 1, i + 1);
+      tangents[i] =
+          (this.values[after] - this.values[before]) / (this.keys[after] - this.keys[before]);
+    }
+
+    if (this.method == MapInterpolationComponent.InterpolationMethod.MONOTONE_CUBIC) {
+      // Fritsch-Carlson: limit the tangents so the curve never overshoots the data.
+      for (int segment = 0; segment + 1 < count; segment++) {
+        final double secant =
+            (this.values[segment + 1] - this.values[segment])
+                / (this.keys[segment + 1] - this.keys[segment]);
+        if (secant == 0) {
+          tangents[segment] = 0;
+          tangents[segment + 1] = 0;
+          continue;
+        }
+        final double alpha = tangents[segment] / secant, beta = tangents[segment + 1] / secant;
+        if (alpha < 0) tangents[segment] = 0;
+        if (beta < 0) tangents[segment + 1] = 0;
+        final double magnitude = alpha * alpha + beta * beta;
+        if (magnitude > 9) {
+          final double tau = 3 / Math.sqrt(magnitude);
+          tangents[segment] = tau * alpha * secant;
+          tangents[segment + 1] = tau * beta * secant;
+        }
+      }
+    }
+    return tangents;
+  }
+
+  /**
+   * Finds the segment a key is in.
+   *
+   * @param x A key within the range of the table.
+   * @return The index of the last key that is less than or equal to x, at most the second to last.
+   */
+  private int segmentOf(final double x) {
+    int low = 0, high = this.keys.length - 2;
+    while (low < high) {
+      final int mid = (low + high + 1) >>> 1;
+      if (this.keys[mid] <= x) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Looks up a value in the table, interpolating between entries.
+   *
+   * @param x The key to look up.
+   * @return The interpolated value at x.
+   */
+  public double calculate(final double x) {
+    final int last = this.keys.length - 1;
+    if (last == 0) return this.values[0];
+    if (x <= this.keys[0]) {
+      return this.extrapolation == Extrapolation.LINEAR
+          ? this.values[0] + this.startSlope * (x - this.keys[0])
+          : this.values[0];
+    }
+    if (x >= this.keys[last]) {
+      return this.extrapolation == Extrapolation.LINEAR
+          ? this.values[last] + this.endSlope * (x - this.keys[last])
+          : this.values[last];
+    }
+
+    final int segment = this.segmentOf(x);
+    double t = (x - this.keys[segment]) / (this.keys[segment + 1] - this.keys[segment]);
+    if (this.method == MapInterpolationComponent.InterpolationMethod.COSINE) {
+      t = (1 - Math.cos(t * Math.PI)) / 2;
+    }
+    final int c = segment * 4;
+    return ((this.coefficients[c + 3] * t + this.coefficients[c + 2]) * t
+                + this.coefficients[c + 1])
+            * t
+        + this.coefficients[c];
+  }
+
+  /** @return The method used between keys. */
+  @NotNull
+  public MapInterpolationComponent.InterpolationMethod getMethod() {
+    return this.method;
+  }
+
+  /** @return What is done outside the range of the keys. */
+  @NotNull
+  public Extrapolation getExtrapolation() {
+    return this.extrapolation;
+  }
+
+  /**
+   * Makes a table with the same entries but a different method.
+   *
+   * @param method The method to use between keys.
+   * @return A new table.
+   */
+  @NotNull
+  public InterpolationTable withMethod(
+      @NotNull final MapInterpolationComponent.InterpolationMethod method) {
+    final List<Map.Entry<Double, Double>> entries = new ArrayList<>(this.keys.length);
+    for (int i = 0; i < this.keys.length; i++) {
+      entries.add(Map.entry(this.keys[i], this.values[i]));
+    }
+    return new InterpolationTable(method, this.extrapolation, entries);
+  }
+
+  /** What to do when asked for a value outside the range of the keys. */
+  public enum Extrapolation {
+    /** Use the value at the nearest end of the table. */
+    CLAMP,
+    /** Continue in a straight line with the slope at the nearest end of the table. */
+    LINEAR
+  }
+}
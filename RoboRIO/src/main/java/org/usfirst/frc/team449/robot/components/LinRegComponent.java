@@ -0,0 +1,40 @@
+package org.usfirst.frc.team449.robot.components;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A running simple linear regression of y on x, e.g. battery voltage on current draw.
+ *
+ * <p>Maps that don't name a class get a {@link RunningLinRegComponent}, so existing maps keep
+ * working.
+ */
+@JsonTypeInfo(
+    use = JsonTypeInfo.Id.CLASS,
+    include = JsonTypeInfo.As.PROPERTY,
+    property = "@class",
+    defaultImpl = RunningLinRegComponent.class)
+public interface LinRegComponent {
+
+  /**
+   * Adds a point to the regression.
+   *
+   * @param x The x value of the point.
+   * @param y The y value of the point.
+   */
+  void addPoint(double x, double y);
+
+  /**
+   * Fits a line to the points added so far. Doesn't allocate.
+   *
+   * @param out The holder to write the fit into.
+   * @return Whether the fit is significant, i.e. R^2 is above the threshold.
+   */
+  boolean fit(@NotNull LinRegFit out);
+
+  /** @return The current slope of the regression line, or NaN if it isn't significant. */
+  double getSlope();
+
+  /** @return The current y-intercept of the regression line, or NaN if it isn't significant. */
+  double getIntercept();
+}
@@ -0,0 +1,75 @@
+package org.usfirst.frc.team449.robot.components;
+
+/**
+ * A caller-owned holder for the result of a linear regression, so the slope, intercept and R^2 can
+ * be read together from one fit without boxing or allocating.
+ */
+public class LinRegFit {
+
+  /** The slope of the regression line, or NaN if it can't be found. */
+  double slope = Double.NaN;
+  /** The y-intercept of the regression line, or NaN if it can't be found. */
+  double intercept = Double.NaN;
+  /** The coefficient of determination of the fit, or NaN if it can't be found. */
+  double rSquared = Double.NaN;
+  /** The number of points the fit was taken over. */
+  int count;
+  /** Whether R^2 was above the threshold of the regression that made this fit. */
+  boolean significant;
+
+  /**
+   * Sets every field of the fit.
+   *
+   * @param slope The slope of the regression line.
+   * @param intercept The y-intercept of the regression line.
+   * @param rSquared The coefficient of determination of the fit.
+   * @param count The number of points the fit was taken over.
+   * @param significant Whether R^2 was above the threshold.
+   */
+  void set(
+      final double slope,
+      final double intercept,
+      final double rSquared,
+      final int count,
+      final boolean significant) {
+    this.slope = slope;
+    this.intercept = intercept;
+    this.rSquared = rSquared;
+    this.count = count;
+    this.significant = significant;
+  }
+
+  /**
+   * Clears the fit for when there aren't enough points to make one.
+   *
+   * @param count The number of points there are.
+   */
+  void clear(final int count) {
+    this.set(Double.NaN, Double.NaN, Double.NaN, count, false);
+  }
+
+  /** @return The slope of the regression line, or NaN if it can't be found. */
+  public double getSlope() {
+    return this.slope;
+  }
+
+  /** @return The y-intercept of the regression line, or NaN if it can't be found. */
+  public double getIntercept() {
+    return this.intercept;
+  }
+
+  /** @return The coefficient of determination of the fit, or NaN if it can't be found. */
+  public double getRSquared() {
+    return this.rSquared;
+  }
+
+  /** @return The number of points the fit was taken over. */
+  public int getCount() {
+    return this.count;
+  }
+
+  /** @return Whether R^2 was above the threshold of the regression that made this fit. */
+  public boolean isSignificant() {
+    return this.significant;
+  }
+}
@@ -0,0 +1,252 @@
+package org.usfirst.frc.team449.robot.components;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A running multiple linear regression, y = c + b0 * x0 + b1 * x1 + ..., fit with recursive least
+ * squares and exponential forgetting. Used for models with more than one input, like battery
+ * voltage from current draw and temperature, or motor voltage from current and velocity.
+ *
+ * <p>Each update is O(n^2) in the number of inputs with no allocation, so it's cheap enough for
+ * every loop with the handful of inputs these models have.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class MultiLinRegComponent {
+
+  /** The number of inputs, not counting the constant term. */
+  private final int numInputs;
+  /** The factor old points' weights are multiplied by each time a point is added. */
+  private final double forgettingFactor;
+  /** The covariance the coefficients start at, and the largest average it's allowed to grow to. */
+  private final double initialCovariance;
+  /** The minimum number of points needed before the coefficients are trusted. */
+  private final int minPoints;
+
+  /** The coefficients, with the constant term first. */
+  @NotNull private final double[] coefficients;
+  /** The covariance of the coefficients, row-major, symmetric. */
+  @NotNull private final double[] covariance;
+  /** The regressor vector of the point being added, with a 1 for the constant term. */
+  @NotNull private final double[] regressors;
+  /** The covariance times the regressors. Field to avoid garbage collection. */
+  @NotNull private final double[] gain;
+
+  /** The number of points added, saturating at {@link Integer#MAX_VALUE}. */
+  private int numPoints;
+  /** The total weight of all points. */
+  private double weight;
+  /** The weighted mean of the y's. */
+  private double yMean;
+  /** The weighted sum of squared deviations of the y's from their mean. */
+  private double yySum;
+  /** The weighted sum of squared residuals after each update. */
+  private double residualSum;
+
+  /**
+   * Default constructor.
+   *
+   * @param numInputs The number of inputs, not counting the constant term.
+   * @param forgettingFactor The factor old points' weights are multiplied by each time a point is
+   *     added, between 0 and 1. Defaults to 0.999, i.e. the last thousand or so points.
+   * @param initialCovariance How uncertain the coefficients are to start with. Larger lets them
+   *     move faster at first. Defaults to 1000.
+   * @param minPoints The minimum number of points needed before the coefficients are trusted.
+   *     Defaults to 10 times the number of inputs.
+   */
+  @JsonCreator
+  public MultiLinRegComponent(
+      @JsonProperty(required = true) final int numInputs,
+      @Nullable final Double forgettingFactor,
+      @Nullable final Double initialCovariance,
+      @Nullable final Integer minPoints) {
+    if (numInputs < 1) throw new IllegalArgumentException("There must be at least one input.");
+    this.numInputs = numInputs;
+    this.forgettingFactor = forgettingFactor != null ? forgettingFactor : 0.999;
+    if (!(this.forgettingFactor > 0 && this.forgettingFactor <= 1)) {
+      throw new IllegalArgumentException("The forgetting factor must be in (0, 1].");
+    }
+    this.initialCovariance = initialCovariance != null ? initialCovariance : 1000;
+    this.minPoints = minPoints != null ? minPoints : 10 * (numInputs + 1);
+    final int size = numInputs + 1;
+    this.coefficients = new double[size];
+    this.covariance = new double[size * size];
+    this.regressors = new double[size];
+    this.gain = new double[size];
+    this.reset();
+  }
+
+  /** Forgets every point. */
+  public void reset() {
+    final int size = this.numInputs + 1;
+    for (int i = 0; i < size; i++) {
+      this.coefficients[i] = 0;
+      for (int j = 0; j < size; j++) {
+        this.covariance[i * size + j] = i == j ? this.initialCovariance : 0;
+      }
+    }
+    this.numPoints = 0;
+    this.weight = 0;
+    this.yMean = 0;
+    this.yySum = 0;
+    this.residualSum = 0;
+  }
+
+  /**
+   * Adds a point with two inputs.
+   *
+   * @param x0 The first input.
+   * @param x1 The second input.
+   * @param y The output.
+   * @throws IllegalStateException if this doesn't have exactly two inputs.
+   */
+  public void addPoint(final double x0, final double x1, final double y) {
+    if (this.numInputs != 2) throw new IllegalStateException("This model doesn't have 2 inputs.");
+    this.regressors[1] = x0;
+    this.regressors[2] = x1;
+    this.update(y);
+  }
+
+  /**
+   * Adds a point.
+   *
+   * @param x The inputs, one per input of this model.
+   * @param y The output.
+   */
+  public void addPoint(@NotNull final double[] x, final double y) {
+    if (x.length != this.numInputs) {
+      throw new IllegalArgumentException("Expected " + this.numInputs + " inputs.");
+    }
+    System.arraycopy(x, 0, this.regressors, 1, this.numInputs);
+    this.update(y);
+  }
+
+  /**
+   * Runs one step of recursive least squares with the regressors already filled in.
+   *
+   * @param y The output.
+   */
+  private void update(final double y) {
+    if (!Double.isFinite(y)) return;
+    final int size = this.numInputs + 1;
+    this.regressors[0] = 1;
+    for (int i = 1; i < size; i++) {
+      if (!Double.isFinite(this.regressors[i])) return;
+    }
+
+    // gain = P * phi, denominator = lambda + phi' * P * phi
+    double denominator = this.forgettingFactor;
+    for (int i = 0; i < size; i++) {
+      double sum = 0;
+      for (int j = 0; j < size; j++) {
+        sum += this.covariance[i * size + j] * this.regressors[j];
+      }
+      this.gain[i] = sum;
+      denominator += this.regressors[i] * sum;
+    }
+
+    final double error = y - this.predictRegressors();
+    final double step = error / denominator;
+    for (int i = 0; i < size; i++) {
+      this.coefficients[i] += this.gain[i] * step;
+    }
+
+    // When the inputs stop varying, dividing by the forgetting factor blows the covariance up
+    // ("windup"), so stop forgetting once it's back to where it started.
+    double trace = 0;
+    for (int i = 0; i < size; i++) {
+      trace += this.covariance[i * size + i];
+    }
+    final double scale = trace < this.initialCovariance * size ? 1 / this.forgettingFactor : 1;
+    for (int i = 0; i < size; i++) {
+      for (int j = i; j < size; j++) {
+        final double value =
+            (this.covariance[i * size + j] - this.gain[i] * this.gain[j] / denominator) * scale;
+        this.covariance[i * size + j] = value;
+        this.covariance[j * size + i] = value;
+      }
+    }
+
+    final double residual = y - this.predictRegressors();
+    if (this.numPoints < Integer.MAX_VALUE) this.numPoints++;
+    this.weight = this.weight * this.forgettingFactor + 1;
+    final double dy = y - this.yMean;
+    this.yMean += dy / this.weight;
+    this.yySum = this.yySum * this.forgettingFactor + dy * (y - this.yMean);
+    this.residualSum = this.residualSum * this.forgettingFactor + residual * residual;
+  }
+
+  /** @return The model's output for the regressors currently filled in. */
+  private double predictRegressors() {
+    double sum = 0;
+    for (int i = 0; i <= this.numInputs; i++) {
+      sum += this.coefficients[i] * this.regressors[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Predicts the output for two inputs.
+   *
+   * @param x0 The first input.
+   * @param x1 The second input.
+   * @return The predicted output.
+   * @throws IllegalStateException if this doesn't have exactly two inputs.
+   */
+  public double predict(final double x0, final double x1) {
+    if (this.numInputs != 2) throw new IllegalStateException("This model doesn't have 2 inputs.");
+    return this.coefficients[0] + this.coefficients[1] * x0 + this.coefficients[2] * x1;
+  }
+
+  /** @return Whether enough points have been added for the coefficients to be trusted. */
+  public boolean isConverged() {
+    return this.numPoints >= this.minPoints;
+  }
+
+  /** @return The constant term, or NaN if there aren't enough points yet. */
+  public double getIntercept() {
+    return this.isConverged() ? this.coefficients[0] : Double.NaN;
+  }
+
+  /**
+   * @param input The index of an input.
+   * @return The coefficient of that input, or NaN if there aren't enough points yet.
+   */
+  public double getCoefficient(final int input) {
+    return this.isConverged() ? this.coefficients[input + 1] : Double.NaN;
+  }
+
+  /**
+   * @return The fraction of the weighted variance of the output the model explains, or NaN if
+   *     there aren't enough points yet.
+   */
+  public double getRSquared() {
+    if (!this.isConverged()) return Double.NaN;
+    return this.yySum > 0 ? Math.max(0, 1 - this.residualSum / this.yySum) : 1;
+  }
+
+  /** @return The number of inputs, not counting the constant term. */
+  public int getNumInputs() {
+    return this.numInputs;
+  }
+
+  /** @return The number of points added. */
+  public int getNumPoints() {
+    return this.numPoints;
+  }
+
+  /**
+   * Clone this object.
+   *
+   * @return A MultiLinRegComponent with the same settings as this one and no points.
+   */
+  @Override
+  public MultiLinRegComponent clone() {
+    return new MultiLinRegComponent(
+        this.numInputs, this.forgettingFactor, this.initialCovariance, this.minPoints);
+  }
+}
@@ -2,17 +2,20 @@ package org.usfirst.frc.team449.robot.components;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import edu.wpi.first.wpiutil.CircularBuffer;
 import org.jetbrains.annotations.NotNull;
 
-/** A component that does a running linear regression with a finite window. */
-public class RunningLinRegComponent {
+/**
+ * A component that does a running linear regression with a finite window.
+ *
+ * <p>Keeps the means and the centered sums of squares and products, updated Welford-style as points
+ * enter and leave the window, instead of raw sums of x^2, y^2 and xy, which cancel catastrophically
+ * once they get large. The sums are recomputed from the window once per window's worth of points so
+ * rounding error can't build up over a match, keeping updates O(1) amortized.
+ */
+public class RunningLinRegComponent implements LinRegComponent {
 
-  /**
-   * Buffers holding the x and y values that will eventually need to be subtracted from the sum when
-   * they leave the window.
-   */
-  @NotNull private final CircularBuffer xBuffer, yBuffer;
+  /** The x and y values in the window, oldest first starting at {@link #start}, wrapping around. */
+  @NotNull private final double[] xBuffer, yBuffer;
   /** The maximum number of points to take the linear regression over. */
   private final int bufferSize;
   /**
@@ -20,20 +23,21 @@ public class RunningLinRegComponent {
    * NaN.
    */
   private final double rSquaredThreshhold;
-  /** Running sum of the past bufferSize x's and y's, respectively. */
-  private double xSum, ySum;
-  /** Running sum of the past bufferSize x^2's and y^2, respectively. */
-  private double xSquaredSum, ySquaredSum;
-  /** Running sum of the past bufferSize x*y's. */
-  private double xySum;
+  /** The position of the oldest point in the buffers. */
+  private int start;
   /** The number of points currently in the buffer. */
   private int numPoints;
+  /** The number of points removed from the window since the sums were last recomputed. */
+  private int removedSinceResync;
+  /** The means of the x's and y's in the window. */
+  private double xMean, yMean;
+  /** The sums of squared deviations of the x's and y's from their means. */
+  private double xxSum, yySum;
+  /** The sum of products of the x and y deviations from their means. */
+  private double xySum;
 
-  /** The X and Y most recently popped from the buffer. Fields to avoid garbage collection. */
-  private double backX, backY;
-
-  /** The variances. Field to avoid garbage collection */
-  private double xVariance, yVariance, covariance;
+  /** The fit used by {@link #getSlope()} and {@link #getIntercept()}. Field to avoid garbage. */
+  @NotNull private final LinRegFit fit = new LinRegFit();
 
   /**
    * Default constructor.
@@ -44,64 +48,130 @@ public class RunningLinRegComponent {
    */
   @JsonCreator
   public RunningLinRegComponent(
-      @JsonProperty(required = true) int bufferSize, double rSquaredThreshhold) {
-    xBuffer = new CircularBuffer(bufferSize);
-    yBuffer = new CircularBuffer(bufferSize);
+      @JsonProperty(required = true) final int bufferSize, final double rSquaredThreshhold) {
+    if (bufferSize < 2) throw new IllegalArgumentException("The buffer needs at least 2 points.");
+    this.xBuffer = new double[bufferSize];
+    this.yBuffer = new double[bufferSize];
     this.rSquaredThreshhold = rSquaredThreshhold;
-    numPoints = 0;
-    xSum = 0;
-    ySum = 0;
     this.bufferSize = bufferSize;
   }
 
-  /** @return The current slope of the linear regression line. */
-  public Double getSlope() {
-    if (numPoints < 2) {
-      return Double.NaN;
+  /**
+   * Add an x and y point to the buffer and pop out old points if necessary.
+   *
+   * @param x The x point to add.
+   * @param y The y point to add
+   */
+  @Override
+  public void addPoint(final double x, final double y) {
+    if (this.numPoints == this.bufferSize) {
+      this.removeOldest();
     }
+    int position = this.start + this.numPoints;
+    if (position >= this.bufferSize) position -= this.bufferSize;
+    this.xBuffer[position] = x;
+    this.yBuffer[position] = y;
+    this.numPoints++;
 
-    xVariance = (xSquaredSum / numPoints) - Math.pow(xSum / numPoints, 2);
-    yVariance = (ySquaredSum / numPoints) - Math.pow(ySum / numPoints, 2);
-    covariance = (xySum - xSum * ySum / numPoints) / (numPoints - 1);
+    final double dx = x - this.xMean, dy = y - this.yMean;
+    this.xMean += dx / this.numPoints;
+    this.yMean += dy / this.numPoints;
+    this.xxSum += dx * (x - this.xMean);
+    this.yySum += dy * (y - this.yMean);
+    this.xySum += dx * (y - this.yMean);
 
-    if (covariance * covariance / (xVariance * yVariance) > rSquaredThreshhold) {
-      return covariance / xVariance;
-    } else {
-      return Double.NaN;
+    if (this.removedSinceResync >= this.bufferSize) {
+      this.resync();
     }
   }
 
-  /** @return The current y-intercept of the linear regression line. */
-  public Double getIntercept() {
-    return ySum / numPoints - getSlope() * xSum / numPoints;
+  /** Takes the oldest point out of the window and the sums. */
+  private void removeOldest() {
+    final double x = this.xBuffer[this.start], y = this.yBuffer[this.start];
+    this.start = this.start + 1 == this.bufferSize ? 0 : this.start + 1;
+    this.numPoints--;
+    this.removedSinceResync++;
+    if (this.numPoints == 0) {
+      this.xMean = 0;
+      this.yMean = 0;
+      this.xxSum = 0;
+      this.yySum = 0;
+      this.xySum = 0;
+      return;
+    }
+
+    // The add update run backwards.
+    final double dx = x - this.xMean, dy = y - this.yMean;
+    this.xMean -= dx / this.numPoints;
+    this.yMean -= dy / this.numPoints;
+    this.xxSum = Math.max(0, this.xxSum - dx * (x - this.xMean));
+    this.yySum = Math.max(0, this.yySum - dy * (y - this.yMean));
+    this.xySum -= dx * (y - this.yMean);
+  }
+
+  /** Recomputes the means and sums from the points in the window with two passes. */
+  private void resync() {
+    this.removedSinceResync = 0;
+    double xTotal = 0, yTotal = 0;
+    for (int i = 0; i < this.numPoints; i++) {
+      final int position = (this.start + i) % this.bufferSize;
+      xTotal += this.xBuffer[position];
+      yTotal += this.yBuffer[position];
+    }
+    this.xMean = xTotal / this.numPoints;
+    this.yMean = yTotal / this.numPoints;
+    this.xxSum = 0;
+    this.yySum = 0;
+    this.xySum = 0;
+    for (int i = 0; i < this.numPoints; i++) {
+      final int position = (this.start + i) % this.bufferSize;
+      final double dx = this.xBuffer[position] - this.xMean;
+      final double dy = this.yBuffer[position] - this.yMean;
+      this.xxSum += dx * dx;
+      this.yySum += dy * dy;
+      this.xySum += dx * dy;
+    }
   }
 
   /**
-   * Add an x and y point to the buffer and pop out old points if necessary.
+   * Fits a line to the points in the window. Doesn't allocate.
    *
-   * @param x The x point to add.
-   * @param y The y point to add
+   * @param out The holder to write the slope, intercept and R^2 into.
+   * @return Whether R^2 is above the threshold.
    */
-  public void addPoint(double x, double y) {
-    if (numPoints >= bufferSize) {
-      // Pop the last point and remove it from the sums
-      backX = xBuffer.removeLast();
-      backY = yBuffer.removeLast();
-      xSum -= backX;
-      ySum -= backY;
-      xSquaredSum -= backX * backX;
-      ySquaredSum -= backY * backY;
-      xySum -= backX * backY;
-    } else {
-      numPoints++;
+  @Override
+  public boolean fit(@NotNull final LinRegFit out) {
+    if (this.numPoints < 2 || this.xxSum <= 0) {
+      out.clear(this.numPoints);
+      return false;
     }
-    xBuffer.addFirst(x);
-    yBuffer.addFirst(y);
-    xSum += x;
-    ySum += y;
-    xSquaredSum += x * x;
-    ySquaredSum += y * y;
-    xySum += x * y;
+    final double slope = this.xySum / this.xxSum;
+    // A perfectly flat y is perfectly explained by a flat line.
+    final double rSquared =
+        this.yySum > 0 ? this.xySum * this.xySum / (this.xxSum * this.yySum) : 1;
+    final boolean significant = rSquared > this.rSquaredThreshhold;
+    out.set(slope, this.yMean - slope * this.xMean, rSquared, this.numPoints, significant);
+    return significant;
+  }
+
+  /** @return The current slope of the linear regression line, or NaN if it isn't significant. */
+  @Override
+  public double getSlope() {
+    return this.fit(this.fit) ? this.fit.slope : Double.NaN;
+  }
+
+  /**
+   * @return The current y-intercept of the linear regression line, or NaN if it isn't
+   *     significant.
+   */
+  @Override
+  public double getIntercept() {
+    return this.fit(this.fit) ? this.fit.intercept : Double.NaN;
+  }
+
+  /** @return The number of points currently in the window. */
+  public int getNumPoints() {
+    return this.numPoints;
   }
 
   /**
@@ -0,0 +1,416 @@
+package org.usfirst.frc.team449.robot.components;
+
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.geometry.Pose2d;
+import edu.wpi.first.wpilibj.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.geometry.Translation2d;
+import edu.wpi.first.wpilibj.trajectory.Trajectory;
+import edu.wpi.first.wpilibj.trajectory.TrajectoryConfig;
+import edu.wpi.first.wpilibj.trajectory.constraint.TrajectoryConstraint;
+import edu.wpi.first.wpilibj.util.WPILibVersion;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.Robot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Caches generated trajectories by a hash of everything that goes into generating them, so each one
+ * is only generated once, and keeps them in a file in the deploy directory so they survive reboots
+ * and redeploys.
+ *
+ * <p>Trajectories declared in the map are registered when the map is built. At robotInit, {@link
+ * #pregenerate(boolean)} loads the file and generates whatever it's missing on a background thread,
+ * then writes back what the map uses. Simulations only read src/main/deploy, and write the file to
+ * build/trajectories instead, so running one never changes the source tree. To ship trajectories
+ * already generated, copy that file into src/main/deploy on purpose.
+ *
+ * <p>A trajectory asked for before it's ready is generated on the spot or waited for, which is no
+ * slower than generating it without a cache.
+ */
+public final class TrajectoryCache {
+
+  /** The name of the file trajectories are kept in, in the deploy directory. */
+  @NotNull public static final String FILE_NAME = "trajectories.bin";
+  /** The directory simulations write the file to, rather than the deploy directory. */
+  @NotNull private static final String SIMULATED_DIRECTORY = "build/trajectories";
+  /** "449T" */
+  private static final int MAGIC = 0x34343954;
+  /** The version of the file format. Bump on any change to it. */
+  private static final int VERSION = 1;
+
+  @NotNull private static final TrajectoryCache instance = new TrajectoryCache();
+
+  /** Every trajectory generated, being generated or loaded, by key. */
+  @NotNull
+  private final Map<String, CompletableFuture<Trajectory>> trajectories = new ConcurrentHashMap<>();
+  /** The generators of the trajectories the map declares, by key. */
+  @NotNull private final Map<String, Supplier<Trajectory>> registered = new ConcurrentHashMap<>();
+
+  /** Generates trajectories off the main thread. Created when first needed. */
+  @Nullable private ExecutorService executor;
+
+  /** Make constructor private so it can't be called */
+  private TrajectoryCache() {}
+
+  /**
+   * Declares a trajectory that {@link #pregenerate(boolean)} should have ready and keep in the
+   * file.
+   *
+   * @param key The key of the trajectory, from a {@link Key}.
+   * @param generator Generates the trajectory.
+   */
+  public static void register(
+      @NotNull final String key, @NotNull final Supplier<Trajectory> generator) {
+    instance.registered.put(key, generator);
+  }
+
+  /**
+   * Gets a trajectory, generating it on this thread if it isn't cached or being generated.
+   *
+   * @param key The key of the trajectory, from a {@link Key}.
+   * @param generator Generates the trajectory.
+   * @return The trajectory.
+   */
+  @NotNull
+  public static Trajectory get(
+      @NotNull final String key, @NotNull final Supplier<Trajectory> generator) {
+    final CompletableFuture<Trajectory> cached = instance.trajectories.get(key);
+    if (cached != null) return cached.join();
+    final CompletableFuture<Trajectory> future = new CompletableFuture<>();
+    final CompletableFuture<Trajectory> raced = instance.trajectories.putIfAbsent(key, future);
+    if (raced != null) return raced.join();
+    try {
+      future.complete(generator.get());
+    } catch (final RuntimeException ex) {
+      // Let the next caller try again rather than failing forever.
+      instance.trajectories.remove(key, future);
+      future.completeExceptionally(ex);
+      throw ex;
+    }
+    return future.join();
+  }
+
+  /**
+   * Gets a trajectory, generating it on the background thread if it isn't cached or being
+   * generated.
+   *
+   * @param key The key of the trajectory, from a {@link Key}.
+   * @param generator Generates the trajectory.
+   * @return A future that completes with the trajectory.
+   */
+  @NotNull
+  public static CompletableFuture<Trajectory> getAsync(
+      @NotNull final String key, @NotNull final Supplier<Trajectory> generator) {
+    return instance.trajectories.computeIfAbsent(
+        key,
+        k -> {
+          final CompletableFuture<Trajectory> future =
+              CompletableFuture.supplyAsync(generator, instance.executor());
+          // Let the next caller try again rather than failing forever.
+          future.whenComplete(
+              (trajectory, ex) -> {
+                if (ex != null) instance.trajectories.remove(k, future);
+              });
+          return future;
+        });
+  }
+
+  /**
+   * Generates a trajectory on the background thread without caching it. For trajectories that
+   * start from wherever the robot happens to be, which will never be asked for again and would
+   * only pile up in the cache.
+   *
+   * @param generator Generates the trajectory.
+   * @return A future that completes with the trajectory.
+   */
+  @NotNull
+  public static CompletableFuture<Trajectory> generateAsync(
+      @NotNull final Supplier<Trajectory> generator) {
+    return CompletableFuture.supplyAsync(generator, instance.executor());
+  }
+
+  /**
+   * Loads the trajectory file, then generates every registered trajectory that isn't in it on a
+   * background thread and writes the file again if any were. Returns right away.
+   *
+   * @param persist Whether to write the file. Unit tests and headless simulations shouldn't.
+   */
+  public static void pregenerate(final boolean persist) {
+    instance.executor().execute(() -> instance.loadAndGenerate(persist));
+  }
+
+  /** @return The background thread. */
+  @NotNull
+  private synchronized ExecutorService executor() {
+    if (this.executor == null) {
+      this.executor =
+          Executors.newSingleThreadExecutor(
+              r -> {
+                final Thread thread = new Thread(r, "TrajectoryCache");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+              });
+    }
+    return this.executor;
+  }
+
+  /**
+   * Loads the file and generates what's missing from it. Runs on the background thread.
+   *
+   * @param persist Whether to write the file.
+   */
+  private void loadAndGenerate(final boolean persist) {
+    final Path deployed = Paths.get(Robot.RESOURCES_PATH, FILE_NAME);
+    final Path file = RobotBase.isReal() ? deployed : Paths.get(SIMULATED_DIRECTORY, FILE_NAME);
+    final long start = System.nanoTime();
+    int inFile = 0;
+    try {
+      inFile = this.load(file);
+    } catch (final NoSuchFileException ex) {
+      // Nothing cached yet, unless a simulation can start from what's deployed.
+      if (!file.equals(deployed)) {
+        try {
+          inFile = this.load(deployed);
+        } catch (final NoSuchFileException notDeployed) {
+          // Nothing deployed either.
+        } catch (final IOException readEx) {
+          System.out.println(
+              "Couldn't read " + deployed + ", regenerating every trajectory: " + readEx);
+        }
+      }
+    } catch (final IOException ex) {
+      System.out.println("Couldn't read " + file + ", regenerating every trajectory: " + ex);
+    }
+
+    int loaded = 0;
+    for (final String key : this.registered.keySet()) {
+      if (this.trajectories.containsKey(key)) loaded++;
+    }
+    int generated = 0;
+    for (final Map.Entry<String, Supplier<Trajectory>> entry : this.registered.entrySet()) {
+      final String key = entry.getKey();
+      if (this.trajectories.containsKey(key)) continue;
+      try {
+        get(key, entry.getValue());
+        generated++;
+      } catch (final RuntimeException ex) {
+        System.out.println("Couldn't generate trajectory " + key + ": " + ex);
+      }
+    }
+    System.out.printf(
+        "Trajectories: %d loaded, %d generated in %.0f ms%n",
+        loaded, generated, (System.nanoTime() - start) * 1e-6);
+
+    // Rewrite the file if it's missing trajectories or has ones the map doesn't use any more.
+    if (persist && (generated > 0 || inFile != loaded)) {
+      try {
+        this.save(file);
+      } catch (final IOException ex) {
+        System.out.println("Couldn't write " + file + ": " + ex);
+      }
+    }
+  }
+
+  /**
+   * Reads the trajectories the map uses from a file. Trajectories the map doesn't use are skipped.
+   *
+   * @param file The file to read.
+   * @return The number of trajectories in the file, including ones skipped.
+   * @throws IOException If the file can't be read or isn't a trajectory file of this version.
+   */
+  private int load(@NotNull final Path file) throws IOException {
+    final int count;
+    try (final DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a trajectory file of version " + VERSION);
+      }
+      count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        final String key = in.readUTF();
+        final int stateCount = in.readInt();
+        final List<Trajectory.State> states = new ArrayList<>(stateCount);
+        for (int j = 0; j < stateCount; j++) {
+          final double time = in.readDouble();
+          final double velocity = in.readDouble();
+          final double acceleration = in.readDouble();
+          final double x = in.readDouble();
+          final double y = in.readDouble();
+          final double heading = in.readDouble();
+          final double curvature = in.readDouble();
+          final Pose2d pose = new Pose2d(x, y, new Rotation2d(heading));
+          states.add(new Trajectory.State(time, velocity, acceleration, pose, curvature));
+        }
+        if (this.registered.containsKey(key)) {
+          this.trajectories.putIfAbsent(
+              key, CompletableFuture.completedFuture(new Trajectory(states)));
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Writes the trajectories the map uses to a file, replacing it all at once so a crash can't leave
+   * it half written.
+   *
+   * @param file The file to write.
+   * @throws IOException If the file can't be written.
+   */
+  private void save(@NotNull final Path file) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    final List<String> keys = new ArrayList<>();
+    for (final String key : this.registered.keySet()) {
+      final CompletableFuture<Trajectory> future = this.trajectories.get(key);
+      if (future != null && future.isDone() && !future.isCompletedExceptionally()) keys.add(key);
+    }
+    final Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), FILE_NAME, ".tmp");
+    try (final DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(keys.size());
+      for (final String key : keys) {
+        final List<Trajectory.State> states = this.trajectories.get(key).join().getStates();
+        out.writeUTF(key);
+        out.writeInt(states.size());
+        for (final Trajectory.State state : states) {
+          out.writeDouble(state.timeSeconds);
+          out.writeDouble(state.velocityMetersPerSecond);
+          out.writeDouble(state.accelerationMetersPerSecondSq);
+          out.writeDouble(state.poseMeters.getX());
+          out.writeDouble(state.poseMeters.getY());
+          out.writeDouble(state.poseMeters.getRotation().getRadians());
+          out.writeDouble(state.curvatureRadPerMeter);
+        }
+      }
+    }
+    try {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (final AtomicMoveNotSupportedException ex) {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Builds the key of a trajectory from everything that goes into generating it. Numbers are taken
+   * by their exact bits, so the same inputs always give the same key and any change gives a new
+   * one. The WPILib version is part of every key, since a new generator could give a different
+   * trajectory from the same inputs.
+   */
+  public static final class Key {
+    @NotNull private final StringBuilder canonical = new StringBuilder();
+
+    /** @param kind What generates the trajectory, e.g. the name of the component. */
+    public Key(@NotNull final String kind) {
+      this.canonical.append(WPILibVersion.Version).append('|').append(kind);
+    }
+
+    /**
+     * @param name What the number is.
+     * @param value The number.
+     * @return This key.
+     */
+    @NotNull
+    public Key add(@NotNull final String name, final double value) {
+      // -0.0 and 0.0 generate the same trajectory, so they should have the same key.
+      final long bits = Double.doubleToLongBits(value == 0 ? 0 : value);
+      this.canonical.append('|').append(name).append('=').append(Long.toHexString(bits));
+      return this;
+    }
+
+    /**
+     * @param name What the flag is.
+     * @param value The flag.
+     * @return This key.
+     */
+    @NotNull
+    public Key add(@NotNull final String name, final boolean value) {
+      this.canonical.append('|').append(name).append('=').append(value);
+      return this;
+    }
+
+    /**
+     * @param pose A pose the trajectory goes through.
+     * @return This key.
+     */
+    @NotNull
+    public Key add(@NotNull final Pose2d pose) {
+      return this.add("x", pose.getX())
+          .add("y", pose.getY())
+          .add("theta", pose.getRotation().getRadians());
+    }
+
+    /**
+     * @param translation A point the trajectory goes through.
+     * @return This key.
+     */
+    @NotNull
+    public Key add(@NotNull final Translation2d translation) {
+      return this.add("x", translation.getX()).add("y", translation.getY());
+    }
+
+    /**
+     * Adds the limits and direction of a config, and the kind of each of its constraints. The
+     * values a constraint was built from can't be read back out of it, so whatever builds the key
+     * has to add those itself.
+     *
+     * @param config The config the trajectory is generated with.
+     * @return This key.
+     */
+    @NotNull
+    public Key add(@NotNull final TrajectoryConfig config) {
+      this.add("maxVelocity", config.getMaxVelocity())
+          .add("maxAcceleration", config.getMaxAcceleration())
+          .add("startVelocity", config.getStartVelocity())
+          .add("endVelocity", config.getEndVelocity())
+          .add("reversed", config.isReversed());
+      for (final TrajectoryConstraint constraint : config.getConstraints()) {
+        this.canonical.append("|constraint=").append(constraint.getClass().getName());
+      }
+      return this;
+    }
+
+    /** @return A SHA-256 hash of everything added, in hex. */
+    @NotNull
+    public String build() {
+      final byte[] hash;
+      try {
+        hash =
+            MessageDigest.getInstance("SHA-256")
+                .digest(this.canonical.toString().getBytes(StandardCharsets.UTF_8));
+      } catch (final NoSuchAlgorithmException ex) {
+        // Every JVM has to support SHA-256.
+        throw new IllegalStateException(ex);
+      }
+      final StringBuilder hex = new StringBuilder(hash.length * 2);
+      for (final byte b : hash) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    }
+  }
+}
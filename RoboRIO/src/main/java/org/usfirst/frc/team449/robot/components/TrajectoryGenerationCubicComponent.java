@@ -3,6 +3,8 @@ package org.usfirst.frc.team449.robot.components;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import edu.wpi.first.wpilibj.controller.SimpleMotorFeedforward;
+import edu.wpi.first.wpilibj.geometry.Translation2d;
 import edu.wpi.first.wpilibj.trajectory.Trajectory;
 import edu.wpi.first.wpilibj.trajectory.TrajectoryConfig;
 import edu.wpi.first.wpilibj.trajectory.TrajectoryGenerator;
@@ -13,6 +15,9 @@ import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.drive.unidirectional.DriveUnidirectionalWithGyro;
 import org.usfirst.frc.team449.robot.jacksonWrappers.MappedTranslationSet;
 
+import java.util.List;
+import java.util.function.Supplier;
+
 @JsonTypeInfo(
     use = JsonTypeInfo.Id.CLASS,
     include = JsonTypeInfo.As.WRAPPER_OBJECT,
@@ -24,6 +29,10 @@ public class TrajectoryGenerationCubicComponent implements TrajectoryGenerationC
   double maxAccelMeters;
   double maxCentripitalAcceleration;
   Trajectory trajectory;
+  /** The key of the trajectory in the {@link TrajectoryCache}. */
+  final String cacheKey;
+  /** Generates the trajectory on a cache miss. */
+  final Supplier<Trajectory> generator;
 
   @JsonCreator
   public TrajectoryGenerationCubicComponent(
@@ -55,16 +64,42 @@ public class TrajectoryGenerationCubicComponent implements TrajectoryGenerationC
       this.maxCentripitalAcceleration = maxCentripetalAcceleration;
     }
 
-    trajectory =
-        TrajectoryGenerator.generateTrajectory(
-            waypoints.getStartingPose(),
-            waypoints.getTranslations(),
-            waypoints.getEndingPose(),
-            configuration);
+    final SimpleMotorFeedforward feedforward = drivetrain.getLeftFeedforwardCalculator();
+    final TrajectoryCache.Key key =
+        new TrajectoryCache.Key("cubic")
+            .add(configuration)
+            .add("kS", feedforward.ks)
+            .add("kV", feedforward.kv)
+            .add("kA", feedforward.ka)
+            .add("trackWidth", drivetrain.getDriveKinematics().trackWidthMeters)
+            .add("maxVoltage", 12)
+            .add("maxCentripetal", this.maxCentripitalAcceleration)
+            .add(waypoints.getStartingPose());
+    final List<Translation2d> translations =
+        waypoints.getTranslations() != null ? waypoints.getTranslations() : List.of();
+    for (final Translation2d translation : translations) {
+      key.add(translation);
+    }
+    key.add(waypoints.getEndingPose());
+    this.cacheKey = key.build();
+
+    // Generated in the background at robotInit rather than here, which held up loading the map.
+    this.generator =
+        () ->
+            TrajectoryGenerator.generateTrajectory(
+                waypoints.getStartingPose(),
+                translations,
+                waypoints.getEndingPose(),
+                configuration);
+    TrajectoryCache.register(this.cacheKey, this.generator);
   }
 
+  /** @return The trajectory, from the {@link TrajectoryCache} if it's been generated before. */
   @Override
   public Trajectory getTrajectory() {
-    return trajectory;
+    if (this.trajectory == null) {
+      this.trajectory = TrajectoryCache.get(this.cacheKey, this.generator);
+    }
+    return this.trajectory;
   }
 }
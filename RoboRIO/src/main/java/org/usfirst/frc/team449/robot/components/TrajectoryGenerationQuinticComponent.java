@@ -1,7 +1,9 @@
 package org.usfirst.frc.team449.robot.components;
 
 import com.fasterxml.jackson.annotation.*;
+import edu.wpi.first.wpilibj.controller.SimpleMotorFeedforward;
 import edu.wpi.first.wpilibj.geometry.Pose2d;
+import edu.wpi.first.wpilibj.kinematics.DifferentialDriveKinematics;
 import edu.wpi.first.wpilibj.trajectory.Trajectory;
 import edu.wpi.first.wpilibj.trajectory.TrajectoryConfig;
 import edu.wpi.first.wpilibj.trajectory.TrajectoryGenerator;
@@ -23,6 +25,8 @@ public class TrajectoryGenerationQuinticComponent implements TrajectoryGeneratio
   TrajectoryConfig configuration;
   List<Pose2d> waypoints = new ArrayList<>();
   Trajectory trajectory;
+  /** The key of the trajectory in the {@link TrajectoryCache}. */
+  final String cacheKey;
 
   @JsonCreator
   public TrajectoryGenerationQuinticComponent(
@@ -31,23 +35,67 @@ public class TrajectoryGenerationQuinticComponent implements TrajectoryGeneratio
       @JsonProperty(required = true) final double maxAccelMeters,
       @JsonProperty(required = true) final List<Pose2d> waypoints,
       boolean reversed) {
-    this.constraint =
-        new DifferentialDriveVoltageConstraint(
-            drivetrain.getLeftFeedforwardCalculator(), drivetrain.getDriveKinematics(), 12);
+    this(
+        drivetrain.getLeftFeedforwardCalculator(),
+        drivetrain.getDriveKinematics(),
+        maxSpeedMeters,
+        maxAccelMeters,
+        waypoints,
+        reversed);
+  }
+
+  /**
+   * Constructor that doesn't need a drivetrain, e.g. for generating trajectories off the robot.
+   *
+   * @param feedforward The feedforward of the drive, used to constrain voltage.
+   * @param kinematics The kinematics of the drive.
+   * @param maxSpeedMeters The maximum speed, in meters per second.
+   * @param maxAccelMeters The maximum acceleration, in meters per second squared.
+   * @param waypoints The poses to go through.
+   * @param reversed Whether to drive backwards.
+   */
+  public TrajectoryGenerationQuinticComponent(
+      final SimpleMotorFeedforward feedforward,
+      final DifferentialDriveKinematics kinematics,
+      final double maxSpeedMeters,
+      final double maxAccelMeters,
+      final List<Pose2d> waypoints,
+      boolean reversed) {
+    this.constraint = new DifferentialDriveVoltageConstraint(feedforward, kinematics, 12);
 
     // Create config for trajectory
     this.configuration =
         new TrajectoryConfig(maxSpeedMeters, maxAccelMeters)
-            .setKinematics(drivetrain.getDriveKinematics())
+            .setKinematics(kinematics)
             .addConstraint(this.constraint)
             .setReversed(reversed);
 
     this.waypoints.addAll(waypoints);
+
+    final TrajectoryCache.Key key =
+        new TrajectoryCache.Key("quintic")
+            .add(this.configuration)
+            .add("kS", feedforward.ks)
+            .add("kV", feedforward.kv)
+            .add("kA", feedforward.ka)
+            .add("trackWidth", kinematics.trackWidthMeters)
+            .add("maxVoltage", 12);
+    for (final Pose2d waypoint : this.waypoints) {
+      key.add(waypoint);
+    }
+    this.cacheKey = key.build();
+    TrajectoryCache.register(this.cacheKey, this::generateTrajectory);
   }
 
+  /** @return The trajectory, from the {@link TrajectoryCache} if it's been generated before. */
   @Override
   public Trajectory getTrajectory() {
-    this.trajectory = TrajectoryGenerator.generateTrajectory(this.waypoints, this.configuration);
+    this.trajectory = TrajectoryCache.get(this.cacheKey, this::generateTrajectory);
     return this.trajectory;
   }
+
+  /** @return A newly generated trajectory, bypassing the cache. */
+  public Trajectory generateTrajectory() {
+    return TrajectoryGenerator.generateTrajectory(this.waypoints, this.configuration);
+  }
 }
@@ -24,6 +24,10 @@ public class LimelightDistanceComponent implements DoubleSupplier {
   private final double limelightAngle;
   /** The height of the vision target. Same units as limelightHeight above */
   private final double targetHeight;
+  /** The distance as of the last frame it was calculated for. */
+  private double distance;
+  /** The Limelight's frame count when the distance was last calculated, or -1 if it hasn't been. */
+  private long distanceFrame = -1;
 
   /**
    * Default constructor
@@ -46,10 +50,19 @@ public class LimelightDistanceComponent implements DoubleSupplier {
     this.targetHeight = targetHeight;
   }
 
-  /** @return Gets the distance from the robot to the vision target, coplanar with the field */
+  /**
+   * @return Gets the distance from the robot to the vision target, coplanar with the field, as of
+   *     the Limelight's current frame
+   */
   @Override
   public double getAsDouble() {
-    return (targetHeight - limelightHeight)
-        / Math.tan(Math.toRadians(limelightAngle + limelight.getY()));
+    final long frame = limelight.getFrameCount();
+    if (frame != distanceFrame) {
+      distance =
+          (targetHeight - limelightHeight)
+              / Math.tan(Math.toRadians(limelightAngle + limelight.getY()));
+      distanceFrame = frame;
+    }
+    return distance;
   }
 }
@@ -23,6 +23,8 @@ public class LimelightDistanceComponentDiagonal implements DoubleSupplier {
   private final double limelightAngleUp;
   /** The height of the vision target */
   private final double targetHeight;
+  /** The distance from the Limelight to the target on the field plane. */
+  @NotNull private final LimelightDistanceComponent distance;
 
   /**
    * Default constructor
@@ -44,13 +46,13 @@ public class LimelightDistanceComponentDiagonal implements DoubleSupplier {
     this.limelightAngleRight = limelightAngleRight;
     this.limelightAngleUp = limelightAngleUp;
     this.targetHeight = targetHeight;
+    this.distance =
+        new LimelightDistanceComponent(limelight, limelightHeight, limelightAngleUp, targetHeight);
   }
 
   /** @return Gets the distance from the robot to the vision target, at an angle above the field */
   @Override
   public double getAsDouble() {
-    LimelightDistanceComponent distance =
-        new LimelightDistanceComponent(limelight, limelightHeight, limelightAngleUp, targetHeight);
     return distance.getAsDouble()
         * Math.cos(Math.toRadians(limelightAngleRight + limelight.getX()));
   }
@@ -0,0 +1,139 @@
+package org.usfirst.frc.team449.robot.drive.unidirectional;
+
+import edu.wpi.first.wpilibj.geometry.Pose2d;
+import edu.wpi.first.wpilibj.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.kinematics.DifferentialDriveOdometry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Tracks the pose of a differential drive from its gyro and encoders, the same way WPILib's {@link
+ * DifferentialDriveOdometry} does, but keeping the pose as primitives so that updating every loop
+ * doesn't allocate. A {@link Pose2d} is only built when one is asked for, at most once per update.
+ */
+public class DifferentialOdometry {
+
+  /** The position of the robot, in meters. */
+  private double x, y;
+  /** The heading of the robot, in radians on [-pi, pi]. */
+  private double headingRadians;
+  /** The heading of the robot minus the gyro angle, in radians. */
+  private double gyroOffsetRadians;
+  /** The distance each side had travelled at the previous update, in meters. */
+  private double prevLeft, prevRight;
+  /** The pose as an object, or null if it hasn't been asked for since the last update. */
+  @Nullable private Pose2d pose;
+
+  /**
+   * Default constructor. Starts at the origin, facing along the x axis.
+   *
+   * @param gyroRadians The current gyro angle, in radians.
+   */
+  public DifferentialOdometry(final double gyroRadians) {
+    this.reset(0, 0, 0, gyroRadians);
+  }
+
+  /**
+   * Resets the pose. The encoders should be reset to zero at the same time.
+   *
+   * @param x The new x position, in meters.
+   * @param y The new y position, in meters.
+   * @param headingRadians The new heading, in radians.
+   * @param gyroRadians The current gyro angle, in radians.
+   */
+  public void reset(
+      final double x, final double y, final double headingRadians, final double gyroRadians) {
+    this.reset(x, y, headingRadians, gyroRadians, 0, 0);
+  }
+
+  /**
+   * Resets the pose without resetting the encoders.
+   *
+   * @param x The new x position, in meters.
+   * @param y The new y position, in meters.
+   * @param headingRadians The new heading, in radians.
+   * @param gyroRadians The current gyro angle, in radians.
+   * @param leftDistance The total distance the left side has travelled, in meters.
+   * @param rightDistance The total distance the right side has travelled, in meters.
+   */
+  public void reset(
+      final double x,
+      final double y,
+      final double headingRadians,
+      final double gyroRadians,
+      final double leftDistance,
+      final double rightDistance) {
+    this.x = x;
+    this.y = y;
+    this.headingRadians = wrap(headingRadians);
+    this.gyroOffsetRadians = headingRadians - gyroRadians;
+    this.prevLeft = leftDistance;
+    this.prevRight = rightDistance;
+    this.pose = null;
+  }
+
+  /**
+   * @param radians An angle, in radians.
+   * @return The same angle on [-pi, pi].
+   */
+  static double wrap(final double radians) {
+    return Math.IEEEremainder(radians, 2 * Math.PI);
+  }
+
+  /**
+   * Updates the pose with the latest sensor readings, integrating along an arc.
+   *
+   * @param gyroRadians The current gyro angle, in radians.
+   * @param leftDistance The total distance the left side has travelled, in meters.
+   * @param rightDistance The total distance the right side has travelled, in meters.
+   */
+  public void update(
+      final double gyroRadians, final double leftDistance, final double rightDistance) {
+    final double distance = ((leftDistance - this.prevLeft) + (rightDistance - this.prevRight)) / 2;
+    this.prevLeft = leftDistance;
+    this.prevRight = rightDistance;
+
+    final double newHeading = wrap(gyroRadians + this.gyroOffsetRadians);
+    final double dTheta = wrap(newHeading - this.headingRadians);
+
+    // Pose exponential of a twist with no sideways motion, like Pose2d#exp.
+    final double s, c;
+    if (Math.abs(dTheta) < 1e-9) {
+      s = 1 - dTheta * dTheta / 6;
+      c = dTheta / 2;
+    } else {
+      s = Math.sin(dTheta) / dTheta;
+      c = (1 - Math.cos(dTheta)) / dTheta;
+    }
+    final double forward = distance * s, left = distance * c;
+    final double cos = Math.cos(this.headingRadians), sin = Math.sin(this.headingRadians);
+    this.x += forward * cos - left * sin;
+    this.y += forward * sin + left * cos;
+    this.headingRadians = newHeading;
+    this.pose = null;
+  }
+
+  /** @return The x position, in meters. */
+  public double getX() {
+    return this.x;
+  }
+
+  /** @return The y position, in meters. */
+  public double getY() {
+    return this.y;
+  }
+
+  /** @return The heading, in radians on [-pi, pi]. */
+  public double getHeadingRadians() {
+    return this.headingRadians;
+  }
+
+  /** @return The pose. Built at most once per update. */
+  @NotNull
+  public Pose2d getPose() {
+    if (this.pose == null) {
+      this.pose = new Pose2d(this.x, this.y, new Rotation2d(this.headingRadians));
+    }
+    return this.pose;
+  }
+}
@@ -0,0 +1,232 @@
+package org.usfirst.frc.team449.robot.drive.unidirectional;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.other.ConstantAccelerationFilter;
+
+/**
+ * Smooths the velocity and acceleration of each side of a differential drive by fusing the
+ * encoders, the motor controllers' velocities, the gyro's angular velocity and the NavX's
+ * acceleration with a pair of Kalman filters.
+ *
+ * <p>Rather than filtering each side on its own, this filters driving straight, the average of the
+ * sides, and turning, half their difference, since that's how the gyro and accelerometer see the
+ * robot move. The controllers measure velocity over a window, so their readings can be modelled as
+ * lagging by a fixed delay. Nothing here allocates.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class DriveStateEstimator {
+
+  /**
+   * How far the encoders can be from the estimate, in meters, before they're assumed to have been
+   * reset and are taken as they are. Only a backstop for resets {@link #resetPosition(double,
+   * double)} wasn't told about.
+   */
+  private static final double MAX_POSITION_JUMP = 0.5;
+  /**
+   * The number of updates after {@link #resetPosition(double, double)} whose encoder readings are
+   * taken as they are, since the controllers can keep reporting the old position for a frame or
+   * two after being reset.
+   */
+  private static final int RESEAT_UPDATES = 3;
+
+  /** Driving straight, the average of the two sides, in meters. */
+  private final ConstantAccelerationFilter linear;
+  /** Turning, half of the right side minus the left side, in meters. */
+  private final ConstantAccelerationFilter angular;
+
+  /** The variances of each kind of measurement, in meters, seconds and radians. */
+  private final double positionVariance, velocityVariance, accelVariance, gyroRateVariance;
+  /** How long the controllers' velocities lag behind, in seconds. */
+  private final double velocityDelaySecs;
+  /** Whether forwards is the accelerometer's Y axis instead of its X axis. */
+  private final boolean accelYIsForward;
+  /** Whether to invert the accelerometer's forwards axis. */
+  private final boolean invertAccel;
+  /** Whether to leave the accelerometer out. */
+  private final boolean ignoreAccel;
+
+  /** The time of the last update, in seconds, or NaN before the first. */
+  private double lastTime = Double.NaN;
+  /** Half the track width, in meters, as of the last update. */
+  private double halfTrackWidth = Double.NaN;
+  /** The number of updates left whose encoder readings are taken as they are. */
+  private int reseatUpdates;
+
+  /**
+   * Default constructor.
+   *
+   * @param jerkStdDev How fast the acceleration changes, in meters/sec^3. Higher follows the
+   *     measurements more closely but smooths less. Defaults to 20.
+   * @param positionStdDev The noise in each encoder's position, in meters. Defaults to 0.005.
+   * @param velocityStdDev The noise in each controller's velocity, in meters/sec. Defaults to 0.05.
+   * @param accelStdDev The noise in the NavX's acceleration, including vibration, in
+   *     meters/sec^2. Defaults to 0.5.
+   * @param gyroRateStdDev The noise in the gyro's angular velocity, in degrees/sec. Defaults to 2.
+   * @param velocityDelaySecs How long the controllers' velocities lag behind, in seconds, typically
+   *     half their measurement window. Defaults to 0.
+   * @param accelYIsForward Whether the NavX's Y axis points forwards, rather than its X axis.
+   *     Defaults to true.
+   * @param invertAccel Whether the NavX's forwards axis points backwards. Defaults to false.
+   * @param ignoreAccel Whether to leave the NavX's acceleration out. Defaults to false.
+   */
+  @JsonCreator
+  public DriveStateEstimator(
+      @Nullable final Double jerkStdDev,
+      @Nullable final Double positionStdDev,
+      @Nullable final Double velocityStdDev,
+      @Nullable final Double accelStdDev,
+      @Nullable final Double gyroRateStdDev,
+      @Nullable final Double velocityDelaySecs,
+      @Nullable final Boolean accelYIsForward,
+      final boolean invertAccel,
+      final boolean ignoreAccel) {
+    final double jerk = jerkStdDev != null ? jerkStdDev : 20;
+    this.linear = new ConstantAccelerationFilter(jerk);
+    this.angular = new ConstantAccelerationFilter(jerk);
+    this.positionVariance = square(positionStdDev != null ? positionStdDev : 0.005);
+    this.velocityVariance = square(velocityStdDev != null ? velocityStdDev : 0.05);
+    this.accelVariance = square(accelStdDev != null ? accelStdDev : 0.5);
+    this.gyroRateVariance = square(Math.toRadians(gyroRateStdDev != null ? gyroRateStdDev : 2));
+    this.velocityDelaySecs = velocityDelaySecs != null ? velocityDelaySecs : 0;
+    this.accelYIsForward = accelYIsForward == null || accelYIsForward;
+    this.invertAccel = invertAccel;
+    this.ignoreAccel = ignoreAccel;
+  }
+
+  /** @return An estimator with all the defaults. */
+  public static DriveStateEstimator withDefaults() {
+    return new DriveStateEstimator(null, null, null, null, null, null, null, false, false);
+  }
+
+  /**
+   * Updates the estimate with this loop's readings. Any reading may be NaN if it isn't available.
+   *
+   * @param timeSecs When the readings were taken, in seconds.
+   * @param leftPos The left side's position, in meters.
+   * @param rightPos The right side's position, in meters.
+   * @param leftVel The left side's velocity, in meters/sec.
+   * @param rightVel The right side's velocity, in meters/sec.
+   * @param angularVelDegrees The gyro's angular velocity, in degrees/sec counterclockwise.
+   * @param xAccel The NavX's X acceleration, in meters/sec^2.
+   * @param yAccel The NavX's Y acceleration, in meters/sec^2.
+   * @param trackWidth The width between the left and right wheels, in meters.
+   */
+  public void update(
+      final double timeSecs,
+      final double leftPos,
+      final double rightPos,
+      final double leftVel,
+      final double rightVel,
+      final double angularVelDegrees,
+      final double xAccel,
+      final double yAccel,
+      final double trackWidth) {
+    if (!Double.isNaN(this.lastTime)) {
+      this.linear.predict(timeSecs - this.lastTime);
+      this.angular.predict(timeSecs - this.lastTime);
+    }
+    this.lastTime = timeSecs;
+    this.halfTrackWidth = trackWidth / 2;
+
+    // Averaging two sides halves the variance.
+    this.correctPosition(this.linear, (leftPos + rightPos) / 2);
+    this.correctPosition(this.angular, (rightPos - leftPos) / 2);
+    if (this.reseatUpdates > 0) this.reseatUpdates--;
+    this.linear.correct(
+        0, 1, -this.velocityDelaySecs, (leftVel + rightVel) / 2, this.velocityVariance / 2);
+    this.angular.correct(
+        0, 1, -this.velocityDelaySecs, (rightVel - leftVel) / 2, this.velocityVariance / 2);
+    this.angular.correct(
+        0,
+        1,
+        0,
+        Math.toRadians(angularVelDegrees) * this.halfTrackWidth,
+        this.gyroRateVariance * this.halfTrackWidth * this.halfTrackWidth);
+    if (!this.ignoreAccel) {
+      final double forwardAccel =
+          (this.accelYIsForward ? yAccel : xAccel) * (this.invertAccel ? -1 : 1);
+      this.linear.correct(0, 0, 1, forwardAccel, this.accelVariance);
+    }
+  }
+
+  /**
+   * Moves the position to where the encoders were just reset to, leaving the velocity and
+   * acceleration alone. Call whenever the encoders are reset, so the jump isn't taken as motion.
+   *
+   * @param leftPos The left side's new position, in meters.
+   * @param rightPos The right side's new position, in meters.
+   */
+  public void resetPosition(final double leftPos, final double rightPos) {
+    this.linear.setPosition((leftPos + rightPos) / 2, this.positionVariance / 2);
+    this.angular.setPosition((rightPos - leftPos) / 2, this.positionVariance / 2);
+    this.reseatUpdates = RESEAT_UPDATES;
+  }
+
+  /** Forgets the estimate entirely, going back to how the estimator started. */
+  public void reset() {
+    this.linear.reset();
+    this.angular.reset();
+    this.lastTime = Double.NaN;
+    this.reseatUpdates = 0;
+  }
+
+  /**
+   * Corrects a filter with the encoders, or jumps to them if they've been reset.
+   *
+   * @param filter The filter to correct.
+   * @param position The position the encoders measured, in meters.
+   */
+  private void correctPosition(final ConstantAccelerationFilter filter, final double position) {
+    if (Double.isNaN(position)) return;
+    if (this.reseatUpdates > 0 || Math.abs(position - filter.getPosition()) > MAX_POSITION_JUMP) {
+      filter.setPosition(position, this.positionVariance / 2);
+    } else {
+      filter.correct(1, 0, 0, position, this.positionVariance / 2);
+    }
+  }
+
+  /** @return The left side's velocity, in meters/sec. */
+  public double getLeftVelocity() {
+    return this.linear.getVelocity() - this.angular.getVelocity();
+  }
+
+  /** @return The right side's velocity, in meters/sec. */
+  public double getRightVelocity() {
+    return this.linear.getVelocity() + this.angular.getVelocity();
+  }
+
+  /** @return The left side's acceleration, in meters/sec^2. */
+  public double getLeftAcceleration() {
+    return this.linear.getAcceleration() - this.angular.getAcceleration();
+  }
+
+  /** @return The right side's acceleration, in meters/sec^2. */
+  public double getRightAcceleration() {
+    return this.linear.getAcceleration() + this.angular.getAcceleration();
+  }
+
+  /** @return The robot's forwards acceleration, in meters/sec^2. */
+  public double getForwardAcceleration() {
+    return this.linear.getAcceleration();
+  }
+
+  /** @return The robot's angular velocity, in radians/sec counterclockwise. */
+  public double getAngularVelocity() {
+    return this.angular.getVelocity() / this.halfTrackWidth;
+  }
+
+  /**
+   * @return The robot's sideways acceleration from turning while moving, in meters/sec^2, positive
+   *     to the left.
+   */
+  public double getLateralAcceleration() {
+    return this.linear.getVelocity() * this.getAngularVelocity();
+  }
+
+  private static double square(final double x) {
+    return x * x;
+  }
+}
@@ -1,13 +1,15 @@
 package org.usfirst.frc.team449.robot.drive.unidirectional;
 
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
-import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.drive.DriveSubsystem;
 import org.usfirst.frc.team449.robot.generalInterfaces.updatable.Updatable;
 
 /**
  * A drive with a left side and a right side. "Unidirectional" because it can only move forwards or
  * backwards, not sideways.
+ *
+ * <p>Sensor readings are primitives, NaN when the drive doesn't have encoders, so that reading them
+ * every loop doesn't box.
  */
 @JsonTypeInfo(
     use = JsonTypeInfo.Id.CLASS,
@@ -26,64 +28,76 @@ public interface DriveUnidirectional extends DriveSubsystem, Updatable {
   /**
    * Get the velocity of the left side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
-  Double getLeftVel();
+  double getLeftVel();
 
   /**
    * Get the velocity of the right side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
-  Double getRightVel();
+  double getRightVel();
 
   /**
    * Get the position of the left side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
-  Double getLeftPos();
+  double getLeftPos();
 
   /**
    * Get the position of the right side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
-  Double getRightPos();
+  double getRightPos();
 
   /**
    * Get the cached velocity of the left side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
-  Double getLeftVelCached();
+  double getLeftVelCached();
 
   /**
    * Get the cached velocity of the right side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
-  Double getRightVelCached();
+  double getRightVelCached();
 
   /**
    * Get the cached position of the left side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
-  Double getLeftPosCached();
+  double getLeftPosCached();
 
   /**
    * Get the cached position of the right side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
-  Double getRightPosCached();
+  double getRightPosCached();
+
+  /**
+   * Get the filtered velocity of the left side of the drive, for when noise or lag in the raw
+   * reading matters. Drives that don't filter it return the cached velocity.
+   *
+   * @return The signed velocity, or NaN if the drive doesn't have encoders.
+   */
+  default double getLeftVelEstimate() {
+    return this.getLeftVelCached();
+  }
+
+  /**
+   * Get the filtered velocity of the right side of the drive, for when noise or lag in the raw
+   * reading matters. Drives that don't filter it return the cached velocity.
+   *
+   * @return The signed velocity, or NaN if the drive doesn't have encoders.
+   */
+  default double getRightVelEstimate() {
+    return this.getRightVelCached();
+  }
 }
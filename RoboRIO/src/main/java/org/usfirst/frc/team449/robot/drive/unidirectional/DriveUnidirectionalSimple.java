@@ -7,7 +7,6 @@ import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import io.github.oblarg.oblog.Loggable;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.generalInterfaces.motors.simple.SimpleMotor;
 
 /** A simple unidirectional drive with no encoders. */
@@ -50,89 +49,81 @@ public class DriveUnidirectionalSimple extends SubsystemBase
   /**
    * Get the velocity of the left side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
   @Override
-  public Double getLeftVel() {
-    return null;
+  public double getLeftVel() {
+    return Double.NaN;
   }
 
   /**
    * Get the velocity of the right side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
   @Override
-  public Double getRightVel() {
-    return null;
+  public double getRightVel() {
+    return Double.NaN;
   }
 
   /**
    * Get the position of the left side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
   @Override
-  public Double getLeftPos() {
-    return null;
+  public double getLeftPos() {
+    return Double.NaN;
   }
 
   /**
    * Get the position of the right side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
   @Override
-  public Double getRightPos() {
-    return null;
+  public double getRightPos() {
+    return Double.NaN;
   }
 
   /**
    * Get the cached velocity of the left side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
   @Override
-  public Double getLeftVelCached() {
-    return null;
+  public double getLeftVelCached() {
+    return Double.NaN;
   }
 
   /**
    * Get the cached velocity of the right side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
   @Override
-  public Double getRightVelCached() {
-    return null;
+  public double getRightVelCached() {
+    return Double.NaN;
   }
 
   /**
    * Get the cached position of the left side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
   @Override
-  public Double getLeftPosCached() {
-    return null;
+  public double getLeftPosCached() {
+    return Double.NaN;
   }
 
   /**
    * Get the cached position of the right side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @Nullable
   @Override
-  public Double getRightPosCached() {
-    return null;
+  public double getRightPosCached() {
+    return Double.NaN;
   }
 
   /** Completely stop the robot by setting the voltage to each side to be 0. */
@@ -3,18 +3,19 @@ package org.usfirst.frc.team449.robot.drive.unidirectional;
 import com.fasterxml.jackson.annotation.*;
 import edu.wpi.first.wpilibj.controller.SimpleMotorFeedforward;
 import edu.wpi.first.wpilibj.geometry.Pose2d;
-import edu.wpi.first.wpilibj.geometry.Rotation2d;
-import edu.wpi.first.wpilibj.geometry.Translation2d;
 import edu.wpi.first.wpilibj.kinematics.DifferentialDriveKinematics;
-import edu.wpi.first.wpilibj.kinematics.DifferentialDriveOdometry;
 import edu.wpi.first.wpilibj.kinematics.DifferentialDriveWheelSpeeds;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.generalInterfaces.AHRS.SubsystemAHRS;
 import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.SmartMotor;
 import org.usfirst.frc.team449.robot.jacksonWrappers.MappedAHRS;
+import org.usfirst.frc.team449.robot.jacksonWrappers.simulated.DifferentialDrivePlant;
+import org.usfirst.frc.team449.robot.jacksonWrappers.simulated.FPSSmartMotorSimulated;
+import org.usfirst.frc.team449.robot.other.Clock;
 
 /** A drive with a cluster of any number of CANTalonSRX controlled motors on each side. */
 @JsonTypeInfo(
@@ -25,6 +26,9 @@ import org.usfirst.frc.team449.robot.jacksonWrappers.MappedAHRS;
 public class DriveUnidirectionalWithGyro extends SubsystemBase
     implements SubsystemAHRS, DriveUnidirectional, Loggable {
 
+  /** The NavX measures acceleration in feet, but the drive is in meters. */
+  private static final double FEET_TO_METERS = 0.3048;
+
   /** Right master Talon */
   @NotNull protected final SmartMotor rightMaster;
 
@@ -37,8 +41,15 @@ public class DriveUnidirectionalWithGyro extends SubsystemBase
   /** Drivetrain kinematics processor for measuring individual wheel speeds */
   private final DifferentialDriveKinematics driveKinematics;
 
-  /** Drivetrain odometry tracker for tracking position */
-  private final DifferentialDriveOdometry driveOdometry;
+  /** Drivetrain odometry tracker for tracking position, corrected by any vision measurements */
+  @NotNull private final PoseEstimator poseEstimator;
+
+  /** Smooths the velocity and acceleration of each side. */
+  @NotNull private final DriveStateEstimator stateEstimator;
+
+  /** The wheel speeds returned by {@link #getWheelSpeeds()}. Field to avoid garbage. */
+  @NotNull
+  private final DifferentialDriveWheelSpeeds wheelSpeeds = new DifferentialDriveWheelSpeeds();
   /** Whether or not to use the NavX for driving straight */
   private boolean overrideGyro;
   /** Cached values for various sensor readings. */
@@ -48,6 +59,15 @@ public class DriveUnidirectionalWithGyro extends SubsystemBase
   private double cachedLeftPos = Double.NaN;
   private double cachedRightPos = Double.NaN;
 
+  /** The width between the left and right wheels in meters */
+  private final double trackWidthMeters;
+  /** The simulated drivetrain's moment of inertia ratio, see {@link DifferentialDrivePlant}. */
+  private final double simAngularInertiaRatio;
+  /** The simulated drivetrain, or null until the first simulation update. */
+  @Nullable private DifferentialDrivePlant simPlant;
+  /** The time of the last simulation update, in seconds. */
+  private double lastSimTime;
+
   /**
    * Default constructor.
    *
@@ -55,13 +75,20 @@ public class DriveUnidirectionalWithGyro extends SubsystemBase
    * @param rightMaster The master talon on the right side of the drive.
    * @param ahrs The NavX gyro for calculating this drive's heading and angular velocity.
    * @param trackWidthMeters The width between the left and right wheels in meters
+   * @param simAngularInertiaRatio The robot's moment of inertia about its center over its mass
+   *     times half the track width squared, used only in simulation. Defaults to 1, which makes
+   *     turning as hard to accelerate as driving straight.
+   * @param stateEstimator Smooths the velocity and acceleration of each side. Defaults to {@link
+   *     DriveStateEstimator#withDefaults()}.
    */
   @JsonCreator
   public DriveUnidirectionalWithGyro(
       @NotNull @JsonProperty(required = true) final SmartMotor leftMaster,
       @NotNull @JsonProperty(required = true) final SmartMotor rightMaster,
       @NotNull @JsonProperty(required = true) final MappedAHRS ahrs,
-      @JsonProperty(required = true) final double trackWidthMeters) {
+      @JsonProperty(required = true) final double trackWidthMeters,
+      @Nullable final Double simAngularInertiaRatio,
+      @Nullable final DriveStateEstimator stateEstimator) {
     super();
     // Initialize stuff
     this.rightMaster = rightMaster;
@@ -69,12 +96,56 @@ public class DriveUnidirectionalWithGyro extends SubsystemBase
     this.ahrs = ahrs;
     this.overrideGyro = false;
     this.driveKinematics = new DifferentialDriveKinematics(trackWidthMeters);
-    this.driveOdometry = new DifferentialDriveOdometry(Rotation2d.fromDegrees(this.getHeading()));
+    this.trackWidthMeters = trackWidthMeters;
+    this.simAngularInertiaRatio = simAngularInertiaRatio != null ? simAngularInertiaRatio : 1;
+    this.poseEstimator =
+        new PoseEstimator(Math.toRadians(this.getHeading()), PoseEstimator.DEFAULT_HISTORY_SIZE);
+    this.stateEstimator =
+        stateEstimator != null ? stateEstimator : DriveStateEstimator.withDefaults();
   }
 
   @Override
   public void periodic() {
     updateOdometry();
+    updateStateEstimate();
+  }
+
+  /**
+   * Moves simulated motors with a plant of the whole drivetrain, built from each side's current
+   * feedforward, and feeds the NavX the heading that results.
+   */
+  @Override
+  public void simulationPeriodic() {
+    if (!(this.leftMaster instanceof FPSSmartMotorSimulated)
+        || !(this.rightMaster instanceof FPSSmartMotorSimulated)) {
+      return;
+    }
+    final FPSSmartMotorSimulated left = (FPSSmartMotorSimulated) this.leftMaster;
+    final FPSSmartMotorSimulated right = (FPSSmartMotorSimulated) this.rightMaster;
+    final SimpleMotorFeedforward leftFeedforward = left.getCurrentGearFeedForward();
+    final SimpleMotorFeedforward rightFeedforward = right.getCurrentGearFeedForward();
+    final double now = Clock.currentTimeSeconds();
+    if (this.simPlant == null) {
+      // The plant needs a real feedforward; without one, each motor simulates itself.
+      if (!(leftFeedforward.ka > 0) || !(rightFeedforward.ka > 0)) return;
+      this.simPlant =
+          new DifferentialDrivePlant(this.trackWidthMeters, this.simAngularInertiaRatio);
+      left.setExternallyDriven(true);
+      right.setExternallyDriven(true);
+      this.lastSimTime = now;
+    }
+    this.simPlant.step(
+        left.getSimulatedVoltage(),
+        right.getSimulatedVoltage(),
+        leftFeedforward,
+        rightFeedforward,
+        now - this.lastSimTime);
+    this.lastSimTime = now;
+    left.applyExternalStep(this.simPlant.getLeftDelta(), this.simPlant.getLeftVelocity());
+    right.applyExternalStep(this.simPlant.getRightDelta(), this.simPlant.getRightVelocity());
+    this.ahrs.setSimulatedState(
+        Math.toDegrees(this.simPlant.getHeadingRadians()),
+        Math.toDegrees(this.simPlant.getAngularVelocity()));
   }
 
   /**
@@ -104,88 +175,80 @@ public class DriveUnidirectionalWithGyro extends SubsystemBase
   /**
    * Get the velocity of the left side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
   @Override
-  @NotNull
-  public Double getLeftVel() {
+  public double getLeftVel() {
     return this.leftMaster.getVelocity();
   }
 
   /**
    * Get the velocity of the right side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
   @Override
-  @NotNull
-  public Double getRightVel() {
+  public double getRightVel() {
     return this.rightMaster.getVelocity();
   }
 
   /**
    * Get the position of the left side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @NotNull
   @Override
-  public Double getLeftPos() {
+  public double getLeftPos() {
     return this.leftMaster.getPositionUnits();
   }
 
   /**
    * Get the position of the right side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @NotNull
   @Override
-  public Double getRightPos() {
+  public double getRightPos() {
     return this.rightMaster.getPositionUnits();
   }
 
   /**
    * Get the cached velocity of the left side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @NotNull
   @Override
-  public Double getLeftVelCached() {
+  public double getLeftVelCached() {
     return this.cachedLeftVel;
   }
 
   /**
    * Get the cached velocity of the right side of the drive.
    *
-   * @return The signed velocity in feet per second, or null if the drive doesn't have encoders.
+   * @return The signed velocity in feet per second, or NaN if the drive doesn't have encoders.
    */
-  @NotNull
   @Override
-  public Double getRightVelCached() {
+  public double getRightVelCached() {
     return this.cachedRightVel;
   }
 
   /**
    * Get the cached position of the left side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @NotNull
   @Override
-  public Double getLeftPosCached() {
+  public double getLeftPosCached() {
     return this.cachedLeftPos;
   }
 
   /**
    * Get the cached position of the right side of the drive.
    *
-   * @return The signed position in feet, or null if the drive doesn't have encoders.
+   * @return The signed position in feet, or NaN if the drive doesn't have encoders.
    */
-  @NotNull
   @Override
-  public Double getRightPosCached() {
+  public double getRightPosCached() {
     return this.cachedRightPos;
   }
 
@@ -243,6 +306,17 @@ public class DriveUnidirectionalWithGyro extends SubsystemBase
     return this.ahrs.getCachedHeading();
   }
 
+  /**
+   * Get the robot's heading at some time in the last second or so.
+   *
+   * @param timeSecs The time, in seconds on the {@link Clock}.
+   * @return robot heading at that time, in degrees, on [-180, 180], or NaN if it's too long ago.
+   */
+  @Override
+  public double getHeadingAt(final double timeSecs) {
+    return this.ahrs.getHeadingAt(timeSecs);
+  }
+
   /**
    * Get the robot's angular velocity.
    *
@@ -321,28 +395,160 @@ public class DriveUnidirectionalWithGyro extends SubsystemBase
   public void resetOdometry(final Pose2d pose) {
     resetPosition();
     ahrs.setHeading(pose.getRotation().getDegrees());
-    driveOdometry.resetPosition(pose, Rotation2d.fromDegrees(this.getHeading()));
+    poseEstimator.reset(
+        pose.getX(),
+        pose.getY(),
+        pose.getRotation().getRadians(),
+        Math.toRadians(this.getHeading()));
+  }
+
+  /**
+   * Stops the simulated drivetrain dead at a pose and forgets its estimates, for starting another
+   * headless simulation run. Does nothing unless both masters are simulated.
+   *
+   * @param pose The pose to put the robot at.
+   */
+  public void resetSimulation(@NotNull final Pose2d pose) {
+    if (!(this.leftMaster instanceof FPSSmartMotorSimulated)
+        || !(this.rightMaster instanceof FPSSmartMotorSimulated)) {
+      return;
+    }
+    ((FPSSmartMotorSimulated) this.leftMaster).resetSimulation();
+    ((FPSSmartMotorSimulated) this.rightMaster).resetSimulation();
+    if (this.simPlant != null) this.simPlant.reset();
+    this.ahrs.setSimulatedState(0, 0);
+    this.stateEstimator.reset();
+    this.resetOdometry(pose);
   }
 
-  /** Update odometry tracker with current heading, and encoder readings */
+  /**
+   * Update odometry tracker with the heading and encoder readings cached at the start of the loop,
+   * so they're from the same moment
+   */
   public void updateOdometry() {
     // need to convert to meters
-    this.driveOdometry.update(
-        Rotation2d.fromDegrees(this.getHeading()), this.getLeftPos(), this.getRightPos());
+    this.poseEstimator.update(
+        Clock.currentTimeSeconds(),
+        Math.toRadians(this.getHeadingCached()),
+        this.leftMaster.getPositionUnitsCached(),
+        this.rightMaster.getPositionUnitsCached());
+  }
+
+  /**
+   * Update the velocity and acceleration estimates with the readings cached at the start of the
+   * loop. Runs after the NavX has been updated, so its readings are from this loop too.
+   */
+  public void updateStateEstimate() {
+    // The simulated NavX doesn't simulate acceleration, so reading it would only drag the estimate
+    // towards 0.
+    final double xAccel = this.ahrs.isSimulated() ? Double.NaN : this.ahrs.getCachedXAccel();
+    final double yAccel = this.ahrs.isSimulated() ? Double.NaN : this.ahrs.getCachedYAccel();
+    this.stateEstimator.update(
+        Clock.currentTimeSeconds(),
+        this.leftMaster.getPositionUnitsCached(),
+        this.rightMaster.getPositionUnitsCached(),
+        this.leftMaster.getVelocityCached(),
+        this.rightMaster.getVelocityCached(),
+        this.ahrs.getCachedAngularVelocity(),
+        xAccel * FEET_TO_METERS,
+        yAccel * FEET_TO_METERS,
+        this.trackWidthMeters);
+  }
+
+  /**
+   * Get the filtered velocity of the left side of the drive.
+   *
+   * @return The signed velocity in meters per second.
+   */
+  @Override
+  @Log
+  public double getLeftVelEstimate() {
+    return this.stateEstimator.getLeftVelocity();
+  }
+
+  /**
+   * Get the filtered velocity of the right side of the drive.
+   *
+   * @return The signed velocity in meters per second.
+   */
+  @Override
+  @Log
+  public double getRightVelEstimate() {
+    return this.stateEstimator.getRightVelocity();
+  }
+
+  /** @return The filtered acceleration of the left side of the drive, in meters/sec^2. */
+  @Log
+  public double getLeftAccelEstimate() {
+    return this.stateEstimator.getLeftAcceleration();
+  }
+
+  /** @return The filtered acceleration of the right side of the drive, in meters/sec^2. */
+  @Log
+  public double getRightAccelEstimate() {
+    return this.stateEstimator.getRightAcceleration();
+  }
+
+  /** @return The filtered forwards acceleration of the robot, in meters/sec^2. */
+  public double getForwardAccelEstimate() {
+    return this.stateEstimator.getForwardAcceleration();
+  }
+
+  /**
+   * @return The filtered sideways acceleration of the robot from turning, in meters/sec^2, positive
+   *     to the left.
+   */
+  public double getLateralAccelEstimate() {
+    return this.stateEstimator.getLateralAcceleration();
   }
 
   /** @return Current estimated pose based on odometry tracker data */
   @Log.ToString
+  @NotNull
   public Pose2d getCurrentPose() {
-    return this.driveOdometry.getPoseMeters() != null
-        ? this.driveOdometry.getPoseMeters()
-        : new Pose2d(new Translation2d(0, 0), new Rotation2d(0));
+    return this.poseEstimator.getPose();
+  }
+
+  /**
+   * Corrects the odometry with a measurement of where the robot was when it was taken, replaying
+   * the odometry since then on top of the correction.
+   *
+   * @param captureTimeSecs When the measurement was taken, in seconds on the {@link Clock}.
+   * @param x The measured x position, in meters.
+   * @param y The measured y position, in meters.
+   * @param headingRadians The measured heading, in radians.
+   * @param translationGain How far to move the position towards the measurement, from 0 to 1.
+   * @param headingGain How far to move the heading towards the measurement, from 0 to 1.
+   * @return true if the measurement was used, false if it was too old.
+   */
+  public boolean addVisionMeasurement(
+      final double captureTimeSecs,
+      final double x,
+      final double y,
+      final double headingRadians,
+      final double translationGain,
+      final double headingGain) {
+    return this.poseEstimator.addMeasurement(
+        captureTimeSecs, x, y, headingRadians, translationGain, headingGain);
+  }
+
+  /**
+   * @param timeSecs A time in the last second or so, in seconds on the {@link Clock}.
+   * @return The estimated heading at that time, in radians, or NaN if it's too long ago.
+   */
+  public double getHeadingRadiansAt(final double timeSecs) {
+    return this.poseEstimator.getHeadingRadiansAt(timeSecs);
   }
 
-  /** @return Current wheel speeds based on encoder readings for future pose correction */
+  /**
+   * @return Current wheel speeds, filtered by the state estimator. The same object is reused on
+   *     every call, so read it right away and don't hold on to it.
+   */
+  @NotNull
   public DifferentialDriveWheelSpeeds getWheelSpeeds() {
-    // need to convert to meters
-    return new DifferentialDriveWheelSpeeds(this.getLeftVel(), this.getRightVel());
+    this.wheelSpeeds.leftMetersPerSecond = this.stateEstimator.getLeftVelocity();
+    this.wheelSpeeds.rightMetersPerSecond = this.stateEstimator.getRightVelocity();
+    return this.wheelSpeeds;
   }
 
   /** @return Kinematics processor for wheel speeds */
@@ -370,15 +576,17 @@ public class DriveUnidirectionalWithGyro extends SubsystemBase
   public void resetPosition() {
     this.leftMaster.resetPosition();
     this.rightMaster.resetPosition();
+    this.stateEstimator.resetPosition(0, 0);
   }
 
   /** Updates all cached values with current ones. */
   @Override
   public void update() {
-    this.cachedLeftVel = this.getLeftVel();
-    this.cachedLeftPos = this.getLeftPos();
-    this.cachedRightVel = this.getRightVel();
-    this.cachedRightPos = this.getRightPos();
+    // Served from the MotorContainer snapshot, so these don't go over CAN again.
+    this.cachedLeftVel = this.leftMaster.getVelocityCached();
+    this.cachedLeftPos = this.leftMaster.getPositionUnitsCached();
+    this.cachedRightVel = this.rightMaster.getVelocityCached();
+    this.cachedRightPos = this.rightMaster.getPositionUnitsCached();
   }
 
   /**
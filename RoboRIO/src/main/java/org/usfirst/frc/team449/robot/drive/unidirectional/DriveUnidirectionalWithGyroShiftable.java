@@ -43,7 +43,7 @@ public class DriveUnidirectionalWithGyroShiftable extends DriveUnidirectionalWit
       @JsonProperty(required = true) final double trackWidthMeters,
       @NotNull @JsonProperty(required = true) final ShiftComponent shiftComponent,
       final boolean startingOverrideAutoshift) {
-    super(leftMaster, rightMaster, ahrs, trackWidthMeters);
+    super(leftMaster, rightMaster, ahrs, trackWidthMeters, null, null);
     // Initialize stuff
     this.shiftComponent = shiftComponent;
 
@@ -0,0 +1,221 @@
+package org.usfirst.frc.team449.robot.drive.unidirectional;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import io.github.oblarg.oblog.Loggable;
+import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.jacksonWrappers.MappedPIDController;
+import org.usfirst.frc.team449.robot.other.Clock;
+import org.usfirst.frc.team449.robot.other.DoubleRingBuffer;
+import org.usfirst.frc.team449.robot.other.FastControlLoop;
+
+/**
+ * Closes the wheel velocity loops of a {@link DriveUnidirectionalWithGyro} on a {@link
+ * FastControlLoop} instead of the main loop, using feedforward plus roboRIO-side PID and commanding
+ * voltage.
+ *
+ * <p>The main loop hands setpoints over with {@link FastWheelSpeedController#setWheelSpeeds(double,
+ * double)}, and the fast loop hands back what it measured and commanded every step through {@link
+ * FastWheelSpeedController#getSamples()}. A command that's done with the drive should call {@link
+ * FastWheelSpeedController#stop()} so the controller lets go of it right away; if no setpoint
+ * arrives for a while anyway, it lets go on its own.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class FastWheelSpeedController implements Loggable {
+
+  /** Index of the time in a setpoint record, in seconds. */
+  private static final int SETPOINT_TIME = 0;
+  /** Index of the left velocity in a setpoint record, in units per second. */
+  private static final int SETPOINT_LEFT = 1;
+  /** Index of the right velocity in a setpoint record, in units per second. */
+  private static final int SETPOINT_RIGHT = 2;
+  /** Index of whether to follow a setpoint record at all, 1 if so and 0 if not. */
+  private static final int SETPOINT_ACTIVE = 3;
+  /** The number of fields in a setpoint record. */
+  private static final int SETPOINT_WIDTH = 4;
+
+  /** Index of the time in a sample record, in seconds. */
+  public static final int SAMPLE_TIME = 0;
+  /** Index of the measured left velocity in a sample record, in units per second. */
+  public static final int SAMPLE_LEFT_VEL = 1;
+  /** Index of the measured right velocity in a sample record, in units per second. */
+  public static final int SAMPLE_RIGHT_VEL = 2;
+  /** Index of the commanded left voltage in a sample record. */
+  public static final int SAMPLE_LEFT_VOLTS = 3;
+  /** Index of the commanded right voltage in a sample record. */
+  public static final int SAMPLE_RIGHT_VOLTS = 4;
+  /** The number of fields in a sample record. */
+  public static final int SAMPLE_WIDTH = 5;
+
+  /** The drive to control. */
+  @NotNull private final DriveUnidirectionalWithGyro drive;
+  /** The PID controllers for the left and right sides, only ever run on the fast loop. */
+  @NotNull private final MappedPIDController leftPid, rightPid;
+  /** How long a setpoint is followed for without a new one, in seconds. */
+  private final double setpointTimeoutSecs;
+
+  /** Setpoints from the main loop. Written only by the main loop. */
+  @NotNull private final DoubleRingBuffer setpoints = new DoubleRingBuffer(4, SETPOINT_WIDTH);
+  /** Measurements and outputs from the fast loop. Written only by the fast loop. */
+  @NotNull private final DoubleRingBuffer samples = new DoubleRingBuffer(64, SAMPLE_WIDTH);
+
+  /** The setpoint being followed, only touched on the fast loop. */
+  @NotNull private final double[] setpoint = new double[SETPOINT_WIDTH];
+  /** The setpoint followed before the current one, only touched on the fast loop. */
+  @NotNull private final double[] previousSetpoint = new double[SETPOINT_WIDTH];
+  /** The number of setpoints the fast loop has seen. */
+  private long setpointsSeen;
+  /** Whether the fast loop is currently driving the drive. */
+  private volatile boolean active;
+
+  /** The newest sample, for logging on the main loop. Field to avoid garbage collection. */
+  @NotNull private final double[] latestSample = new double[SAMPLE_WIDTH];
+
+  /**
+   * Default constructor.
+   *
+   * @param drive The drive to control.
+   * @param loop The loop to run on.
+   * @param leftPidController The PID controller for the left side, in units per second to volts.
+   * @param rightPidController The PID controller for the right side, in units per second to volts.
+   * @param setpointTimeoutSecs How long a setpoint is followed for without a new one, in seconds.
+   *     Defaults to 0.1.
+   */
+  @JsonCreator
+  public FastWheelSpeedController(
+      @NotNull @JsonProperty(required = true) final DriveUnidirectionalWithGyro drive,
+      @NotNull @JsonProperty(required = true) final FastControlLoop loop,
+      @NotNull @JsonProperty(required = true) final MappedPIDController leftPidController,
+      @NotNull @JsonProperty(required = true) final MappedPIDController rightPidController,
+      @Nullable final Double setpointTimeoutSecs) {
+    this.drive = drive;
+    this.leftPid = leftPidController;
+    this.rightPid = rightPidController;
+    this.setpointTimeoutSecs = setpointTimeoutSecs != null ? setpointTimeoutSecs : 0.1;
+    loop.register(this::control);
+  }
+
+  /**
+   * Sets the wheel speeds to follow. Should only be called from the main loop.
+   *
+   * @param left The velocity of the left side, in units per second.
+   * @param right The velocity of the right side, in units per second.
+   */
+  public void setWheelSpeeds(final double left, final double right) {
+    this.setpoints.set(SETPOINT_TIME, Clock.nowNanos() * 1e-9);
+    this.setpoints.set(SETPOINT_LEFT, left);
+    this.setpoints.set(SETPOINT_RIGHT, right);
+    this.setpoints.set(SETPOINT_ACTIVE, 1);
+    this.setpoints.publish();
+  }
+
+  /**
+   * Lets go of the drive, so the fast loop stops commanding it from its next step on, until {@link
+   * FastWheelSpeedController#setWheelSpeeds(double, double)} is called again. Should only be called
+   * from the main loop.
+   */
+  public void stop() {
+    this.setpoints.set(SETPOINT_TIME, Clock.nowNanos() * 1e-9);
+    this.setpoints.set(SETPOINT_LEFT, 0);
+    this.setpoints.set(SETPOINT_RIGHT, 0);
+    this.setpoints.set(SETPOINT_ACTIVE, 0);
+    this.setpoints.publish();
+  }
+
+  /**
+   * Runs one step of the velocity loops. Called on the fast loop.
+   *
+   * @param timeSecs The current time, in seconds.
+   * @param dtSecs The time since the last step, in seconds.
+   */
+  private void control(final double timeSecs, final double dtSecs) {
+    final long count = this.setpoints.getPublishedCount();
+    if (count != this.setpointsSeen) {
+      System.arraycopy(this.setpoint, 0, this.previousSetpoint, 0, this.setpoint.length);
+      if (!this.setpoints.readLatest(this.setpoint)) return;
+      // Starting over, after nothing or a stop, so there's no rate to accelerate at yet.
+      if (this.previousSetpoint[SETPOINT_ACTIVE] == 0) {
+        System.arraycopy(this.setpoint, 0, this.previousSetpoint, 0, this.setpoint.length);
+      }
+      this.setpointsSeen = count;
+    }
+    if (count == 0
+        || this.setpoint[SETPOINT_ACTIVE] == 0
+        || timeSecs - this.setpoint[SETPOINT_TIME] > this.setpointTimeoutSecs) {
+      if (this.active) {
+        this.active = false;
+        this.leftPid.reset();
+        this.rightPid.reset();
+      }
+      return;
+    }
+    this.active = true;
+
+    // Accelerate at the rate the setpoints are changing at.
+    final double setpointDt = this.setpoint[SETPOINT_TIME] - this.previousSetpoint[SETPOINT_TIME];
+    final double leftAccel =
+        setpointDt > 0
+            ? (this.setpoint[SETPOINT_LEFT] - this.previousSetpoint[SETPOINT_LEFT]) / setpointDt
+            : 0;
+    final double rightAccel =
+        setpointDt > 0
+            ? (this.setpoint[SETPOINT_RIGHT] - this.previousSetpoint[SETPOINT_RIGHT]) / setpointDt
+            : 0;
+
+    final double leftVel = this.drive.leftMaster.getVelocity();
+    final double rightVel = this.drive.rightMaster.getVelocity();
+    final double leftVolts =
+        this.drive
+                .getLeftFeedforwardCalculator()
+                .calculate(this.setpoint[SETPOINT_LEFT], leftAccel)
+            + this.leftPid.calculate(leftVel, this.setpoint[SETPOINT_LEFT]);
+    final double rightVolts =
+        this.drive
+                .getRightFeedforwardCalculator()
+                .calculate(this.setpoint[SETPOINT_RIGHT], rightAccel)
+            + this.rightPid.calculate(rightVel, this.setpoint[SETPOINT_RIGHT]);
+    this.drive.setVoltage(leftVolts, rightVolts);
+
+    this.samples.set(SAMPLE_TIME, timeSecs);
+    this.samples.set(SAMPLE_LEFT_VEL, leftVel);
+    this.samples.set(SAMPLE_RIGHT_VEL, rightVel);
+    this.samples.set(SAMPLE_LEFT_VOLTS, leftVolts);
+    this.samples.set(SAMPLE_RIGHT_VOLTS, rightVolts);
+    this.samples.publish();
+  }
+
+  /**
+   * Gets what the fast loop measured and commanded each step, indexed by the SAMPLE_* constants.
+   * Only read from it; the fast loop is the only writer.
+   *
+   * @return The buffer of samples.
+   */
+  @NotNull
+  public DoubleRingBuffer getSamples() {
+    return this.samples;
+  }
+
+  /** @return Whether the fast loop is currently driving the drive. */
+  @Log
+  public boolean isActive() {
+    return this.active;
+  }
+
+  /** @return The newest left voltage commanded by the fast loop. */
+  @Log
+  public double getLeftVolts() {
+    this.samples.readLatest(this.latestSample);
+    return this.latestSample[SAMPLE_LEFT_VOLTS];
+  }
+
+  /** @return The newest right voltage commanded by the fast loop. */
+  @Log
+  public double getRightVolts() {
+    this.samples.readLatest(this.latestSample);
+    return this.latestSample[SAMPLE_RIGHT_VOLTS];
+  }
+}
@@ -0,0 +1,226 @@
+package org.usfirst.frc.team449.robot.drive.unidirectional;
+
+import edu.wpi.first.wpilibj.geometry.Pose2d;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tracks the pose of a differential drive with odometry, and corrects it with measurements, like
+ * vision, that arrive some time after they were taken.
+ *
+ * <p>Every odometry update is kept in a ring buffer along with the sensor readings it came from.
+ * When a measurement comes in, the estimate is rewound to when it was taken, corrected there, and
+ * the odometry is replayed from that point to now, so a late measurement corrects the robot where
+ * it was instead of where it is. Nothing here allocates, except a {@link Pose2d} when one is asked
+ * for.
+ */
+public class PoseEstimator {
+
+  /** The number of updates kept by default: over a second at 50 Hz. */
+  public static final int DEFAULT_HISTORY_SIZE = 64;
+
+  /** Integrates the sensor readings, both live and when replaying. */
+  @NotNull private final DifferentialOdometry odometry;
+
+  // The history, as parallel ring buffers indexed the same way.
+  /** The time of each update, in seconds. */
+  @NotNull private final double[] times;
+  /** The gyro angle at each update, in radians. */
+  @NotNull private final double[] gyros;
+  /** The distance each side had travelled at each update, in meters. */
+  @NotNull private final double[] lefts, rights;
+  /** The estimated pose after each update, in meters and radians. */
+  @NotNull private final double[] xs, ys, headings;
+  /** The index the next update goes in. */
+  private int next;
+  /** The number of updates in the history. */
+  private int size;
+
+  /**
+   * Default constructor. Starts at the origin, facing along the x axis.
+   *
+   * @param gyroRadians The current gyro angle, in radians.
+   * @param historySize The number of updates to keep. Measurements older than the oldest are
+   *     ignored.
+   */
+  public PoseEstimator(final double gyroRadians, final int historySize) {
+    if (historySize < 2) {
+      throw new IllegalArgumentException("historySize must be at least 2, but was " + historySize);
+    }
+    this.odometry = new DifferentialOdometry(gyroRadians);
+    this.times = new double[historySize];
+    this.gyros = new double[historySize];
+    this.lefts = new double[historySize];
+    this.rights = new double[historySize];
+    this.xs = new double[historySize];
+    this.ys = new double[historySize];
+    this.headings = new double[historySize];
+  }
+
+  /**
+   * Resets the pose and forgets the history. The encoders should be reset to zero at the same time.
+   *
+   * @param x The new x position, in meters.
+   * @param y The new y position, in meters.
+   * @param headingRadians The new heading, in radians.
+   * @param gyroRadians The current gyro angle, in radians.
+   */
+  public void reset(
+      final double x, final double y, final double headingRadians, final double gyroRadians) {
+    this.odometry.reset(x, y, headingRadians, gyroRadians);
+    this.size = 0;
+  }
+
+  /**
+   * Updates the pose with the latest sensor readings and records them.
+   *
+   * @param timeSecs The time the readings were taken, in seconds. Must not go backwards.
+   * @param gyroRadians The current gyro angle, in radians.
+   * @param leftDistance The total distance the left side has travelled, in meters.
+   * @param rightDistance The total distance the right side has travelled, in meters.
+   */
+  public void update(
+      final double timeSecs,
+      final double gyroRadians,
+      final double leftDistance,
+      final double rightDistance) {
+    this.odometry.update(gyroRadians, leftDistance, rightDistance);
+    final int i = this.next;
+    this.times[i] = timeSecs;
+    this.gyros[i] = gyroRadians;
+    this.lefts[i] = leftDistance;
+    this.rights[i] = rightDistance;
+    this.record(i);
+    this.next = (i + 1) % this.times.length;
+    if (this.size < this.times.length) this.size++;
+  }
+
+  /**
+   * Corrects the pose with a measurement of where the robot was at some time in the past. The
+   * estimate at that time is moved part of the way towards the measurement, and everything since
+   * is replayed from there.
+   *
+   * @param captureTimeSecs When the measurement was taken, in seconds.
+   * @param x The measured x position, in meters.
+   * @param y The measured y position, in meters.
+   * @param headingRadians The measured heading, in radians.
+   * @param translationGain How far to move the position towards the measurement, from 0 to 1.
+   * @param headingGain How far to move the heading towards the measurement, from 0 to 1. Use 0 if
+   *     the measurement didn't really measure the heading.
+   * @return true if the measurement was used, false if it was older than the history.
+   */
+  public boolean addMeasurement(
+      final double captureTimeSecs,
+      final double x,
+      final double y,
+      final double headingRadians,
+      final double translationGain,
+      final double headingGain) {
+    final int age = this.ageAt(captureTimeSecs);
+    if (age < 0) return false;
+    final int k = this.indexOf(age);
+    // Compare against the estimate at the capture time, between update k and the one after it.
+    final double t = this.fractionAfter(age, captureTimeSecs);
+    final int after = this.indexOf(Math.max(0, age - 1));
+    final double estX = lerp(this.xs[k], this.xs[after], t);
+    final double estY = lerp(this.ys[k], this.ys[after], t);
+    final double estHeading =
+        this.headings[k]
+            + t * DifferentialOdometry.wrap(this.headings[after] - this.headings[k]);
+
+    this.odometry.reset(
+        this.xs[k] + translationGain * (x - estX),
+        this.ys[k] + translationGain * (y - estY),
+        this.headings[k] + headingGain * DifferentialOdometry.wrap(headingRadians - estHeading),
+        this.gyros[k],
+        this.lefts[k],
+        this.rights[k]);
+    this.record(k);
+    for (int a = age - 1; a >= 0; a--) {
+      final int i = this.indexOf(a);
+      this.odometry.update(this.gyros[i], this.lefts[i], this.rights[i]);
+      this.record(i);
+    }
+    return true;
+  }
+
+  /**
+   * @param timeSecs A time, in seconds.
+   * @return The heading at that time, interpolated between updates, in radians, or NaN if it's
+   *     older than the history.
+   */
+  public double getHeadingRadiansAt(final double timeSecs) {
+    final int age = this.ageAt(timeSecs);
+    if (age < 0) return Double.NaN;
+    final int k = this.indexOf(age);
+    final int after = this.indexOf(Math.max(0, age - 1));
+    return DifferentialOdometry.wrap(
+        this.headings[k]
+            + this.fractionAfter(age, timeSecs)
+                * DifferentialOdometry.wrap(this.headings[after] - this.headings[k]));
+  }
+
+  /**
+   * @param timeSecs A time, in seconds.
+   * @return How many updates ago the last update at or before the time was, 0 being the newest, or
+   *     -1 if the time is before the oldest update.
+   */
+  private int ageAt(final double timeSecs) {
+    for (int age = 0; age < this.size; age++) {
+      if (this.times[this.indexOf(age)] <= timeSecs) return age;
+    }
+    return -1;
+  }
+
+  /**
+   * @param age How many updates ago, 0 being the newest.
+   * @return The index of that update in the buffers.
+   */
+  private int indexOf(final int age) {
+    final int length = this.times.length;
+    return (this.next - 1 - age + 2 * length) % length;
+  }
+
+  /**
+   * @param age How many updates ago the update before the time was.
+   * @param timeSecs A time, in seconds.
+   * @return How far the time is from that update to the one after it, from 0 to 1.
+   */
+  private double fractionAfter(final int age, final double timeSecs) {
+    if (age == 0) return 0;
+    final double before = this.times[this.indexOf(age)];
+    final double after = this.times[this.indexOf(age - 1)];
+    return after > before ? (timeSecs - before) / (after - before) : 0;
+  }
+
+  /** Stores the odometry's pose as the pose after the update at index i. */
+  private void record(final int i) {
+    this.xs[i] = this.odometry.getX();
+    this.ys[i] = this.odometry.getY();
+    this.headings[i] = this.odometry.getHeadingRadians();
+  }
+
+  private static double lerp(final double from, final double to, final double t) {
+    return from + (to - from) * t;
+  }
+
+  /** @return The x position, in meters. */
+  public double getX() {
+    return this.odometry.getX();
+  }
+
+  /** @return The y position, in meters. */
+  public double getY() {
+    return this.odometry.getY();
+  }
+
+  /** @return The heading, in radians on [-pi, pi]. */
+  public double getHeadingRadians() {
+    return this.odometry.getHeadingRadians();
+  }
+
+  /** @return The pose. Built at most once per update or correction. */
+  @NotNull
+  public Pose2d getPose() {
+    return this.odometry.getPose();
+  }
+}
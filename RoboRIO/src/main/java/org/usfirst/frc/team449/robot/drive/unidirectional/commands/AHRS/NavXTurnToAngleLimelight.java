@@ -9,19 +9,23 @@ import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj2.command.Subsystem;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.usfirst.frc.team449.robot.components.limelight.LimelightDistanceComponent;
 import org.usfirst.frc.team449.robot.drive.unidirectional.DriveUnidirectional;
 import org.usfirst.frc.team449.robot.generalInterfaces.AHRS.SubsystemAHRS;
 import org.usfirst.frc.team449.robot.generalInterfaces.limelight.Limelight;
 import org.usfirst.frc.team449.robot.other.Clock;
 import org.usfirst.frc.team449.robot.other.Debouncer;
 
-/** Turn a certain number of degrees from the current heading, based on input from the limelight */
+/**
+ * Turn to face the target the limelight sees, correcting with each new frame. Each frame is
+ * compared with the heading the robot had when it was captured.
+ */
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 public class NavXTurnToAngleLimelight<T extends Subsystem & DriveUnidirectional & SubsystemAHRS>
     extends NavXTurnToAngleRelative<T> {
 
   private final Limelight limelight;
+  /** The Limelight's frame count when the setpoint was last set. */
+  private long lastFrame;
 
   /**
    * Default constructor.
@@ -87,18 +91,32 @@ public class NavXTurnToAngleLimelight<T extends Subsystem & DriveUnidirectional
         "NavXTurnToAngleLimelight init.", this.getClass().getSimpleName(), EventImportance.kNormal);
     // Logger.addEvent("NavXRelativeTurnToAngle init.", this.getClass());
     // Do math to setup the setpoint.
-    this.setSetpoint(clipTo180(subsystem.getHeadingCached() - limelight.getX()));
-    // System.out.println("Current setpoint = " + limelight.getX());
-    final LimelightDistanceComponent distanceComponent =
-        new LimelightDistanceComponent(limelight, 20. / 12., 36, 7.5);
-    System.out.println(distanceComponent.getAsDouble());
+    this.aimAtTarget();
   }
 
   @Override
   public void execute() {
+    // Re-aim with each new frame, so the robot homes in on the target as it turns.
+    if (limelight.getFrameCount() != lastFrame && limelight.hasTarget()) {
+      this.aimAtTarget();
+    }
     super.execute();
   }
 
+  /**
+   * Sets the setpoint to the heading of the target in the current frame. tx is relative to the
+   * heading the robot had when the frame was captured, not the current one, which would make the
+   * robot overshoot while turning.
+   */
+  private void aimAtTarget() {
+    lastFrame = limelight.getFrameCount();
+    double headingAtCapture = subsystem.getHeadingAt(limelight.getCaptureTime());
+    if (Double.isNaN(headingAtCapture)) {
+      headingAtCapture = subsystem.getHeadingCached();
+    }
+    this.setSetpoint(clipTo180(headingAtCapture - limelight.getX()));
+  }
+
   /** Log when the command ends. */
   @Override
   public void end(final boolean interrupted) {
@@ -15,6 +15,7 @@ import org.usfirst.frc.team449.robot.oi.fieldoriented.OIFieldOriented;
 import org.usfirst.frc.team449.robot.other.Debouncer;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /** Unidirectional drive with field-oriented control and autoshifting. */
 @JsonTypeInfo(
@@ -41,6 +42,9 @@ public class FieldOrientedUnidirectionalDriveCommandShifting<
   /** The gear the subsystem was in the last time execute() ran. */
   private int lastGear;
 
+  /** Shifts the subsystem, made once so autoshifting doesn't allocate a lambda every loop. */
+  @NotNull private final Consumer<Integer> shift;
+
   /**
    * Default constructor
    *
@@ -106,6 +110,7 @@ public class FieldOrientedUnidirectionalDriveCommandShifting<
     this.highGearAngularCoefficient =
         highGearAngularCoefficient != null ? highGearAngularCoefficient : 1;
     this.lastGear = this.subsystem.getGear();
+    this.shift = this.subsystem::setGear;
   }
 
   /** Set PID setpoint to processed controller setpoint and autoshift. */
@@ -114,9 +119,9 @@ public class FieldOrientedUnidirectionalDriveCommandShifting<
     if (!this.subsystem.getOverrideAutoshift()) {
       this.autoshiftComponent.autoshift(
           this.oi.getVelCached(),
-          this.subsystem.getLeftVelCached(),
-          this.subsystem.getRightVelCached(),
-          this.subsystem::setGear);
+          this.subsystem.getLeftVelEstimate(),
+          this.subsystem.getRightVelEstimate(),
+          this.shift);
     }
 
     // Gain schedule the loop if we shifted
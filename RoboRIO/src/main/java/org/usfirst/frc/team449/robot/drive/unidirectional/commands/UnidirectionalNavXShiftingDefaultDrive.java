@@ -16,7 +16,7 @@ import org.usfirst.frc.team449.robot.generalInterfaces.shiftable.Shiftable;
 import org.usfirst.frc.team449.robot.oi.unidirectional.OIUnidirectional;
 import org.usfirst.frc.team449.robot.other.Debouncer;
 
-import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * Drive with arcade drive setup, autoshift, and when the driver isn't turning, use a NavX to
@@ -46,6 +46,9 @@ public class UnidirectionalNavXShiftingDefaultDrive<
   /** The gear the subsystem was in the last time execute() ran. */
   private int lastGear;
 
+  /** Shifts the subsystem, made once so autoshifting doesn't allocate a lambda every loop. */
+  @NotNull @Log.Exclude private final Consumer<Integer> shift;
+
   /**
    * Default constructor
    *
@@ -118,6 +121,7 @@ public class UnidirectionalNavXShiftingDefaultDrive<
     this.highGearAngularCoefficient =
         highGearAngularCoefficient != null ? highGearAngularCoefficient : 1;
     this.lastGear = this.subsystem.getGear();
+    this.shift = this.subsystem::setGear;
   }
 
   /** Autoshift and decide whether or not we should be in free drive or straight drive */
@@ -127,9 +131,9 @@ public class UnidirectionalNavXShiftingDefaultDrive<
     if (!this.subsystem.getOverrideAutoshift()) {
       this.autoshiftComponent.autoshift(
           this.oi.getFwdRotOutputCached()[0],
-          Objects.requireNonNullElse(this.subsystem.getLeftVelCached(), 0.0),
-          Objects.requireNonNullElse(this.subsystem.getRightVelCached(), 0.0),
-          this.subsystem::setGear);
+          orZero(this.subsystem.getLeftVelEstimate()),
+          orZero(this.subsystem.getRightVelEstimate()),
+          this.shift);
     }
 
     // Gain schedule the loop if we shifted
@@ -150,6 +154,14 @@ public class UnidirectionalNavXShiftingDefaultDrive<
     super.execute();
   }
 
+  /**
+   * @param velocity A velocity from the drive.
+   * @return The velocity, or 0 if it's NaN because the drive doesn't have encoders.
+   */
+  private static double orZero(final double velocity) {
+    return Double.isNaN(velocity) ? 0 : velocity;
+  }
+
   /** Log when this command ends */
   @Override
   public void end(final boolean interrupted) {
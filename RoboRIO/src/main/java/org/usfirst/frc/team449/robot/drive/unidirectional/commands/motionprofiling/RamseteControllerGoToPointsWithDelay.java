@@ -8,7 +8,9 @@ import edu.wpi.first.wpilibj.geometry.Pose2d;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
+import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.drive.unidirectional.DriveUnidirectionalWithGyro;
+import org.usfirst.frc.team449.robot.drive.unidirectional.FastWheelSpeedController;
 import org.usfirst.frc.team449.robot.jacksonWrappers.MappedPIDController;
 
 import java.util.Collections;
@@ -31,7 +33,9 @@ public class RamseteControllerGoToPointsWithDelay extends SequentialCommandGroup
       @JsonProperty(required = true) MappedPIDController leftPidController,
       @JsonProperty(required = true) MappedPIDController rightPidController,
       @JsonProperty(required = true) List<Pose2d> poses,
-      boolean reversed) {
+      boolean reversed,
+      @Nullable FastWheelSpeedController fastController,
+      @Nullable Boolean asyncGeneration) {
     super(
         intersperseWithWaitCommands(
             drivetrain,
@@ -42,7 +46,9 @@ public class RamseteControllerGoToPointsWithDelay extends SequentialCommandGroup
             leftPidController,
             rightPidController,
             poses,
-            reversed));
+            reversed,
+            fastController,
+            asyncGeneration != null && asyncGeneration));
     addRequirements(drivetrain);
   }
 
@@ -55,7 +61,9 @@ public class RamseteControllerGoToPointsWithDelay extends SequentialCommandGroup
       MappedPIDController leftPidController,
       MappedPIDController rightPidController,
       List<Pose2d> poses,
-      boolean reversed) {
+      boolean reversed,
+      @Nullable FastWheelSpeedController fastController,
+      boolean asyncGeneration) {
     int numPoses = poses.size();
     Command[] res = new Command[poses.size() * 2];
     //    Command waitCommand = new WaitCommand(waitSeconds);
@@ -71,7 +79,14 @@ public class RamseteControllerGoToPointsWithDelay extends SequentialCommandGroup
               rightPidController,
               poses.get(i),
               Collections.emptyList(),
-              reversed);
+              reversed,
+              fastController,
+              asyncGeneration,
+              // Each leg after the first starts where the one before it ended.
+              i > 0 ? poses.get(i - 1) : null,
+              null,
+              null,
+              null);
       res[i * 2 + 1] = new WaitCommand(waitSeconds); // waitCommand;
     }
 
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.*;
 import edu.wpi.first.wpilibj.controller.RamseteController;
 import edu.wpi.first.wpilibj.geometry.Pose2d;
 import edu.wpi.first.wpilibj.geometry.Translation2d;
+import edu.wpi.first.wpilibj.trajectory.Trajectory;
 import edu.wpi.first.wpilibj.trajectory.TrajectoryConfig;
 import edu.wpi.first.wpilibj.trajectory.TrajectoryGenerator;
 import edu.wpi.first.wpilibj.trajectory.constraint.DifferentialDriveVoltageConstraint;
@@ -11,12 +12,37 @@ import edu.wpi.first.wpilibj.trajectory.constraint.TrajectoryConstraint;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 import edu.wpi.first.wpilibj2.command.RamseteCommand;
 import io.github.oblarg.oblog.Loggable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.components.TrajectoryCache;
 import org.usfirst.frc.team449.robot.drive.unidirectional.DriveUnidirectionalWithGyro;
+import org.usfirst.frc.team449.robot.drive.unidirectional.FastWheelSpeedController;
 import org.usfirst.frc.team449.robot.jacksonWrappers.MappedPIDController;
+import org.usfirst.frc.team449.robot.other.LoopProfiler;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * Drives from wherever the robot is to a pose with a Ramsete controller, generating the trajectory
+ * when the command starts.
+ *
+ * <p>Generating a long trajectory takes longer than a loop, so it can be done asynchronously
+ * instead. The trajectory is then generated on a background thread as soon as the command starts,
+ * or as soon as the command is built if the map gives a predicted start pose. Meanwhile the drive
+ * holds its position, driving each side back to where it was when the command started with the
+ * wheel speed loops, so a robot that's still moving stops rather than coasts. Once the trajectory
+ * is ready, it's followed from the start if the robot is within tolerance of its start, with the
+ * controller taking up the difference, or generated again from where the robot is if not.
+ *
+ * <p>Only the trajectory from the predicted start pose goes in the {@link TrajectoryCache}, since
+ * it's the same every time. Trajectories from wherever the robot actually is are never asked for
+ * again, so they're generated without caching.
+ *
+ * <p>The time {@link #initialize()} takes shows up as the "RamseteInit" stage in the {@link
+ * LoopProfiler}, to compare the two modes.
+ */
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 @JsonTypeInfo(
     use = JsonTypeInfo.Id.CLASS,
@@ -24,14 +50,61 @@ import java.util.List;
     property = "@class")
 public class RamseteControllerGoToPosition extends CommandBase implements Loggable {
 
+  /** The profiler stage timing {@link #initialize()}, shared by every instance. */
+  @NotNull
+  private static final LoopProfiler.Stage INIT_STAGE = LoopProfiler.createStage("RamseteInit");
+
   private final DriveUnidirectionalWithGyro drivetrain;
   private final MappedPIDController leftPidController;
   private final MappedPIDController rightPidController;
   private final Pose2d endingPose;
   private final List<Translation2d> translations;
   private final TrajectoryConfig config;
-  private RamseteCommand wrappedCommand;
+  /** Follows wheel speeds on a faster loop than this command runs on, or null to use the PIDs. */
+  @Nullable private final FastWheelSpeedController fastController;
+  /** Whether to generate the trajectory on a background thread while holding still. */
+  private final boolean asyncGeneration;
+  /** Where the robot is expected to be when the command starts, or null if it's not known. */
+  @Nullable private final Pose2d predictedStartPose;
+  /** The cache key of the trajectory from the predicted start pose, or null if there isn't one. */
+  @Nullable private final String predictedKey;
+  /** How far the robot can be from a trajectory's start and still follow it. */
+  private final double startToleranceMeters, startToleranceDegrees;
+  /** The wheel speed to hold position with, in meters/sec per meter off. */
+  private final double holdGain;
+  /** Where each side is held while waiting for a trajectory, or NaN before holding starts. */
+  private double holdLeftPos, holdRightPos;
+  /** The trajectory being generated asynchronously, or null if there isn't one. */
+  @Nullable private CompletableFuture<Trajectory> pendingTrajectory;
+  /** The command following the trajectory, or null while it's still being generated. */
+  @Nullable private RamseteCommand wrappedCommand;
+  /** Whether generation failed, which ends the command. */
+  private boolean failed;
 
+  /**
+   * Default constructor.
+   *
+   * @param drivetrain The drive to move.
+   * @param maxSpeedMeters The maximum speed, in meters per second.
+   * @param maxAccelMeters The maximum acceleration, in meters per second squared.
+   * @param maxCentripetalAcceleration Unused.
+   * @param leftPidController The PID for the left side's wheel speed.
+   * @param rightPidController The PID for the right side's wheel speed.
+   * @param endingPose The pose to drive to.
+   * @param translations The points to drive through on the way, or null for none.
+   * @param reversed Whether to drive backwards.
+   * @param fastController Follows wheel speeds on a faster loop, or null to use the PIDs.
+   * @param asyncGeneration Whether to generate the trajectory on a background thread while holding
+   *     the drive still, rather than in {@link #initialize()}. Defaults to false.
+   * @param predictedStartPose Where the robot is expected to be when the command starts, to start
+   *     generating from as soon as the command is built. Only used when generating asynchronously.
+   * @param startToleranceMeters How far the robot can be from a trajectory's start and still follow
+   *     it. Defaults to 0.15.
+   * @param startToleranceDegrees How far the robot's heading can be from a trajectory's start and
+   *     still follow it. Defaults to 10.
+   * @param holdGain How fast each side drives back to where it was while waiting for a trajectory,
+   *     in meters/sec per meter off. Defaults to 2.
+   */
   @JsonCreator
   public RamseteControllerGoToPosition(
       @JsonProperty(required = true) DriveUnidirectionalWithGyro drivetrain,
@@ -42,8 +115,15 @@ public class RamseteControllerGoToPosition extends CommandBase implements Loggab
       @JsonProperty(required = true) MappedPIDController rightPidController,
       @JsonProperty(required = true) Pose2d endingPose,
       List<Translation2d> translations,
-      boolean reversed) {
+      boolean reversed,
+      @Nullable FastWheelSpeedController fastController,
+      @Nullable Boolean asyncGeneration,
+      @Nullable Pose2d predictedStartPose,
+      @Nullable Double startToleranceMeters,
+      @Nullable Double startToleranceDegrees,
+      @Nullable Double holdGain) {
     this.drivetrain = drivetrain;
+    this.fastController = fastController;
     this.leftPidController = leftPidController;
     this.rightPidController = rightPidController;
     this.endingPose = endingPose;
@@ -60,41 +140,199 @@ public class RamseteControllerGoToPosition extends CommandBase implements Loggab
             .addConstraint(voltageConstraint)
             .setReversed(reversed);
 
+    this.asyncGeneration = asyncGeneration != null && asyncGeneration;
+    this.predictedStartPose = predictedStartPose;
+    this.startToleranceMeters = startToleranceMeters != null ? startToleranceMeters : 0.15;
+    this.startToleranceDegrees = startToleranceDegrees != null ? startToleranceDegrees : 10;
+    this.holdGain = holdGain != null ? holdGain : 2;
+    // Start on the likely trajectory right away, so it's usually ready before the command starts.
+    if (this.asyncGeneration && predictedStartPose != null) {
+      this.predictedKey = cacheKey(predictedStartPose);
+      TrajectoryCache.getAsync(this.predictedKey, () -> generate(predictedStartPose));
+    } else {
+      this.predictedKey = null;
+    }
+
     addRequirements(drivetrain);
   }
 
+  /**
+   * @param start The pose to start from.
+   * @return A newly generated trajectory from the start pose to the ending pose.
+   */
+  @NotNull
+  private Trajectory generate(@NotNull final Pose2d start) {
+    return TrajectoryGenerator.generateTrajectory(
+        start, translations == null ? List.of() : translations, endingPose, config);
+  }
+
+  /**
+   * @param start The pose to start from.
+   * @return The key of the trajectory from the start pose in the {@link TrajectoryCache}.
+   */
+  @NotNull
+  private String cacheKey(@NotNull final Pose2d start) {
+    final var feedforward = drivetrain.getLeftFeedforwardCalculator();
+    final var key =
+        new TrajectoryCache.Key("ramsete")
+            .add(config)
+            .add("kS", feedforward.ks)
+            .add("kV", feedforward.kv)
+            .add("kA", feedforward.ka)
+            .add("trackWidth", drivetrain.getDriveKinematics().trackWidthMeters)
+            .add("maxVoltage", 12)
+            .add(start);
+    if (translations != null) {
+      for (final Translation2d translation : translations) {
+        key.add(translation);
+      }
+    }
+    return key.add(endingPose).build();
+  }
+
+  /**
+   * @param a A pose.
+   * @param b Another pose.
+   * @return Whether the poses are within the start tolerance of each other.
+   */
+  private boolean isNear(@NotNull final Pose2d a, @NotNull final Pose2d b) {
+    return a.getTranslation().getDistance(b.getTranslation()) <= startToleranceMeters
+        && Math.abs(a.getRotation().minus(b.getRotation()).getDegrees()) <= startToleranceDegrees;
+  }
+
   @Override
   public void initialize() {
-    wrappedCommand =
-        new RamseteCommand(
-            TrajectoryGenerator.generateTrajectory(
-                drivetrain.getCurrentPose(),
-                translations == null ? new ArrayList<>() : translations,
-                endingPose,
-                config),
-            drivetrain::getCurrentPose,
-            new RamseteController(),
-            drivetrain.getLeftFeedforwardCalculator(),
-            drivetrain.getDriveKinematics(),
-            drivetrain::getWheelSpeeds,
-            leftPidController,
-            rightPidController,
-            drivetrain::setVoltage);
+    INIT_STAGE.start();
+    wrappedCommand = null;
+    pendingTrajectory = null;
+    failed = false;
+    holdLeftPos = holdRightPos = Double.NaN;
+    final Pose2d start = drivetrain.getCurrentPose();
+    if (!asyncGeneration) {
+      follow(generate(start));
+    } else if (predictedKey != null && isNear(start, predictedStartPose)) {
+      // Usually ready already, since it was started when this command was built.
+      pendingTrajectory =
+          TrajectoryCache.getAsync(predictedKey, () -> generate(predictedStartPose));
+      tryFollowPending();
+    } else {
+      pendingTrajectory = TrajectoryCache.generateAsync(() -> generate(start));
+      tryFollowPending();
+    }
+    INIT_STAGE.end();
+  }
+
+  /**
+   * Starts following the pending trajectory if it's ready and the robot is near its start, or
+   * starts generating a new one if the robot isn't.
+   */
+  private void tryFollowPending() {
+    if (pendingTrajectory == null || !pendingTrajectory.isDone()) return;
+    final Trajectory trajectory;
+    try {
+      trajectory = pendingTrajectory.join();
+    } catch (final CompletionException ex) {
+      System.out.println("Couldn't generate a trajectory to " + endingPose + ": " + ex.getCause());
+      failed = true;
+      return;
+    }
+    final Pose2d current = drivetrain.getCurrentPose();
+    if (isNear(current, trajectory.getInitialPose())) {
+      pendingTrajectory = null;
+      follow(trajectory);
+    } else {
+      // The robot isn't where the trajectory starts, so start over from where it is.
+      pendingTrajectory = TrajectoryCache.generateAsync(() -> generate(current));
+    }
+  }
+
+  /**
+   * Starts following a trajectory.
+   *
+   * @param trajectory The trajectory to follow.
+   */
+  private void follow(@NotNull final Trajectory trajectory) {
+    if (fastController != null) {
+      // The wheel speed loops run on the fast loop, so only hand over the setpoints.
+      wrappedCommand =
+          new RamseteCommand(
+              trajectory,
+              drivetrain::getCurrentPose,
+              new RamseteController(),
+              drivetrain.getDriveKinematics(),
+              fastController::setWheelSpeeds);
+    } else {
+      wrappedCommand =
+          new RamseteCommand(
+              trajectory,
+              drivetrain::getCurrentPose,
+              new RamseteController(),
+              drivetrain.getLeftFeedforwardCalculator(),
+              drivetrain.getDriveKinematics(),
+              drivetrain::getWheelSpeeds,
+              leftPidController,
+              rightPidController,
+              drivetrain::setVoltage);
+    }
     wrappedCommand.initialize();
   }
 
   @Override
   public void execute() {
+    if (wrappedCommand == null) {
+      tryFollowPending();
+      if (wrappedCommand == null) {
+        holdStill();
+        return;
+      }
+    }
     wrappedCommand.execute();
   }
 
+  /**
+   * Holds the drive where it was when this started waiting while the trajectory is generated, by
+   * asking each side's wheel speed loop to drive back to its position.
+   */
+  private void holdStill() {
+    final double leftPos = drivetrain.getLeftPosCached();
+    final double rightPos = drivetrain.getRightPosCached();
+    if (Double.isNaN(holdLeftPos)) {
+      holdLeftPos = leftPos;
+      holdRightPos = rightPos;
+    }
+    final double maxSpeed = config.getMaxVelocity();
+    final double leftSpeed =
+        Math.max(-maxSpeed, Math.min(maxSpeed, holdGain * (holdLeftPos - leftPos)));
+    final double rightSpeed =
+        Math.max(-maxSpeed, Math.min(maxSpeed, holdGain * (holdRightPos - rightPos)));
+    if (fastController != null) {
+      fastController.setWheelSpeeds(leftSpeed, rightSpeed);
+    } else {
+      // The same feedforward and PIDs RamseteCommand uses, which reset them when it starts.
+      final var feedforward = drivetrain.getLeftFeedforwardCalculator();
+      final var speeds = drivetrain.getWheelSpeeds();
+      drivetrain.setVoltage(
+          feedforward.calculate(leftSpeed)
+              + leftPidController.calculate(speeds.leftMetersPerSecond, leftSpeed),
+          feedforward.calculate(rightSpeed)
+              + rightPidController.calculate(speeds.rightMetersPerSecond, rightSpeed));
+    }
+  }
+
   @Override
   public void end(boolean interrupted) {
-    wrappedCommand.end(interrupted);
+    if (wrappedCommand != null) {
+      wrappedCommand.end(interrupted);
+    }
+    if (fastController != null) {
+      // Let go of the drive now, rather than keep holding it while the next command drives it.
+      fastController.stop();
+    }
+    drivetrain.setVoltage(0, 0);
   }
 
   @Override
   public boolean isFinished() {
-    return wrappedCommand.isFinished();
+    return failed || (wrappedCommand != null && wrappedCommand.isFinished());
   }
 }
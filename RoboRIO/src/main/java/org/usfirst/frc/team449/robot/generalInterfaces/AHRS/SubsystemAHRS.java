@@ -27,6 +27,15 @@ public interface SubsystemAHRS {
    */
   double getHeadingCached();
 
+  /**
+   * Get the robot's heading at some time in the recent past.
+   *
+   * @param timeSecs The time, in seconds on the {@link
+   *     org.usfirst.frc.team449.robot.other.Clock}.
+   * @return robot heading at that time, in degrees, on [-180, 180], or NaN if it's too long ago.
+   */
+  double getHeadingAt(double timeSecs);
+
   /**
    * Get the robot's angular velocity.
    *
@@ -6,25 +6,52 @@ import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.DoubleUnaryOperator;
 
-/** A polynomial of a single variable. */
+/**
+ * A polynomial of a single variable.
+ *
+ * <p>The terms are compiled into primitive arrays when the polynomial is created, so evaluating it
+ * doesn't box or allocate. If every power is a small non-negative integer, it's evaluated with
+ * Horner's scheme; otherwise integer and half-integer powers are computed by multiplication
+ * (sharing one square root between all half-integer terms), and only other powers fall back to
+ * {@link Math#pow(double, double)}.
+ */
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 public class Polynomial implements DoubleUnaryOperator {
 
+  /** The highest degree that is still evaluated with Horner's scheme. */
+  private static final int MAX_HORNER_DEGREE = 16;
+
+  /** The kind of a term with an integer power. */
+  private static final byte INTEGER_POWER = 0;
+  /** The kind of a term with a power that is an integer plus one half. */
+  private static final byte HALF_INTEGER_POWER = 1;
+  /** The kind of a term with any other power. */
+  private static final byte OTHER_POWER = 2;
+
   /** A map of the powers and coefficients of each term. */
   @NotNull private final Map<Double, Double> powerToCoefficientMap;
 
-  /** The sign of the most recent input. This is a field to avoid garbage collection. */
-  private double sign;
-
-  /** The absolute value of the most recent input. This is a field to avoid garbage collection. */
-  private double abs;
+  /**
+   * The coefficient of each power from 0 up to the degree, or null if the powers aren't all small
+   * non-negative integers.
+   */
+  @Nullable private double[] hornerCoefficients;
 
-  /** The value to return when get() is called. This is a field to avoid garbage collection. */
-  private double toRet;
+  /** The power of each term, for when Horner's scheme can't be used. */
+  @NotNull private double[] powers = new double[0];
+  /** The coefficient of each term, in the same order as powers. */
+  @NotNull private double[] coefficients = new double[0];
+  /** The integer part of the power of each term, for integer and half-integer powers. */
+  @NotNull private int[] integerPowers = new int[0];
+  /** The kind of the power of each term, one of the *_POWER constants. */
+  @NotNull private byte[] kinds = new byte[0];
+  /** Whether any term has a half-integer power, i.e. whether the square root is needed. */
+  private boolean hasHalfIntegerPowers;
 
   /**
    * Default constructor.
@@ -42,12 +69,74 @@ public class Polynomial implements DoubleUnaryOperator {
       this.powerToCoefficientMap = new HashMap<>(1);
       this.powerToCoefficientMap.put(1., 1.);
     } else {
-      this.powerToCoefficientMap = powerToCoefficientMap;
+      // Copy so scaling works on immutable maps and nobody else can change the terms.
+      this.powerToCoefficientMap = new HashMap<>(powerToCoefficientMap);
     }
 
     // Scale if scaleCoefficientSumTo isn't null.
     if (scaleCoefficientSumTo != null) {
       scaleCoefficientSum(scaleCoefficientSumTo);
+    } else {
+      this.compile();
+    }
+  }
+
+  /**
+   * Raises a number to a non-negative integer power by repeated squaring.
+   *
+   * @param base The number to raise.
+   * @param exponent The power to raise it to. Must not be negative.
+   * @return base^exponent.
+   */
+  private static double integerPow(double base, int exponent) {
+    double result = 1;
+    while (exponent != 0) {
+      if ((exponent & 1) != 0) result *= base;
+      base *= base;
+      exponent >>>= 1;
+    }
+    return result;
+  }
+
+  /** Rebuilds the primitive arrays from the map of terms. Call whenever the terms change. */
+  private void compile() {
+    final int count = this.powerToCoefficientMap.size();
+    this.powers = new double[count];
+    this.coefficients = new double[count];
+    this.integerPowers = new int[count];
+    this.kinds = new byte[count];
+    this.hasHalfIntegerPowers = false;
+
+    boolean canUseHorner = true;
+    int degree = 0;
+    int i = 0;
+    for (final Map.Entry<Double, Double> term : this.powerToCoefficientMap.entrySet()) {
+      final double power = term.getKey();
+      this.powers[i] = power;
+      this.coefficients[i] = term.getValue();
+      if (power >= 0 && power == Math.floor(power) && power <= MAX_HORNER_DEGREE) {
+        this.kinds[i] = INTEGER_POWER;
+        this.integerPowers[i] = (int) power;
+        degree = Math.max(degree, (int) power);
+      } else if (power > 0 && power - 0.5 == Math.floor(power) && power < Integer.MAX_VALUE) {
+        this.kinds[i] = HALF_INTEGER_POWER;
+        this.integerPowers[i] = (int) Math.floor(power);
+        this.hasHalfIntegerPowers = true;
+        canUseHorner = false;
+      } else {
+        this.kinds[i] = OTHER_POWER;
+        canUseHorner = false;
+      }
+      i++;
+    }
+
+    if (canUseHorner) {
+      this.hornerCoefficients = new double[degree + 1];
+      for (int term = 0; term < count; term++) {
+        this.hornerCoefficients[this.integerPowers[term]] += this.coefficients[term];
+      }
+    } else {
+      this.hornerCoefficients = null;
     }
   }
 
@@ -58,14 +147,32 @@ public class Polynomial implements DoubleUnaryOperator {
    * @return The value of the polynomial evaluated at |x|, then changed to the sign of x.
    */
   @Override
-  public double applyAsDouble(double x) {
-    sign = Math.signum(x);
-    abs = Math.abs(x);
-    toRet = 0;
-    for (double power : powerToCoefficientMap.keySet()) {
-      toRet += Math.pow(abs, power) * powerToCoefficientMap.get(power);
+  public double applyAsDouble(final double x) {
+    final double abs = Math.abs(x);
+    double result;
+    final double[] horner = this.hornerCoefficients;
+    if (horner != null) {
+      result = horner[horner.length - 1];
+      for (int i = horner.length - 2; i >= 0; i--) {
+        result = result * abs + horner[i];
+      }
+    } else {
+      final double sqrt = this.hasHalfIntegerPowers ? Math.sqrt(abs) : 0;
+      result = 0;
+      for (int i = 0; i < this.kinds.length; i++) {
+        switch (this.kinds[i]) {
+          case INTEGER_POWER:
+            result += integerPow(abs, this.integerPowers[i]) * this.coefficients[i];
+            break;
+          case HALF_INTEGER_POWER:
+            result += integerPow(abs, this.integerPowers[i]) * sqrt * this.coefficients[i];
+            break;
+          default:
+            result += Math.pow(abs, this.powers[i]) * this.coefficients[i];
+        }
+      }
     }
-    return toRet * sign;
+    return result * Math.signum(x);
   }
 
   /**
@@ -82,11 +189,12 @@ public class Polynomial implements DoubleUnaryOperator {
     for (double power : powerToCoefficientMap.keySet()) {
       powerToCoefficientMap.replace(power, powerToCoefficientMap.get(power) * scaleFactor);
     }
+    this.compile();
   }
 
-  /** @return A map of the powers and coefficients of each term. */
+  /** @return A map of the powers and coefficients of each term. Can't be modified. */
   @NotNull
   public Map<Double, Double> getPowerToCoefficientMap() {
-    return powerToCoefficientMap;
+    return Collections.unmodifiableMap(powerToCoefficientMap);
   }
 }
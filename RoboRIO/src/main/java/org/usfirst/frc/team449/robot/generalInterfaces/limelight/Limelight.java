@@ -4,13 +4,31 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.EntryNotification;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTablesJNI;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
+import org.usfirst.frc.team449.robot.other.Clock;
+import org.usfirst.frc.team449.robot.other.DoubleRingBuffer;
 
+/**
+ * A Limelight camera, read through NetworkTables.
+ *
+ * <p>Rather than polling each entry every loop, which can mix values from different frames, this
+ * listens to tv, tx, ty and tl and copies the whole frame into a double buffer whenever any of them
+ * changes. NetworkTables only sends values that changed, so no one entry is sure to change with
+ * every frame, and the entries of one frame can arrive one at a time. Changes that arrive within
+ * {@link #FRAME_GAP_MICROS} of each other are taken as the same frame, and {@link #periodic()} only
+ * takes a frame once nothing has changed for that long, so everything read from this in a loop
+ * comes from the same, complete frame. The frame count changes with each new frame, so consumers
+ * can skip work when nothing's changed.
+ */
 @JsonTypeInfo(
     use = JsonTypeInfo.Id.CLASS,
     include = JsonTypeInfo.As.WRAPPER_OBJECT,
@@ -18,6 +36,36 @@ import io.github.oblarg.oblog.annotations.Log;
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 public class Limelight extends SubsystemBase implements Loggable {
 
+  /** The time it takes to capture an image, which tl leaves out, in milliseconds. */
+  public static final double IMAGE_CAPTURE_LATENCY_MS = 11;
+  /**
+   * How long the entries of one frame can take to arrive, in microseconds. Well under the 11 ms
+   * between frames at the Limelight's fastest.
+   */
+  private static final long FRAME_GAP_MICROS = 2000;
+
+  // The fields of a frame.
+  private static final int VALID = 0;
+  private static final int X = 1;
+  private static final int Y = 2;
+  private static final int AREA = 3;
+  private static final int SKEW = 4;
+  private static final int LATENCY = 5;
+  private static final int SHORTEST = 6;
+  private static final int LONGEST = 7;
+  private static final int WIDTH = 8;
+  private static final int HEIGHT = 9;
+  private static final int PIPELINE = 10;
+  /** The first of the six camtran values: x, y, z, pitch, yaw and roll. */
+  private static final int CAMTRAN = 11;
+  private static final int RECEIVE_TIME = 17;
+  private static final int CAPTURE_TIME = 18;
+  /** Which frame this is, counting from 1. */
+  private static final int FRAME_NUMBER = 19;
+  /** The newest change to any of {@link #frameEntries}, in NetworkTables microseconds. */
+  private static final int LAST_CHANGE = 20;
+  private static final int FRAME_WIDTH = 21;
+
   /** whether the limelight can see a valid target */
   private final NetworkTableEntry validTargetTable;
   /** x offset. in degrees, of the target from the crosshair */
@@ -45,35 +93,30 @@ public class Limelight extends SubsystemBase implements Loggable {
   /** camtran, for getting 3D pos */
   private final NetworkTableEntry camtran;
 
+  /** The entries that are listened to for new frames. */
+  @NotNull private final NetworkTableEntry[] frameEntries;
+
   /** pipeline for driver camera */
   private final int driverPipeline;
 
-  // Cached values for the most recent state of the limelight while it was on
-  private double validTarget;
-  private double x;
-  private double y;
-  private double area;
-  private double skew;
-  private double latency;
-  private double shortest;
-  private double longest;
-  private double width;
-  private double height;
-  private int pipeIndex;
-
-  // The possible camtran values
-  /** the xPose of the robot in camtran */
-  private double poseX;
-  /** same but for y */
-  private double poseY;
-  /** same but for z */
-  private double poseZ;
-  /** up-down angle of the robot in camtran. Look it up if confused */
-  private double pitch;
-  /** side-to-side angle. Look it up if confused */
-  private double yaw;
-  /** rotation angle. Look it up if confused */
-  private double roll;
+  /** The two most recent frames, written by the NetworkTables listener thread. */
+  @NotNull private final DoubleRingBuffer frames = new DoubleRingBuffer(2, FRAME_WIDTH);
+  /** What camtran reads as before the Limelight publishes it. */
+  @NotNull private final double[] camtranDefault = new double[6];
+  /** The frame read this loop. */
+  @NotNull private final double[] frame = new double[FRAME_WIDTH];
+  /** Where frames are read into, so a torn read doesn't touch {@link #frame}. */
+  @NotNull private final double[] incoming = new double[FRAME_WIDTH];
+  /** The number of frames received as of this loop. */
+  private long frameCount;
+  /** The number of records published as of the last one taken by {@link #periodic()}. */
+  private long recordsRead;
+  /** The newest change copied by the listener, in NetworkTables microseconds, or 0 before any. */
+  private long lastChange;
+  /** The first change of the frame the listener is copying, in NetworkTables microseconds. */
+  private long frameStartChange;
+  /** The number of the frame the listener is copying. */
+  private long frameNumber;
 
   /**
    * Default constructor
@@ -97,87 +140,154 @@ public class Limelight extends SubsystemBase implements Loggable {
     pipeTable = table.getEntry("getpipe");
     pipelineSet = table.getEntry("pipeline");
     camtran = table.getEntry("camtran");
+    frame[PIPELINE] = driverPipeline;
+    frame[RECEIVE_TIME] = Double.NaN;
+    frame[CAPTURE_TIME] = Double.NaN;
     setPipeline(driverPipeline);
+    frameEntries = new NetworkTableEntry[] {validTargetTable, xTable, yTable, latencyTable};
+    for (final NetworkTableEntry entry : frameEntries) {
+      entry.addListener(
+          this::captureFrame,
+          EntryListenerFlags.kImmediate | EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+    }
+  }
+
+  /**
+   * Copies a whole frame into the double buffer. Called on the NetworkTables listener thread
+   * whenever any of {@link #frameEntries} changes, so a frame whose entries arrive one at a time is
+   * copied again as each one does.
+   *
+   * @param notification The change to the entry.
+   */
+  private void captureFrame(@NotNull final EntryNotification notification) {
+    long change = 0;
+    for (final NetworkTableEntry entry : frameEntries) {
+      change = Math.max(change, entry.getLastChange());
+    }
+    // Already copied, e.g. a notification for a change the last copy picked up.
+    if (change == lastChange) return;
+    if (frameNumber == 0 || change - frameStartChange > FRAME_GAP_MICROS) {
+      frameStartChange = change;
+      frameNumber++;
+    }
+    lastChange = change;
+
+    final double receiveTime =
+        Clock.nowNanos() * 1e-9 - (NetworkTablesJNI.now() - frameStartChange) * 1e-6;
+    final double latency = latencyTable.getDouble(0);
+    frames.set(VALID, validTargetTable.getDouble(0));
+    frames.set(X, xTable.getDouble(0));
+    frames.set(Y, yTable.getDouble(0));
+    frames.set(AREA, areaTable.getDouble(0));
+    frames.set(SKEW, skewTable.getDouble(0));
+    frames.set(LATENCY, latency);
+    frames.set(SHORTEST, shortTable.getDouble(0));
+    frames.set(LONGEST, longTable.getDouble(0));
+    frames.set(WIDTH, widthTable.getDouble(0));
+    frames.set(HEIGHT, heightTable.getDouble(0));
+    frames.set(PIPELINE, pipeTable.getDouble(driverPipeline));
+    final double[] camtranVals = camtran.getDoubleArray(camtranDefault);
+    for (int i = 0; i < 6; i++) {
+      frames.set(CAMTRAN + i, i < camtranVals.length ? camtranVals[i] : 0);
+    }
+    frames.set(RECEIVE_TIME, receiveTime);
+    frames.set(CAPTURE_TIME, receiveTime - (latency + IMAGE_CAPTURE_LATENCY_MS) / 1000);
+    frames.set(FRAME_NUMBER, frameNumber);
+    frames.set(LAST_CHANGE, change);
+    frames.publish();
   }
 
+  /**
+   * Takes the newest frame once all of it has arrived, so everything read from this until the next
+   * loop is consistent.
+   */
   @Override
   public void periodic() {
-    pipeIndex = (int) pipeTable.getDouble(driverPipeline);
-    validTarget = validTargetTable.getDouble(-1);
-    if (true /*pipeIndex != driverPipeline*/) {
-      x = xTable.getDouble(0);
-      y = yTable.getDouble(0);
-      // System.out.println("X = " + x + ", y = " + y);
-      //            area = areaTable.getDouble(0);
-      //            skew = skewTable.getDouble(0);
-      //            latency = latencyTable.getDouble(0);
-      //            shortest = shortTable.getDouble(0);
-      //            longest = longTable.getDouble(0);
-      //            width = widthTable.getDouble(0);
-      //            height = heightTable.getDouble(0);
-      //            double[] camtranVals = camtran.getDoubleArray(new double[6]);
-      //            poseX = camtranVals[0];
-      //            poseY = camtranVals[1];
-      //            poseZ = camtranVals[2];
-      //            pitch = camtranVals[3];
-      //            yaw = camtranVals[4];
-      //            roll = camtranVals[5];
-    }
+    final long count = frames.getPublishedCount();
+    if (count == recordsRead || !frames.read(count - 1, incoming)) return;
+    // More of this frame may be on its way, so try again next loop.
+    if (NetworkTablesJNI.now() - (long) incoming[LAST_CHANGE] < FRAME_GAP_MICROS) return;
+    System.arraycopy(incoming, 0, frame, 0, FRAME_WIDTH);
+    frameCount = (long) incoming[FRAME_NUMBER];
+    recordsRead = count;
+  }
+
+  /** @return The number of frames received as of this loop. Changes whenever there's a new one. */
+  public long getFrameCount() {
+    return frameCount;
   }
 
   @Log
   public boolean hasTarget() {
-    return validTarget == 1;
+    return frame[VALID] == 1;
   }
 
   @Log
   public double getX() {
-    return x;
+    return frame[X];
   }
 
   @Log
   public double getY() {
-    return y;
+    return frame[Y];
   }
 
   @Log
   public double getArea() {
-    return area;
+    return frame[AREA];
   }
 
   @Log
   public double getSkew() {
-    return skew;
+    return frame[SKEW];
   }
 
   @Log
   public double getLatency() {
-    return latency;
+    return frame[LATENCY];
+  }
+
+  /**
+   * @return When this frame was received, in seconds on the {@link Clock}, or NaN if there hasn't
+   *     been one.
+   */
+  @Log
+  public double getReceiveTime() {
+    return frame[RECEIVE_TIME];
+  }
+
+  /**
+   * @return When this frame was captured, in seconds on the {@link Clock}, or NaN if there hasn't
+   *     been one.
+   */
+  @Log
+  public double getCaptureTime() {
+    return frame[CAPTURE_TIME];
   }
 
   @Log
   public double getShortest() {
-    return shortest;
+    return frame[SHORTEST];
   }
 
   @Log
   public double getLongest() {
-    return longest;
+    return frame[LONGEST];
   }
 
   @Log
   public double getWidth() {
-    return width;
+    return frame[WIDTH];
   }
 
   @Log
   public double getHeight() {
-    return height;
+    return frame[HEIGHT];
   }
 
   @Log
   public double getPipeline() {
-    return pipeIndex;
+    return frame[PIPELINE];
   }
 
   @Log
@@ -187,31 +297,31 @@ public class Limelight extends SubsystemBase implements Loggable {
 
   @Log
   public double getPoseX() {
-    return poseX;
+    return frame[CAMTRAN];
   }
 
   @Log
   public double getPoseY() {
-    return poseY;
+    return frame[CAMTRAN + 1];
   }
 
   @Log
   public double getPoseZ() {
-    return poseZ;
+    return frame[CAMTRAN + 2];
   }
 
   @Log
   public double getPitch() {
-    return pitch;
+    return frame[CAMTRAN + 3];
   }
 
   @Log
   public double getYaw() {
-    return yaw;
+    return frame[CAMTRAN + 4];
   }
 
   @Log
   public double getRoll() {
-    return roll;
+    return frame[CAMTRAN + 5];
   }
 }
@@ -0,0 +1,98 @@
+package org.usfirst.frc.team449.robot.generalInterfaces.limelight.commands;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.components.limelight.LimelightDistanceComponent;
+import org.usfirst.frc.team449.robot.drive.unidirectional.DriveUnidirectionalWithGyro;
+import org.usfirst.frc.team449.robot.generalInterfaces.limelight.Limelight;
+
+/**
+ * Corrects the drive's odometry with the position of a vision target of known location. Each new
+ * frame is placed at the time it was captured, using the heading the robot had then, so the
+ * Limelight's latency doesn't skew the correction. Doesn't require any subsystems and never
+ * finishes, so it can run in the background.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class CorrectPoseWithLimelight extends CommandBase {
+
+  @NotNull private final DriveUnidirectionalWithGyro drive;
+  @NotNull private final Limelight limelight;
+  /** The distance from the Limelight to the target, in meters. */
+  @NotNull private final LimelightDistanceComponent distanceComponent;
+  /** The position of the target on the field, in meters. */
+  private final double targetX, targetY;
+  /** How far forwards of the center of the robot the Limelight is, in meters. */
+  private final double cameraOffset;
+  /** How far to move the position towards each measurement, from 0 to 1. */
+  private final double gain;
+  /** The number of the last frame used. */
+  private long lastFrame;
+
+  /**
+   * Default constructor
+   *
+   * @param drive The drive whose odometry to correct.
+   * @param limelight The Limelight looking at the target.
+   * @param distanceComponent The distance from the Limelight to the target. Must be configured in
+   *     meters.
+   * @param targetX The x position of the target on the field, in meters.
+   * @param targetY The y position of the target on the field, in meters.
+   * @param cameraOffset How far forwards of the center of the robot the Limelight is, in meters.
+   *     Defaults to 0.
+   * @param gain How far to move the position towards each measurement, from 0 to 1. Lower trusts
+   *     the odometry more. Defaults to 0.2.
+   */
+  @JsonCreator
+  public CorrectPoseWithLimelight(
+      @NotNull @JsonProperty(required = true) final DriveUnidirectionalWithGyro drive,
+      @NotNull @JsonProperty(required = true) final Limelight limelight,
+      @NotNull @JsonProperty(required = true) final LimelightDistanceComponent distanceComponent,
+      @JsonProperty(required = true) final double targetX,
+      @JsonProperty(required = true) final double targetY,
+      @Nullable final Double cameraOffset,
+      @Nullable final Double gain) {
+    this.drive = drive;
+    this.limelight = limelight;
+    this.distanceComponent = distanceComponent;
+    this.targetX = targetX;
+    this.targetY = targetY;
+    this.cameraOffset = cameraOffset != null ? cameraOffset : 0;
+    this.gain = gain != null ? gain : 0.2;
+  }
+
+  @Override
+  public void initialize() {
+    this.lastFrame = this.limelight.getFrameCount();
+  }
+
+  @Override
+  public void execute() {
+    final long frame = this.limelight.getFrameCount();
+    if (frame == this.lastFrame) return;
+    this.lastFrame = frame;
+    if (!this.limelight.hasTarget()) return;
+
+    final double captureTime = this.limelight.getCaptureTime();
+    final double heading = this.drive.getHeadingRadiansAt(captureTime);
+    // Too old to place, which only happens if the loop stalled.
+    if (Double.isNaN(heading)) return;
+    // tx is positive to the right, and headings are counterclockwise.
+    final double bearing = heading - Math.toRadians(this.limelight.getX());
+    final double distance = this.distanceComponent.getAsDouble();
+    final double x =
+        this.targetX - distance * Math.cos(bearing) - this.cameraOffset * Math.cos(heading);
+    final double y =
+        this.targetY - distance * Math.sin(bearing) - this.cameraOffset * Math.sin(heading);
+    this.drive.addVisionMeasurement(captureTime, x, y, heading, this.gain, 0);
+  }
+
+  @Override
+  public boolean isFinished() {
+    return false;
+  }
+}
@@ -4,15 +4,40 @@ import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.Logger;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.NotNull;
+import org.usfirst.frc.team449.robot.generalInterfaces.updatable.Updatable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-public class MotorContainer implements Loggable {
+/**
+ * Holds every {@link SmartMotor} and, once per loop, reads the status of all of them into primitive
+ * arrays. The {@code *Cached} getters on {@link SmartMotor} are served from these arrays so that
+ * each value crosses JNI and the CAN bus at most once per loop and every consumer sees the same
+ * view of the loop.
+ */
+public class MotorContainer implements Loggable, Updatable {
   @NotNull @Log.Exclude private static final MotorContainer instance = new MotorContainer();
 
+  /** Whether the snapshot is being taken right now, so reads shouldn't count as uses. */
+  private static boolean snapshotting;
+
   @NotNull private final List<SmartMotor> motors = new ArrayList<>();
 
+  /** The registered motors, as an array for iterating without an iterator. */
+  @NotNull @Log.Exclude private SmartMotor[] motorArray = new SmartMotor[0];
+
+  /**
+   * The status of each motor as of the last snapshot, indexed the same as {@link
+   * MotorContainer#motorArray}.
+   */
+  @NotNull @Log.Exclude
+  private double[] velocities = new double[0],
+      positions = new double[0],
+      outputCurrents = new double[0],
+      outputVoltages = new double[0];
+
   private MotorContainer() {
     Logger.setCycleWarningsEnabled(false);
   }
@@ -24,6 +49,18 @@ public class MotorContainer implements Loggable {
    */
   public static void register(@NotNull final SmartMotor motor) {
     instance.motors.add(motor);
+    instance.motorArray = instance.motors.toArray(new SmartMotor[0]);
+    final int count = instance.motorArray.length;
+    instance.velocities = Arrays.copyOf(instance.velocities, count);
+    instance.positions = Arrays.copyOf(instance.positions, count);
+    instance.outputCurrents = Arrays.copyOf(instance.outputCurrents, count);
+    instance.outputVoltages = Arrays.copyOf(instance.outputVoltages, count);
+    snapshotting = true;
+    try {
+      instance.readStatus(count - 1);
+    } finally {
+      snapshotting = false;
+    }
   }
 
   /**
@@ -36,6 +73,125 @@ public class MotorContainer implements Loggable {
     return instance;
   }
 
+  /**
+   * Whether status is currently being read for the snapshot. {@link StatusFrameUsage} uses this to
+   * tell reads that are actually needed apart from ones that only fill the snapshot.
+   *
+   * @return true if {@link MotorContainer#update()} is running, false otherwise
+   */
+  static boolean isSnapshotting() {
+    return snapshotting;
+  }
+
+  /** @return all registered motors, in registration order */
+  @NotNull
+  public List<SmartMotor> getMotors() {
+    return Collections.unmodifiableList(this.motors);
+  }
+
+  /**
+   * Reads the status of a single motor into the snapshot.
+   *
+   * @param index The index of the motor in {@link MotorContainer#motorArray}.
+   */
+  private void readStatus(final int index) {
+    final SmartMotor motor = this.motorArray[index];
+    this.velocities[index] = motor.getVelocity();
+    this.positions[index] = motor.getPositionUnits();
+    this.outputCurrents[index] = motor.getOutputCurrent();
+    this.outputVoltages[index] = motor.getOutputVoltage();
+  }
+
+  /** Reads the status of every registered motor. Should be run once per loop, before the rest. */
+  @Override
+  public void update() {
+    snapshotting = true;
+    try {
+      for (int i = 0; i < this.motorArray.length; i++) {
+        this.readStatus(i);
+      }
+    } finally {
+      snapshotting = false;
+    }
+    for (final SmartMotor motor : this.motorArray) {
+      motor.updateHealthModel();
+    }
+  }
+
+  /**
+   * Finds where a motor's status is stored. Linear because there are only ever a handful of motors,
+   * and this way nothing is boxed or hashed.
+   *
+   * @param motor The motor to look for.
+   * @return The index of the motor, or -1 if it isn't registered.
+   */
+  private int indexOf(@NotNull final SmartMotor motor) {
+    for (int i = 0; i < this.motorArray.length; i++) {
+      if (this.motorArray[i] == motor) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * Records that a snapshotted signal of a motor was read.
+   *
+   * @param motor The motor that was read.
+   * @param signal The signal that was read.
+   */
+  private static void markUsed(
+      @NotNull final SmartMotor motor, @NotNull final StatusFrameUsage.Signal signal) {
+    final StatusFrameUsage usage = motor.getStatusFrameUsage();
+    if (usage != null) usage.markUsedByCache(signal);
+  }
+
+  /**
+   * @param motor A registered motor.
+   * @return The velocity of the motor as of the last snapshot, or its current velocity if it isn't
+   *     registered.
+   */
+  public double getCachedVelocity(@NotNull final SmartMotor motor) {
+    final int index = this.indexOf(motor);
+    if (index < 0) return motor.getVelocity();
+    markUsed(motor, StatusFrameUsage.Signal.VELOCITY);
+    return this.velocities[index];
+  }
+
+  /**
+   * @param motor A registered motor.
+   * @return The position of the motor as of the last snapshot, or its current position if it isn't
+   *     registered.
+   */
+  public double getCachedPosition(@NotNull final SmartMotor motor) {
+    final int index = this.indexOf(motor);
+    if (index < 0) return motor.getPositionUnits();
+    markUsed(motor, StatusFrameUsage.Signal.POSITION);
+    return this.positions[index];
+  }
+
+  /**
+   * @param motor A registered motor.
+   * @return The output current of the motor as of the last snapshot, or its current output current
+   *     if it isn't registered.
+   */
+  public double getCachedOutputCurrent(@NotNull final SmartMotor motor) {
+    final int index = this.indexOf(motor);
+    if (index < 0) return motor.getOutputCurrent();
+    markUsed(motor, StatusFrameUsage.Signal.OUTPUT_CURRENT);
+    return this.outputCurrents[index];
+  }
+
+  /**
+   * @param motor A registered motor.
+   * @return The output voltage of the motor as of the last snapshot, or its current output voltage
+   *     if it isn't registered.
+   */
+  public double getCachedOutputVoltage(@NotNull final SmartMotor motor) {
+    final int index = this.indexOf(motor);
+    if (index < 0) return motor.getOutputVoltage();
+    markUsed(motor, StatusFrameUsage.Signal.OUTPUT_VOLTAGE);
+    return this.outputVoltages[index];
+  }
+
   @Override
   public String configureLogName() {
     return "Motors";
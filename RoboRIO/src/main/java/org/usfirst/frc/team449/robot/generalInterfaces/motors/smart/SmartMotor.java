@@ -20,7 +20,8 @@ import edu.wpi.first.wpilibj.shuffleboard.LayoutType;
 import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.Nullable;
-import org.usfirst.frc.team449.robot.components.RunningLinRegComponent;
+import org.usfirst.frc.team449.robot.components.LinRegComponent;
+import org.usfirst.frc.team449.robot.components.MultiLinRegComponent;
 import org.usfirst.frc.team449.robot.generalInterfaces.motors.simple.SimpleMotor;
 import org.usfirst.frc.team449.robot.generalInterfaces.shiftable.Shiftable;
 import org.usfirst.frc.team449.robot.jacksonWrappers.*;
@@ -60,6 +61,9 @@ public interface SmartMotor extends SimpleMotor, Shiftable, Loggable {
    * @param enableBrakeMode Whether to brake or coast when stopped.
    * @param voltagePerCurrentLinReg TALON-SPECIFIC. The component for doing linear regression to
    *     find the resistance.
+   * @param healthModel TALON-SPECIFIC. A model of output voltage from stator current and velocity
+   *     with two inputs, fit live to track the motor's winding resistance and back-EMF constant.
+   *     Can be null to not model them.
    * @param PDP The PDP this controller is connected to.
    * @param fwdLimitSwitchNormallyOpen Whether the forward limit switch is normally open or closed.
    *     If this is null, the forward limit switch is disabled.
@@ -131,7 +135,8 @@ public interface SmartMotor extends SimpleMotor, Shiftable, Loggable {
       @Nullable final Integer controlFrameRateMillis,
       // Talon-specific
       @Nullable final Map<ControlFrame, Integer> controlFrameRatesMillis,
-      @Nullable final RunningLinRegComponent voltagePerCurrentLinReg,
+      @Nullable final LinRegComponent voltagePerCurrentLinReg,
+      @Nullable final MultiLinRegComponent healthModel,
       @Nullable final Integer voltageCompSamples,
       @Nullable final FeedbackDevice feedbackDevice,
       @Nullable final Integer encoderCPR,
@@ -291,6 +296,7 @@ public interface SmartMotor extends SimpleMotor, Shiftable, Loggable {
                 reverseOutput,
                 enableBrakeMode,
                 voltagePerCurrentLinReg,
+                healthModel,
                 PDP,
                 fwdLimitSwitchNormallyOpen,
                 revLimitSwitchNormallyOpen,
@@ -415,9 +421,9 @@ public interface SmartMotor extends SimpleMotor, Shiftable, Loggable {
    * for post-encoder gearing.
    *
    * @param nat A velocity in native units.
-   * @return That velocity in RPS, or null if no encoder CPR was given.
+   * @return That velocity in RPS, or NaN if no encoder CPR was given.
    */
-  Double nativeToRPS(double nat);
+  double nativeToRPS(double nat);
 
   /**
    * Convert from output RPS to the native velocity. Note this DOES NOT account for post-encoder
@@ -533,6 +539,58 @@ public interface SmartMotor extends SimpleMotor, Shiftable, Loggable {
   /** Resets the position of the Talon to 0. */
   void resetPosition();
 
+  /**
+   * Gets which status frames of this controller are read at runtime.
+   *
+   * @return the usage tracker of this controller, or null if its frame periods can't be tuned
+   */
+  @Nullable
+  default StatusFrameUsage getStatusFrameUsage() {
+    return null;
+  }
+
+  /**
+   * Get the velocity of the controller in FPS as of the last {@link MotorContainer} snapshot.
+   *
+   * @return The controller's velocity in FPS.
+   */
+  default double getVelocityCached() {
+    return MotorContainer.getInstance().getCachedVelocity(this);
+  }
+
+  /**
+   * Get the position of the controller as of the last {@link MotorContainer} snapshot.
+   *
+   * @return The position in feet.
+   */
+  default double getPositionUnitsCached() {
+    return MotorContainer.getInstance().getCachedPosition(this);
+  }
+
+  /**
+   * Get the current the controller was drawing as of the last {@link MotorContainer} snapshot.
+   *
+   * @return Current in amps.
+   */
+  default double getOutputCurrentCached() {
+    return MotorContainer.getInstance().getCachedOutputCurrent(this);
+  }
+
+  /**
+   * Get the output voltage of the controller as of the last {@link MotorContainer} snapshot.
+   *
+   * @return Voltage in volts.
+   */
+  default double getOutputVoltageCached() {
+    return MotorContainer.getInstance().getCachedOutputVoltage(this);
+  }
+
+  /**
+   * Feeds models of the motor's health with the status just read. Called by {@link
+   * MotorContainer} once per loop, right after this motor is snapshotted.
+   */
+  default void updateHealthModel() {}
+
   /**
    * Get the status of the forwards limit switch.
    *
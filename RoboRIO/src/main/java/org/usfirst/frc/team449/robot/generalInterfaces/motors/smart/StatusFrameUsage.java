@@ -0,0 +1,226 @@
+package org.usfirst.frc.team449.robot.generalInterfaces.motors.smart;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps track of which status frames of a motor controller are actually read at runtime, so that
+ * {@link org.usfirst.frc.team449.robot.components.CANBudgetComponent} can slow down the ones nobody
+ * uses and fit the rest into the CAN bus.
+ *
+ * <p>Controllers call {@link StatusFrameUsage#markUsed(Signal)} from their getters. Reads done by
+ * the {@link MotorContainer} snapshot don't count, since the snapshot reads everything; reads of
+ * the snapshot through the {@code *Cached} getters count instead. Reads for telemetry, which polls
+ * every getter whether anything else needs it or not, are wrapped in {@link
+ * StatusFrameUsage#beginUntracked()} and {@link StatusFrameUsage#endUntracked()} so they don't
+ * count either.
+ */
+public class StatusFrameUsage {
+
+  /** The number of untracked sections open right now. Only touched from the main loop. */
+  private static int untrackedDepth;
+  /** The number of times any frame of any controller has been read for the first time. */
+  private static final AtomicInteger firstUses = new AtomicInteger();
+
+  /** The frames of the controller. */
+  @NotNull private final Frame[] frames;
+  /** For each signal, a bitmask of the frames that carry it. */
+  @NotNull private final int[] signalFrames = new int[Signal.values().length];
+  /**
+   * A bitmask of the frames that have been read from. Volatile since the fast control loops read
+   * from their own thread.
+   */
+  private volatile int usedFrames;
+  /** A bitmask of the frames whose period was set explicitly in the map and must not change. */
+  private int pinnedFrames;
+
+  /**
+   * Default constructor.
+   *
+   * @param frames The status frames of the controller. At most 32.
+   */
+  public StatusFrameUsage(@NotNull final Frame... frames) {
+    if (frames.length > Integer.SIZE) throw new IllegalArgumentException("Too many frames.");
+    this.frames = frames;
+  }
+
+  /**
+   * Declares which frame a signal is sent in.
+   *
+   * @param signal The signal.
+   * @param frame The index of the frame it is sent in.
+   * @return this object, for chaining.
+   */
+  @NotNull
+  public StatusFrameUsage carries(@NotNull final Signal signal, final int frame) {
+    this.signalFrames[signal.ordinal()] |= 1 << frame;
+    return this;
+  }
+
+  /**
+   * Starts a section, like a telemetry update, whose reads don't count as uses. Must be matched by
+   * {@link StatusFrameUsage#endUntracked()}.
+   */
+  public static void beginUntracked() {
+    untrackedDepth++;
+  }
+
+  /** Ends a section started by {@link StatusFrameUsage#beginUntracked()}. */
+  public static void endUntracked() {
+    untrackedDepth--;
+  }
+
+  /**
+   * Records that a signal was read.
+   *
+   * @param signal The signal that was read.
+   */
+  public void markUsed(@NotNull final Signal signal) {
+    if (!MotorContainer.isSnapshotting()) {
+      this.markUsedByCache(signal);
+    }
+  }
+
+  /**
+   * Records that a signal was read, even if the read is part of a snapshot, unless it's in an
+   * untracked section.
+   *
+   * @param signal The signal that was read.
+   */
+  void markUsedByCache(@NotNull final Signal signal) {
+    if (untrackedDepth > 0) return;
+    final int frames = this.signalFrames[signal.ordinal()];
+    if ((this.usedFrames & frames) == frames) return;
+    this.usedFrames |= frames;
+    firstUses.incrementAndGet();
+  }
+
+  /**
+   * @return The number of times any frame has been read for the first time, which changes whenever
+   *     a frame that was unused becomes used.
+   */
+  public static int getFirstUses() {
+    return firstUses.get();
+  }
+
+  /**
+   * Marks a frame as having a period that was set on purpose, so it's left alone.
+   *
+   * @param frame The index of the frame.
+   */
+  public void pin(final int frame) {
+    this.pinnedFrames |= 1 << frame;
+  }
+
+  /** @return The number of status frames of the controller. */
+  public int getFrameCount() {
+    return this.frames.length;
+  }
+
+  /**
+   * @param frame The index of a frame.
+   * @return The frame at the given index.
+   */
+  @NotNull
+  public Frame getFrame(final int frame) {
+    return this.frames[frame];
+  }
+
+  /**
+   * @param frame The index of a frame.
+   * @return Whether any signal in the frame has been read.
+   */
+  public boolean isUsed(final int frame) {
+    return (this.usedFrames & (1 << frame)) != 0;
+  }
+
+  /**
+   * @param frame The index of a frame.
+   * @return Whether the period of the frame was set on purpose and must not change.
+   */
+  public boolean isPinned(final int frame) {
+    return (this.pinnedFrames & (1 << frame)) != 0;
+  }
+
+  /** Values that controllers send back in status frames. */
+  public enum Signal {
+    VELOCITY,
+    POSITION,
+    OUTPUT_CURRENT,
+    OUTPUT_VOLTAGE,
+    BUS_VOLTAGE,
+    FAULTS,
+    CLOSED_LOOP_ERROR
+  }
+
+  /** A single periodic status frame of a controller. */
+  public static class Frame {
+    /** The name of the frame, for logging. */
+    @NotNull private final String name;
+    /** The period the frame should be sent at when it is used, in milliseconds. */
+    private final int usedPeriodMillis;
+    /** The period to send the frame at when it isn't used, and the longest it will be slowed to. */
+    private final int idlePeriodMillis;
+    /** The period the frame is currently sent at, in milliseconds. */
+    private int periodMillis;
+    /** Sets the period of the frame on the controller. */
+    @NotNull private final IntConsumer periodSetter;
+
+    /**
+     * Default constructor.
+     *
+     * @param name The name of the frame, for logging.
+     * @param usedPeriodMillis The period the frame should be sent at when it is used, in
+     *     milliseconds.
+     * @param idlePeriodMillis The period to send the frame at when it isn't used, in milliseconds.
+     *     Also the longest period a used frame will be slowed down to.
+     * @param currentPeriodMillis The period the frame is currently sent at, in milliseconds.
+     * @param periodSetter Sets the period of the frame on the controller, in milliseconds.
+     */
+    public Frame(
+        @NotNull final String name,
+        final int usedPeriodMillis,
+        final int idlePeriodMillis,
+        final int currentPeriodMillis,
+        @NotNull final IntConsumer periodSetter) {
+      this.name = name;
+      this.usedPeriodMillis = usedPeriodMillis;
+      this.idlePeriodMillis = idlePeriodMillis;
+      this.periodMillis = currentPeriodMillis;
+      this.periodSetter = periodSetter;
+    }
+
+    /** @return The name of the frame, for logging. */
+    @NotNull
+    public String getName() {
+      return this.name;
+    }
+
+    /** @return The period the frame should be sent at when it is used, in milliseconds. */
+    public int getUsedPeriodMillis() {
+      return this.usedPeriodMillis;
+    }
+
+    /** @return The period to send the frame at when it isn't used, in milliseconds. */
+    public int getIdlePeriodMillis() {
+      return this.idlePeriodMillis;
+    }
+
+    /** @return The period the frame is currently sent at, in milliseconds. */
+    public int getPeriodMillis() {
+      return this.periodMillis;
+    }
+
+    /**
+     * Changes how often the controller sends the frame.
+     *
+     * @param periodMillis The new period, in milliseconds.
+     */
+    public void setPeriodMillis(final int periodMillis) {
+      this.periodMillis = periodMillis;
+      this.periodSetter.accept(periodMillis);
+    }
+  }
+}
@@ -5,25 +5,74 @@ import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import com.kauailabs.navx.frc.AHRS;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.SPI;
 import edu.wpi.first.wpilibj.SerialPort;
 import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.generalInterfaces.updatable.Updatable;
+import org.usfirst.frc.team449.robot.other.Clock;
+import org.usfirst.frc.team449.robot.other.DoubleRingBuffer;
+import org.usfirst.frc.team449.robot.other.HeadingHistory;
 
 import static com.kauailabs.navx.frc.AHRS.SerialDataType.kProcessedData;
 
-/** A Jackson-compatible, invertible wrapper for the NavX. */
+/**
+ * A Jackson-compatible, invertible wrapper for the NavX.
+ *
+ * <p>Every update the NavX sends, which it's asked to do 200 times a second over SPI and 100 over
+ * serial, is recorded on the NavX's thread as a timestamped sample in a ring, so {@link #update()}
+ * can cache the newest complete sample without any calls into the NavX, and the recent samples stay
+ * available for integrating.
+ */
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 public class MappedAHRS implements Updatable, Loggable {
 
+  // The fields of a sample.
+  /** When the sample was received, in seconds on the {@link Clock}. */
+  public static final int SAMPLE_TIME = 0;
+  /** When the NavX took the sample, in milliseconds on its own clock. */
+  public static final int SAMPLE_SENSOR_TIME = 1;
+  /** The heading, in degrees from [-180, 180]. */
+  public static final int SAMPLE_HEADING = 2;
+  /** The angular displacement, in degrees. */
+  public static final int SAMPLE_ANGULAR_DISPLACEMENT = 3;
+  /** The angular yaw velocity, in degrees/sec. */
+  public static final int SAMPLE_ANGULAR_VEL = 4;
+  /** The linear X and Y acceleration relative to the field, in feet/(sec^2). */
+  public static final int SAMPLE_X_ACCEL = 5, SAMPLE_Y_ACCEL = 6;
+  /** The pitch, in degrees from [-180, 180]. */
+  public static final int SAMPLE_PITCH = 7;
+  /** The number of fields in a sample. */
+  public static final int SAMPLE_WIDTH = 8;
+
+  /** The update rate asked of the NavX over SPI, in Hz. 200 is the most it supports. */
+  private static final int SPI_UPDATE_RATE_HZ = 200;
+  /** The update rate asked of the NavX over serial, in Hz, which has less bandwidth. */
+  private static final int SERIAL_UPDATE_RATE_HZ = 100;
+
   /** The AHRS this class is a wrapper on. */
   protected final AHRS ahrs;
 
   /** A multiplier for the yaw angle. -1 to invert, 1 to not. */
   protected final int invertYaw;
 
+  /** The headings of the last second or so, recorded as fast as the NavX updates. */
+  @NotNull private final HeadingHistory headingHistory = new HeadingHistory(256);
+  /** The recent samples, written only by the NavX's thread. */
+  @NotNull private final DoubleRingBuffer samples = new DoubleRingBuffer(256, SAMPLE_WIDTH);
+  /** The newest sample, as of the last {@link #update()}. */
+  @NotNull private final double[] latestSample = new double[SAMPLE_WIDTH];
+  /**
+   * Records samples at the NavX's update rate if it can't call back with them, or null if it can
+   * or this is a simulation.
+   */
+  @Nullable private final Notifier sampleRecorder;
+
   /** The 9-axis heading value to return. Field to avoid garbage collection. */
   private double toRet;
 
@@ -34,6 +83,15 @@ public class MappedAHRS implements Updatable, Loggable {
       cachedXAccel,
       cachedYAccel,
       cachedPitch;
+  /** When the cached values were measured, in seconds on the {@link Clock}. */
+  private double cachedTime;
+
+  /** Whether the heading comes from {@link #setSimulatedState(double, double)}. */
+  private boolean simulated;
+  /** The simulated angle and angular velocity, in degrees and degrees/sec counterclockwise. */
+  private double simulatedAngle, simulatedRate;
+  /** What's added to the simulated angle so that {@link #setHeading(double)} works. */
+  private double simulatedOffset;
 
   /**
    * Default constructor.
@@ -46,9 +104,10 @@ public class MappedAHRS implements Updatable, Loggable {
   public MappedAHRS(
       @JsonProperty(required = true) final SerialPort.Port port, final Boolean invertYaw) {
     if (port.equals(SerialPort.Port.kMXP)) {
-      this.ahrs = new AHRS(SPI.Port.kMXP);
+      // Without a rate, the NavX only updates at its default rate, well below what it can do.
+      this.ahrs = new AHRS(SPI.Port.kMXP, (byte) SPI_UPDATE_RATE_HZ);
     } else {
-      this.ahrs = new AHRS(port, kProcessedData, (byte) 100);
+      this.ahrs = new AHRS(port, kProcessedData, (byte) SERIAL_UPDATE_RATE_HZ);
     }
     setHeading(0);
     if (invertYaw == null || invertYaw) {
@@ -56,6 +115,40 @@ public class MappedAHRS implements Updatable, Loggable {
     } else {
       this.invertYaw = 1;
     }
+    // In simulation, the heading is recorded as it's simulated instead.
+    if (RobotBase.isReal()
+        && !this.ahrs.registerCallback(
+            (systemTimestamp, sensorTimestamp, data, context) -> recordSample(sensorTimestamp),
+            null)) {
+      final int updateRate = this.ahrs.getRequestedUpdateRate();
+      this.sampleRecorder = new Notifier(() -> recordSample(Double.NaN));
+      this.sampleRecorder.setName("MappedAHRS");
+      this.sampleRecorder.startPeriodic(1. / (updateRate > 0 ? updateRate : 100));
+    } else {
+      this.sampleRecorder = null;
+    }
+  }
+
+  /**
+   * Records the NavX's newest data as a sample, and its heading in the history. Runs on the NavX's
+   * thread, right after it's taken in an update, or on the Notifier thread.
+   *
+   * @param sensorTimestamp When the NavX took the sample, in milliseconds on its own clock, or NaN
+   *     if unknown.
+   */
+  private void recordSample(final double sensorTimestamp) {
+    final double time = Clock.nowNanos() * 1e-9;
+    final double heading = invertYaw * ahrs.getYaw();
+    samples.set(SAMPLE_TIME, time);
+    samples.set(SAMPLE_SENSOR_TIME, sensorTimestamp);
+    samples.set(SAMPLE_HEADING, heading);
+    samples.set(SAMPLE_ANGULAR_DISPLACEMENT, invertYaw * ahrs.getAngle());
+    samples.set(SAMPLE_ANGULAR_VEL, invertYaw * ahrs.getRate());
+    samples.set(SAMPLE_X_ACCEL, gsToFeetPerSecondSquared(ahrs.getWorldLinearAccelX()));
+    samples.set(SAMPLE_Y_ACCEL, gsToFeetPerSecondSquared(ahrs.getWorldLinearAccelY()));
+    samples.set(SAMPLE_PITCH, ahrs.getPitch());
+    samples.publish();
+    headingHistory.record(time, heading);
   }
 
   /**
@@ -75,6 +168,7 @@ public class MappedAHRS implements Updatable, Loggable {
    * @return The heading, in degrees from [-180, 180]
    */
   public double getHeading() {
+    if (simulated) return Math.IEEEremainder(simulatedAngle + simulatedOffset, 360);
     toRet = invertYaw * ahrs.getYaw();
     //        toRet = Math.IEEEremainder(toRet, 360);
     return toRet;
@@ -86,6 +180,7 @@ public class MappedAHRS implements Updatable, Loggable {
    * @param headingDegrees An angle in degrees, from [-180, 180], to set the heading to.
    */
   public void setHeading(final double headingDegrees) {
+    simulatedOffset = headingDegrees - simulatedAngle;
     ahrs.setAngleAdjustment(headingDegrees);
   }
 
@@ -96,6 +191,7 @@ public class MappedAHRS implements Updatable, Loggable {
    * @return The angular displacement, in degrees.
    */
   public double getAngularDisplacement() {
+    if (simulated) return simulatedAngle + simulatedOffset;
     return ahrs.getAngle() * invertYaw;
   }
 
@@ -105,6 +201,7 @@ public class MappedAHRS implements Updatable, Loggable {
    * @return The angular yaw velocity, in degrees/sec.
    */
   public double getAngularVelocity() {
+    if (simulated) return simulatedRate;
     return ahrs.getRate() * invertYaw;
   }
 
@@ -135,6 +232,36 @@ public class MappedAHRS implements Updatable, Loggable {
     return ahrs.getPitch();
   }
 
+  /**
+   * Feeds the gyro from a simulated drivetrain. From the first call on, the heading, angular
+   * displacement and angular velocity all come from here instead of the NavX.
+   *
+   * @param angleDegrees The total angle the robot has turned, in degrees counterclockwise.
+   * @param rateDegreesPerSec The angular velocity, in degrees/sec counterclockwise.
+   */
+  public void setSimulatedState(final double angleDegrees, final double rateDegreesPerSec) {
+    simulated = true;
+    simulatedAngle = angleDegrees;
+    simulatedRate = rateDegreesPerSec;
+    headingHistory.record(Clock.currentTimeSeconds(), getHeading());
+  }
+
+  /** @return Whether the heading comes from {@link #setSimulatedState(double, double)}. */
+  public boolean isSimulated() {
+    return simulated;
+  }
+
+  /**
+   * Get the heading at some time in the last second or so, for lining up measurements that took a
+   * while to arrive. Only call from the main loop.
+   *
+   * @param timeSecs The time, in seconds on the {@link Clock}.
+   * @return The heading at that time, in degrees from [-180, 180], or NaN if it's too long ago.
+   */
+  public double getHeadingAt(final double timeSecs) {
+    return headingHistory.getHeadingAt(timeSecs);
+  }
+
   /**
    * Get the cached yaw value.
    *
@@ -196,9 +323,54 @@ public class MappedAHRS implements Updatable, Loggable {
     return cachedPitch;
   }
 
-  /** Updates all cached values with current ones. */
+  /**
+   * The number of samples recorded so far, for reading them with {@link #readSample(long,
+   * double[])}. Stays at 0 in simulation.
+   *
+   * @return The count. The newest sample has index one less.
+   */
+  public long getSampleCount() {
+    return samples.getPublishedCount();
+  }
+
+  /**
+   * Copies a recent sample, e.g. to integrate all of the samples since the last loop. The fields
+   * are at the indices given by the SAMPLE_ constants.
+   *
+   * @param index The index of the sample, counting from the first one ever recorded.
+   * @param out The array to copy into. Must be at least {@link #SAMPLE_WIDTH} long.
+   * @return false if the sample hasn't been recorded yet or is too old to still be kept.
+   */
+  public boolean readSample(final long index, @NotNull final double[] out) {
+    return samples.read(index, out);
+  }
+
+  /**
+   * @return When the cached values were measured, in seconds on the {@link Clock}. The time of the
+   *     last {@link #update()} if they didn't come from a sample.
+   */
+  @Log
+  public double getCachedTime() {
+    return cachedTime;
+  }
+
+  /**
+   * Updates all cached values with the newest sample, which is consistent and doesn't need any
+   * calls into the NavX, or with current ones if there isn't a sample.
+   */
   @Override
   public void update() {
+    if (!simulated && samples.readLatest(latestSample)) {
+      cachedTime = latestSample[SAMPLE_TIME];
+      cachedHeading = latestSample[SAMPLE_HEADING];
+      cachedAngularDisplacement = latestSample[SAMPLE_ANGULAR_DISPLACEMENT];
+      cachedAngularVel = latestSample[SAMPLE_ANGULAR_VEL];
+      cachedXAccel = latestSample[SAMPLE_X_ACCEL];
+      cachedYAccel = latestSample[SAMPLE_Y_ACCEL];
+      cachedPitch = latestSample[SAMPLE_PITCH];
+      return;
+    }
+    cachedTime = Clock.currentTimeSeconds();
     cachedHeading = getHeading();
     cachedAngularDisplacement = getAngularDisplacement();
     cachedAngularVel = getAngularVelocity();
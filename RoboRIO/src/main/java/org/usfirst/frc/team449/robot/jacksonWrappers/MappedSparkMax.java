@@ -13,6 +13,7 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.SmartMotor;
+import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.StatusFrameUsage;
 import org.usfirst.frc.team449.robot.generalInterfaces.shiftable.Shiftable;
 
 import java.util.HashMap;
@@ -21,6 +22,17 @@ import java.util.Map;
 
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 public class MappedSparkMax implements SmartMotor {
+  /** The status frames whose periods are tracked and tuned, in the order they are indexed. */
+  private static final CANSparkMaxLowLevel.PeriodicFrame[] TRACKED_STATUS_FRAMES = {
+    CANSparkMaxLowLevel.PeriodicFrame.kStatus0,
+    CANSparkMaxLowLevel.PeriodicFrame.kStatus1,
+    CANSparkMaxLowLevel.PeriodicFrame.kStatus2
+  };
+  /** The factory default period of each tracked status frame, in milliseconds. */
+  private static final int[] DEFAULT_STATUS_FRAME_PERIODS_MILLIS = {10, 20, 20};
+  /** The period of a status frame nothing reads from, in milliseconds. */
+  private static final int IDLE_STATUS_FRAME_PERIOD_MILLIS = 500;
+
   /** The PDP this Spark is connected to. */
   @Nullable @Log.Exclude protected final PDP PDP;
   /** The counts per rotation of the encoder being used, or null if there is no encoder. */
@@ -58,12 +70,13 @@ public class MappedSparkMax implements SmartMotor {
   /** The most recently set setpoint. */
   private double setpoint;
 
-  /** RPS as used in a unit conversion method. Field to avoid garbage collection. */
-  private Double RPS;
 
   /** The setpoint in native units. Field to avoid garbage collection. */
   @Log private double nativeSetpoint;
 
+  /** Which status frames are read at runtime. */
+  @NotNull private final StatusFrameUsage statusFrameUsage;
+
   /**
    * Create a new SPARK MAX Controller
    *
@@ -147,6 +160,41 @@ public class MappedSparkMax implements SmartMotor {
       }
     }
 
+    // Track which status frames get read so their periods can be tuned later.
+    final var frames = new StatusFrameUsage.Frame[TRACKED_STATUS_FRAMES.length];
+    for (int i = 0; i < frames.length; i++) {
+      final CANSparkMaxLowLevel.PeriodicFrame frame = TRACKED_STATUS_FRAMES[i];
+      final Integer mappedPeriod =
+          statusFrameRatesMillis != null ? statusFrameRatesMillis.get(frame) : null;
+      frames[i] =
+          new StatusFrameUsage.Frame(
+              frame.name(),
+              DEFAULT_STATUS_FRAME_PERIODS_MILLIS[i],
+              IDLE_STATUS_FRAME_PERIOD_MILLIS,
+              mappedPeriod != null ? mappedPeriod : DEFAULT_STATUS_FRAME_PERIODS_MILLIS[i],
+              period -> this.spark.setPeriodicFramePeriod(frame, period));
+    }
+    this.statusFrameUsage =
+        new StatusFrameUsage(frames)
+            .carries(StatusFrameUsage.Signal.FAULTS, 0)
+            .carries(StatusFrameUsage.Signal.OUTPUT_VOLTAGE, 0)
+            .carries(StatusFrameUsage.Signal.OUTPUT_VOLTAGE, 1)
+            .carries(StatusFrameUsage.Signal.VELOCITY, 1)
+            .carries(StatusFrameUsage.Signal.CLOSED_LOOP_ERROR, 1)
+            .carries(StatusFrameUsage.Signal.OUTPUT_CURRENT, 1)
+            .carries(StatusFrameUsage.Signal.BUS_VOLTAGE, 1)
+            .carries(StatusFrameUsage.Signal.POSITION, 2);
+    for (int i = 0; i < frames.length; i++) {
+      if (statusFrameRatesMillis != null
+          && statusFrameRatesMillis.containsKey(TRACKED_STATUS_FRAMES[i])) {
+        this.statusFrameUsage.pin(i);
+      }
+    }
+    // Followers take their output from status 0, so it has to stay fast.
+    if (slaveSparks != null && !slaveSparks.isEmpty()) {
+      this.statusFrameUsage.pin(0);
+    }
+
     this.PDP = PDP;
 
     this.unitPerRotation = unitPerRotation != null ? unitPerRotation : 1;
@@ -341,8 +389,7 @@ public class MappedSparkMax implements SmartMotor {
    */
   @Override
   public double encoderToUPS(final double encoderReading) {
-    RPS = nativeToRPS(encoderReading);
-    return RPS * postEncoderGearing * unitPerRotation;
+    return nativeToRPS(encoderReading) * postEncoderGearing * unitPerRotation;
   }
 
   /**
@@ -367,7 +414,7 @@ public class MappedSparkMax implements SmartMotor {
    */
   @Contract(pure = true)
   @Override
-  public Double nativeToRPS(final double nat) {
+  public double nativeToRPS(final double nat) {
     return nat / 60.;
   }
 
@@ -387,6 +434,7 @@ public class MappedSparkMax implements SmartMotor {
   /** @return Total revolutions for debug purposes */
   @Override
   public double encoderPosition() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.POSITION);
     return this.canEncoder.getPosition();
   }
 
@@ -417,6 +465,7 @@ public class MappedSparkMax implements SmartMotor {
   @Override
   @Log
   public double encoderVelocity() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.VELOCITY);
     return this.canEncoder.getVelocity();
   }
 
@@ -428,6 +477,7 @@ public class MappedSparkMax implements SmartMotor {
   @Override
   @Log
   public double getVelocity() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.VELOCITY);
     return this.encoderToUPS(canEncoder.getVelocity());
   }
 
@@ -479,18 +529,21 @@ public class MappedSparkMax implements SmartMotor {
   @Override
   @Log
   public double getOutputVoltage() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.OUTPUT_VOLTAGE);
     return this.spark.getAppliedOutput() * this.spark.getBusVoltage();
   }
 
   @Override
   @Log
   public double getBatteryVoltage() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.BUS_VOLTAGE);
     return this.spark.getBusVoltage();
   }
 
   @Override
   @Log
   public double getOutputCurrent() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.OUTPUT_CURRENT);
     return this.spark.getOutputCurrent();
   }
 
@@ -520,6 +573,7 @@ public class MappedSparkMax implements SmartMotor {
 
   @Override
   public double getPositionUnits() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.POSITION);
     return encoderToUnit(canEncoder.getPosition());
   }
 
@@ -540,11 +594,13 @@ public class MappedSparkMax implements SmartMotor {
 
   @Override
   public boolean isInhibitedForward() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.FAULTS);
     return this.spark.getFault(CANSparkMax.FaultID.kHardLimitFwd);
   }
 
   @Override
   public boolean isInhibitedReverse() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.FAULTS);
     return this.spark.getFault(CANSparkMax.FaultID.kHardLimitRev);
   }
 
@@ -553,6 +609,12 @@ public class MappedSparkMax implements SmartMotor {
     return this.spark.getDeviceId();
   }
 
+  @Override
+  @NotNull
+  public StatusFrameUsage getStatusFrameUsage() {
+    return this.statusFrameUsage;
+  }
+
   @Override
   public String configureLogName() {
     return this.name;
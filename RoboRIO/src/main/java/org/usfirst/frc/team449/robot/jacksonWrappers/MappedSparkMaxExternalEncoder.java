@@ -67,8 +67,6 @@ public class MappedSparkMaxExternalEncoder implements SmartMotorExternalEncoder
   /** The most recently set setpoint. */
   private double setpoint;
 
-  /** RPS as used in a unit conversion method. Field to avoid garbage collection. */
-  private Double RPS;
 
   /** The setpoint in native units. Field to avoid garbage collection. */
   @Log private double nativeSetpoint;
@@ -364,8 +362,7 @@ public class MappedSparkMaxExternalEncoder implements SmartMotorExternalEncoder
    */
   @Override
   public double encoderToUPS(final double encoderReading) {
-    RPS = nativeToRPS(encoderReading);
-    return RPS * postEncoderGearing * unitPerRotation;
+    return nativeToRPS(encoderReading) * postEncoderGearing * unitPerRotation;
   }
 
   /**
@@ -390,7 +387,7 @@ public class MappedSparkMaxExternalEncoder implements SmartMotorExternalEncoder
    */
   @Contract(pure = true)
   @Override
-  public Double nativeToRPS(final double nat) {
+  public double nativeToRPS(final double nat) {
     return nat;
   }
 
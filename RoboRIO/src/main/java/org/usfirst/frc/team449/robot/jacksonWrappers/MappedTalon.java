@@ -13,8 +13,10 @@ import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.usfirst.frc.team449.robot.components.RunningLinRegComponent;
+import org.usfirst.frc.team449.robot.components.LinRegComponent;
+import org.usfirst.frc.team449.robot.components.MultiLinRegComponent;
 import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.SmartMotor;
+import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.StatusFrameUsage;
 import org.usfirst.frc.team449.robot.generalInterfaces.shiftable.Shiftable;
 
 import java.util.HashMap;
@@ -27,6 +29,18 @@ import java.util.Map;
  */
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 public class MappedTalon implements SmartMotor {
+  /** The status frames whose periods are tracked and tuned, in the order they are indexed. */
+  private static final StatusFrameEnhanced[] TRACKED_STATUS_FRAMES = {
+    StatusFrameEnhanced.Status_1_General,
+    StatusFrameEnhanced.Status_2_Feedback0,
+    StatusFrameEnhanced.Status_4_AinTempVbat,
+    StatusFrameEnhanced.Status_13_Base_PIDF0
+  };
+  /** The factory default period of each tracked status frame, in milliseconds. */
+  private static final int[] DEFAULT_STATUS_FRAME_PERIODS_MILLIS = {10, 20, 160, 160};
+  /** The period of a status frame nothing reads from, in milliseconds. The Talon's maximum. */
+  private static final int IDLE_STATUS_FRAME_PERIOD_MILLIS = 255;
+
 
   /** The CTRE CAN Talon SRX that this class is a wrapper on */
   @NotNull protected final TalonSRX canTalon;
@@ -44,7 +58,9 @@ public class MappedTalon implements SmartMotor {
   /** The talon's name, used for logging purposes. */
   @NotNull private final String name;
   /** The component for doing linear regression to find the resistance. */
-  @Nullable private final RunningLinRegComponent voltagePerCurrentLinReg;
+  @Nullable private final LinRegComponent voltagePerCurrentLinReg;
+  /** The model of output voltage from stator current and velocity, for motor health. */
+  @Nullable private final MultiLinRegComponent healthModel;
   /** Whether the forwards or reverse limit switches are normally open or closed, respectively. */
   private final boolean fwdLimitSwitchNormallyOpen, revLimitSwitchNormallyOpen;
   /** The settings currently being used by this Talon. */
@@ -58,14 +74,15 @@ public class MappedTalon implements SmartMotor {
   private double postEncoderGearing;
   /** The most recently set setpoint. */
   private double setpoint;
-  /** RPS as used in a unit conversion method. Field to avoid garbage collection. */
-  private Double RPS;
 
   /** The setpoint in native units. Field to avoid garbage collection. */
   private double nativeSetpoint;
 
   private boolean voltageCompEnabled;
 
+  /** Which status frames are read at runtime. */
+  @NotNull private final StatusFrameUsage statusFrameUsage;
+
   /**
    * Default constructor.
    *
@@ -75,6 +92,9 @@ public class MappedTalon implements SmartMotor {
    * @param enableBrakeMode Whether to brake or coast when stopped.
    * @param voltagePerCurrentLinReg The component for doing linear regression to find the
    *     resistance.
+   * @param healthModel A model of output voltage from stator current and velocity with two inputs,
+   *     fit live to track the motor's winding resistance and back-EMF constant. Can be null to not
+   *     model them.
    * @param PDP The PDP this Talon is connected to.
    * @param fwdLimitSwitchNormallyOpen Whether the forward limit switch is normally open or closed.
    *     If this is null, the forward limit switch is disabled.
@@ -121,7 +141,8 @@ public class MappedTalon implements SmartMotor {
       @Nullable final String name,
       final boolean reverseOutput,
       @JsonProperty(required = true) final boolean enableBrakeMode,
-      @Nullable final RunningLinRegComponent voltagePerCurrentLinReg,
+      @Nullable final LinRegComponent voltagePerCurrentLinReg,
+      @Nullable final MultiLinRegComponent healthModel,
       @Nullable final PDP PDP,
       @Nullable final Boolean fwdLimitSwitchNormallyOpen,
       @Nullable final Boolean revLimitSwitchNormallyOpen,
@@ -157,6 +178,10 @@ public class MappedTalon implements SmartMotor {
 
     this.PDP = PDP;
     this.voltagePerCurrentLinReg = voltagePerCurrentLinReg;
+    if (healthModel != null && healthModel.getNumInputs() != 2) {
+      throw new IllegalArgumentException("The health model needs exactly 2 inputs.");
+    }
+    this.healthModel = healthModel;
 
     // Set frame rates
     if (controlFrameRatesMillis != null) {
@@ -171,6 +196,42 @@ public class MappedTalon implements SmartMotor {
       }
     }
 
+    // Track which status frames get read so their periods can be tuned later.
+    final var frames = new StatusFrameUsage.Frame[TRACKED_STATUS_FRAMES.length];
+    for (int i = 0; i < frames.length; i++) {
+      final StatusFrameEnhanced frame = TRACKED_STATUS_FRAMES[i];
+      final Integer mappedPeriod =
+          statusFrameRatesMillis != null ? statusFrameRatesMillis.get(frame) : null;
+      frames[i] =
+          new StatusFrameUsage.Frame(
+              frame.name(),
+              DEFAULT_STATUS_FRAME_PERIODS_MILLIS[i],
+              IDLE_STATUS_FRAME_PERIOD_MILLIS,
+              mappedPeriod != null ? mappedPeriod : DEFAULT_STATUS_FRAME_PERIODS_MILLIS[i],
+              period -> this.canTalon.setStatusFramePeriod(frame, period, 0));
+    }
+    this.statusFrameUsage =
+        new StatusFrameUsage(frames)
+            .carries(StatusFrameUsage.Signal.OUTPUT_VOLTAGE, 0)
+            .carries(StatusFrameUsage.Signal.FAULTS, 0)
+            .carries(StatusFrameUsage.Signal.VELOCITY, 1)
+            .carries(StatusFrameUsage.Signal.POSITION, 1)
+            .carries(StatusFrameUsage.Signal.OUTPUT_CURRENT, 1)
+            .carries(StatusFrameUsage.Signal.BUS_VOLTAGE, 2)
+            .carries(StatusFrameUsage.Signal.CLOSED_LOOP_ERROR, 3);
+    for (int i = 0; i < frames.length; i++) {
+      if (statusFrameRatesMillis != null
+          && statusFrameRatesMillis.containsKey(TRACKED_STATUS_FRAMES[i])) {
+        this.statusFrameUsage.pin(i);
+      }
+    }
+    // Followers take their output from status 1, so it has to stay fast.
+    if ((slaveTalons != null && !slaveTalons.isEmpty())
+        || (slaveVictors != null && !slaveVictors.isEmpty())
+        || (slaveSparks != null && !slaveSparks.isEmpty())) {
+      this.statusFrameUsage.pin(0);
+    }
+
     // Set fields
     this.unitPerRotation = unitPerRotation != null ? unitPerRotation : 1;
 
@@ -459,16 +520,12 @@ public class MappedTalon implements SmartMotor {
    * Note this DOES account for post-encoder gearing.
    *
    * @param encoderReading The velocity read from the encoder with no conversions.
-   * @return The velocity of the output shaft, in FPS, when the encoder has that reading, or null if
+   * @return The velocity of the output shaft, in FPS, when the encoder has that reading, or NaN if
    *     no encoder CPR was given.
    */
   @Override
   public double encoderToUPS(final double encoderReading) {
-    RPS = nativeToRPS(encoderReading);
-    if (RPS == null) {
-      return Double.NaN;
-    }
-    return this.RPS * this.postEncoderGearing * this.unitPerRotation;
+    return nativeToRPS(encoderReading) * this.postEncoderGearing * this.unitPerRotation;
   }
 
   /**
@@ -489,14 +546,13 @@ public class MappedTalon implements SmartMotor {
    * account for post-encoder gearing.
    *
    * @param nat A velocity in CANTalon native units.
-   * @return That velocity in RPS, or null if no encoder CPR was given.
+   * @return That velocity in RPS, or NaN if no encoder CPR was given.
    */
   @Contract(pure = true)
-  @Nullable
   @Override
-  public Double nativeToRPS(final double nat) {
+  public double nativeToRPS(final double nat) {
     if (this.encoderCPR == null) {
-      return null;
+      return Double.NaN;
     }
     return (nat / (this.encoderCPR * 4)) * 10; // 4 edges per count, and 10 100ms per second.
   }
@@ -520,6 +576,7 @@ public class MappedTalon implements SmartMotor {
   /** @return Total ticks travelled for debug purposes */
   @Override
   public double encoderPosition() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.POSITION);
     return this.canTalon.getSelectedSensorPosition();
   }
 
@@ -552,6 +609,7 @@ public class MappedTalon implements SmartMotor {
   /** @return Ticks per 100ms for debug purposes */
   @Override
   public double encoderVelocity() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.VELOCITY);
     return this.canTalon.getSelectedSensorVelocity();
   }
 
@@ -562,6 +620,7 @@ public class MappedTalon implements SmartMotor {
    */
   @Override
   public double getVelocity() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.VELOCITY);
     return encoderToUPS(canTalon.getSelectedSensorVelocity(0));
   }
 
@@ -605,6 +664,7 @@ public class MappedTalon implements SmartMotor {
   @Log
   @Override
   public double getError() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.CLOSED_LOOP_ERROR);
     if (canTalon.getControlMode().equals(ControlMode.Velocity)) {
       return this.encoderToUPS(canTalon.getClosedLoopError(0));
     } else {
@@ -631,6 +691,7 @@ public class MappedTalon implements SmartMotor {
   @Log
   @Override
   public double getOutputVoltage() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.OUTPUT_VOLTAGE);
     return canTalon.getMotorOutputVoltage();
   }
 
@@ -642,6 +703,7 @@ public class MappedTalon implements SmartMotor {
   @Log
   @Override
   public double getBatteryVoltage() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.BUS_VOLTAGE);
     return canTalon.getBusVoltage();
   }
 
@@ -653,9 +715,44 @@ public class MappedTalon implements SmartMotor {
   @Log
   @Override
   public double getOutputCurrent() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.OUTPUT_CURRENT);
     return canTalon.getSupplyCurrent();
   }
 
+  /**
+   * Fits the health model to this loop's snapshot. Stator current is used rather than supply
+   * current, since that's the current through the windings. Points with little output voltage are
+   * skipped, since a coasting motor isn't driven by its output.
+   */
+  @Override
+  public void updateHealthModel() {
+    if (this.healthModel == null) return;
+    final double volts = this.getOutputVoltageCached();
+    if (Math.abs(volts) < 0.5) return;
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.OUTPUT_CURRENT);
+    this.healthModel.addPoint(this.canTalon.getStatorCurrent(), this.getVelocityCached(), volts);
+  }
+
+  /**
+   * Get the resistance of the motor windings and wiring, from the health model.
+   *
+   * @return Resistance in ohms, or NaN if there's no health model or it hasn't converged.
+   */
+  @Log
+  public double getModelResistance() {
+    return this.healthModel == null ? Double.NaN : this.healthModel.getCoefficient(0);
+  }
+
+  /**
+   * Get the back-EMF of the motor per unit of output velocity, from the health model.
+   *
+   * @return Volts per unit per second, or NaN if there's no health model or it hasn't converged.
+   */
+  @Log
+  public double getModelVoltsPerUPS() {
+    return this.healthModel == null ? Double.NaN : this.healthModel.getCoefficient(1);
+  }
+
   /**
    * Get the current control mode of the Talon. Please don't use this for anything other than
    * logging.
@@ -705,6 +802,7 @@ public class MappedTalon implements SmartMotor {
   @Override
   @Log
   public double getPositionUnits() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.POSITION);
     return encoderToUnit(canTalon.getSelectedSensorPosition(0));
   }
 
@@ -721,6 +819,7 @@ public class MappedTalon implements SmartMotor {
    */
   @Override
   public boolean getFwdLimitSwitch() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.FAULTS);
     return fwdLimitSwitchNormallyOpen == canTalon.getSensorCollection().isFwdLimitSwitchClosed();
   }
 
@@ -731,18 +830,21 @@ public class MappedTalon implements SmartMotor {
    */
   @Override
   public boolean getRevLimitSwitch() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.FAULTS);
     return this.revLimitSwitchNormallyOpen
         == this.canTalon.getSensorCollection().isRevLimitSwitchClosed();
   }
 
   @Override
   public boolean isInhibitedForward() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.FAULTS);
     this.canTalon.getFaults(this.faults);
     return this.faults.ForwardLimitSwitch;
   }
 
   @Override
   public boolean isInhibitedReverse() {
+    this.statusFrameUsage.markUsed(StatusFrameUsage.Signal.FAULTS);
     this.canTalon.getFaults(this.faults);
     return this.faults.ReverseLimitSwitch;
   }
@@ -752,6 +854,12 @@ public class MappedTalon implements SmartMotor {
     return this.canTalon.getDeviceID();
   }
 
+  @Override
+  @NotNull
+  public StatusFrameUsage getStatusFrameUsage() {
+    return this.statusFrameUsage;
+  }
+
   @Override
   public String configureLogName() {
     return this.name;
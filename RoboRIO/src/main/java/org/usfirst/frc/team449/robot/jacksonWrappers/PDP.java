@@ -8,7 +8,9 @@ import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.usfirst.frc.team449.robot.components.RunningLinRegComponent;
+import org.usfirst.frc.team449.robot.components.LinRegComponent;
+import org.usfirst.frc.team449.robot.components.LinRegFit;
+import org.usfirst.frc.team449.robot.components.MultiLinRegComponent;
 import org.usfirst.frc.team449.robot.generalInterfaces.updatable.Updatable;
 
 /**
@@ -22,7 +24,11 @@ public class PDP implements Loggable, Updatable {
   @NotNull private final PowerDistributionPanel PDP;
 
   /** The component for doing linear regression to find the resistance. */
-  @Nullable private final RunningLinRegComponent voltagePerCurrentLinReg;
+  @Nullable private final LinRegComponent voltagePerCurrentLinReg;
+  /** The model of voltage from total current and temperature, for battery health. */
+  @Nullable private final MultiLinRegComponent voltageModel;
+  /** The latest fit of voltage to current. Field to avoid garbage collection. */
+  @NotNull private final LinRegFit voltagePerCurrentFit = new LinRegFit();
 
   /** The cached values from the PDP object this wraps. */
   private double voltage, totalCurrent, temperature, resistance, unloadedVoltage;
@@ -31,11 +37,22 @@ public class PDP implements Loggable, Updatable {
    * Default constructor.
    *
    * @param canID CAN ID of the PDP. Defaults to 0.
+   * @param voltagePerCurrentLinReg The component for doing linear regression to find the
+   *     resistance, or null to not find it.
+   * @param voltageModel A model of voltage from total current and temperature with two inputs,
+   *     or null to not model it.
    */
   @JsonCreator
-  public PDP(final int canID, @Nullable final RunningLinRegComponent voltagePerCurrentLinReg) {
+  public PDP(
+      final int canID,
+      @Nullable final LinRegComponent voltagePerCurrentLinReg,
+      @Nullable final MultiLinRegComponent voltageModel) {
+    if (voltageModel != null && voltageModel.getNumInputs() != 2) {
+      throw new IllegalArgumentException("The voltage model needs exactly 2 inputs.");
+    }
     this.PDP = new PowerDistributionPanel(canID);
     this.voltagePerCurrentLinReg = voltagePerCurrentLinReg;
+    this.voltageModel = voltageModel;
     this.voltage = 0;
     this.totalCurrent = 0;
     this.temperature = 0;
@@ -43,6 +60,17 @@ public class PDP implements Loggable, Updatable {
     this.unloadedVoltage = 0;
   }
 
+  /**
+   * Constructor without a voltage model.
+   *
+   * @param canID CAN ID of the PDP.
+   * @param voltagePerCurrentLinReg The component for doing linear regression to find the
+   *     resistance, or null to not find it.
+   */
+  public PDP(final int canID, @Nullable final LinRegComponent voltagePerCurrentLinReg) {
+    this(canID, voltagePerCurrentLinReg, null);
+  }
+
   /**
    * Query the input voltage of the PDP.
    *
@@ -96,6 +124,51 @@ public class PDP implements Loggable, Updatable {
     return voltagePerCurrentLinReg == null ? null : unloadedVoltage;
   }
 
+  /**
+   * Get how well voltage is explained by current draw, to tell whether the resistance is
+   * trustworthy.
+   *
+   * @return The R^2 of the voltage-current fit, or NaN if there isn't one.
+   */
+  @Log
+  public double getResistanceRSquared() {
+    return voltagePerCurrentFit.getRSquared();
+  }
+
+  /**
+   * Get the resistance of the battery and wiring from the voltage model, which accounts for
+   * temperature.
+   *
+   * @return Resistance in ohms, or NaN if not modelling voltage or the model hasn't converged.
+   */
+  @Log
+  public double getModelResistance() {
+    return voltageModel == null ? Double.NaN : -voltageModel.getCoefficient(0);
+  }
+
+  /**
+   * Get the voltage the voltage model predicts at no load and the current temperature.
+   *
+   * @return Voltage in volts, or NaN if not modelling voltage or the model hasn't converged.
+   */
+  @Log
+  public double getModelUnloadedVoltage() {
+    return voltageModel == null || !voltageModel.isConverged()
+        ? Double.NaN
+        : voltageModel.predict(0, temperature);
+  }
+
+  /**
+   * Get how much the voltage changes per degree of PDP temperature, per the voltage model.
+   *
+   * @return Volts per degree Celsius, or NaN if not modelling voltage or the model hasn't
+   *     converged.
+   */
+  @Log
+  public double getModelVoltsPerDegree() {
+    return voltageModel == null ? Double.NaN : voltageModel.getCoefficient(1);
+  }
+
   /** Updates all cached values with current ones. */
   @Override
   public void update() {
@@ -104,8 +177,16 @@ public class PDP implements Loggable, Updatable {
     this.temperature = PDP.getTemperature();
     if (voltagePerCurrentLinReg != null) {
       voltagePerCurrentLinReg.addPoint(totalCurrent, voltage);
-      this.unloadedVoltage = voltagePerCurrentLinReg.getIntercept();
-      this.resistance = -voltagePerCurrentLinReg.getSlope();
+      if (voltagePerCurrentLinReg.fit(voltagePerCurrentFit)) {
+        this.unloadedVoltage = voltagePerCurrentFit.getIntercept();
+        this.resistance = -voltagePerCurrentFit.getSlope();
+      } else {
+        this.unloadedVoltage = Double.NaN;
+        this.resistance = Double.NaN;
+      }
+    }
+    if (voltageModel != null) {
+      voltageModel.addPoint(totalCurrent, temperature, voltage);
     }
   }
 }
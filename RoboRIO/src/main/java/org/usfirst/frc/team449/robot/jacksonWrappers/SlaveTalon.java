@@ -8,7 +8,7 @@ import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.usfirst.frc.team449.robot.components.RunningLinRegComponent;
+import org.usfirst.frc.team449.robot.components.LinRegComponent;
 import org.usfirst.frc.team449.robot.generalInterfaces.motors.SlaveMotor;
 
 /**
@@ -23,7 +23,7 @@ public class SlaveTalon implements SlaveMotor, Loggable {
   @Nullable private PDP PDP;
 
   /** The linear regression component for logging resistance. */
-  @Nullable private RunningLinRegComponent linRegComponent;
+  @Nullable private LinRegComponent linRegComponent;
 
   /**
    * Default constructor.
@@ -82,7 +82,7 @@ public class SlaveTalon implements SlaveMotor, Loggable {
       @Nullable final Integer currentLimit,
       @Nullable final Integer voltageCompSamples,
       @Nullable final PDP PDP,
-      @Nullable final RunningLinRegComponent linRegComponent) {
+      @Nullable final LinRegComponent linRegComponent) {
     // Brake mode doesn't automatically follow master
     this.talonSRX.setNeutralMode(brakeMode ? NeutralMode.Brake : NeutralMode.Coast);
 
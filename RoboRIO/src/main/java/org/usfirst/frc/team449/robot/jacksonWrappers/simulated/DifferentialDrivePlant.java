@@ -0,0 +1,166 @@
+package org.usfirst.frc.team449.robot.jacksonWrappers.simulated;
+
+import edu.wpi.first.wpilibj.controller.SimpleMotorFeedforward;
+import io.github.oblarg.oblog.Loggable;
+import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A simulated differential drivetrain, with both sides coupled through the robot's mass and moment
+ * of inertia, and the heading that results.
+ *
+ * <p>Each side is modeled from its feedforward, in the current gear, so the drive behaves in
+ * simulation the way it was characterized to. The motion splits into driving straight, which
+ * follows the average of the two feedforwards, and turning, which is the same except that the
+ * robot's moment of inertia can make it harder or easier to accelerate than driving straight. Both
+ * are integrated exactly over each step, and friction is held over the step.
+ *
+ * <p>Distances are in the units of the feedforwards, which have to match the track width's.
+ */
+public class DifferentialDrivePlant implements Loggable {
+
+  /** The distance between the left and right wheels. */
+  private final double trackWidth;
+  /** How much harder turning is to accelerate than driving straight, for the same wheel speed. */
+  private final double angularInertiaRatio;
+
+  /** Driving straight: the average of the two sides. */
+  @NotNull private final FirstOrderPlant linear = new FirstOrderPlant();
+  /** Turning: half the right side less the left. */
+  @NotNull private final FirstOrderPlant angular = new FirstOrderPlant();
+
+  private double leftVelocity, rightVelocity;
+  /** How far each side moved in the last step. */
+  private double leftDelta, rightDelta;
+  /** The heading, in radians counterclockwise. */
+  private double headingRadians;
+  /** The angular velocity, in radians per second counterclockwise. */
+  private double angularVelocity;
+
+  /**
+   * Default constructor.
+   *
+   * @param trackWidth The distance between the left and right wheels.
+   * @param angularInertiaRatio The robot's moment of inertia about its center over its mass times
+   *     half the track width squared. 1 leaves the sides independent. Robots with their mass near
+   *     the center turn more easily and have a ratio under 1.
+   */
+  public DifferentialDrivePlant(final double trackWidth, final double angularInertiaRatio) {
+    this.trackWidth = trackWidth;
+    this.angularInertiaRatio = angularInertiaRatio;
+  }
+
+  /** Stops the drive dead, facing heading 0, for starting a simulation over. */
+  public void reset() {
+    this.leftVelocity = this.rightVelocity = 0;
+    this.leftDelta = this.rightDelta = 0;
+    this.headingRadians = 0;
+    this.angularVelocity = 0;
+  }
+
+  /**
+   * Advances the drive by a step of constant voltage.
+   *
+   * @param leftVolts The voltage applied to the left side, positive forwards.
+   * @param rightVolts The voltage applied to the right side, positive forwards.
+   * @param left The left side's feedforward in its current gear. Its kA must be more than 0.
+   * @param right The right side's feedforward in its current gear. Its kA must be more than 0.
+   * @param deltaSecs The length of the step, in seconds.
+   */
+  public void step(
+      final double leftVolts,
+      final double rightVolts,
+      @NotNull final SimpleMotorFeedforward left,
+      @NotNull final SimpleMotorFeedforward right,
+      final double deltaSecs) {
+    if (!(deltaSecs > 0)) {
+      this.leftDelta = 0;
+      this.rightDelta = 0;
+      return;
+    }
+    final double leftNet = leftVolts - friction(this.leftVelocity, leftVolts, left.ks);
+    final double rightNet = rightVolts - friction(this.rightVelocity, rightVolts, right.ks);
+    final double kV = (left.kv + right.kv) / 2;
+    final double kA = (left.ka + right.ka) / 2;
+
+    this.linear.position = 0;
+    this.linear.velocity = (this.leftVelocity + this.rightVelocity) / 2;
+    this.linear.step((leftNet + rightNet) / 2, kV, kA, deltaSecs);
+    this.angular.position = 0;
+    this.angular.velocity = (this.rightVelocity - this.leftVelocity) / 2;
+    this.angular.step((rightNet - leftNet) / 2, kV, kA * this.angularInertiaRatio, deltaSecs);
+
+    this.leftDelta = this.linear.position - this.angular.position;
+    this.rightDelta = this.linear.position + this.angular.position;
+    this.leftVelocity =
+        stick(this.leftVelocity, this.linear.velocity - this.angular.velocity, leftVolts, left.ks);
+    this.rightVelocity =
+        stick(
+            this.rightVelocity, this.linear.velocity + this.angular.velocity, rightVolts, right.ks);
+    this.headingRadians += (this.rightDelta - this.leftDelta) / this.trackWidth;
+    this.angularVelocity = (this.rightVelocity - this.leftVelocity) / this.trackWidth;
+  }
+
+  /**
+   * @param velocity The side's velocity.
+   * @param volts The voltage applied to the side.
+   * @param kS The voltage to overcome the side's friction.
+   * @return The voltage taken up by friction: all of kS against the motion, or as much as it takes
+   *     to hold a stopped side still.
+   */
+  private static double friction(final double velocity, final double volts, final double kS) {
+    if (velocity != 0) return Math.copySign(kS, velocity);
+    return Math.max(-kS, Math.min(kS, volts));
+  }
+
+  /**
+   * @param oldVelocity The side's velocity before the step.
+   * @param newVelocity The side's velocity after the step.
+   * @param volts The voltage applied to the side.
+   * @param kS The voltage to overcome the side's friction.
+   * @return The new velocity, or 0 if the side came to a stop and friction holds it there.
+   */
+  private static double stick(
+      final double oldVelocity, final double newVelocity, final double volts, final double kS) {
+    return oldVelocity * newVelocity < 0 && Math.abs(volts) <= kS ? 0 : newVelocity;
+  }
+
+  /** @return How far the left side moved in the last step. */
+  public double getLeftDelta() {
+    return this.leftDelta;
+  }
+
+  /** @return How far the right side moved in the last step. */
+  public double getRightDelta() {
+    return this.rightDelta;
+  }
+
+  /** @return The velocity of the left side. */
+  @Log
+  public double getLeftVelocity() {
+    return this.leftVelocity;
+  }
+
+  /** @return The velocity of the right side. */
+  @Log
+  public double getRightVelocity() {
+    return this.rightVelocity;
+  }
+
+  /** @return The heading, in radians counterclockwise from where the plant started. */
+  @Log
+  public double getHeadingRadians() {
+    return this.headingRadians;
+  }
+
+  /** @return The angular velocity, in radians per second counterclockwise. */
+  @Log
+  public double getAngularVelocity() {
+    return this.angularVelocity;
+  }
+
+  @Override
+  public String configureLogName() {
+    return "DifferentialDrivePlant";
+  }
+}
@@ -10,7 +10,7 @@ import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.usfirst.frc.team449.robot.components.RunningLinRegComponent;
+import org.usfirst.frc.team449.robot.components.LinRegComponent;
 import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.SmartMotor;
 import org.usfirst.frc.team449.robot.generalInterfaces.shiftable.Shiftable;
 import org.usfirst.frc.team449.robot.generalInterfaces.updatable.Updatable;
@@ -37,11 +37,16 @@ import static org.usfirst.frc.team449.robot.other.Util.getLogPrefix;
  * <p>This class is automatically instantiated by the FPSSmartMotor factory method when the robot is
  * running in a simulation and should not be otherwise referenced in code.
  *
- * <p>The current implementation relies on fictional physics and does not involve
+ * <p>The motor is simulated from the current gear's feedforward, so a mechanism behaves in
+ * simulation the way it was characterized to behave on the robot. Gears without a feedforward fall
+ * back to the motors alone with a light load. A drivetrain can instead move the motor from its own
+ * plant through {@link #applyExternalStep(double, double)}.
  */
 public class FPSSmartMotorSimulated implements SmartMotor, Updatable {
   /** Maximum PID integral for anti-windup. */
   private static final double MAX_INTEGRAL = Double.POSITIVE_INFINITY;
+  /** (Kg * m^2) The load on the motors in gears without a feedforward. */
+  private static final double DEFAULT_INERTIA = 0.001;
 
   @NotNull private final String name;
   private final Type controllerType;
@@ -64,11 +69,11 @@ public class FPSSmartMotorSimulated implements SmartMotor, Updatable {
   // Log the getters instead because logging the fields doesn't cause physics updates.
   private double percentOutput;
 
-  @NotNull
-  private final SimulatedMotor motor =
-      new SimulatedMotor(() -> this.busVoltage * this.percentOutput);
+  /** The motor, in the direction of the encoder, like a real controller with inverted output. */
+  @NotNull private final SimulatedMotor motor;
 
-  @Log private double lastStateUpdateTime = Clock.currentTimeMillis();
+  /** The time of the last physics update, in seconds, from the loop clock so it can be virtual. */
+  @Log private double lastStateUpdateTime = Clock.currentTimeSeconds();
 
   public FPSSmartMotorSimulated(
       final Type type,
@@ -95,7 +100,7 @@ public class FPSSmartMotorSimulated implements SmartMotor, Updatable {
       // Talon-specific
       @Nullable final HashMap<StatusFrameEnhanced, Integer> talonStatusFramesMap,
       @Nullable final Map<ControlFrame, Integer> controlFrameRatesMillis,
-      @Nullable final RunningLinRegComponent voltagePerCurrentLinReg,
+      @Nullable final LinRegComponent voltagePerCurrentLinReg,
       @Nullable final Integer voltageCompSamples,
       @Nullable final FeedbackDevice feedbackDevice,
       @Nullable final Integer encoderCPR,
@@ -151,6 +156,18 @@ public class FPSSmartMotorSimulated implements SmartMotor, Updatable {
       currentGear = startingGear.getNumVal();
     }
     this.currentGearSettings = this.perGearSettings.get(currentGear);
+    final int motorCount =
+        1
+            + (slaveTalons != null ? slaveTalons.size() : 0)
+            + (slaveVictors != null ? slaveVictors.size() : 0)
+            + (slaveSparks != null ? slaveSparks.size() : 0);
+    this.motor =
+        new SimulatedMotor(
+            () -> (this.reverseOutput ? -this.busVoltage : this.busVoltage) * this.percentOutput,
+            type == Type.SPARK ? SimulatedMotor.Motor.NEO : SimulatedMotor.Motor.CIM,
+            motorCount,
+            1,
+            DEFAULT_INERTIA);
     // Set up gear-based settings.
     this.setGear(currentGear);
   }
@@ -191,10 +208,8 @@ public class FPSSmartMotorSimulated implements SmartMotor, Updatable {
 
   /** Performs simulated PID logic and simulates physical state changes since last call. */
   private void updateSimulation() {
-    final double now = Clock.currentTimeMillis();
-
-    final double deltaMillis = (now - this.lastStateUpdateTime);
-    final double deltaSecs = deltaMillis * 0.001;
+    final double now = Clock.currentTimeSeconds();
+    final double deltaSecs = now - this.lastStateUpdateTime;
 
     this.updateControllerLogic(deltaSecs);
     this.motor.updatePhysics(deltaSecs);
@@ -215,8 +230,8 @@ public class FPSSmartMotorSimulated implements SmartMotor, Updatable {
             (this.controlMode == ControlMode.Velocity
                 ? this.motor.getVelocity()
                 : this.motor.getPosition());
-        final double newError = this.setpoint - newActualValue;
-        this.pid.update(this.reverseOutput ? -newError : newError, deltaSecs);
+        // The motor turns in the direction of the encoder, so the error needs no inverting.
+        this.pid.update(this.setpoint - newActualValue, deltaSecs);
         targetPercentOutput = this.pid.getOutput();
         break;
 
@@ -309,10 +324,10 @@ public class FPSSmartMotorSimulated implements SmartMotor, Updatable {
    * for post-encoder gearing.
    *
    * @param nat A velocity in native units.
-   * @return That velocity in RPS, or null if no encoder CPR was given.
+   * @return That velocity in RPS, or NaN if no encoder CPR was given.
    */
   @Override
-  public Double nativeToRPS(final double nat) {
+  public double nativeToRPS(final double nat) {
     return nat;
   }
 
@@ -524,6 +539,13 @@ public class FPSSmartMotorSimulated implements SmartMotor, Updatable {
     this.pid.resetState();
   }
 
+  /** Disables the motor and stops it dead at position 0, for starting a simulation over. */
+  public void resetSimulation() {
+    this.disable();
+    this.motor.reset();
+    this.pid.resetState();
+  }
+
   /**
    * Get the status of the forwards limit switch.
    *
@@ -574,6 +596,52 @@ public class FPSSmartMotorSimulated implements SmartMotor, Updatable {
   public void setGear(final int gear) {
     // Set the current gear
     this.currentGearSettings = this.perGearSettings.get(gear);
+    this.configureMotor();
+  }
+
+  /** Sets the simulated mechanism to the current gear's feedforward, converted to rotations. */
+  private void configureMotor() {
+    final SimpleMotorFeedforward feedforward = this.currentGearSettings.feedForwardCalculator;
+    if (feedforward.ka > 0) {
+      this.motor.configure(
+          feedforward.ks,
+          feedforward.kv * this.unitPerRotation,
+          feedforward.ka * this.unitPerRotation);
+    } else {
+      this.motor.configure(
+          this.controllerType == Type.SPARK ? SimulatedMotor.Motor.NEO : SimulatedMotor.Motor.CIM,
+          1,
+          DEFAULT_INERTIA);
+    }
+  }
+
+  /**
+   * @return The voltage applied to the motor, signed in the direction of the encoder rather than
+   *     of the output.
+   */
+  public double getSimulatedVoltage() {
+    return this.motor.getVoltage();
+  }
+
+  /**
+   * Sets whether a plant outside this class, like a drivetrain's, moves the motor. While it does,
+   * the motor is only moved by {@link #applyExternalStep(double, double)}.
+   *
+   * @param externallyDriven Whether the motor is moved from outside.
+   */
+  public void setExternallyDriven(final boolean externallyDriven) {
+    this.motor.setExternallyDriven(externallyDriven);
+  }
+
+  /**
+   * Moves the motor by a step simulated outside this class.
+   *
+   * @param deltaUnits How far the mechanism moved, in the same units as {@link
+   *     #getPositionUnits()}.
+   * @param velocityUPS The new velocity, in the same units as {@link #getVelocity()}.
+   */
+  public void applyExternalStep(final double deltaUnits, final double velocityUPS) {
+    this.motor.applyExternalStep(this.unitToEncoder(deltaUnits), this.UPSToEncoder(velocityUPS));
   }
 
   @Override
@@ -0,0 +1,59 @@
+package org.usfirst.frc.team449.robot.jacksonWrappers.simulated;
+
+/**
+ * A mechanism obeying {@code u = kV * v + kA * a} for a voltage {@code u} held over each step,
+ * which is how a DC motor behaves once friction is taken out of the voltage. It's integrated
+ * exactly rather than with Euler steps, so it stays accurate and stable however long a loop is.
+ */
+final class FirstOrderPlant {
+
+  /** The position, in whatever units kV and kA are given per. */
+  double position;
+  /** The velocity, in units per second. */
+  double velocity;
+
+  /**
+   * Advances the state by a step of constant voltage.
+   *
+   * @param volts The voltage, less friction.
+   * @param kV The volts per unit/s, at least 0.
+   * @param kA The volts per unit/s^2, more than 0.
+   * @param deltaSecs The length of the step, in seconds.
+   */
+  void step(final double volts, final double kV, final double kA, final double deltaSecs) {
+    if (deltaSecs <= 0) return;
+    if (kV <= 0) {
+      final double accel = volts / kA;
+      this.position += (this.velocity + 0.5 * accel * deltaSecs) * deltaSecs;
+      this.velocity += accel * deltaSecs;
+      return;
+    }
+    final double rate = kV / kA;
+    final double steady = volts / kV;
+    final double diff = this.velocity - steady;
+    // 1 - e^(-rate * t), computed without cancellation for short steps.
+    final double approached = -Math.expm1(-rate * deltaSecs);
+    this.position += steady * deltaSecs + diff * approached / rate;
+    this.velocity = steady + diff * (1 - approached);
+  }
+
+  /**
+   * How long it takes for a moving mechanism to come to a stop under a constant voltage.
+   *
+   * @param volts The voltage, less friction.
+   * @param kV The volts per unit/s, at least 0.
+   * @param kA The volts per unit/s^2, more than 0.
+   * @return The time in seconds, or infinity if the velocity never reaches zero or is already zero.
+   */
+  double timeToStop(final double volts, final double kV, final double kA) {
+    if (this.velocity == 0) return Double.POSITIVE_INFINITY;
+    if (kV <= 0) {
+      final double t = -this.velocity * kA / volts;
+      return t > 0 ? t : Double.POSITIVE_INFINITY;
+    }
+    final double steady = volts / kV;
+    // The velocity decays towards steady, so it only crosses zero if steady is on the other side.
+    if (steady * this.velocity >= 0) return Double.POSITIVE_INFINITY;
+    return Math.log((this.velocity - steady) / -steady) * kA / kV;
+  }
+}
@@ -3,93 +3,247 @@ package org.usfirst.frc.team449.robot.jacksonWrappers.simulated;
 import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
-import java.util.Objects;
 import java.util.function.DoubleSupplier;
 
-/** Units are in rotations. */
+/**
+ * A simulated DC motor or gang of motors driving a mechanism, as seen from the output shaft. Units
+ * are in rotations of the output shaft.
+ *
+ * <p>The mechanism follows {@code V = kS * sign(v) + kV * v + kA * a}, the same model the robot's
+ * feedforwards use, so a mechanism can be simulated straight from its characterized feedforward. It
+ * can also be built from the physical constants of the motors, gearbox and load. Either way, the
+ * current comes from the motors' resistance and back-EMF instead of being made up.
+ */
 public class SimulatedMotor implements Loggable {
   /** (V) Nominal bus voltage; used to calculate maximum speed. */
   public static final double NOMINAL_VOLTAGE = 12;
-  /** (Kg * m^2) Moment of moving parts. */
-  private static final double MOMENT = 20;
-  /** (Ohms) Used to calculate output current. */
-  private static final double RESISTANCE = 1;
-  /** (N*m / V) Torque per volt due to force of motor. */
-  private static final double TORQUE_COEFF = 450000;
-  /** (N*m / (R/s)) Torque per RPS due to motor internal friction. */
-  private static final double FRICTION_COEFF = -10;
-  /**
-   * The maximum speed that the simulation will by nature allow the motor to sustain. Not really
-   * used for anything.
-   */
-  @Log(name = "maxSpeed")
-  private static final double TRUE_MAX_SPEED = TORQUE_COEFF * NOMINAL_VOLTAGE / -FRICTION_COEFF;
-
-  private static final double EPSILON = 0.0001;
 
-  private final double moment;
-  private final double torqueCoeff;
-  private final double frictionCoeff;
+  @NotNull private final DoubleSupplier voltageSource;
+  /** The kind of motor, for its resistance. */
+  @NotNull private final Motor motorType;
+  /** The number of motors driving the mechanism together. */
+  private final int motorCount;
+  /** The state of the output shaft, in rotations. */
+  @NotNull private final FirstOrderPlant plant = new FirstOrderPlant();
+
+  /** (V) Voltage to overcome friction. */
+  private double kS;
+  /** (V / (R/s)) Voltage per rotation per second of back-EMF and viscous friction. */
+  private double kV;
+  /** (V / (R/s^2)) Voltage per rotation per second squared of acceleration. */
+  private double kA;
+  /** Whether position and velocity are set from outside instead of integrated here. */
+  private boolean externallyDriven;
 
-  @NotNull
-  @Log(methodName = "getAsDouble")
-  private final DoubleSupplier voltageSource;
-
-  /** (R/s) Signed rotations per second */
-  private double velocity;
-  /** Absolute rotation value */
-  private double position;
+  /**
+   * Builds a motor from the physical constants of the motors, gearbox and load.
+   *
+   * @param voltageSource The voltage applied to the motors.
+   * @param motorType The kind of motor.
+   * @param motorCount The number of motors driving the mechanism together.
+   * @param gearing The number of motor rotations per output shaft rotation.
+   * @param inertia (Kg * m^2) The moment of inertia of the load at the output shaft.
+   */
+  public SimulatedMotor(
+      @NotNull final DoubleSupplier voltageSource,
+      @NotNull final Motor motorType,
+      final int motorCount,
+      final double gearing,
+      final double inertia) {
+    this.voltageSource = voltageSource;
+    this.motorType = motorType;
+    this.motorCount = Math.max(1, motorCount);
+    this.configure(motorType, gearing, inertia);
+  }
 
+  /**
+   * Builds a motor from a characterized feedforward.
+   *
+   * @param voltageSource The voltage applied to the motors.
+   * @param motorType The kind of motor, only used to calculate current.
+   * @param motorCount The number of motors driving the mechanism together.
+   * @param kS (V) Voltage to overcome friction.
+   * @param kV (V / (R/s)) Voltage per rotation per second.
+   * @param kA (V / (R/s^2)) Voltage per rotation per second squared.
+   */
   public SimulatedMotor(
-      @Nullable final DoubleSupplier voltageSource,
-      @Nullable final Double moment,
-      @Nullable final Double torqueCoeff,
-      @Nullable final Double frictionCoeff) {
-    this.moment = Objects.requireNonNullElse(moment, MOMENT);
-    this.voltageSource = Objects.requireNonNullElse(voltageSource, () -> NOMINAL_VOLTAGE);
-    this.torqueCoeff = Objects.requireNonNullElse(torqueCoeff, TORQUE_COEFF);
-    this.frictionCoeff = Objects.requireNonNullElse(frictionCoeff, FRICTION_COEFF);
+      @NotNull final DoubleSupplier voltageSource,
+      @NotNull final Motor motorType,
+      final int motorCount,
+      final double kS,
+      final double kV,
+      final double kA) {
+    this.voltageSource = voltageSource;
+    this.motorType = motorType;
+    this.motorCount = Math.max(1, motorCount);
+    this.configure(kS, kV, kA);
   }
 
-  public SimulatedMotor(@NotNull final DoubleSupplier voltageSource) {
-    this(voltageSource, null, null, null);
+  /**
+   * Changes the mechanism to one with the given feedforward, e.g. after a gear shift. The position
+   * and velocity are kept.
+   *
+   * @param kS (V) Voltage to overcome friction.
+   * @param kV (V / (R/s)) Voltage per rotation per second.
+   * @param kA (V / (R/s^2)) Voltage per rotation per second squared. Must be more than 0.
+   */
+  public void configure(final double kS, final double kV, final double kA) {
+    if (!(kA > 0)) throw new IllegalArgumentException("kA must be positive, but was " + kA);
+    this.kS = Math.abs(kS);
+    this.kV = Math.max(0, kV);
+    this.kA = kA;
   }
 
-  public SimulatedMotor() {
-    this(null, null, null, null);
+  /**
+   * Changes the mechanism to one with the given gearbox and load. The position and velocity are
+   * kept.
+   *
+   * @param motorType The kind of motor.
+   * @param gearing The number of motor rotations per output shaft rotation.
+   * @param inertia (Kg * m^2) The moment of inertia of the load at the output shaft.
+   */
+  public void configure(
+      @NotNull final Motor motorType, final double gearing, final double inertia) {
+    // Convert from radians at the motor to rotations at the output.
+    final double radiansPerRotation = 2 * Math.PI * gearing;
+    this.configure(
+        motorType.freeCurrentAmps * motorType.resistanceOhms,
+        radiansPerRotation / motorType.kvRadPerSecPerVolt,
+        radiansPerRotation
+            * motorType.resistanceOhms
+            * inertia
+            / (this.motorCount * gearing * gearing * motorType.ktNMPerAmp));
   }
 
+  /**
+   * Advances the simulation, holding the current voltage over the step. Friction holds the motor
+   * still until the voltage overcomes it.
+   *
+   * @param deltaSecs The time since the last update, in seconds.
+   */
   public void updatePhysics(final double deltaSecs) {
-    final double motorTorque = this.torqueCoeff * this.voltageSource.getAsDouble();
-    final double frictionTorque = this.frictionCoeff * this.velocity;
-    final double netTorque = motorTorque + frictionTorque;
-    final double angularAcceleration = netTorque / this.moment;
+    if (this.externallyDriven || !(deltaSecs > 0)) return;
+    final double volts = this.voltageSource.getAsDouble();
+    double remaining = deltaSecs;
+    // At most two segments: slowing to a stop, then starting off the other way.
+    for (int segment = 0; segment < 2 && remaining > 0; segment++) {
+      final double direction =
+          this.plant.velocity != 0 ? Math.signum(this.plant.velocity) : Math.signum(volts);
+      if (this.plant.velocity == 0 && Math.abs(volts) <= this.kS) return;
+      final double net = volts - this.kS * direction;
+      final double stopTime = this.plant.timeToStop(net, this.kV, this.kA);
+      if (stopTime >= remaining) {
+        this.plant.step(net, this.kV, this.kA, remaining);
+        return;
+      }
+      this.plant.step(net, this.kV, this.kA, stopTime);
+      this.plant.velocity = 0;
+      remaining -= stopTime;
+    }
+  }
 
-    this.velocity += angularAcceleration * deltaSecs;
-    this.position += this.velocity * deltaSecs;
+  /**
+   * Sets whether something else, like a drivetrain plant, moves this motor through {@link
+   * #applyExternalStep(double, double)}. While it does, {@link #updatePhysics(double)} does
+   * nothing.
+   *
+   * @param externallyDriven Whether the motor is moved from outside.
+   */
+  public void setExternallyDriven(final boolean externallyDriven) {
+    this.externallyDriven = externallyDriven;
+  }
 
-    if (Math.abs(this.velocity) < EPSILON) this.velocity = 0;
-    if (Math.abs(this.position) < EPSILON) this.position = 0;
+  /**
+   * Moves the motor by a step simulated elsewhere.
+   *
+   * @param deltaRotations How far the output shaft turned, in rotations.
+   * @param velocity The new velocity, in rotations per second.
+   */
+  public void applyExternalStep(final double deltaRotations, final double velocity) {
+    this.plant.position += deltaRotations;
+    this.plant.velocity = velocity;
+  }
+
+  /** @return The voltage applied to the motors. */
+  @Log
+  public double getVoltage() {
+    return this.voltageSource.getAsDouble();
   }
 
   @Log
   public double getVelocity() {
-    return this.velocity;
+    return this.plant.velocity;
   }
 
   @Log
   public double getPosition() {
-    return this.position;
+    return this.plant.position;
   }
 
   public void resetPosition() {
-    this.position = 0;
+    this.plant.position = 0;
   }
 
+  /** Stops the motor dead at position 0, for starting a simulation over. */
+  public void reset() {
+    this.plant.position = 0;
+    this.plant.velocity = 0;
+  }
+
+  /** @return (R/s) The speed the motor settles at under nominal voltage. */
+  @Log
+  public double getFreeSpeed() {
+    if (this.kV <= 0) return Double.POSITIVE_INFINITY;
+    return Math.max(0, NOMINAL_VOLTAGE - this.kS) / this.kV;
+  }
+
+  /**
+   * The current through the motors: the voltage not taken up by back-EMF, over their resistance.
+   * Like a real controller, this is the motor current, not the current drawn from the battery.
+   *
+   * @return (A) The magnitude of the total current through all the motors.
+   */
   @Log
   public double getCurrent() {
-    return this.voltageSource.getAsDouble() / RESISTANCE;
+    final double backEmf = this.kV * this.plant.velocity;
+    return Math.abs(this.voltageSource.getAsDouble() - backEmf)
+        * this.motorCount
+        / this.motorType.resistanceOhms;
+  }
+
+  /** The published constants of common FRC motors at 12 V. */
+  public enum Motor {
+    CIM(2.42, 133, 2.7, 5310),
+    NEO(2.6, 105, 1.8, 5676),
+    FALCON_500(4.69, 257, 1.5, 6380),
+    PRO_775(0.71, 134, 0.7, 18730);
+
+    /** (Ohms) Winding resistance. */
+    public final double resistanceOhms;
+    /** ((rad/s) / V) Speed per volt of back-EMF. */
+    public final double kvRadPerSecPerVolt;
+    /** (N*m / A) Torque per amp. */
+    public final double ktNMPerAmp;
+    /** (A) Current drawn spinning freely, which goes to friction. */
+    public final double freeCurrentAmps;
+
+    /**
+     * @param stallTorque (N*m) Torque at stall.
+     * @param stallCurrent (A) Current at stall.
+     * @param freeCurrent (A) Current spinning freely.
+     * @param freeSpeedRpm (RPM) Speed spinning freely.
+     */
+    Motor(
+        final double stallTorque,
+        final double stallCurrent,
+        final double freeCurrent,
+        final double freeSpeedRpm) {
+      this.resistanceOhms = NOMINAL_VOLTAGE / stallCurrent;
+      this.kvRadPerSecPerVolt =
+          freeSpeedRpm * 2 * Math.PI / 60 / (NOMINAL_VOLTAGE - this.resistanceOhms * freeCurrent);
+      this.ktNMPerAmp = stallTorque / stallCurrent;
+      this.freeCurrentAmps = freeCurrent;
+    }
   }
 }
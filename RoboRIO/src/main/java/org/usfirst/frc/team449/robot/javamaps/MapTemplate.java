@@ -6,6 +6,7 @@ import edu.wpi.first.wpilibj2.command.Subsystem;
 import org.jetbrains.annotations.NotNull;
 import org.usfirst.frc.team449.robot.CommandContainer;
 import org.usfirst.frc.team449.robot.RobotMap;
+import org.usfirst.frc.team449.robot.components.CANBudgetComponent;
 import org.usfirst.frc.team449.robot.components.RunningLinRegComponent;
 import org.usfirst.frc.team449.robot.drive.unidirectional.DriveUnidirectionalWithGyro;
 import org.usfirst.frc.team449.robot.generalInterfaces.doubleUnaryOperator.Polynomial;
@@ -25,11 +26,16 @@ import org.usfirst.frc.team449.robot.oi.throttles.ThrottleSum;
 import org.usfirst.frc.team449.robot.oi.unidirectional.arcade.OIArcadeWithDPad;
 import org.usfirst.frc.team449.robot.other.DefaultCommand;
 import org.usfirst.frc.team449.robot.other.Updater;
+import org.usfirst.frc.team449.robot.telemetry.BinaryTelemetryLogger;
+import org.usfirst.frc.team449.robot.telemetry.TelemetryPublisher;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.usfirst.frc.team449.robot.telemetry.TelemetryPublisher.Priority.CRITICAL;
+import static org.usfirst.frc.team449.robot.telemetry.TelemetryPublisher.Priority.NORMAL;
+
 public class MapTemplate {
 
   // Drive system
@@ -117,7 +123,7 @@ public class MapTemplate {
                         .feedForwardCalculator(new MappedFeedForwardCalculator(0.165, 2.01, 0.155))
                         .build()))
             .build();
-    var drive = new DriveUnidirectionalWithGyro(leftMaster, rightMaster, navx, 0.61755);
+    var drive = new DriveUnidirectionalWithGyro(leftMaster, rightMaster, navx, 0.61755, null, null);
 
     var subsystems = List.<Subsystem>of(drive);
 
@@ -169,7 +175,9 @@ public class MapTemplate {
             1.0,
             true);
 
-    var updater = new Updater(List.of(pdp, drive, oi, navx));
+    var canBudget = new CANBudgetComponent(null, null, null, null);
+
+    var updater = new Updater(List.of(pdp, drive, oi, navx, canBudget));
 
     var defaultCommands = List.<DefaultCommand>of();
     var buttons = List.<CommandButton>of();
@@ -186,6 +194,28 @@ public class MapTemplate {
             teleopStartupCommands,
             testStartupCommands);
 
-    return new RobotMap(subsystems, pdp, updater, allCommands, joysticks, useCameraServer);
+    var telemetry = new BinaryTelemetryLogger(null, null, null, null, null);
+
+    var telemetryPublisher = new TelemetryPublisher(null, null, null);
+    telemetryPublisher.addDouble("Drive/leftVel", drive::getLeftVelCached, CRITICAL, 1, 0.01);
+    telemetryPublisher.addDouble("Drive/rightVel", drive::getRightVelCached, CRITICAL, 1, 0.01);
+    telemetryPublisher.addDouble("Drive/heading", drive::getHeadingCached, CRITICAL, 1, 0.1);
+    telemetryPublisher.addDouble("PDP/voltage", pdp::getVoltage, NORMAL, 5, 0.05);
+    telemetryPublisher.addDouble("PDP/current", pdp::getTotalCurrent, NORMAL, 5, 0.5);
+    // Oblog entries not named here keep Oblog's shared period.
+    telemetryPublisher.overrideOblog(
+        drive.configureLogName() + "/getLeftVelEstimate", CRITICAL, 1, 0.01);
+    telemetryPublisher.overrideOblog(
+        drive.configureLogName() + "/getRightVelEstimate", CRITICAL, 1, 0.01);
+
+    return new RobotMap(
+        subsystems,
+        pdp,
+        updater,
+        allCommands,
+        joysticks,
+        useCameraServer,
+        telemetry,
+        telemetryPublisher);
   }
 }
@@ -2,7 +2,8 @@ package org.usfirst.frc.team449.robot.javamaps.builders;
 
 import com.ctre.phoenix.motorcontrol.ControlFrame;
 import com.ctre.phoenix.motorcontrol.FeedbackDevice;
-import org.usfirst.frc.team449.robot.components.RunningLinRegComponent;
+import org.usfirst.frc.team449.robot.components.LinRegComponent;
+import org.usfirst.frc.team449.robot.components.MultiLinRegComponent;
 import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.SmartMotor;
 import org.usfirst.frc.team449.robot.generalInterfaces.shiftable.Shiftable;
 import org.usfirst.frc.team449.robot.generalInterfaces.shiftable.Shiftable.PerGearSettings;
@@ -39,7 +40,8 @@ public final class SmartMotorBuilder {
   private Integer controlFrameRateMillis;
   // Talon-specific
   private Map<ControlFrame, Integer> controlFrameRatesMillis = new HashMap<>();
-  private RunningLinRegComponent voltagePerCurrentLinReg;
+  private LinRegComponent voltagePerCurrentLinReg;
+  private MultiLinRegComponent healthModel;
   private Integer voltageCompSamples;
   private FeedbackDevice feedbackDevice;
   private Integer encoderCPR;
@@ -81,6 +83,7 @@ public final class SmartMotorBuilder {
         controlFrameRateMillis,
         controlFrameRatesMillis,
         voltagePerCurrentLinReg,
+        healthModel,
         voltageCompSamples,
         feedbackDevice,
         encoderCPR,
@@ -117,6 +120,7 @@ public final class SmartMotorBuilder {
         .controlFrameRateMillis(this.controlFrameRateMillis)
         .controlFrameRatesMillis(this.controlFrameRatesMillis)
         .voltagePerCurrentLinReg(this.voltagePerCurrentLinReg)
+        .healthModel(this.healthModel != null ? this.healthModel.clone() : null)
         .voltageCompSamples(this.voltageCompSamples)
         .feedbackDevice(this.feedbackDevice)
         .encoderCPR(this.encoderCPR)
@@ -231,11 +235,16 @@ public final class SmartMotorBuilder {
     return this;
   }
 
-  public SmartMotorBuilder voltagePerCurrentLinReg(RunningLinRegComponent voltagePerCurrentLinReg) {
+  public SmartMotorBuilder voltagePerCurrentLinReg(LinRegComponent voltagePerCurrentLinReg) {
     this.voltagePerCurrentLinReg = voltagePerCurrentLinReg;
     return this;
   }
 
+  public SmartMotorBuilder healthModel(MultiLinRegComponent healthModel) {
+    this.healthModel = healthModel;
+    return this;
+  }
+
   public SmartMotorBuilder voltageCompSamples(Integer voltageCompSamples) {
     this.voltageCompSamples = voltageCompSamples;
     return this;
@@ -8,8 +8,6 @@ import edu.wpi.first.wpilibj2.command.button.Button;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
-
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 public class OIOutreach implements OIUnidirectional {
 
@@ -22,11 +20,14 @@ public class OIOutreach implements OIUnidirectional {
   /** A button that overrides the lower priority controller */
   @NotNull private final Button button;
 
-  /** The cached outputs for the left and right sides of the drive. */
-  private double[] cachedLeftRightOutput;
+  /** The cached outputs for the left and right sides of the drive. Reused every loop. */
+  private final double @NotNull [] cachedLeftRightOutput = new double[2];
+
+  /** The cached forwards and rotational outputs. Reused every loop. */
+  private final double @NotNull [] cachedFwdRotOutput = new double[2];
 
-  /** The cached forwards and rotational outputs. */
-  private double[] cachedFwdRotOutput;
+  /** The overriding OI's left and right output. Field to avoid garbage collection. */
+  private final double @NotNull [] overridingLeftRight = new double[2];
 
   /** The data to log. Field to avoid garbage collection. */
   private Object[] loggingData, overridenData, overridingData;
@@ -56,11 +57,33 @@ public class OIOutreach implements OIUnidirectional {
    */
   @Override
   public double[] getLeftRightOutput() {
-    if (!Arrays.equals(this.overridingOI.getLeftRightOutput(), new double[] {0, 0})
-        || this.button.get()) {
-      return this.overridingOI.getLeftRightOutput();
+    return this.activeOI().getLeftRightOutput();
+  }
+
+  /**
+   * Writes the output to be given to the left and right sides of the drive into an array.
+   *
+   * @param out An array of length 2 to write the left output into the 1st element and the right
+   *     into the second, both from [-1, 1].
+   */
+  @Override
+  public void fillLeftRightOutput(final double @NotNull [] out) {
+    this.activeOI().fillLeftRightOutput(out);
+  }
+
+  /**
+   * Decides which OI is in control: the overriding one if it has any input or the button is held,
+   * and the overriden one otherwise.
+   *
+   * @return The OI in control.
+   */
+  @NotNull
+  private OIUnidirectional activeOI() {
+    this.overridingOI.fillLeftRightOutput(this.overridingLeftRight);
+    if (this.overridingLeftRight[0] != 0 || this.overridingLeftRight[1] != 0 || this.button.get()) {
+      return this.overridingOI;
     } else {
-      return this.overridenOI.getLeftRightOutput();
+      return this.overridenOI;
     }
   }
 
@@ -84,12 +107,18 @@ public class OIOutreach implements OIUnidirectional {
    */
   @Override
   public double[] getFwdRotOutput() {
-    if (!Arrays.equals(this.overridingOI.getLeftRightOutput(), new double[] {0, 0})
-        || this.button.get()) {
-      return this.overridingOI.getFwdRotOutput();
-    } else {
-      return this.overridenOI.getFwdRotOutput();
-    }
+    return this.activeOI().getFwdRotOutput();
+  }
+
+  /**
+   * Writes the forwards and rotational movement given to the drive into an array.
+   *
+   * @param out An array of length 2 to write the forwards output into the 1st element and the
+   *     rotational into the second, both from [-1, 1].
+   */
+  @Override
+  public void fillFwdRotOutput(final double @NotNull [] out) {
+    this.activeOI().fillFwdRotOutput(out);
   }
 
   /**
@@ -120,7 +149,8 @@ public class OIOutreach implements OIUnidirectional {
   public void update() {
     this.overridenOI.update();
     this.overridingOI.update();
-    this.cachedLeftRightOutput = this.getLeftRightOutput();
-    this.cachedFwdRotOutput = this.getFwdRotOutput();
+    final OIUnidirectional active = this.activeOI();
+    active.fillLeftRightOutput(this.cachedLeftRightOutput);
+    active.fillFwdRotOutput(this.cachedFwdRotOutput);
   }
 }
@@ -1,11 +1,15 @@
 package org.usfirst.frc.team449.robot.oi.unidirectional;
 
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.jetbrains.annotations.NotNull;
 import org.usfirst.frc.team449.robot.oi.OI;
 
 /**
  * An OI to control a robot with a unidirectional drive that has a left and right side (e.g. not
  * meccanum, swerve, or holonomic)
+ *
+ * <p>The cached getters are what the periodic path should use. They return arrays that are reused
+ * every loop to avoid garbage collection, so callers must not modify them or hold onto them.
  */
 @JsonTypeInfo(
     use = JsonTypeInfo.Id.CLASS,
@@ -21,6 +25,19 @@ public interface OIUnidirectional extends OI {
    */
   double[] getLeftRightOutput();
 
+  /**
+   * Writes the output to be given to the left and right sides of the drive into an array.
+   * Implementations should override this to not allocate.
+   *
+   * @param out An array of length 2 to write the left output into the 1st element and the right
+   *     into the second, both from [-1, 1].
+   */
+  default void fillLeftRightOutput(final double @NotNull [] out) {
+    final double[] output = this.getLeftRightOutput();
+    out[0] = output[0];
+    out[1] = output[1];
+  }
+
   /**
    * The cached output to be given to the left and right sides of the drive.
    *
@@ -37,6 +54,19 @@ public interface OIUnidirectional extends OI {
    */
   double[] getFwdRotOutput();
 
+  /**
+   * Writes the forwards and rotational movement given to the drive into an array. Implementations
+   * should override this to not allocate.
+   *
+   * @param out An array of length 2 to write the forwards output into the 1st element and the
+   *     rotational into the second, both from [-1, 1].
+   */
+  default void fillFwdRotOutput(final double @NotNull [] out) {
+    final double[] output = this.getFwdRotOutput();
+    out[0] = output[0];
+    out[1] = output[1];
+  }
+
   /**
    * The cached forwards and rotational movement given to the drive.
    *
@@ -4,7 +4,6 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.oi.unidirectional.OIUnidirectional;
 
 /** An arcade-style dual joystick OI. */
@@ -16,10 +15,12 @@ public abstract class OIArcade implements OIUnidirectional {
 
   /** Whether or not to scale the left and right outputs so the max output is 1. */
   private final boolean rescaleOutputs;
-  /** Cached forwards and rotational output. */
-  private double @Nullable [] fwdRotOutputCached;
-  /** Cached left-right output values */
-  private double @Nullable [] leftRightOutputCached;
+  /** Cached forwards and rotational output. Reused every loop to avoid garbage collection. */
+  private final double @NotNull [] fwdRotOutputCached = new double[2];
+  /** Cached left-right output values. Reused every loop to avoid garbage collection. */
+  private final double @NotNull [] leftRightOutputCached = new double[2];
+  /** Whether the cached outputs have been filled in yet. */
+  private boolean cached;
 
   /**
    * Default constructor.
@@ -32,6 +33,16 @@ public abstract class OIArcade implements OIUnidirectional {
     this.rescaleOutputs = rescaleOutputs;
   }
 
+  /**
+   * Writes the forwards and rotational movement given to the drive into an array without
+   * allocating.
+   *
+   * @param out An array of length 2 to write the forwards output into the 1st element and the
+   *     rotational into the second, both from [-1, 1].
+   */
+  @Override
+  public abstract void fillFwdRotOutput(double @NotNull [] out);
+
   /**
    * Whether the driver is trying to drive straight.
    *
@@ -43,6 +54,19 @@ public abstract class OIArcade implements OIUnidirectional {
     return getFwdRotOutputCached()[1] == 0;
   }
 
+  /**
+   * The forwards and rotational movement given to the drive.
+   *
+   * @return An array of length 2, where the first element is the forwards output and the second is
+   *     the rotational, both from [-1, 1]
+   */
+  @Override
+  public double @NotNull [] getFwdRotOutput() {
+    final double[] out = new double[2];
+    fillFwdRotOutput(out);
+    return out;
+  }
+
   /**
    * The output to be given to the left and right sides of the drive.
    *
@@ -51,32 +75,49 @@ public abstract class OIArcade implements OIUnidirectional {
    */
   @Override
   public double @NotNull [] getLeftRightOutput() {
-    fwdRotOutputCached = getFwdRotOutput();
+    final double[] out = new double[2];
+    fillLeftRightOutput(out);
+    return out;
+  }
+
+  /**
+   * Writes the output to be given to the left and right sides of the drive into an array.
+   *
+   * @param out An array of length 2 to write the left output into the 1st element and the right
+   *     into the second, both from [-1, 1].
+   */
+  @Override
+  public void fillLeftRightOutput(final double @NotNull [] out) {
+    fillFwdRotOutput(out);
+    toLeftRight(out[0], out[1], out);
+  }
 
+  /**
+   * Converts forwards and rotational output to left and right output.
+   *
+   * @param fwd The forwards output, from [-1, 1].
+   * @param rot The rotational output, from [-1, 1].
+   * @param out An array of length 2 to write the left output into the 1st element and the right
+   *     into the second, both from [-1, 1].
+   */
+  private void toLeftRight(final double fwd, final double rot, final double @NotNull [] out) {
     // Unscaled, unclipped values for left and right output.
-    final double tmpLeft = fwdRotOutputCached[0] + fwdRotOutputCached[1];
-    final double tmpRight = fwdRotOutputCached[0] - fwdRotOutputCached[1];
+    final double tmpLeft = fwd + rot;
+    final double tmpRight = fwd - rot;
 
     // If left is too large
     if (Math.abs(tmpLeft) > 1) {
-      if (rescaleOutputs) {
-        // Rescale right, return left clipped to [-1, 1]
-        return new double[] {Math.signum(tmpLeft), tmpRight / Math.abs(tmpLeft)};
-      } else {
-        // Return left clipped to [-1, 1], don't change right
-        return new double[] {Math.signum(tmpLeft), tmpRight};
-      }
+      // Clip left to [-1, 1], and rescale right if we're rescaling
+      out[0] = Math.signum(tmpLeft);
+      out[1] = rescaleOutputs ? tmpRight / Math.abs(tmpLeft) : tmpRight;
     } else if (Math.abs(tmpRight) > 1) { // If right is too large
-      if (rescaleOutputs) {
-        // Rescale left, return right clipped to [-1, 1]
-        return new double[] {tmpLeft / Math.abs(tmpRight), Math.signum(tmpRight)};
-      } else {
-        // Return right clipped to [-1, 1], don't change left
-        return new double[] {tmpLeft, Math.signum(tmpRight)};
-      }
+      // Clip right to [-1, 1], and rescale left if we're rescaling
+      out[0] = rescaleOutputs ? tmpLeft / Math.abs(tmpRight) : tmpLeft;
+      out[1] = Math.signum(tmpRight);
     } else {
-      // Return unaltered if nothing is too large
-      return new double[] {tmpLeft, tmpRight};
+      // Unaltered if nothing is too large
+      out[0] = tmpLeft;
+      out[1] = tmpRight;
     }
   }
 
@@ -84,32 +125,32 @@ public abstract class OIArcade implements OIUnidirectional {
    * The cached output to be given to the left and right sides of the drive.
    *
    * @return An array of length 2, where the 1st element is the output for the left and the second
-   *     for the right, both from [-1, 1].
+   *     for the right, both from [-1, 1]. Reused every loop, so don't modify it or hold onto it.
    */
   @Override
   public double @NotNull [] getLeftRightOutputCached() {
-    return leftRightOutputCached != null
-        ? leftRightOutputCached
-        : (leftRightOutputCached = getLeftRightOutput());
+    if (!cached) update();
+    return leftRightOutputCached;
   }
 
   /**
    * The cached forwards and rotational movement given to the drive.
    *
    * @return An array of length 2, where the first element is the forwards output and the second is
-   *     the rotational, both from [-1, 1]
+   *     the rotational, both from [-1, 1]. Reused every loop, so don't modify it or hold onto it.
    */
   @Override
+  @Log
   public double @NotNull [] getFwdRotOutputCached() {
-    return fwdRotOutputCached != null
-        ? fwdRotOutputCached
-        : (fwdRotOutputCached = getFwdRotOutput());
+    if (!cached) update();
+    return fwdRotOutputCached;
   }
 
   /** Updates all cached values with current ones. */
   @Override
   public void update() {
-    fwdRotOutputCached = getFwdRotOutput();
-    leftRightOutputCached = getLeftRightOutput();
+    cached = true;
+    fillFwdRotOutput(fwdRotOutputCached);
+    toLeftRight(fwdRotOutputCached[0], fwdRotOutputCached[1], leftRightOutputCached);
   }
 }
@@ -4,7 +4,6 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
-import io.github.oblarg.oblog.annotations.Log;
 import org.jetbrains.annotations.NotNull;
 import org.usfirst.frc.team449.robot.oi.throttles.Throttle;
 
@@ -37,14 +36,14 @@ public class OIArcadeSimple extends OIArcade {
   }
 
   /**
-   * The forwards and rotational movement given to the drive.
+   * Writes the forwards and rotational movement given to the drive into an array.
    *
-   * @return An array of length 2, where the first element is the forwards output and the second is
-   *     the rotational, both from [-1, 1]
+   * @param out An array of length 2 to write the forwards output into the 1st element and the
+   *     rotational into the second, both from [-1, 1].
    */
   @Override
-  @Log
-  public double[] getFwdRotOutput() {
-    return new double[] {velThrottle.getValue(), rotThrottle.getValue()};
+  public void fillFwdRotOutput(final double @NotNull [] out) {
+    out[0] = velThrottle.getValue();
+    out[1] = rotThrottle.getValue();
   }
 }
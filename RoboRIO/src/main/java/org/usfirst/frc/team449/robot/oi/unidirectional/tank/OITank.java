@@ -2,6 +2,7 @@ package org.usfirst.frc.team449.robot.oi.unidirectional.tank;
 
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
 import org.usfirst.frc.team449.robot.oi.unidirectional.OIUnidirectional;
 
 /** A tank-style dual joystick OI. */
@@ -11,11 +12,17 @@ import org.usfirst.frc.team449.robot.oi.unidirectional.OIUnidirectional;
     property = "@class")
 public abstract class OITank implements OIUnidirectional {
 
-  /** Cached left and right output. */
-  private double[] leftRightOutputCached;
+  /** Cached left and right output. Reused every loop to avoid garbage collection. */
+  private final double @NotNull [] leftRightOutputCached = new double[2];
 
-  /** Cached forwards and rotational output. */
-  private double[] fwdRotOutputCached;
+  /** Cached forwards and rotational output. Reused every loop to avoid garbage collection. */
+  private final double @NotNull [] fwdRotOutputCached = new double[2];
+
+  /**
+   * The new left and right output while it's being computed, so the throttles see last loop's
+   * cached output until both sides are done. Field to avoid garbage collection.
+   */
+  private final double @NotNull [] leftRightOutputNext = new double[2];
 
   /**
    * Get the throttle for the left side of the drive.
@@ -40,16 +47,27 @@ public abstract class OITank implements OIUnidirectional {
    *     for the right, both from [-1, 1].
    */
   @Override
-  @Log
   public double[] getLeftRightOutput() {
     return new double[] {getLeftThrottle(), getRightThrottle()};
   }
 
+  /**
+   * Writes the output to be given to the left and right sides of the drive into an array.
+   *
+   * @param out An array of length 2 to write the left output into the 1st element and the right
+   *     into the second, both from [-1, 1].
+   */
+  @Override
+  public void fillLeftRightOutput(final double @NotNull [] out) {
+    out[0] = getLeftThrottle();
+    out[1] = getRightThrottle();
+  }
+
   /**
    * The cached output to be given to the left and right sides of the drive.
    *
    * @return An array of length 2, where the 1st element is the output for the left and the second
-   *     for the right, both from [-1, 1].
+   *     for the right, both from [-1, 1]. Reused every loop, so don't modify it or hold onto it.
    */
   @Override
   @Log
@@ -64,18 +82,31 @@ public abstract class OITank implements OIUnidirectional {
    *     the rotational, both from [-1, 1]
    */
   @Override
-  @Log
   public double[] getFwdRotOutput() {
-    return new double[] {
-      (getLeftThrottle() + getRightThrottle()) / 2., (getLeftThrottle() - getRightThrottle()) / 2.
-    };
+    final double[] out = new double[2];
+    fillFwdRotOutput(out);
+    return out;
+  }
+
+  /**
+   * Writes the forwards and rotational movement given to the drive into an array.
+   *
+   * @param out An array of length 2 to write the forwards output into the 1st element and the
+   *     rotational into the second, both from [-1, 1].
+   */
+  @Override
+  public void fillFwdRotOutput(final double @NotNull [] out) {
+    final double left = getLeftThrottle();
+    final double right = getRightThrottle();
+    out[0] = (left + right) / 2.;
+    out[1] = (left - right) / 2.;
   }
 
   /**
    * The cached forwards and rotational movement given to the drive.
    *
    * @return An array of length 2, where the first element is the forwards output and the second is
-   *     the rotational, both from [-1, 1]
+   *     the rotational, both from [-1, 1]. Reused every loop, so don't modify it or hold onto it.
    */
   @Override
   @Log
@@ -86,7 +117,9 @@ public abstract class OITank implements OIUnidirectional {
   /** Updates all cached values with current ones. */
   @Override
   public void update() {
-    leftRightOutputCached = getLeftRightOutput();
-    fwdRotOutputCached = getFwdRotOutput();
+    fillLeftRightOutput(leftRightOutputNext);
+    leftRightOutputCached[0] = leftRightOutputNext[0];
+    leftRightOutputCached[1] = leftRightOutputNext[1];
+    fillFwdRotOutput(fwdRotOutputCached);
   }
 }
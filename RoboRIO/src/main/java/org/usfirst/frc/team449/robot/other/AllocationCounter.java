@@ -0,0 +1,85 @@
+package org.usfirst.frc.team449.robot.other;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads how many bytes the current thread has allocated, for auditing the main loop for garbage.
+ * Uses HotSpot's {@link com.sun.management.ThreadMXBean}, so it's only available on JVMs that
+ * provide it.
+ *
+ * <p>On some JVMs the read itself allocates a little, so that overhead is measured once when this
+ * class loads and subtracted by {@link AllocationCounter#bytesSince(long)}.
+ */
+public final class AllocationCounter {
+
+  /** The bean allocations are read from, or null if this JVM can't count them. */
+  @Nullable private static final com.sun.management.ThreadMXBean bean = findBean();
+  /** The bytes a single read allocates, subtracted from every measurement. */
+  private static final long overheadBytes = measureOverhead();
+
+  /** Make constructor private so it can't be called */
+  private AllocationCounter() {}
+
+  /** @return The bean to read allocations from, or null if this JVM can't count them. */
+  @Nullable
+  private static com.sun.management.ThreadMXBean findBean() {
+    try {
+      final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+      if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return null;
+      final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) threadBean;
+      if (!sunBean.isThreadAllocatedMemorySupported()) return null;
+      if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+      }
+      return sunBean;
+    } catch (final LinkageError | RuntimeException ex) {
+      // No com.sun.management on this JVM, or not allowed to turn counting on.
+      return null;
+    }
+  }
+
+  /** @return The smallest number of bytes seen allocated between two back-to-back reads. */
+  private static long measureOverhead() {
+    if (bean == null) return 0;
+    long overhead = Long.MAX_VALUE;
+    for (int i = 0; i < 16; i++) {
+      final long start = read();
+      overhead = Math.min(overhead, read() - start);
+    }
+    return Math.max(0, overhead);
+  }
+
+  /** @return The total bytes the current thread has allocated, or 0 if unsupported. */
+  private static long read() {
+    return bean != null ? bean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+  }
+
+  /** @return Whether allocations can be counted on this JVM. */
+  public static boolean isSupported() {
+    return bean != null;
+  }
+
+  /**
+   * Reads the current thread's allocation counter, to be passed to {@link
+   * AllocationCounter#bytesSince(long)} later on the same thread.
+   *
+   * @return The current thread's allocation counter, or 0 if unsupported.
+   */
+  public static long start() {
+    return read();
+  }
+
+  /**
+   * Gets the number of bytes the current thread has allocated since a call to {@link
+   * AllocationCounter#start()} on the same thread, not counting the cost of reading the counter.
+   *
+   * @param start The value returned by {@link AllocationCounter#start()}.
+   * @return The number of bytes allocated, or 0 if unsupported.
+   */
+  public static long bytesSince(final long start) {
+    if (bean == null) return 0;
+    return Math.max(0, read() - start - overheadBytes);
+  }
+}
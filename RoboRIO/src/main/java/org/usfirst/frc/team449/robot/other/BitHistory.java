@@ -0,0 +1,147 @@
+package org.usfirst.frc.team449.robot.other;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A fixed-capacity history of booleans, bit-packed into a circular buffer of longs, that keeps a
+ * running count of how many of them are true. Adding and removing never allocates.
+ */
+public class BitHistory {
+
+  /** The bits, oldest first starting at {@link BitHistory#start}, wrapping around. */
+  @NotNull private final long[] words;
+  /** The maximum number of bits held. */
+  private final int capacity;
+  /** The position of the oldest bit. */
+  private int start;
+  /** The number of bits held. */
+  private int size;
+  /** The number of bits held that are set. */
+  private int trueCount;
+
+  /** @param capacity The maximum number of bits to hold. Must be positive. */
+  public BitHistory(final int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive.");
+    this.capacity = capacity;
+    this.words = new long[(capacity + Long.SIZE - 1) / Long.SIZE];
+  }
+
+  /**
+   * @param position A position in the buffer.
+   * @return Whether the bit at that position is set.
+   */
+  private boolean bitAt(final int position) {
+    return (this.words[position >>> 6] & (1L << position)) != 0;
+  }
+
+  /**
+   * Sets or clears the bit at a position in the buffer.
+   *
+   * @param position A position in the buffer.
+   * @param value The value to give the bit.
+   */
+  private void setBitAt(final int position, final boolean value) {
+    if (value) {
+      this.words[position >>> 6] |= 1L << position;
+    } else {
+      this.words[position >>> 6] &= ~(1L << position);
+    }
+  }
+
+  /**
+   * @param index An index counting from the oldest bit.
+   * @return The position of that bit in the buffer.
+   */
+  private int positionOf(final int index) {
+    final int position = this.start + index;
+    return position >= this.capacity ? position - this.capacity : position;
+  }
+
+  /**
+   * Adds a bit as the newest one, removing the oldest if the history is full.
+   *
+   * @param value The bit to add.
+   * @return The bit that was removed to make room, or false if none had to be.
+   */
+  public boolean add(final boolean value) {
+    boolean removed = false;
+    if (this.size == this.capacity) {
+      removed = this.removeOldest();
+    }
+    this.setBitAt(this.positionOf(this.size), value);
+    this.size++;
+    if (value) this.trueCount++;
+    return removed;
+  }
+
+  /**
+   * Removes the oldest bit.
+   *
+   * @return The bit that was removed.
+   * @throws IllegalStateException if the history is empty.
+   */
+  public boolean removeOldest() {
+    if (this.size == 0) throw new IllegalStateException("The history is empty.");
+    final boolean removed = this.bitAt(this.start);
+    this.start = this.positionOf(1);
+    this.size--;
+    if (removed) this.trueCount--;
+    return removed;
+  }
+
+  /**
+   * @param ago How many bits before the newest one to get, where 0 is the newest.
+   * @return The bit.
+   */
+  public boolean get(final int ago) {
+    if (ago < 0 || ago >= this.size) throw new IndexOutOfBoundsException(ago);
+    return this.bitAt(this.positionOf(this.size - 1 - ago));
+  }
+
+  /** Removes every bit. */
+  public void clear() {
+    this.start = 0;
+    this.size = 0;
+    this.trueCount = 0;
+  }
+
+  /** @return The number of bits held. */
+  public int size() {
+    return this.size;
+  }
+
+  /** @return The maximum number of bits held. */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /** @return The number of bits held that are true. */
+  public int getTrueCount() {
+    return this.trueCount;
+  }
+
+  /** @return The number of bits held that are false. */
+  public int getFalseCount() {
+    return this.size - this.trueCount;
+  }
+
+  /**
+   * Writes the bits as hex, newest first, four bits per digit with the newest bit as the lowest bit
+   * of the first digit. Only allocates the returned string, so it's cheap enough to log.
+   *
+   * @return The bits in hex, e.g. "2/4:3" for four bits of which the newest two are true.
+   */
+  @Override
+  public String toString() {
+    final char[] digits = new char[(this.size + 3) / 4];
+    for (int digit = 0; digit < digits.length; digit++) {
+      int nibble = 0;
+      for (int bit = 0; bit < 4; bit++) {
+        final int ago = digit * 4 + bit;
+        if (ago < this.size && this.get(ago)) nibble |= 1 << bit;
+      }
+      digits[digit] = Character.forDigit(nibble, 16);
+    }
+    return this.trueCount + "/" + this.size + ":" + new String(digits);
+  }
+}
@@ -1,41 +1,185 @@
 package org.usfirst.frc.team449.robot.other;
 
+import edu.wpi.first.wpilibj.RobotController;
 import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.LongSupplier;
 
 /**
- * A wrapper on {@link System}.currentTimeMillis that caches the time, to avoid calling the
- * currentTimeMillis method.
+ * A monotonic clock that caches the time once per loop, so every reader in a loop sees the same
+ * time without calling into the time source.
+ *
+ * <p>Reads are lock-free: the cached time is published through volatile fields guarded by a
+ * sequence counter, so they are safe to call from {@link edu.wpi.first.wpilibj.Notifier} threads.
+ * Only the main loop should call {@link Clock#updateTime()}.
+ *
+ * <p>The time source is {@link System#nanoTime()} by default, but can be replaced with the FPGA
+ * timestamp or with a {@link VirtualTimeSource} so that simulations and unit tests can run faster
+ * than real time.
  */
 public class Clock {
 
-  /** The starting time for this clock. */
-  private static long startTime;
+  /** A time source that reads the FPGA timestamp, which is what WPILib itself uses. */
+  @NotNull
+  public static final LongSupplier FPGA_TIME_SOURCE = () -> RobotController.getFPGATime() * 1000;
+
+  /** The time source for this clock, in nanoseconds. */
+  @NotNull private static volatile LongSupplier timeSource = System::nanoTime;
+
+  /** The starting time for this clock, in nanoseconds, as read from the time source. */
+  private static volatile long startTime = System.nanoTime();
+
+  /**
+   * Incremented before and after the cached values are written, so it's odd while a write is in
+   * progress.
+   */
+  private static volatile long sequence;
 
-  /** The time since startTime, in milliseconds. */
-  private static long currentTime;
+  /** The time since startTime as of the most recent update, in nanoseconds. */
+  private static volatile long currentTime;
+
+  /** The number of times the time has been updated since the start time was set. */
+  private static volatile long cycle;
 
   /** Make constructor private so it can't be called */
   private Clock() {}
 
-  /** Updates the current time. */
+  /**
+   * Replaces the source of time for this clock and resets the start time.
+   *
+   * @param source A source of monotonically increasing time, in nanoseconds.
+   */
+  public static synchronized void setTimeSource(@NotNull final LongSupplier source) {
+    timeSource = source;
+    setStartTime();
+  }
+
+  /** Updates the current time. Should only be called from the main loop. */
   public static synchronized void updateTime() {
-    currentTime = System.currentTimeMillis() - startTime;
+    final long now = timeSource.getAsLong() - startTime;
+    sequence++;
+    currentTime = now;
+    cycle++;
+    sequence++;
   }
 
   /** Sets the start time to the current time. */
   public static synchronized void setStartTime() {
-    startTime = System.currentTimeMillis();
+    final long start = timeSource.getAsLong();
+    sequence++;
+    startTime = start;
+    currentTime = 0;
+    cycle = 0;
+    sequence++;
   }
 
-  /** @return The time since the start time, in milliseconds. */
+  /** @return The time since the start time as of the last update, in nanoseconds. */
   @Contract(pure = true)
-  public static synchronized long currentTimeMillis() {
+  public static long currentTimeNanos() {
     return currentTime;
   }
 
-  /** @return The time since the start time, in esconds. */
+  /** @return The time since the start time, in milliseconds. */
+  @Contract(pure = true)
+  public static long currentTimeMillis() {
+    return currentTime / 1_000_000;
+  }
+
+  /** @return The time since the start time, in seconds. */
+  @Contract(pure = true)
+  public static double currentTimeSeconds() {
+    return currentTime * 1e-9;
+  }
+
+  /** @return The number of times the time has been updated since the start time was set. */
   @Contract(pure = true)
-  public static synchronized double currentTimeSeconds() {
-    return currentTime * 0.001;
+  public static long currentCycle() {
+    return cycle;
+  }
+
+  /**
+   * Reads the time source directly instead of using the cached time. Use this when timing something
+   * within a loop.
+   *
+   * @return The time since the start time right now, in nanoseconds.
+   */
+  public static long nowNanos() {
+    return timeSource.getAsLong() - startTime;
+  }
+
+  /**
+   * Copies the cached time and cycle number into a snapshot, making sure both come from the same
+   * update.
+   *
+   * @param snapshot The snapshot to write into. Reuse it to avoid garbage collection.
+   * @return The snapshot passed in.
+   */
+  @NotNull
+  public static Snapshot snapshot(@NotNull final Snapshot snapshot) {
+    long before;
+    do {
+      before = sequence;
+      snapshot.timeNanos = currentTime;
+      snapshot.cycle = cycle;
+    } while ((before & 1) != 0 || before != sequence);
+    return snapshot;
+  }
+
+  /** The time and cycle number of a single update of the clock. */
+  public static class Snapshot {
+    /** The time since the start time, in nanoseconds. */
+    private long timeNanos;
+    /** The number of updates since the start time was set. */
+    private long cycle;
+
+    /** @return The time since the start time, in nanoseconds. */
+    public long getTimeNanos() {
+      return this.timeNanos;
+    }
+
+    /** @return The time since the start time, in seconds. */
+    public double getTimeSeconds() {
+      return this.timeNanos * 1e-9;
+    }
+
+    /** @return The number of updates since the start time was set. */
+    public long getCycle() {
+      return this.cycle;
+    }
+  }
+
+  /**
+   * A time source that only moves when told to, for running simulations faster than real time.
+   * Thread-safe.
+   */
+  public static class VirtualTimeSource implements LongSupplier {
+    /** The current virtual time, in nanoseconds. */
+    private volatile long nanos;
+
+    /** @return The current virtual time, in nanoseconds. */
+    @Override
+    public long getAsLong() {
+      return this.nanos;
+    }
+
+    /**
+     * Moves time forward.
+     *
+     * @param deltaNanos How far to move time forward, in nanoseconds. Must not be negative.
+     */
+    public synchronized void advance(final long deltaNanos) {
+      if (deltaNanos < 0) throw new IllegalArgumentException("Time can't go backwards.");
+      this.nanos += deltaNanos;
+    }
+
+    /**
+     * Moves time forward.
+     *
+     * @param deltaSeconds How far to move time forward, in seconds. Must not be negative.
+     */
+    public void advanceSeconds(final double deltaSeconds) {
+      this.advance(Math.round(deltaSeconds * 1e9));
+    }
   }
 }
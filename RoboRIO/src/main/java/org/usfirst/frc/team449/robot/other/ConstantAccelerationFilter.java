@@ -0,0 +1,159 @@
+package org.usfirst.frc.team449.robot.other;
+
+/**
+ * A Kalman filter for something moving along one axis with roughly constant acceleration, tracking
+ * its position, velocity and acceleration.
+ *
+ * <p>The acceleration is modelled as changing by random jerk, and any measurement that's a linear
+ * combination of the three states, like a position, a delayed velocity or an acceleration, can be
+ * folded in one at a time. The state and its covariance are kept in fields, so nothing allocates.
+ */
+public class ConstantAccelerationFilter {
+
+  /** The variance of the jerk, which is how fast the acceleration may change. */
+  private final double jerkVariance;
+
+  /** The estimated position, velocity and acceleration. */
+  private double position, velocity, acceleration;
+
+  /** The upper half of the symmetric covariance of the estimate, row by row. */
+  private double p00, p01, p02, p11, p12, p22;
+
+  /**
+   * Default constructor. The filter starts at rest at 0, with no idea of where it really is, so the
+   * first measurements are taken more or less as they are.
+   *
+   * @param jerkStdDev The standard deviation of the jerk, in units/sec^3.
+   */
+  public ConstantAccelerationFilter(final double jerkStdDev) {
+    this.jerkVariance = jerkStdDev * jerkStdDev;
+    this.reset();
+  }
+
+  /** Forgets the estimate, going back to how the filter started. */
+  public void reset() {
+    this.reset(0, 0, 0, 1e6, 1e6, 1e6);
+  }
+
+  /**
+   * Sets the estimate.
+   *
+   * @param position The position.
+   * @param velocity The velocity.
+   * @param acceleration The acceleration.
+   * @param positionVariance How uncertain the position is.
+   * @param velocityVariance How uncertain the velocity is.
+   * @param accelerationVariance How uncertain the acceleration is.
+   */
+  public void reset(
+      final double position,
+      final double velocity,
+      final double acceleration,
+      final double positionVariance,
+      final double velocityVariance,
+      final double accelerationVariance) {
+    this.position = position;
+    this.velocity = velocity;
+    this.acceleration = acceleration;
+    this.p00 = positionVariance;
+    this.p11 = velocityVariance;
+    this.p22 = accelerationVariance;
+    this.p01 = this.p02 = this.p12 = 0;
+  }
+
+  /**
+   * Sets the position without touching the velocity or acceleration, for when what's being
+   * measured jumps, like an encoder being reset.
+   *
+   * @param position The new position.
+   * @param positionVariance How uncertain the new position is.
+   */
+  public void setPosition(final double position, final double positionVariance) {
+    this.position = position;
+    this.p00 = positionVariance;
+    this.p01 = this.p02 = 0;
+  }
+
+  /**
+   * Moves the estimate forward in time.
+   *
+   * @param dt The time since the last prediction, in seconds. Does nothing unless positive.
+   */
+  public void predict(final double dt) {
+    if (!(dt > 0)) return;
+    final double half = dt * dt / 2;
+    this.position += this.velocity * dt + this.acceleration * half;
+    this.velocity += this.acceleration * dt;
+
+    // P = F P F^T + Q, with F = [[1, dt, dt^2/2], [0, 1, dt], [0, 0, 1]].
+    final double r00 = this.p00 + dt * this.p01 + half * this.p02;
+    final double r01 = this.p01 + dt * this.p11 + half * this.p12;
+    final double r02 = this.p02 + dt * this.p12 + half * this.p22;
+    final double r11 = this.p11 + dt * this.p12;
+    final double r12 = this.p12 + dt * this.p22;
+    final double dt2 = dt * dt;
+    final double dt3 = dt2 * dt;
+    final double q = this.jerkVariance;
+    this.p00 = r00 + dt * r01 + half * r02 + q * dt3 * dt2 / 20;
+    this.p01 = r01 + dt * r02 + q * dt2 * dt2 / 8;
+    this.p02 = r02 + q * dt3 / 6;
+    this.p11 = r11 + dt * r12 + q * dt3 / 3;
+    this.p12 = r12 + q * dt2 / 2;
+    this.p22 += q * dt;
+  }
+
+  /**
+   * Corrects the estimate with a measurement of h0 * position + h1 * velocity + h2 * acceleration.
+   * A NaN measurement is ignored.
+   *
+   * @param h0 The weight of the position in the measurement.
+   * @param h1 The weight of the velocity in the measurement.
+   * @param h2 The weight of the acceleration in the measurement.
+   * @param measurement What was measured.
+   * @param variance The variance of the measurement's noise.
+   */
+  public void correct(
+      final double h0,
+      final double h1,
+      final double h2,
+      final double measurement,
+      final double variance) {
+    if (Double.isNaN(measurement)) return;
+    // P H^T
+    final double c0 = this.p00 * h0 + this.p01 * h1 + this.p02 * h2;
+    final double c1 = this.p01 * h0 + this.p11 * h1 + this.p12 * h2;
+    final double c2 = this.p02 * h0 + this.p12 * h1 + this.p22 * h2;
+    final double innovationVariance = h0 * c0 + h1 * c1 + h2 * c2 + variance;
+    if (!(innovationVariance > 0)) return;
+    final double innovation =
+        measurement - (h0 * this.position + h1 * this.velocity + h2 * this.acceleration);
+    final double k0 = c0 / innovationVariance;
+    final double k1 = c1 / innovationVariance;
+    final double k2 = c2 / innovationVariance;
+    this.position += k0 * innovation;
+    this.velocity += k1 * innovation;
+    this.acceleration += k2 * innovation;
+    // P -= K H P, which is K (P H^T)^T since P is symmetric.
+    this.p00 -= k0 * c0;
+    this.p01 -= k0 * c1;
+    this.p02 -= k0 * c2;
+    this.p11 -= k1 * c1;
+    this.p12 -= k1 * c2;
+    this.p22 -= k2 * c2;
+  }
+
+  /** @return The estimated position. */
+  public double getPosition() {
+    return this.position;
+  }
+
+  /** @return The estimated velocity, in units/sec. */
+  public double getVelocity() {
+    return this.velocity;
+  }
+
+  /** @return The estimated acceleration, in units/sec^2. */
+  public double getAcceleration() {
+    return this.acceleration;
+  }
+}
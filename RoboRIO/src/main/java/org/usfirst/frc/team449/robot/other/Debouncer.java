@@ -46,9 +46,10 @@ public class Debouncer extends ConditionTimingComponent {
     return this.hasBeenTrueForAtLeast(bufferTime);
   }
 
+  /** @return The result of the last {@link #get(boolean)}, without updating the condition. */
   @Log
   @Contract(pure = true)
   private boolean log_get() {
-    return this.get(this.isTrue());
+    return this.hasBeenTrueForAtLeast(this.bufferTime);
   }
 }
@@ -2,15 +2,16 @@ package org.usfirst.frc.team449.robot.other;
 
 import io.github.oblarg.oblog.Loggable;
 import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
 
-import java.util.LinkedList;
-
-/** Debouncer that takes the average of the samples in a limited-length buffer. */
+/**
+ * Debouncer that takes the average of the samples in a limited-length buffer. The buffer is
+ * bit-packed, so updating doesn't allocate.
+ */
 public class DebouncerEx implements Loggable {
-  private final double bufferSize;
   private final boolean stateWhenTied;
-  @Log.ToString private final LinkedList<Boolean> buffer;
-  @Log private int bufferSum;
+  /** The most recent samples, logged as a hex bitmap. */
+  @NotNull @Log.ToString protected final BitHistory buffer;
 
   /**
    * Constructor for a time given in seconds.
@@ -20,9 +21,8 @@ public class DebouncerEx implements Loggable {
    *     samples in the buffer
    */
   public DebouncerEx(final int bufferSize, final boolean stateWhenTied) {
-    this.bufferSize = bufferSize;
     this.stateWhenTied = stateWhenTied;
-    this.buffer = new LinkedList<>();
+    this.buffer = new BitHistory(bufferSize);
   }
 
   public DebouncerEx(final int bufferSize) {
@@ -30,17 +30,19 @@ public class DebouncerEx implements Loggable {
   }
 
   public void update(final boolean currentState) {
-    this.buffer.addFirst(currentState);
-    this.bufferSum += currentState ? 1 : -1;
+    this.buffer.add(currentState);
+  }
 
-    if (this.buffer.size() > this.bufferSize) {
-      this.bufferSum -= buffer.removeLast() ? 1 : -1;
-    }
+  /** @return the number of true samples in the buffer minus the number of false ones */
+  @Log
+  public int getBufferSum() {
+    return this.buffer.getTrueCount() - this.buffer.getFalseCount();
   }
 
   @Log
   public boolean get() {
-    if (this.bufferSum == 0) return this.stateWhenTied;
-    return this.bufferSum > 0;
+    final int bufferSum = this.getBufferSum();
+    if (bufferSum == 0) return this.stateWhenTied;
+    return bufferSum > 0;
   }
 }
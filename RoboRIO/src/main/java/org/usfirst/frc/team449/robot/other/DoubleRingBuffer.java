@@ -0,0 +1,114 @@
+package org.usfirst.frc.team449.robot.other;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * A fixed-size ring of records made of a fixed number of doubles, for handing data from one thread
+ * to others without locking or allocating.
+ *
+ * <p>Exactly one thread may write. The writer fills in the next record with {@link
+ * DoubleRingBuffer#set(int, double)} and makes it visible with {@link DoubleRingBuffer#publish()}.
+ * Any number of threads may read. Readers never block the writer: a read of a record that gets
+ * overwritten while it's being copied fails instead of returning torn data.
+ */
+public class DoubleRingBuffer {
+
+  /** The number of doubles in each record. */
+  private final int width;
+  /** The number of records kept, a power of two. */
+  private final int capacity;
+  /** capacity - 1, for wrapping indices. */
+  private final int mask;
+  /** The records, one after another. */
+  @NotNull private final double[] data;
+  /** The number of records published so far. Written only by the writer. */
+  private volatile long published;
+
+  /**
+   * Default constructor.
+   *
+   * @param capacity The minimum number of records to keep. Rounded up to a power of two.
+   * @param width The number of doubles in each record.
+   */
+  public DoubleRingBuffer(final int capacity, final int width) {
+    if (capacity < 1 || width < 1) {
+      throw new IllegalArgumentException("Capacity and width must be positive.");
+    }
+    this.capacity = ceilPowerOfTwo(capacity);
+    this.mask = this.capacity - 1;
+    this.width = width;
+    this.data = new double[this.capacity * width];
+  }
+
+  /**
+   * @param n A positive number.
+   * @return The smallest power of two that is at least n.
+   */
+  private static int ceilPowerOfTwo(final int n) {
+    return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+  }
+
+  /** @return The number of doubles in each record. */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /** @return The number of records kept. */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Sets a field of the record being written. Only the writer may call this.
+   *
+   * @param field The index of the field within the record.
+   * @param value The value of the field.
+   */
+  public void set(final int field, final double value) {
+    this.data[(int) (this.published & this.mask) * this.width + field] = value;
+  }
+
+  /** Makes the record being written visible to readers. Only the writer may call this. */
+  public void publish() {
+    this.published = this.published + 1;
+    // Keep the next record's writes from being seen before this count is.
+    VarHandle.storeStoreFence();
+  }
+
+  /** @return The number of records published so far. The newest record has index one less. */
+  public long getPublishedCount() {
+    return this.published;
+  }
+
+  /**
+   * Copies a published record.
+   *
+   * @param index The index of the record, counting from the first one ever published.
+   * @param out The array to copy the record into. Must be at least as long as the width.
+   * @return false if the record hasn't been published yet or was overwritten, true otherwise.
+   */
+  public boolean read(final long index, @NotNull final double[] out) {
+    if (index < 0 || index >= this.published) return false;
+    System.arraycopy(this.data, (int) (index & this.mask) * this.width, out, 0, this.width);
+    // Make sure the copy happens before the count is checked again.
+    VarHandle.acquireFence();
+    // The writer is filling in the slot of record number published, so that one's torn.
+    return index > this.published - this.capacity;
+  }
+
+  /**
+   * Copies the newest published record.
+   *
+   * @param out The array to copy the record into. Must be at least as long as the width.
+   * @return false if nothing has been published yet, true otherwise.
+   */
+  public boolean readLatest(@NotNull final double[] out) {
+    while (true) {
+      final long count = this.published;
+      if (count == 0) return false;
+      if (this.read(count - 1, out)) return true;
+    }
+  }
+}
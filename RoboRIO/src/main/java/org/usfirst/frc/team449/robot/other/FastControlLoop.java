@@ -0,0 +1,126 @@
+package org.usfirst.frc.team449.robot.other;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import edu.wpi.first.wpilibj.Notifier;
+import io.github.oblarg.oblog.Loggable;
+import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static org.usfirst.frc.team449.robot.other.Util.getLogPrefix;
+
+/**
+ * Runs control callbacks on a {@link Notifier} faster than the main loop, 200 Hz by default, so
+ * that control loops that run on the roboRIO can be tightened without speeding up everything else.
+ *
+ * <p>Callbacks run on the Notifier thread, so they should only touch primitives and data handed
+ * over through something thread-safe like a {@link DoubleRingBuffer}, and must not allocate.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class FastControlLoop implements Loggable {
+
+  /** The period of the loop, in seconds. */
+  private final double periodSecs;
+  /** The Notifier that runs the callbacks. */
+  @NotNull private final Notifier notifier;
+  /** The profiler stage timing each run of the loop. */
+  @NotNull private final LoopProfiler.Stage stage;
+  /** The callbacks to run. Replaced, never modified, so the loop can read it without locking. */
+  @NotNull private volatile Callback[] callbacks = new Callback[0];
+  /** The time the loop last ran, in nanoseconds, or -1 if it hasn't run yet. */
+  private long lastRunNanos = -1;
+  /** The number of times the loop has run, for logging. */
+  private volatile long runs;
+  /** Whether the Notifier has been started. */
+  private boolean started;
+
+  /**
+   * Default constructor.
+   *
+   * @param periodSecs The period of the loop, in seconds. Defaults to 0.005, i.e. 200 Hz.
+   */
+  @JsonCreator
+  public FastControlLoop(@Nullable final Double periodSecs) {
+    this.periodSecs = periodSecs != null ? periodSecs : 0.005;
+    this.notifier = new Notifier(this::run);
+    this.notifier.setName("FastControlLoop");
+    this.stage = LoopProfiler.createStage("FastControlLoop");
+  }
+
+  /**
+   * Adds a callback to the loop, starting the loop if it isn't running yet.
+   *
+   * @param callback The callback to run every period.
+   */
+  public synchronized void register(@NotNull final Callback callback) {
+    final Callback[] newCallbacks = Arrays.copyOf(this.callbacks, this.callbacks.length + 1);
+    newCallbacks[newCallbacks.length - 1] = callback;
+    this.callbacks = newCallbacks;
+    if (!this.started) {
+      this.started = true;
+      this.notifier.startPeriodic(this.periodSecs);
+    }
+  }
+
+  /** Stops running the callbacks until {@link FastControlLoop#start()} is called. */
+  public synchronized void stop() {
+    this.notifier.stop();
+    this.started = false;
+  }
+
+  /** Starts running the callbacks again after {@link FastControlLoop#stop()}. */
+  public synchronized void start() {
+    if (!this.started) {
+      this.started = true;
+      this.lastRunNanos = -1;
+      this.notifier.startPeriodic(this.periodSecs);
+    }
+  }
+
+  /** Runs every callback once. Called on the Notifier thread. */
+  private void run() {
+    this.stage.start();
+    final long now = Clock.nowNanos();
+    final double dt = this.lastRunNanos < 0 ? this.periodSecs : (now - this.lastRunNanos) * 1e-9;
+    this.lastRunNanos = now;
+    final Callback[] toRun = this.callbacks;
+    for (final Callback callback : toRun) {
+      try {
+        callback.run(now * 1e-9, dt);
+      } catch (final RuntimeException ex) {
+        // Don't let one callback kill the thread the others run on.
+        System.out.println(getLogPrefix(this) + "Callback threw " + ex);
+      }
+    }
+    this.runs++;
+    this.stage.end();
+  }
+
+  /** @return The period of the loop, in seconds. */
+  public double getPeriodSecs() {
+    return this.periodSecs;
+  }
+
+  /** @return The number of times the loop has run. */
+  @Log
+  public long getRuns() {
+    return this.runs;
+  }
+
+  /** A control callback run by the loop. */
+  @FunctionalInterface
+  public interface Callback {
+    /**
+     * Runs one step of control.
+     *
+     * @param timeSecs The time the step started at, in seconds, as given by {@link
+     *     Clock#nowNanos()}.
+     * @param dtSecs The time since the previous step, in seconds.
+     */
+    void run(double timeSecs, double dtSecs);
+  }
+}
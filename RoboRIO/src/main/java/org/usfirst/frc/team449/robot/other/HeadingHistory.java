@@ -0,0 +1,82 @@
+package org.usfirst.frc.team449.robot.other;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The recent headings of the robot, by time, so that measurements taken a while ago, like vision,
+ * can be lined up with the heading the robot had when they were taken.
+ *
+ * <p>One thread records headings, typically the gyro's as they come in, and another looks them up
+ * without locking or allocating. Lookups are a binary search, interpolating between the headings
+ * on either side of the time asked for.
+ */
+public class HeadingHistory {
+
+  /** The fields of each record. */
+  private static final int TIME = 0, HEADING = 1;
+
+  /** The recorded times and headings. */
+  @NotNull private final DoubleRingBuffer buffer;
+  /** The records on either side of the time being looked up. */
+  @NotNull private final double[] before = new double[2], after = new double[2];
+  /** The record being checked. */
+  @NotNull private final double[] mid = new double[2];
+
+  /**
+   * Default constructor.
+   *
+   * @param capacity The minimum number of headings to keep.
+   */
+  public HeadingHistory(final int capacity) {
+    this.buffer = new DoubleRingBuffer(Math.max(capacity, 2), 2);
+  }
+
+  /**
+   * Records a heading. Only one thread may record, and times must not go backwards.
+   *
+   * @param timeSecs When the heading was measured, in seconds on the {@link Clock}.
+   * @param headingDegrees The heading, in degrees.
+   */
+  public void record(final double timeSecs, final double headingDegrees) {
+    this.buffer.set(TIME, timeSecs);
+    this.buffer.set(HEADING, headingDegrees);
+    this.buffer.publish();
+  }
+
+  /**
+   * Looks up the heading at a time. Only one thread may look up at a time.
+   *
+   * @param timeSecs A time, in seconds on the {@link Clock}.
+   * @return The heading at that time in degrees on [-180, 180], interpolated between the nearest
+   *     records, the newest heading if the time is after it, or NaN if the time is before the
+   *     oldest record.
+   */
+  public double getHeadingAt(final double timeSecs) {
+    final long newest = this.buffer.getPublishedCount() - 1;
+    if (newest < 0 || !this.buffer.read(newest, this.after)) return Double.NaN;
+    if (timeSecs >= this.after[TIME]) return Math.IEEEremainder(this.after[HEADING], 360);
+
+    // Leave a record of slack, since the oldest one can be overwritten at any moment.
+    long low = Math.max(0, newest - this.buffer.getCapacity() + 2);
+    long high = newest;
+    if (!this.buffer.read(low, this.before) || timeSecs < this.before[TIME]) return Double.NaN;
+    // Keep time(low) <= timeSecs < time(high).
+    while (high - low > 1) {
+      final long middle = (low + high) >>> 1;
+      if (!this.buffer.read(middle, this.mid)) return Double.NaN;
+      if (this.mid[TIME] <= timeSecs) {
+        low = middle;
+        System.arraycopy(this.mid, 0, this.before, 0, 2);
+      } else {
+        high = middle;
+        System.arraycopy(this.mid, 0, this.after, 0, 2);
+      }
+    }
+
+    final double span = this.after[TIME] - this.before[TIME];
+    final double t = span > 0 ? (timeSecs - this.before[TIME]) / span : 0;
+    // Go the short way round, in case the heading wrapped between the two.
+    final double change = Math.IEEEremainder(this.after[HEADING] - this.before[HEADING], 360);
+    return Math.IEEEremainder(this.before[HEADING] + t * change, 360);
+  }
+}
@@ -0,0 +1,203 @@
+package org.usfirst.frc.team449.robot.other;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times each stage of the main loop with {@link System#nanoTime()} and publishes rolling p50, p99
+ * and max times for every stage as one NetworkTables entry.
+ *
+ * <p>The published entry {@code LoopProfiler/stats} is a flat double array holding {@code p50,
+ * p99, max} in milliseconds for each stage, in the order given by the string array {@code
+ * LoopProfiler/stages}. Neither timing nor publishing allocates once every stage has been created.
+ *
+ * <p>With allocation auditing on, which it is by default in simulation and can be toggled with the
+ * boolean entry {@code LoopProfiler/auditAllocations}, each stage also records how many bytes it
+ * allocated per run, published as {@code p50, max} per stage in {@code LoopProfiler/allocBytes}.
+ * The periodic path is meant to allocate nothing, so anything nonzero there is a bug to find.
+ */
+public final class LoopProfiler {
+
+  /** The number of loops each stage's statistics are computed over. 250 loops is 5 seconds. */
+  private static final int WINDOW_SIZE = 250;
+  /** How many loops to wait between publishing statistics. */
+  private static final int PUBLISH_PERIOD_LOOPS = 25;
+  /** The number of values published for each stage. */
+  private static final int VALUES_PER_STAGE = 3;
+  /** The number of allocation values published for each stage. */
+  private static final int ALLOC_VALUES_PER_STAGE = 2;
+
+  /** All the stages that have been created, in creation order. */
+  @NotNull private static final List<Stage> stages = new ArrayList<>();
+  /** The table statistics are published to. */
+  @NotNull private static final NetworkTable table =
+      NetworkTableInstance.getDefault().getTable("LoopProfiler");
+  /** The entry holding the name of each stage. */
+  @NotNull private static final NetworkTableEntry stageNamesEntry = table.getEntry("stages");
+  /** The entry holding the statistics of each stage. */
+  @NotNull private static final NetworkTableEntry statsEntry = table.getEntry("stats");
+  /** The entry holding the allocation statistics of each stage. */
+  @NotNull private static final NetworkTableEntry allocEntry = table.getEntry("allocBytes");
+  /** The entry that turns allocation auditing on and off. */
+  @NotNull private static final NetworkTableEntry auditEntry = table.getEntry("auditAllocations");
+  /** The array statistics are written into before publishing. Reallocated only on new stages. */
+  @NotNull private static double[] stats = new double[0];
+  /** The array allocation statistics are written into. Reallocated only on new stages. */
+  @NotNull private static double[] allocStats = new double[0];
+  /** Whether stages are currently being timed. */
+  private static volatile boolean enabled = true;
+  /** Whether stages are counting the bytes they allocate. */
+  private static volatile boolean auditAllocations;
+  /** Loops since statistics were last published. */
+  private static int loopsSincePublish;
+
+  /** Make constructor private so it can't be called */
+  private LoopProfiler() {}
+
+  /**
+   * Creates a new stage to be timed and published.
+   *
+   * @param name The name of the stage when published.
+   * @return The new stage.
+   */
+  @NotNull
+  public static synchronized Stage createStage(@NotNull final String name) {
+    final Stage stage = new Stage(name);
+    stages.add(stage);
+    stats = new double[stages.size() * VALUES_PER_STAGE];
+    allocStats = new double[stages.size() * ALLOC_VALUES_PER_STAGE];
+    final String[] names = new String[stages.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = stages.get(i).name;
+    }
+    stageNamesEntry.setStringArray(names);
+    return stage;
+  }
+
+  /** @param enabled Whether stages should be timed. Disabled stages record nothing. */
+  public static void setEnabled(final boolean enabled) {
+    LoopProfiler.enabled = enabled;
+  }
+
+  /** @return Whether stages are currently being timed. */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Turns counting the bytes each stage allocates on or off. Counting has a small cost per stage,
+   * so it's meant for simulation and debugging.
+   *
+   * @param audit Whether stages should count the bytes they allocate.
+   * @return Whether auditing is now on, which is false if this JVM can't count allocations.
+   */
+  public static boolean setAllocationAuditing(final boolean audit) {
+    auditAllocations = audit && AllocationCounter.isSupported();
+    auditEntry.setBoolean(auditAllocations);
+    return auditAllocations;
+  }
+
+  /** @return Whether stages are counting the bytes they allocate. */
+  public static boolean isAuditingAllocations() {
+    return auditAllocations;
+  }
+
+  /**
+   * Marks the end of a loop, publishing the statistics of every stage if enough loops have passed
+   * since they were last published.
+   */
+  public static synchronized void endLoop() {
+    if (!enabled || ++loopsSincePublish < PUBLISH_PERIOD_LOOPS) return;
+    loopsSincePublish = 0;
+    for (int i = 0; i < stages.size(); i++) {
+      final RollingHistogram histogram = stages.get(i).histogram;
+      stats[i * VALUES_PER_STAGE] = histogram.getPercentile(0.5) * 1e-3;
+      stats[i * VALUES_PER_STAGE + 1] = histogram.getPercentile(0.99) * 1e-3;
+      stats[i * VALUES_PER_STAGE + 2] = histogram.getMax() * 1e-3;
+    }
+    statsEntry.setDoubleArray(stats);
+
+    if (auditAllocations) {
+      for (int i = 0; i < stages.size(); i++) {
+        final RollingHistogram histogram = stages.get(i).allocHistogram;
+        allocStats[i * ALLOC_VALUES_PER_STAGE] = histogram.getPercentile(0.5);
+        allocStats[i * ALLOC_VALUES_PER_STAGE + 1] = histogram.getMax();
+      }
+      allocEntry.setDoubleArray(allocStats);
+    }
+    // Pick up changes made from the dashboard.
+    final boolean audit = auditEntry.getBoolean(auditAllocations);
+    if (audit != auditAllocations) {
+      setAllocationAuditing(audit);
+    }
+  }
+
+  /** A single timed section of the loop. Each stage should only be timed by one thread. */
+  public static final class Stage {
+    /** The name of this stage when published. */
+    @NotNull private final String name;
+    /** The recent durations of this stage, in microseconds. */
+    @NotNull private final RollingHistogram histogram = new RollingHistogram(WINDOW_SIZE);
+    /** The recent numbers of bytes allocated per run of this stage, when auditing. */
+    @NotNull private final RollingHistogram allocHistogram = new RollingHistogram(WINDOW_SIZE);
+    /** The time this stage was last started, in nanoseconds, or -1 if it isn't running. */
+    private long startNanos = -1;
+    /** The allocation counter when this stage was last started, if it's being audited. */
+    private long startAllocated;
+    /** Whether the current run of this stage is counting allocations. */
+    private boolean auditing;
+
+    /** @param name The name of this stage when published. */
+    private Stage(@NotNull final String name) {
+      this.name = name;
+    }
+
+    /** Starts timing this stage. */
+    public void start() {
+      this.auditing = enabled && auditAllocations;
+      if (this.auditing) this.startAllocated = AllocationCounter.start();
+      this.startNanos = enabled ? System.nanoTime() : -1;
+    }
+
+    /** Stops timing this stage and records how long it took. Does nothing if it wasn't started. */
+    public void end() {
+      if (this.startNanos < 0) return;
+      this.record(System.nanoTime() - this.startNanos);
+      this.startNanos = -1;
+      if (this.auditing) {
+        this.allocHistogram.add(AllocationCounter.bytesSince(this.startAllocated));
+        this.auditing = false;
+      }
+    }
+
+    /**
+     * Records a duration measured elsewhere for this stage.
+     *
+     * @param nanos The duration, in nanoseconds.
+     */
+    public void record(final long nanos) {
+      this.histogram.add(nanos / 1000);
+    }
+
+    /** @return The name of this stage when published. */
+    @NotNull
+    public String getName() {
+      return this.name;
+    }
+
+    /** @return The most recently recorded duration of this stage, in milliseconds. */
+    public double getLastMillis() {
+      return this.histogram.getLast() * 1e-3;
+    }
+
+    /** @return The bytes allocated by the most recent audited run of this stage. */
+    public long getLastAllocatedBytes() {
+      return this.allocHistogram.getLast();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package org.usfirst.frc.team449.robot.other;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Debouncer that turns on once at least N of the last M samples are true, and only turns off again
+ * once at most a lower number of them are, so it doesn't chatter around the threshold.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class NOfMDebouncer extends DebouncerEx {
+  /** The number of true samples needed to turn on. */
+  private final int onCount;
+  /** The number of true samples at or below which to turn off. */
+  private final int offCount;
+  /** The current output. */
+  private boolean state;
+
+  /**
+   * Default constructor.
+   *
+   * @param windowSize the number of samples to look at, M
+   * @param onCount the number of true samples in the window needed to turn on, N
+   * @param offCount the number of true samples in the window at or below which to turn off. Must be
+   *     less than onCount. Defaults to onCount - 1, i.e. no hysteresis.
+   */
+  @JsonCreator
+  public NOfMDebouncer(
+      @JsonProperty(required = true) final int windowSize,
+      @JsonProperty(required = true) final int onCount,
+      @Nullable final Integer offCount) {
+    super(windowSize);
+    this.onCount = onCount;
+    this.offCount = offCount != null ? offCount : onCount - 1;
+    if (this.offCount >= this.onCount || this.onCount > windowSize) {
+      throw new IllegalArgumentException("Need offCount < onCount <= windowSize.");
+    }
+  }
+
+  @Override
+  public void update(final boolean currentState) {
+    super.update(currentState);
+    final int trueCount = this.buffer.getTrueCount();
+    if (trueCount >= this.onCount) {
+      this.state = true;
+    } else if (trueCount <= this.offCount) {
+      this.state = false;
+    }
+  }
+
+  @Override
+  @Log
+  public boolean get() {
+    return this.state;
+  }
+}
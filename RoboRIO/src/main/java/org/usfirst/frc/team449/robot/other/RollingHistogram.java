@@ -0,0 +1,140 @@
+package org.usfirst.frc.team449.robot.other;
+
+import org.jetbrains.annotations.Contract;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of the most recent samples of a non-negative whole-number value, like a duration in
+ * microseconds or a number of bytes, used to get percentiles without sorting or allocating. The
+ * histogram doesn't know the unit; whoever builds one says what it holds.
+ *
+ * <p>Samples are bucketed log-linearly: every value below 64 gets its own bucket, and above that
+ * each power of two is split into 32 buckets, so the relative error of a percentile is at most
+ * about 3%.
+ */
+public class RollingHistogram {
+
+  /** Number of buckets that are one unit wide. */
+  private static final int LINEAR_BUCKETS = 64;
+  /** log2 of the number of sub-buckets each power of two above the linear range is split into. */
+  private static final int SUB_BUCKET_BITS = 5;
+  /** The highest power of two that gets its own set of buckets. Samples above it are clamped. */
+  private static final int MAX_EXPONENT = 30;
+  /** Total number of buckets. */
+  private static final int BUCKET_COUNT =
+      LINEAR_BUCKETS + ((MAX_EXPONENT - SUB_BUCKET_BITS) << SUB_BUCKET_BITS);
+
+  /** The samples currently in the window, as a circular buffer. */
+  private final long[] samples;
+  /** How many samples in the window fall into each bucket. */
+  private final int[] bucketCounts = new int[BUCKET_COUNT];
+  /** The index in samples the next sample will be written to. */
+  private int head;
+  /** The number of samples currently in the window. */
+  private int count;
+
+  /**
+   * Default constructor.
+   *
+   * @param windowSize The number of most recent samples to compute statistics over.
+   */
+  public RollingHistogram(final int windowSize) {
+    if (windowSize < 1) throw new IllegalArgumentException("windowSize must be positive");
+    this.samples = new long[windowSize];
+  }
+
+  /**
+   * Gets the bucket a sample falls into.
+   *
+   * @param value The sample.
+   * @return The index of the bucket.
+   */
+  @Contract(pure = true)
+  private static int bucketOf(final long value) {
+    if (value < LINEAR_BUCKETS) return (int) Math.max(value, 0);
+    final int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+    final int shift = exponent - SUB_BUCKET_BITS;
+    final int subBucket = (int) Math.min(value >>> shift, (2L << SUB_BUCKET_BITS) - 1);
+    return LINEAR_BUCKETS
+        + ((exponent - SUB_BUCKET_BITS - 1) << SUB_BUCKET_BITS)
+        + subBucket
+        - (1 << SUB_BUCKET_BITS);
+  }
+
+  /**
+   * Gets the exclusive upper bound of a bucket.
+   *
+   * @param bucket The index of the bucket.
+   * @return The smallest value that is past the bucket.
+   */
+  @Contract(pure = true)
+  private static long upperBoundOf(final int bucket) {
+    if (bucket < LINEAR_BUCKETS) return bucket + 1;
+    final int offset = bucket - LINEAR_BUCKETS;
+    final int shift = (offset >>> SUB_BUCKET_BITS) + 1;
+    final long subBucket = (offset & ((1 << SUB_BUCKET_BITS) - 1)) + (1 << SUB_BUCKET_BITS);
+    return (subBucket + 1) << shift;
+  }
+
+  /**
+   * Adds a sample, pushing the oldest one out of the window if it is full.
+   *
+   * @param value The sample, in whatever unit this histogram holds.
+   */
+  public void add(final long value) {
+    if (this.count == this.samples.length) {
+      this.bucketCounts[bucketOf(this.samples[this.head])]--;
+    } else {
+      this.count++;
+    }
+    this.samples[this.head] = value;
+    this.bucketCounts[bucketOf(value)]++;
+    this.head = (this.head + 1) % this.samples.length;
+  }
+
+  /**
+   * Gets an upper bound on a percentile of the samples in the window.
+   *
+   * @param percentile The percentile, on [0, 1].
+   * @return The upper bound of the bucket the percentile falls in, but never more than {@link
+   *     RollingHistogram#getMax()}. 0 if there are no samples.
+   */
+  public long getPercentile(final double percentile) {
+    if (this.count == 0) return 0;
+    final long rank = Math.max(1, (long) Math.ceil(percentile * this.count));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += this.bucketCounts[bucket];
+      if (seen >= rank) return Math.min(upperBoundOf(bucket), this.getMax());
+    }
+    return this.getMax();
+  }
+
+  /** @return The largest sample in the window, or 0 if there are no samples. */
+  public long getMax() {
+    long max = 0;
+    for (int i = 0; i < this.count; i++) {
+      max = Math.max(max, this.samples[i]);
+    }
+    return max;
+  }
+
+  /** @return The most recent sample, or 0 if there are no samples. */
+  public long getLast() {
+    if (this.count == 0) return 0;
+    return this.samples[(this.head + this.samples.length - 1) % this.samples.length];
+  }
+
+  /** @return The number of samples currently in the window. */
+  public int getCount() {
+    return this.count;
+  }
+
+  /** Removes all samples from the window. */
+  public void clear() {
+    Arrays.fill(this.bucketCounts, 0);
+    this.head = 0;
+    this.count = 0;
+  }
+}
@@ -0,0 +1,134 @@
+package org.usfirst.frc.team449.robot.other;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import io.github.oblarg.oblog.Loggable;
+import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Debouncer that looks at the fraction of the last few seconds a condition was true for, rather
+ * than the fraction of samples, so it isn't thrown off by loops that run late. Turns on above one
+ * fraction and off below a lower one.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class TimeWeightedDebouncer implements Loggable {
+  /** How far back to look, in seconds. */
+  private final double windowSecs;
+  /** The fraction of the window the condition has to be true for to turn on. */
+  private final double onFraction;
+  /** The fraction of the window at or below which to turn off. */
+  private final double offFraction;
+
+  /** The state of each finished sample, oldest first, logged as a hex bitmap. */
+  @NotNull @Log.ToString private final BitHistory states;
+  /** The duration of each finished sample, in the same order as states, in a circular buffer. */
+  @NotNull private final double[] durations;
+  /** The index in durations of the oldest finished sample. */
+  private int oldest;
+  /** The total duration of the finished samples, in seconds. */
+  private double totalTime;
+  /** The total duration of the finished samples that were true, in seconds. */
+  private double trueTime;
+
+  /** The time the newest sample started, in seconds, or NaN if there hasn't been one. */
+  private double lastTime = Double.NaN;
+  /** The state of the newest sample. */
+  private boolean lastState;
+  /** The current output. */
+  private boolean state;
+
+  /**
+   * Default constructor.
+   *
+   * @param windowSecs how far back to look, in seconds
+   * @param onFraction the fraction of the window the condition has to be true for to turn on
+   * @param offFraction the fraction of the window at or below which to turn off. Defaults to
+   *     onFraction, i.e. no hysteresis.
+   * @param maxSamples the most samples to remember. If the window holds more than this, it's
+   *     shortened. Defaults to 256.
+   */
+  @JsonCreator
+  public TimeWeightedDebouncer(
+      @JsonProperty(required = true) final double windowSecs,
+      @JsonProperty(required = true) final double onFraction,
+      @Nullable final Double offFraction,
+      @Nullable final Integer maxSamples) {
+    this.windowSecs = windowSecs;
+    this.onFraction = onFraction;
+    this.offFraction = offFraction != null ? offFraction : onFraction;
+    final int capacity = maxSamples != null ? maxSamples : 256;
+    this.states = new BitHistory(capacity);
+    this.durations = new double[capacity];
+  }
+
+  /** Forgets the oldest finished sample. */
+  private void removeOldest() {
+    final double duration = this.durations[this.oldest];
+    if (this.states.removeOldest()) this.trueTime -= duration;
+    this.totalTime -= duration;
+    this.oldest = this.oldest + 1 == this.durations.length ? 0 : this.oldest + 1;
+  }
+
+  /**
+   * Adds a sample taken at the current time according to {@link Clock}.
+   *
+   * @param currentState the current state of the condition
+   */
+  public void update(final boolean currentState) {
+    this.update(Clock.currentTimeSeconds(), currentState);
+  }
+
+  /**
+   * Adds a sample.
+   *
+   * @param timeSecs the time of the sample, in seconds
+   * @param currentState the current state of the condition
+   */
+  public void update(final double timeSecs, final boolean currentState) {
+    if (!Double.isNaN(this.lastTime)) {
+      // The previous sample lasted until now.
+      final double duration = Math.max(0, timeSecs - this.lastTime);
+      if (this.states.size() == this.states.getCapacity()) this.removeOldest();
+      final int index = this.oldest + this.states.size();
+      this.durations[index >= this.durations.length ? index - this.durations.length : index] =
+          duration;
+      this.states.add(this.lastState);
+      this.totalTime += duration;
+      if (this.lastState) this.trueTime += duration;
+      // Drop samples that are entirely outside the window.
+      while (this.states.size() > 1
+          && this.totalTime - this.durations[this.oldest] >= this.windowSecs) {
+        this.removeOldest();
+      }
+    }
+    this.lastTime = timeSecs;
+    this.lastState = currentState;
+
+    final double fraction = this.getTrueFraction();
+    if (fraction >= this.onFraction) {
+      this.state = true;
+    } else if (fraction <= this.offFraction) {
+      this.state = false;
+    }
+  }
+
+  /** @return the fraction of the window the condition was true for, or 0 if it's empty */
+  @Log
+  public double getTrueFraction() {
+    if (this.totalTime <= 0) return 0;
+    double trueInWindow = this.trueTime;
+    // Only part of the oldest sample is in the window.
+    final double excess = this.totalTime - this.windowSecs;
+    if (excess > 0 && this.states.get(this.states.size() - 1)) trueInWindow -= excess;
+    return trueInWindow / Math.min(this.totalTime, this.windowSecs);
+  }
+
+  @Log
+  public boolean get() {
+    return this.state;
+  }
+}
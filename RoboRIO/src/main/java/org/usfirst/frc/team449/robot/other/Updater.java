@@ -4,13 +4,28 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import edu.wpi.first.wpilibj.RobotBase;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.usfirst.frc.team449.robot.generalInterfaces.updatable.Updatable;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
 
-/** A Runnable for updating cached variables. */
+/**
+ * A Runnable for updating cached variables.
+ *
+ * <p>By default, updatables are updated one at a time in the order they were given. If given more
+ * than one thread, updatables are instead split into levels such that every updatable comes after
+ * all the updatables it depends on, and the updatables in each level are updated concurrently.
+ * {@link Updater#run()} only returns once every updatable has been updated, so everything run after
+ * it (e.g. the scheduler) still sees a complete set of cached values. In simulation the levels are
+ * always run serially so that results are deterministic.
+ */
 @JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
 public class Updater implements Runnable {
 
@@ -18,6 +33,21 @@ public class Updater implements Runnable {
   private static final Updater defaultInstance = new Updater(new ArrayList<>());
   /** The objects to update. */
   @NotNull private final List<Updatable> updatables;
+  /** The profiler stage timing each updatable, in the same order as the updatables. */
+  @NotNull private final List<LoopProfiler.Stage> stages = new ArrayList<>();
+  /** The declared ordering constraints between updatables. */
+  @NotNull private final List<Dependency> dependencies = new ArrayList<>();
+  /**
+   * The indices of the updatables in the order they are run, grouped into levels. Updatables in the
+   * same level don't depend on each other. Rebuilt whenever an updatable is subscribed.
+   */
+  @NotNull private int[] order = new int[0];
+  /** The index in order each level starts at, plus one extra entry for the end of the last. */
+  @NotNull private int[] levelStarts = {0};
+  /** The number of threads to update with, including the thread calling run(). */
+  private int threads;
+  /** The helper threads, or null if they haven't been started yet. */
+  @Nullable private WorkerPool workerPool;
 
   /**
    * Default constructor
@@ -25,7 +55,24 @@ public class Updater implements Runnable {
    * @param updatables The objects to update.
    */
   public Updater(@NotNull @JsonProperty(required = true) final List<Updatable> updatables) {
+    this(updatables, null, null);
+  }
+
+  /**
+   * Constructor for updating concurrently.
+   *
+   * @param updatables The objects to update.
+   * @param threads The number of threads to update with, including the main thread. Values of 1 or
+   *     less, which is the default, update everything serially on the main thread.
+   * @param dependencies Pairs of updatables that must not be updated concurrently, with the
+   *     dependency being updated first. Can be null if nothing has to be ordered.
+   */
+  public Updater(
+      @NotNull @JsonProperty(required = true) final List<Updatable> updatables,
+      @Nullable final Integer threads,
+      @Nullable final List<Dependency> dependencies) {
     this.updatables = updatables;
+    this.configure(threads, dependencies);
   }
 
   /** Subscribes the specified updatable to being updated. */
@@ -38,19 +85,226 @@ public class Updater implements Runnable {
    * whenever it is run.
    *
    * @param updatables The objects to update.
+   * @param threads The number of threads to update with, including the main thread. Values of 1 or
+   *     less, which is the default, update everything serially on the main thread.
+   * @param dependencies Pairs of updatables that must not be updated concurrently, with the
+   *     dependency being updated first. Can be null if nothing has to be ordered.
    */
   @JsonCreator
   public static Updater subscribe(
-      @NotNull @JsonProperty(required = true) final List<Updatable> updatables) {
+      @NotNull @JsonProperty(required = true) final List<Updatable> updatables,
+      @Nullable final Integer threads,
+      @Nullable final List<Dependency> dependencies) {
     defaultInstance.updatables.addAll(updatables);
+    defaultInstance.configure(threads, dependencies);
     return defaultInstance;
   }
 
+  /**
+   * Sets how updatables are run.
+   *
+   * @param threads The number of threads to update with, or null to not change it.
+   * @param dependencies Ordering constraints to add, or null to not add any.
+   */
+  private synchronized void configure(
+      @Nullable final Integer threads, @Nullable final List<Dependency> dependencies) {
+    if (threads != null) this.threads = threads;
+    if (dependencies != null) this.dependencies.addAll(dependencies);
+    // Force the order to be rebuilt.
+    this.order = new int[0];
+  }
+
+  /**
+   * Sorts the updatables into levels so that every updatable is in a later level than all of its
+   * dependencies, keeping the given order within a level.
+   *
+   * @throws IllegalArgumentException if a dependency isn't being updated by this updater, or if the
+   *     dependencies form a cycle.
+   */
+  private void buildOrder() {
+    final int count = this.updatables.size();
+    final Map<Updatable, Integer> indices = new IdentityHashMap<>(count);
+    for (int i = 0; i < count; i++) {
+      indices.put(this.updatables.get(i), i);
+    }
+
+    // Longest-path layering: an updatable's level is one more than its deepest dependency's.
+    final int[] levels = new int[count];
+    for (int pass = 0; ; pass++) {
+      if (pass > count) {
+        throw new IllegalArgumentException("Updater dependencies form a cycle.");
+      }
+      boolean changed = false;
+      for (final Dependency dependency : this.dependencies) {
+        final Integer before = indices.get(dependency.before);
+        final Integer after = indices.get(dependency.after);
+        if (before == null || after == null) {
+          throw new IllegalArgumentException(
+              "Updater dependency refers to an updatable that is not being updated.");
+        }
+        if (levels[after] <= levels[before]) {
+          levels[after] = levels[before] + 1;
+          changed = true;
+        }
+      }
+      if (!changed) break;
+    }
+
+    int levelCount = 0;
+    for (final int level : levels) {
+      levelCount = Math.max(levelCount, level + 1);
+    }
+    final int[] newOrder = new int[count];
+    final int[] newLevelStarts = new int[levelCount + 1];
+    int next = 0;
+    for (int level = 0; level < levelCount; level++) {
+      newLevelStarts[level] = next;
+      for (int i = 0; i < count; i++) {
+        if (levels[i] == level) newOrder[next++] = i;
+      }
+    }
+    newLevelStarts[levelCount] = next;
+    this.levelStarts = newLevelStarts;
+    this.order = newOrder;
+  }
+
+  /**
+   * Updates the updatable at a given position in the order, timing it.
+   *
+   * @param position The index into the order.
+   */
+  private void updateAt(final int position) {
+    final int index = this.order[position];
+    final LoopProfiler.Stage stage = this.stages.get(index);
+    stage.start();
+    this.updatables.get(index).update();
+    stage.end();
+  }
+
   /** Update all the updatables. */
   @Override
-  public void run() {
-    for (final Updatable updatable : this.updatables) {
-      updatable.update();
+  public synchronized void run() {
+    // Updatables can be subscribed after construction, so make stages for any new ones.
+    while (this.stages.size() < this.updatables.size()) {
+      final int index = this.stages.size();
+      this.stages.add(
+          LoopProfiler.createStage(
+              "Updater/" + index + "_" + this.updatables.get(index).getClass().getSimpleName()));
+    }
+    if (this.order.length != this.updatables.size()) {
+      this.buildOrder();
+    }
+
+    if (this.threads <= 1 || RobotBase.isSimulation()) {
+      for (int position = 0; position < this.order.length; position++) {
+        this.updateAt(position);
+      }
+      return;
+    }
+
+    if (this.workerPool == null) {
+      this.workerPool = new WorkerPool(this.threads - 1);
+    }
+    for (int level = 0; level + 1 < this.levelStarts.length; level++) {
+      final int start = this.levelStarts[level], end = this.levelStarts[level + 1];
+      if (end - start == 1) {
+        // Not worth waking anyone up for.
+        this.updateAt(start);
+      } else {
+        this.workerPool.runLevel(start, end);
+      }
+    }
+  }
+
+  /** A declaration that one updatable has to be updated before another. */
+  public static class Dependency {
+    /** The updatable to update first. */
+    @NotNull private final Updatable before;
+    /** The updatable that reads something updated by {@link Dependency#before}. */
+    @NotNull private final Updatable after;
+
+    /**
+     * Default constructor.
+     *
+     * @param before The updatable to update first.
+     * @param after The updatable that reads something updated by before.
+     */
+    @JsonCreator
+    public Dependency(
+        @NotNull @JsonProperty(required = true) final Updatable before,
+        @NotNull @JsonProperty(required = true) final Updatable after) {
+      this.before = before;
+      this.after = after;
+    }
+  }
+
+  /**
+   * Daemon threads that help the calling thread update one level at a time. Workers claim
+   * updatables from a shared counter, so no tasks or futures are allocated per loop.
+   */
+  private final class WorkerPool {
+    /** Barrier all workers and the calling thread meet at before and after each level. */
+    @NotNull private final Phaser phaser;
+    /** The next position in the order to be claimed. */
+    @NotNull private final AtomicInteger next = new AtomicInteger();
+    /** The end of the level currently being run. */
+    private volatile int levelEnd;
+    /** The first exception thrown by a worker during the current level, if any. */
+    @Nullable private volatile RuntimeException failure;
+
+    /** @param workers The number of helper threads to start. */
+    WorkerPool(final int workers) {
+      this.phaser = new Phaser(workers + 1);
+      for (int i = 0; i < workers; i++) {
+        final Thread worker = new Thread(this::work, "Updater-worker-" + i);
+        worker.setDaemon(true);
+        worker.start();
+      }
+    }
+
+    /** Claims and updates updatables until the current level is exhausted. */
+    private void drain() {
+      int position;
+      while ((position = this.next.getAndIncrement()) < this.levelEnd) {
+        updateAt(position);
+      }
+    }
+
+    /** The loop each worker thread runs. */
+    private void work() {
+      while (true) {
+        // Wait for a level to start.
+        this.phaser.arriveAndAwaitAdvance();
+        try {
+          this.drain();
+        } catch (final RuntimeException ex) {
+          this.failure = ex;
+        }
+        // Signal that this worker is done with the level.
+        this.phaser.arriveAndAwaitAdvance();
+      }
+    }
+
+    /**
+     * Updates a level on the calling thread and all the workers, returning once it's done.
+     *
+     * @param start The position in the order the level starts at.
+     * @param end The position in the order after the end of the level.
+     */
+    void runLevel(final int start, final int end) {
+      this.levelEnd = end;
+      this.next.set(start);
+      this.phaser.arriveAndAwaitAdvance();
+      try {
+        this.drain();
+      } finally {
+        this.phaser.arriveAndAwaitAdvance();
+      }
+      final RuntimeException ex = this.failure;
+      if (ex != null) {
+        this.failure = null;
+        throw ex;
+      }
     }
   }
 }
@@ -0,0 +1,310 @@
+package org.usfirst.frc.team449.robot.simulation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the autonomous routine over many seeded scenarios in parallel and writes a report. Meant for
+ * CI, e.g. {@code ./gradlew simulateHeadless -Pruns=200}.
+ *
+ * <p>Each job is a {@link HeadlessSimWorker} JVM that builds the robot once and then takes
+ * scenarios from a shared queue until there are none left, so starting a JVM and building the robot
+ * map is paid once per job rather than once per run. The HAL's simulated clock is global to a JVM,
+ * which is why the jobs are separate JVMs rather than threads. A worker that gets stuck is killed
+ * and replaced, and its run is recorded as an error.
+ *
+ * <p>The report directory gets runs.csv, with a {@link SimResult} row per run, summary.txt, and a
+ * log of each run's output. The exit code is nonzero if any run threw or didn't finish its
+ * autonomous commands, so a CI job fails on it.
+ */
+public final class HeadlessSimRunner {
+
+  /** The longest a single run is allowed to take in real time, in minutes. */
+  private static final long RUN_TIMEOUT_MINUTES = 5;
+
+  /** Make constructor private so it can't be called */
+  private HeadlessSimRunner() {}
+
+  /**
+   * Runs the scenarios and writes the report.
+   *
+   * @param args Any of --runs n (default 100), --jobs n (default the number of cores), --report
+   *     directory (default build/reports/sim) and --first-seed n (default 0), followed by scenario
+   *     settings as read by {@link SimScenario#parse(List)}, which apply to every run.
+   * @throws Exception If the report can't be written or the runs are interrupted.
+   */
+  public static void main(final String[] args) throws Exception {
+    int runs = 100;
+    int jobs = Runtime.getRuntime().availableProcessors();
+    long firstSeed = 0;
+    Path report = Paths.get("build", "reports", "sim");
+    final List<String> scenarioArgs = new ArrayList<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--runs":
+          runs = Integer.parseInt(args[i + 1]);
+          break;
+        case "--jobs":
+          jobs = Math.max(1, Integer.parseInt(args[i + 1]));
+          break;
+        case "--report":
+          report = Paths.get(args[i + 1]);
+          break;
+        case "--first-seed":
+          firstSeed = Long.parseLong(args[i + 1]);
+          break;
+        default:
+          scenarioArgs.add(args[i]);
+          scenarioArgs.add(args[i + 1]);
+      }
+    }
+    final SimScenario template = SimScenario.parse(scenarioArgs);
+    final Path logs = report.resolve("logs");
+    Files.createDirectories(logs);
+
+    final long start = System.nanoTime();
+    final Queue<SimScenario> queue = new ConcurrentLinkedQueue<>();
+    for (int i = 0; i < runs; i++) {
+      final SimScenario scenario = SimScenario.parse(template.toArgs());
+      scenario.seed = firstSeed + i;
+      queue.add(scenario);
+    }
+    jobs = Math.min(jobs, Math.max(1, runs));
+    final ExecutorService pool = Executors.newFixedThreadPool(jobs);
+    final List<Future<List<SimResult>>> futures = new ArrayList<>();
+    for (int i = 0; i < jobs; i++) {
+      futures.add(pool.submit(() -> runJob(queue, logs)));
+    }
+    pool.shutdown();
+    final List<SimResult> results = new ArrayList<>();
+    for (final Future<List<SimResult>> future : futures) {
+      results.addAll(future.get());
+    }
+    results.sort(Comparator.comparingLong(r -> r.seed));
+    final double wallSeconds = (System.nanoTime() - start) * 1e-9;
+
+    try (final PrintWriter out =
+        new PrintWriter(Files.newBufferedWriter(report.resolve("runs.csv")))) {
+      out.println(SimResult.CSV_HEADER);
+      results.forEach(r -> out.println(r.toCsv()));
+    }
+    final String summary = summarize(results, template, wallSeconds, jobs);
+    Files.write(report.resolve("summary.txt"), summary.getBytes(StandardCharsets.UTF_8));
+    System.out.print(summary);
+    System.out.println("Report written to " + report.toAbsolutePath());
+
+    final boolean allPassed = results.stream().allMatch(r -> r.succeeded() && r.completed);
+    System.exit(allPassed ? 0 : 1);
+  }
+
+  /**
+   * Runs scenarios from the queue on one worker until the queue is empty, replacing the worker if
+   * it dies.
+   *
+   * @param queue The scenarios left to run.
+   * @param logs The directory to write each run's output to.
+   * @return The result of every run this job did.
+   */
+  @NotNull
+  private static List<SimResult> runJob(
+      @NotNull final Queue<SimScenario> queue, @NotNull final Path logs)
+      throws IOException, InterruptedException {
+    final List<SimResult> results = new ArrayList<>();
+    Worker worker = null;
+    try {
+      SimScenario scenario;
+      while ((scenario = queue.poll()) != null) {
+        if (worker == null) worker = new Worker();
+        results.add(worker.run(scenario, logs));
+        if (!worker.process.isAlive()) {
+          worker.close();
+          worker = null;
+        }
+      }
+    } finally {
+      if (worker != null) worker.close();
+    }
+    return results;
+  }
+
+  /** A {@link HeadlessSimWorker} JVM, fed scenarios one line at a time. */
+  private static final class Worker implements AutoCloseable {
+    /** The worker's process. */
+    @NotNull private final Process process;
+    /** The worker's standard input, which scenarios are written to. */
+    @NotNull private final PrintWriter input;
+    /** The worker's output, with its errors mixed in. */
+    @NotNull private final BufferedReader output;
+
+    /**
+     * Starts a worker with the same classpath and native libraries as this JVM.
+     *
+     * @throws IOException If the worker can't be started.
+     */
+    Worker() throws IOException {
+      final List<String> command = new ArrayList<>();
+      command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      final String libraryPath = System.getProperty("java.library.path");
+      if (libraryPath != null) command.add("-Djava.library.path=" + libraryPath);
+      command.add(HeadlessSimWorker.class.getName());
+      this.process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      this.input =
+          new PrintWriter(
+              new OutputStreamWriter(this.process.getOutputStream(), StandardCharsets.UTF_8), true);
+      this.output =
+          new BufferedReader(
+              new InputStreamReader(this.process.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Runs a single scenario on the worker.
+     *
+     * @param scenario The scenario to run.
+     * @param logs The directory to write the run's output to.
+     * @return The result of the run. Failures to run at all are recorded as errors in it.
+     */
+    @NotNull
+    SimResult run(@NotNull final SimScenario scenario, @NotNull final Path logs)
+        throws IOException, InterruptedException {
+      // Kill a stuck worker, which also ends the read loop below.
+      final CompletableFuture<Void> timeout =
+          CompletableFuture.runAsync(
+              this.process::destroyForcibly,
+              CompletableFuture.delayedExecutor(RUN_TIMEOUT_MINUTES, TimeUnit.MINUTES));
+      SimResult result = null;
+      try (final PrintWriter log =
+          new PrintWriter(
+              Files.newBufferedWriter(logs.resolve("seed-" + scenario.seed + ".log")))) {
+        this.input.println(String.join(" ", scenario.toArgs()));
+        String line;
+        while ((line = this.output.readLine()) != null) {
+          if (line.startsWith(HeadlessSimWorker.RESULT_PREFIX)) {
+            result = SimResult.fromCsv(line.substring(HeadlessSimWorker.RESULT_PREFIX.length()));
+            break;
+          }
+          log.println(line);
+        }
+      } finally {
+        timeout.cancel(false);
+      }
+      if (result == null) {
+        this.process.waitFor();
+        result = new SimResult();
+        result.seed = scenario.seed;
+        result.error = "The worker exited with code " + this.process.exitValue() + " and no result";
+      }
+      return result;
+    }
+
+    /** Tells the worker there's nothing left to run, killing it if it doesn't exit. */
+    @Override
+    public void close() throws InterruptedException {
+      this.input.close();
+      if (!this.process.waitFor(10, TimeUnit.SECONDS)) {
+        this.process.destroyForcibly();
+      }
+    }
+  }
+
+  /**
+   * @param results The results of every run.
+   * @param template The settings shared by every run.
+   * @param wallSeconds The real time all the runs took, in seconds.
+   * @param jobs The number of runs done at once.
+   * @return A human-readable summary of the results.
+   */
+  @NotNull
+  private static String summarize(
+      @NotNull final List<SimResult> results,
+      @NotNull final SimScenario template,
+      final double wallSeconds,
+      final int jobs) {
+    final List<SimResult> failed =
+        results.stream().filter(r -> !r.succeeded()).collect(Collectors.toList());
+    final List<SimResult> completed =
+        results.stream().filter(r -> r.succeeded() && r.completed).collect(Collectors.toList());
+    final StringBuilder sb = new StringBuilder();
+    sb.append(
+        String.format(
+            "%d runs (%s) in %.1f s on %d jobs%n",
+            results.size(), String.join(" ", template.toArgs()), wallSeconds, jobs));
+    sb.append(
+        String.format(
+            "completed: %d, timed out: %d, errors: %d%n",
+            completed.size(), results.size() - completed.size() - failed.size(), failed.size()));
+    sb.append(String.format("%-14s %10s %10s %10s %10s%n", "", "mean", "p50", "p95", "max"));
+    appendStats(sb, "auto (s)", completed, r -> r.autoSeconds);
+    appendStats(sb, "pose err (m)", completed, r -> r.poseError);
+    appendStats(sb, "heading (deg)", completed, r -> r.headingError);
+    appendStats(sb, "energy (J)", completed, r -> r.energyJoules);
+    appendStats(sb, "peak cur (A)", completed, r -> r.peakCurrent);
+    appendStats(sb, "wall (ms)", results, r -> r.wallMillis);
+    for (final SimResult r : failed) {
+      sb.append("seed ").append(r.seed).append(": ").append(r.error).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Adds a row of statistics to a summary, skipping NaN values.
+   *
+   * @param sb The summary to add to.
+   * @param name The name of the row.
+   * @param results The results to take the statistics over.
+   * @param field The value to take the statistics of.
+   */
+  private static void appendStats(
+      @NotNull final StringBuilder sb,
+      @NotNull final String name,
+      @NotNull final List<SimResult> results,
+      @NotNull final ToDoubleFunction<SimResult> field) {
+    final double[] values =
+        results.stream().mapToDouble(field).filter(v -> !Double.isNaN(v)).sorted().toArray();
+    if (values.length == 0) {
+      sb.append(String.format("%-14s %10s%n", name, "n/a"));
+      return;
+    }
+    sb.append(
+        String.format(
+            "%-14s %10.3f %10.3f %10.3f %10.3f%n",
+            name,
+            Arrays.stream(values).average().orElse(Double.NaN),
+            percentile(values, 0.5),
+            percentile(values, 0.95),
+            values[values.length - 1]));
+  }
+
+  /**
+   * @param sorted Values sorted in ascending order, not empty.
+   * @param fraction The percentile, from 0 to 1.
+   * @return The nearest-rank percentile of the values.
+   */
+  private static double percentile(@NotNull final double[] sorted, final double fraction) {
+    final int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+  }
+}
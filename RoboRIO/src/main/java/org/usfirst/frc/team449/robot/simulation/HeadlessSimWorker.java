@@ -0,0 +1,258 @@
+package org.usfirst.frc.team449.robot.simulation;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.geometry.Pose2d;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.Robot;
+import org.usfirst.frc.team449.robot.RobotMap;
+import org.usfirst.frc.team449.robot.drive.unidirectional.DriveUnidirectionalWithGyro;
+import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.MotorContainer;
+import org.usfirst.frc.team449.robot.generalInterfaces.motors.smart.SmartMotor;
+import org.usfirst.frc.team449.robot.other.Clock;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the robot's autonomous routine for one scenario after another, headless and as fast as the
+ * CPU allows, and prints a {@link SimResult} for each. WPILib's simulated FPGA clock is paused and
+ * stepped by hand, and the robot's {@link Clock} reads it, so timers, commands and simulated motors
+ * all see the same virtual time.
+ *
+ * <p>The robot is built once, since the HAL, Oblog's dashboard entries and the motor registry can
+ * only be set up once per JVM, and starting up is most of what a run used to cost. Before each run,
+ * every command is cancelled and the simulated drive is stopped dead at the origin with its
+ * estimates forgotten. Time keeps counting up across runs, so nothing that remembers when it last
+ * ran sees time go backwards. Any other state a subsystem keeps carries over from the run before.
+ *
+ * <p>NetworkTables is kept local, so {@link HeadlessSimRunner} can run several of these in parallel
+ * without them fighting over the server port.
+ */
+public final class HeadlessSimWorker {
+
+  /** The prefix of the line the result is printed on, to pick it out from the robot's output. */
+  @NotNull static final String RESULT_PREFIX = "SIMRESULT,";
+
+  /** Make constructor private so it can't be called */
+  private HeadlessSimWorker() {}
+
+  /**
+   * Runs scenarios and prints each one's result, until standard input runs out.
+   *
+   * @param args A single scenario to run, as read by {@link SimScenario#parse(List)}. If there
+   *     aren't any, scenarios are read from standard input instead, one per line.
+   * @throws IOException If standard input can't be read.
+   */
+  public static void main(final String[] args) throws IOException {
+    // Every worker would otherwise start a server on the same port.
+    NetworkTableInstance.getDefault().startLocal();
+    Robot robot = null;
+    Throwable startupError = null;
+    try {
+      robot = start();
+    } catch (final Throwable t) {
+      printTrace(t);
+      startupError = t;
+    }
+
+    if (args.length > 0) {
+      runAndPrint(robot, startupError, SimScenario.parse(Arrays.asList(args)));
+    } else {
+      final BufferedReader in =
+          new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.isBlank()) continue;
+        runAndPrint(robot, startupError, SimScenario.parse(Arrays.asList(line.trim().split(" "))));
+      }
+    }
+    // NetworkTables and the HAL leave threads running, so don't wait for them.
+    System.exit(0);
+  }
+
+  /**
+   * Sets up the HAL with paused timing and builds and initializes the robot.
+   *
+   * @return The robot.
+   */
+  @NotNull
+  private static Robot start() {
+    if (!HAL.initialize(500, 0)) throw new IllegalStateException("Couldn't initialize the HAL.");
+    SimHooks.pauseTiming();
+    Clock.setTimeSource(Clock.FPGA_TIME_SOURCE);
+    Robot.notifyTesting();
+
+    final Robot robot = new Robot();
+    robot.robotInit();
+    DriverStationSim.setDsAttached(true);
+    return robot;
+  }
+
+  /**
+   * Runs a single scenario and prints its result.
+   *
+   * @param robot The robot, or null if it couldn't be built.
+   * @param startupError Why the robot couldn't be built, or null if it was.
+   * @param scenario The settings of the run.
+   */
+  private static void runAndPrint(
+      @Nullable final Robot robot,
+      @Nullable final Throwable startupError,
+      @NotNull final SimScenario scenario) {
+    final SimResult result = new SimResult();
+    result.seed = scenario.seed;
+    final long wallStart = System.nanoTime();
+    if (robot == null) {
+      result.error = "The robot couldn't be built: " + startupError;
+    } else {
+      try {
+        run(robot, scenario, result);
+      } catch (final Throwable t) {
+        printTrace(t);
+        result.error = t.toString();
+      }
+    }
+    result.wallMillis = (System.nanoTime() - wallStart) / 1_000_000;
+    System.out.println(RESULT_PREFIX + result.toCsv());
+    System.out.flush();
+  }
+
+  /**
+   * Puts the robot back at the start and drives it through autonomous until the autonomous commands
+   * finish or time runs out.
+   *
+   * @param robot The robot, already initialized.
+   * @param scenario The settings of the run.
+   * @param result The result to fill in.
+   */
+  private static void run(
+      @NotNull final Robot robot,
+      @NotNull final SimScenario scenario,
+      @NotNull final SimResult result) {
+    final RobotMap map = robot.getRobotMap();
+    final DriveUnidirectionalWithGyro drive = findDrive(map);
+
+    // Leave nothing running from the last run, then start from rest at the origin.
+    DriverStationSim.setEnabled(false);
+    DriverStationSim.notifyNewData();
+    CommandScheduler.getInstance().cancelAll();
+    if (drive != null) drive.resetSimulation(new Pose2d());
+
+    DriverStationSim.setAutonomous(true);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+    robot.autonomousInit();
+
+    final List<Command> autoCommands = new ArrayList<>();
+    if (map.getAutoStartupCommands() != null) {
+      map.getAutoStartupCommands().forEachRemaining(autoCommands::add);
+    }
+    final List<SmartMotor> motors = MotorContainer.getInstance().getMotors();
+    final Random random = new Random(scenario.seed);
+
+    double time = 0;
+    while (time < scenario.durationSeconds) {
+      final double dt = loopLength(scenario, random);
+      SimHooks.stepTiming(dt);
+      time += dt;
+
+      // The same order TimedRobot calls them in, so a run matches the robot loop for loop.
+      robot.autonomousPeriodic();
+      robot.robotPeriodic();
+      robot.simulationPeriodic();
+
+      // The power going into the motors is what comes out of the battery, less controller losses.
+      double power = 0;
+      for (final SmartMotor motor : motors) {
+        power += Math.abs(motor.getOutputVoltageCached() * motor.getOutputCurrentCached());
+      }
+      result.energyJoules += power * dt;
+      final double batteryVoltage = map.getPDP().getVoltage();
+      result.peakCurrent =
+          Math.max(result.peakCurrent, power / (batteryVoltage > 1 ? batteryVoltage : 12));
+
+      if (!autoCommands.isEmpty() && !anyScheduled(autoCommands)) {
+        result.completed = true;
+        result.autoSeconds = time;
+        break;
+      }
+    }
+    result.simSeconds = time;
+
+    if (drive != null) {
+      final Pose2d pose = drive.getCurrentPose();
+      result.x = pose.getX();
+      result.y = pose.getY();
+      result.headingDegrees = pose.getRotation().getDegrees();
+      if (scenario.target != null) {
+        result.poseError = Math.hypot(result.x - scenario.target[0], result.y - scenario.target[1]);
+        result.headingError =
+            Math.abs(Math.IEEEremainder(result.headingDegrees - scenario.target[2], 360));
+      }
+    }
+  }
+
+  /**
+   * Prints the stack trace of an error into the output of the run it happened in.
+   *
+   * @param t The error.
+   */
+  private static void printTrace(@NotNull final Throwable t) {
+    final StringWriter trace = new StringWriter();
+    t.printStackTrace(new PrintWriter(trace));
+    System.err.println(trace);
+  }
+
+  /**
+   * @param scenario The settings of the run.
+   * @param random The random number generator for the run.
+   * @return The length of the next loop, in seconds.
+   */
+  private static double loopLength(
+      @NotNull final SimScenario scenario, @NotNull final Random random) {
+    if (random.nextDouble() < scenario.overrunChance) {
+      return scenario.periodSeconds * (2 + 3 * random.nextDouble());
+    }
+    return scenario.periodSeconds * (1 + scenario.jitter * (2 * random.nextDouble() - 1));
+  }
+
+  /**
+   * @param commands Some commands.
+   * @return Whether any of them are still scheduled.
+   */
+  private static boolean anyScheduled(@NotNull final List<Command> commands) {
+    for (final Command command : commands) {
+      if (CommandScheduler.getInstance().isScheduled(command)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @param map The robot map.
+   * @return The drive whose pose is reported, or null if there isn't one.
+   */
+  @Nullable
+  private static DriveUnidirectionalWithGyro findDrive(@NotNull final RobotMap map) {
+    for (final Subsystem subsystem : map.getSubsystems()) {
+      if (subsystem instanceof DriveUnidirectionalWithGyro) {
+        return (DriveUnidirectionalWithGyro) subsystem;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,93 @@
+package org.usfirst.frc.team449.robot.simulation;
+
+import org.jetbrains.annotations.NotNull;
+
+/** The outcome of a single headless simulation run. Passed from worker to runner as a CSV row. */
+public class SimResult {
+
+  /** The columns of {@link #toCsv()}, in order. */
+  @NotNull
+  public static final String CSV_HEADER =
+      "seed,completed,autoSeconds,simSeconds,x,y,headingDegrees,poseError,headingError,"
+          + "energyJoules,peakCurrent,wallMillis,error";
+
+  /** The seed of the scenario. */
+  public long seed;
+  /** Whether every autonomous command finished before the time ran out. */
+  public boolean completed;
+  /** The simulated time the autonomous commands took to finish, or NaN if they didn't. */
+  public double autoSeconds = Double.NaN;
+  /** The simulated time that was run, in seconds. */
+  public double simSeconds;
+  /** The final odometry pose, in meters and degrees, or NaN if there's no drive. */
+  public double x = Double.NaN, y = Double.NaN, headingDegrees = Double.NaN;
+  /** The distance and angle between the final pose and the target, or NaN if there's no target. */
+  public double poseError = Double.NaN, headingError = Double.NaN;
+  /** The electrical energy the motors drew, in joules. */
+  public double energyJoules;
+  /** The largest total current the motors drew from the battery in a single loop, in amps. */
+  public double peakCurrent;
+  /** The real time the run took, in milliseconds. */
+  public long wallMillis;
+  /** What went wrong, or an empty string if nothing did. */
+  @NotNull public String error = "";
+
+  /** @return Whether the run finished without throwing. */
+  public boolean succeeded() {
+    return this.error.isEmpty();
+  }
+
+  /** @return This result as a single CSV row matching {@link #CSV_HEADER}. */
+  @NotNull
+  public String toCsv() {
+    return this.seed
+        + ","
+        + this.completed
+        + ","
+        + this.autoSeconds
+        + ","
+        + this.simSeconds
+        + ","
+        + this.x
+        + ","
+        + this.y
+        + ","
+        + this.headingDegrees
+        + ","
+        + this.poseError
+        + ","
+        + this.headingError
+        + ","
+        + this.energyJoules
+        + ","
+        + this.peakCurrent
+        + ","
+        + this.wallMillis
+        + ","
+        + this.error.replaceAll("[,\\r\\n]", " ");
+  }
+
+  /**
+   * @param csv A row written by {@link #toCsv()}.
+   * @return The result it describes.
+   */
+  @NotNull
+  public static SimResult fromCsv(@NotNull final String csv) {
+    final String[] cells = csv.split(",", -1);
+    final SimResult result = new SimResult();
+    result.seed = Long.parseLong(cells[0]);
+    result.completed = Boolean.parseBoolean(cells[1]);
+    result.autoSeconds = Double.parseDouble(cells[2]);
+    result.simSeconds = Double.parseDouble(cells[3]);
+    result.x = Double.parseDouble(cells[4]);
+    result.y = Double.parseDouble(cells[5]);
+    result.headingDegrees = Double.parseDouble(cells[6]);
+    result.poseError = Double.parseDouble(cells[7]);
+    result.headingError = Double.parseDouble(cells[8]);
+    result.energyJoules = Double.parseDouble(cells[9]);
+    result.peakCurrent = Double.parseDouble(cells[10]);
+    result.wallMillis = Long.parseLong(cells[11]);
+    result.error = cells[12];
+    return result;
+  }
+}
@@ -0,0 +1,96 @@
+package org.usfirst.frc.team449.robot.simulation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The settings of a single headless simulation run. The seed decides the loop timing: each loop's
+ * length is jittered around the nominal period and occasionally overruns, the way the real loop
+ * does, so timing-sensitive code gets exercised differently by each seed.
+ */
+public class SimScenario {
+
+  /** The seed for the loop timing. */
+  public long seed;
+  /** The longest the run goes on for, in simulated seconds. */
+  public double durationSeconds = 15;
+  /** The nominal loop period, in seconds. */
+  public double periodSeconds = 0.02;
+  /** How far each loop's length can be from the nominal period, as a fraction of it. */
+  public double jitter = 0.05;
+  /** The chance of any single loop overrunning to two to five times the nominal period. */
+  public double overrunChance = 0.005;
+  /** The pose the robot should end up at, in meters and degrees, or null to not check it. */
+  @Nullable public double[] target;
+
+  /**
+   * Reads the settings from command-line arguments, leaving out anything not given at its
+   * default.
+   *
+   * @param args Any of --seed n, --duration seconds, --dt seconds, --jitter fraction, --overrun
+   *     chance and --target x,y,degrees.
+   * @return The settings.
+   * @throws IllegalArgumentException If an argument isn't recognized.
+   */
+  @NotNull
+  public static SimScenario parse(@NotNull final List<String> args) {
+    final SimScenario scenario = new SimScenario();
+    for (int i = 0; i + 1 < args.size(); i += 2) {
+      final String value = args.get(i + 1);
+      switch (args.get(i)) {
+        case "--seed":
+          scenario.seed = Long.parseLong(value);
+          break;
+        case "--duration":
+          scenario.durationSeconds = Double.parseDouble(value);
+          break;
+        case "--dt":
+          scenario.periodSeconds = Double.parseDouble(value);
+          break;
+        case "--jitter":
+          scenario.jitter = Double.parseDouble(value);
+          break;
+        case "--overrun":
+          scenario.overrunChance = Double.parseDouble(value);
+          break;
+        case "--target":
+          final String[] parts = value.split(",");
+          if (parts.length != 3) {
+            throw new IllegalArgumentException("The target must be x,y,degrees");
+          }
+          scenario.target = new double[3];
+          for (int j = 0; j < 3; j++) {
+            scenario.target[j] = Double.parseDouble(parts[j]);
+          }
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown argument " + args.get(i));
+      }
+    }
+    return scenario;
+  }
+
+  /** @return Arguments that {@link #parse(List)} turns back into these settings. */
+  @NotNull
+  public List<String> toArgs() {
+    final List<String> args = new ArrayList<>();
+    args.add("--seed");
+    args.add(Long.toString(this.seed));
+    args.add("--duration");
+    args.add(Double.toString(this.durationSeconds));
+    args.add("--dt");
+    args.add(Double.toString(this.periodSeconds));
+    args.add("--jitter");
+    args.add(Double.toString(this.jitter));
+    args.add("--overrun");
+    args.add(Double.toString(this.overrunChance));
+    if (this.target != null) {
+      args.add("--target");
+      args.add(this.target[0] + "," + this.target[1] + "," + this.target[2]);
+    }
+    return args;
+  }
+}
@@ -104,7 +104,8 @@ public class ClimberCurrentLimited extends SubsystemBase
   @Override
   public boolean isConditionTrue() {
     return powerLimitTimer.get(
-        Math.abs(smartMotor.getOutputCurrent() * smartMotor.getOutputVoltage()) > maxPower);
+        Math.abs(smartMotor.getOutputCurrentCached() * smartMotor.getOutputVoltageCached())
+            > maxPower);
   }
 
   /** @return true if the condition was met when cached, false otherwise */
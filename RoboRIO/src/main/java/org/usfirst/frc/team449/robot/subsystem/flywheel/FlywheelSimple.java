@@ -41,6 +41,8 @@ public class FlywheelSimple extends SubsystemBase
   @Log private double targetSpeed = Double.NaN;
   /** Whether the condition was met last time caching was done. */
   private boolean conditionMetCached;
+  /** Whether the flywheel was at shooting speed last time caching was done. */
+  private boolean atShootingSpeedCached;
 
   /**
    * Default constructor
@@ -126,6 +128,10 @@ public class FlywheelSimple extends SubsystemBase
   }
 
   @Log
+  private boolean isAtShootingSpeedCached() {
+    return this.atShootingSpeedCached;
+  }
+
   private boolean isAtShootingSpeed() {
     return SimUtil.getWithSimHelper(
         this.sim_manualStates != null && this.sim_manualStates.get(),
@@ -134,7 +140,7 @@ public class FlywheelSimple extends SubsystemBase
         () -> {
           if (this.maxAbsSpeedError == null && this.maxRelSpeedError == null) return false;
 
-          final double actualVelocity = this.shooterMotor.getVelocity();
+          final double actualVelocity = this.shooterMotor.getVelocityCached();
           final double absSpeedDifference = Math.abs(Math.abs(actualVelocity) - this.targetSpeed);
 
           // TODO: Should we be looking at velocity or speed?
@@ -153,7 +159,8 @@ public class FlywheelSimple extends SubsystemBase
   /** Updates all cached values with current ones. */
   @Override
   public void update() {
-    this.speedConditionDebouncer.update(this.isAtShootingSpeed());
+    this.atShootingSpeedCached = this.isAtShootingSpeed();
+    this.speedConditionDebouncer.update(this.atShootingSpeedCached);
 
     this.conditionMetCached = this.isConditionTrue();
   }
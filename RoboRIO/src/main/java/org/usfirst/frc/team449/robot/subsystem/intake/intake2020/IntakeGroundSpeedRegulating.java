@@ -69,7 +69,8 @@ public class IntakeGroundSpeedRegulating extends SubsystemBase
     final Double targetVelocity = this.targetVelocities.get(this.mode);
 
     if (targetVelocity != null) {
-      if (this.drive.getLeftVelCached() == null || this.drive.getRightVelCached() == null) {
+      if (Double.isNaN(this.drive.getLeftVelCached())
+          || Double.isNaN(this.drive.getRightVelCached())) {
         throw new UnsupportedOperationException(
             Util.getLogPrefix(this) + "Can't use drive without encoders.");
       }
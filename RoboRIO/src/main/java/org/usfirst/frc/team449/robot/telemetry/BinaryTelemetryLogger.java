@@ -0,0 +1,421 @@
+package org.usfirst.frc.team449.robot.telemetry;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import edu.wpi.first.wpilibj.RobotBase;
+import io.github.oblarg.oblog.Loggable;
+import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.other.Clock;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.usfirst.frc.team449.robot.other.Util.getLogPrefix;
+
+/**
+ * Logs typed, timestamped values to binary files on the robot, for when NetworkTables is too slow
+ * or too lossy. The main loop only copies each value into a {@link TelemetryRecordQueue}; a
+ * background thread moves them into a memory-mapped file of fixed size, moving on to a new file
+ * when it fills up and deleting the oldest so a session never uses more than a fixed amount of
+ * disk. Each boot starts a new session, so on starting, files left by older sessions are deleted,
+ * oldest first, until everything in the directory fits a fixed total. Since the files are
+ * memory-mapped, what's been written survives the robot code crashing.
+ *
+ * <p>Channels are fixed once the logger starts, so every file carries the whole channel table in
+ * its header and can be decoded on its own with {@link TelemetryDecoder}. The layout is described
+ * in {@link TelemetryFormat}.
+ *
+ * <p>Values must only be logged from one thread, normally the main loop.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class BinaryTelemetryLogger implements Loggable {
+
+  /** The most records written between updates of the record count in the header. */
+  private static final int BATCH_SIZE = 1024;
+  /** How long the writer sleeps when there's nothing to write, in nanoseconds. */
+  private static final long IDLE_NANOS = 5_000_000;
+  /** How often the writer flushes the current file to disk, in nanoseconds. */
+  private static final long FORCE_PERIOD_NANOS = 1_000_000_000;
+
+  /** The directory files are written to. */
+  @NotNull private final Path directory;
+  /** The size of each file, in bytes. */
+  private final int fileSizeBytes;
+  /** The maximum number of files kept per session. */
+  private final int maxFiles;
+  /** The most bytes of files kept in the directory, counting this session's at their largest. */
+  private final long maxTotalBytes;
+  /** The queue between the main loop and the writer thread. */
+  @NotNull private final TelemetryRecordQueue queue;
+
+  /** The names and types of the channels, indexed by channel id. */
+  @NotNull private final List<String> channelNames = new ArrayList<>();
+
+  @NotNull private final List<TelemetryType> channelTypes = new ArrayList<>();
+
+  /** Writes drained records into the current file. Field so draining doesn't allocate. */
+  @NotNull private final TelemetryRecordQueue.RecordSink sink = this::write;
+
+  /** The thread moving records from the queue into files, or null if not started. */
+  @Nullable private Thread writer;
+  /** Whether the writer should keep running. */
+  private volatile boolean running;
+
+  // Everything below is only touched by the writer thread once started.
+
+  /** The name every file in this session starts with. */
+  private String session;
+  /** The header of every file in this session, up to the first record. */
+  private byte[] header;
+  /** The file currently being written to, or null if writing has failed. */
+  @Nullable private MappedByteBuffer buffer;
+  /** The index of the current file within the session. */
+  private int fileIndex;
+  /** The number of records in the current file. */
+  private long recordsInFile;
+  /** The number of records written to files so far. */
+  private volatile long recordsWritten;
+
+  /**
+   * Default constructor.
+   *
+   * @param directory The directory to write files to. Defaults to /home/lvuser/logs/telemetry on
+   *     the robot and logs/telemetry in simulation.
+   * @param fileSizeBytes The size of each file, in bytes. Defaults to 16 MiB, about 800,000
+   *     records.
+   * @param maxFiles The maximum number of files kept per session, after which the oldest is
+   *     deleted. Defaults to 8.
+   * @param queueCapacity The maximum number of records waiting to be written, after which records
+   *     are dropped. Must be a power of 2. Defaults to 16384.
+   * @param maxTotalBytes The most bytes of telemetry to keep in the directory across sessions,
+   *     counting this session as if it had filled all its files. Older sessions' files are deleted,
+   *     oldest first, to fit. Defaults to 256 MiB, which keeps at least one full session from
+   *     before this one with the other defaults.
+   */
+  @JsonCreator
+  public BinaryTelemetryLogger(
+      @Nullable final String directory,
+      @Nullable final Integer fileSizeBytes,
+      @Nullable final Integer maxFiles,
+      @Nullable final Integer queueCapacity,
+      @Nullable final Long maxTotalBytes) {
+    this.directory =
+        Paths.get(
+            directory != null
+                ? directory
+                : RobotBase.isReal() ? "/home/lvuser/logs/telemetry" : "logs/telemetry");
+    this.fileSizeBytes = fileSizeBytes != null ? fileSizeBytes : 16 << 20;
+    this.maxFiles = maxFiles != null ? Math.max(1, maxFiles) : 8;
+    this.queue = new TelemetryRecordQueue(queueCapacity != null ? queueCapacity : 1 << 14);
+    this.maxTotalBytes = maxTotalBytes != null ? maxTotalBytes : 256L << 20;
+  }
+
+  /**
+   * Adds a channel. All channels must be added before the logger is started.
+   *
+   * @param name The name of the channel, which becomes its column name when decoded.
+   * @param type The type of the values on the channel.
+   * @return The id of the channel, to pass to the log methods.
+   * @throws IllegalStateException If the logger has already been started.
+   * @throws IllegalArgumentException If a channel with the same name was already added.
+   */
+  public synchronized int addChannel(
+      @NotNull final String name, @NotNull final TelemetryType type) {
+    if (this.writer != null) {
+      throw new IllegalStateException("Channels can't be added after the logger starts.");
+    }
+    if (this.channelNames.contains(name)) {
+      throw new IllegalArgumentException("There is already a channel named " + name);
+    }
+    if (this.channelNames.size() == 0xFFFF) {
+      throw new IllegalArgumentException("Too many channels.");
+    }
+    this.channelNames.add(name);
+    this.channelTypes.add(type);
+    return this.channelNames.size() - 1;
+  }
+
+  /**
+   * Starts writing files. Records logged before this are kept, up to the queue's capacity.
+   *
+   * @throws IllegalStateException If the logger has already been started.
+   */
+  public synchronized void start() {
+    if (this.writer != null) throw new IllegalStateException("The logger was already started.");
+    this.header = this.buildHeader();
+    if (this.header.length + TelemetryFormat.RECORD_SIZE > this.fileSizeBytes) {
+      throw new IllegalStateException("The files are too small to hold the channel table.");
+    }
+    this.session =
+        "telemetry-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    this.running = true;
+    this.writer = new Thread(this::runWriter, "BinaryTelemetryLogger");
+    this.writer.setDaemon(true);
+    this.writer.setPriority(Thread.MIN_PRIORITY);
+    this.writer.start();
+  }
+
+  /**
+   * Stops the writer after it writes everything already queued, and waits for it to finish.
+   *
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  public void stop() throws InterruptedException {
+    final Thread writer;
+    synchronized (this) {
+      writer = this.writer;
+      this.running = false;
+    }
+    if (writer != null) writer.join();
+  }
+
+  /**
+   * Logs a value on a {@link TelemetryType#DOUBLE} channel at the current loop's time.
+   *
+   * @param channel The id of the channel.
+   * @param value The value to log.
+   */
+  public void logDouble(final int channel, final double value) {
+    this.log(channel, TelemetryType.DOUBLE, Double.doubleToRawLongBits(value));
+  }
+
+  /**
+   * Logs a value on a {@link TelemetryType#LONG} channel at the current loop's time.
+   *
+   * @param channel The id of the channel.
+   * @param value The value to log.
+   */
+  public void logLong(final int channel, final long value) {
+    this.log(channel, TelemetryType.LONG, value);
+  }
+
+  /**
+   * Logs a value on a {@link TelemetryType#BOOLEAN} channel at the current loop's time.
+   *
+   * @param channel The id of the channel.
+   * @param value The value to log.
+   */
+  public void logBoolean(final int channel, final boolean value) {
+    this.log(channel, TelemetryType.BOOLEAN, value ? 1 : 0);
+  }
+
+  /**
+   * Queues a record, dropping it if the queue is full.
+   *
+   * @param channel The id of the channel.
+   * @param type The type the value was logged as.
+   * @param bits The value as 64 bits.
+   */
+  private void log(final int channel, @NotNull final TelemetryType type, final long bits) {
+    if (this.channelTypes.get(channel) != type) {
+      throw new IllegalArgumentException(
+          "Channel " + this.channelNames.get(channel) + " isn't of type " + type);
+    }
+    this.queue.offer(Clock.currentTimeNanos(), channel, bits);
+  }
+
+  /** @return The header every file starts with, up to the first record. */
+  @NotNull
+  private byte[] buildHeader() {
+    int size = TelemetryFormat.CHANNEL_TABLE_OFFSET;
+    final byte[][] names = new byte[this.channelNames.size()][];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = this.channelNames.get(i).getBytes(StandardCharsets.UTF_8);
+      size += 1 + 2 + names[i].length;
+    }
+    final ByteBuffer header = ByteBuffer.allocate(size);
+    header.putInt(TelemetryFormat.MAGIC);
+    header.putShort(TelemetryFormat.VERSION);
+    header.putShort((short) names.length);
+    header.putLong(0);
+    header.putLong(0);
+    header.putInt(0);
+    header.putInt(size);
+    for (int i = 0; i < names.length; i++) {
+      header.put(this.channelTypes.get(i).code);
+      header.putShort((short) names[i].length);
+      header.put(names[i]);
+    }
+    return header.array();
+  }
+
+  /** The body of the writer thread. */
+  private void runWriter() {
+    this.pruneOldSessions();
+    this.openFile(0);
+    long lastForce = System.nanoTime();
+    while (true) {
+      final int drained = this.queue.drain(this.sink, BATCH_SIZE);
+      if (this.buffer != null) {
+        this.buffer.putLong(TelemetryFormat.RECORD_COUNT_OFFSET, this.recordsInFile);
+        if (System.nanoTime() - lastForce > FORCE_PERIOD_NANOS) {
+          this.buffer.force();
+          lastForce = System.nanoTime();
+        }
+      }
+      if (drained == 0) {
+        if (!this.running) break;
+        LockSupport.parkNanos(IDLE_NANOS);
+      }
+    }
+    if (this.buffer != null) this.buffer.force();
+  }
+
+  /**
+   * Writes a record into the current file, moving on to the next file if it's full.
+   *
+   * @param timeNanos The time of the record, in nanoseconds.
+   * @param channel The channel id of the record.
+   * @param value The value of the record as 64 bits.
+   */
+  private void write(final long timeNanos, final int channel, final long value) {
+    if (this.buffer != null && this.buffer.remaining() < TelemetryFormat.RECORD_SIZE) {
+      this.buffer.putLong(TelemetryFormat.RECORD_COUNT_OFFSET, this.recordsInFile);
+      this.buffer.force();
+      this.openFile(this.fileIndex + 1);
+    }
+    // Writing failed, so the record is thrown away to keep the queue moving.
+    if (this.buffer == null) return;
+    this.buffer.putLong(timeNanos);
+    this.buffer.putInt(channel);
+    this.buffer.putLong(value);
+    this.recordsInFile++;
+    this.recordsWritten++;
+  }
+
+  /**
+   * Deletes files from older sessions, oldest first, until they and this session's files at their
+   * largest fit in {@link #maxTotalBytes}. Files are ordered by when they were last written, then
+   * by their names, which start with the time their session started.
+   */
+  private void pruneOldSessions() {
+    final List<Path> files = new ArrayList<>();
+    try (final DirectoryStream<Path> stream =
+        Files.newDirectoryStream(this.directory, "telemetry-*" + TelemetryFormat.EXTENSION)) {
+      for (final Path file : stream) {
+        files.add(file);
+      }
+    } catch (final NoSuchFileException ex) {
+      // Nothing logged yet.
+      return;
+    } catch (final IOException ex) {
+      System.err.println(getLogPrefix(this) + "Couldn't list old telemetry files: " + ex);
+      return;
+    }
+
+    long total = (long) this.maxFiles * this.fileSizeBytes;
+    final long[] modified = new long[files.size()];
+    final long[] sizes = new long[files.size()];
+    for (int i = 0; i < files.size(); i++) {
+      try {
+        modified[i] = Files.getLastModifiedTime(files.get(i)).toMillis();
+        sizes[i] = Files.size(files.get(i));
+      } catch (final IOException ex) {
+        // Gone already, or unreadable; either way there's no room to free by deleting it.
+      }
+      total += sizes[i];
+    }
+    final List<Integer> oldestFirst = new ArrayList<>();
+    for (int i = 0; i < files.size(); i++) {
+      oldestFirst.add(i);
+    }
+    oldestFirst.sort(
+        Comparator.<Integer>comparingLong(i -> modified[i])
+            .thenComparing(i -> files.get(i).getFileName()));
+
+    int deleted = 0;
+    for (int i = 0; i < oldestFirst.size() && total > this.maxTotalBytes; i++) {
+      final int index = oldestFirst.get(i);
+      try {
+        Files.deleteIfExists(files.get(index));
+        total -= sizes[index];
+        deleted++;
+      } catch (final IOException ex) {
+        System.err.println(getLogPrefix(this) + "Couldn't delete " + files.get(index) + ": " + ex);
+      }
+    }
+    if (deleted > 0) {
+      System.out.println(getLogPrefix(this) + "Deleted " + deleted + " old telemetry files");
+    }
+  }
+
+  /**
+   * Creates and maps a new file, deleting the oldest file if there are too many.
+   *
+   * @param index The index of the new file within the session.
+   */
+  private void openFile(final int index) {
+    this.buffer = null;
+    this.fileIndex = index;
+    this.recordsInFile = 0;
+    try {
+      Files.createDirectories(this.directory);
+      if (index >= this.maxFiles) {
+        Files.deleteIfExists(this.fileFor(index - this.maxFiles));
+      }
+      // The mapping stays valid after the file is closed.
+      try (final RandomAccessFile file = new RandomAccessFile(this.fileFor(index).toFile(), "rw")) {
+        file.setLength(this.fileSizeBytes);
+        this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.fileSizeBytes);
+      }
+    } catch (final IOException ex) {
+      System.err.println(getLogPrefix(this) + "Couldn't open telemetry file, stopping logging.");
+      ex.printStackTrace();
+      return;
+    }
+    this.buffer.put(this.header);
+    this.buffer.putLong(TelemetryFormat.OPEN_TIME_OFFSET, System.currentTimeMillis());
+    this.buffer.putInt(TelemetryFormat.FILE_INDEX_OFFSET, index);
+  }
+
+  /**
+   * @param index The index of a file within the session.
+   * @return The path of that file.
+   */
+  @NotNull
+  private Path fileFor(final int index) {
+    return this.directory.resolve(
+        this.session + "-" + String.format("%04d", index) + TelemetryFormat.EXTENSION);
+  }
+
+  /** @return The number of records dropped because the writer fell behind. */
+  @Log
+  public long getDroppedRecords() {
+    return this.queue.getDropped();
+  }
+
+  /** @return The number of records waiting to be written. */
+  @Log
+  public int getQueuedRecords() {
+    return this.queue.size();
+  }
+
+  /** @return The number of records written to files so far. */
+  @Log
+  public long getRecordsWritten() {
+    return this.recordsWritten;
+  }
+
+  @Override
+  public String configureLogName() {
+    return "Telemetry";
+  }
+}
@@ -0,0 +1,357 @@
+package org.usfirst.frc.team449.robot.telemetry;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Turns the files written by {@link BinaryTelemetryLogger} into CSVs for the R scripts. Meant to be
+ * run on a desktop after pulling the logs with getLogs.sh, e.g. with {@code ./gradlew
+ * decodeTelemetry -Plogs=logs/telemetry}.
+ *
+ * <p>All the files from one session are joined into one output. There are three formats:
+ *
+ * <ul>
+ *   <li>wide (the default): one row per timestamp and one column per channel, with blanks where a
+ *       channel has no value at that time.
+ *   <li>long: one row per record, with time, channel and value columns.
+ *   <li>columns: a directory per session with a time, value CSV for each channel, so a single
+ *       channel can be loaded without reading the rest.
+ * </ul>
+ *
+ * <p>Times are written in milliseconds since the robot code started.
+ */
+public final class TelemetryDecoder {
+
+  /** Make constructor private so it can't be called */
+  private TelemetryDecoder() {}
+
+  /**
+   * Decodes telemetry files.
+   *
+   * @param args [--format wide|long|columns] [--out directory] and then any number of telemetry
+   *     files or directories containing them. Output goes next to the inputs by default.
+   * @throws IOException If a file can't be read or written.
+   */
+  public static void main(final String[] args) throws IOException {
+    String format = "wide";
+    Path out = null;
+    final List<Path> inputs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--format") && i + 1 < args.length) {
+        format = args[++i];
+      } else if (args[i].equals("--out") && i + 1 < args.length) {
+        out = Paths.get(args[++i]);
+      } else {
+        inputs.add(Paths.get(args[i]));
+      }
+    }
+    if (inputs.isEmpty()) {
+      System.err.println(
+          "Usage: TelemetryDecoder [--format wide|long|columns] [--out directory] files...");
+      System.exit(1);
+    }
+
+    for (final Map.Entry<String, List<Path>> session : findSessions(inputs).entrySet()) {
+      final List<Path> files = session.getValue();
+      final Path outDir = out != null ? out : files.get(0).toAbsolutePath().getParent();
+      Files.createDirectories(outDir);
+      final Path written = decode(files, outDir, session.getKey(), format);
+      System.out.println("Wrote " + written);
+    }
+  }
+
+  /**
+   * Finds every telemetry file among the inputs and groups them by session.
+   *
+   * @param inputs Telemetry files or directories containing them.
+   * @return The files of each session in order, keyed by session name.
+   * @throws IOException If a directory can't be listed.
+   */
+  @NotNull
+  private static Map<String, List<Path>> findSessions(@NotNull final List<Path> inputs)
+      throws IOException {
+    final List<Path> files = new ArrayList<>();
+    for (final Path input : inputs) {
+      if (Files.isDirectory(input)) {
+        try (final Stream<Path> stream = Files.list(input)) {
+          files.addAll(
+              stream
+                  .filter(p -> p.toString().endsWith(TelemetryFormat.EXTENSION))
+                  .collect(Collectors.toList()));
+        }
+      } else {
+        files.add(input);
+      }
+    }
+    // File names are the session name, a dash, then a zero-padded index, so sorting puts them in
+    // order within each session.
+    final Map<String, List<Path>> sessions = new TreeMap<>();
+    files.stream()
+        .sorted()
+        .forEach(
+            file -> {
+              final String name = file.getFileName().toString();
+              final int dash = name.lastIndexOf('-');
+              final String session = dash > 0 ? name.substring(0, dash) : name;
+              sessions.computeIfAbsent(session, s -> new ArrayList<>()).add(file);
+            });
+    return sessions;
+  }
+
+  /**
+   * Decodes the files of a single session.
+   *
+   * @param files The files of the session, in order.
+   * @param outDir The directory to write the output into.
+   * @param session The name of the session.
+   * @param format wide, long or columns.
+   * @return The file or directory written.
+   * @throws IOException If a file can't be read or written.
+   */
+  @NotNull
+  private static Path decode(
+      @NotNull final List<Path> files,
+      @NotNull final Path outDir,
+      @NotNull final String session,
+      @NotNull final String format)
+      throws IOException {
+    final ByteBuffer first = map(files.get(0));
+    final List<String> names = new ArrayList<>();
+    final List<TelemetryType> types = new ArrayList<>();
+    readChannels(first, names, types);
+
+    final RecordWriter writer;
+    final Path written;
+    switch (format) {
+      case "wide":
+        written = outDir.resolve(session + ".csv");
+        writer = new WideWriter(Files.newBufferedWriter(written), names);
+        break;
+      case "long":
+        written = outDir.resolve(session + ".csv");
+        writer = new LongWriter(Files.newBufferedWriter(written), names);
+        break;
+      case "columns":
+        written = outDir.resolve(session);
+        writer = new ColumnWriter(written, names);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown format " + format);
+    }
+
+    try (writer) {
+      for (final Path file : files) {
+        final ByteBuffer buffer = map(file);
+        final List<String> fileNames = new ArrayList<>();
+        readChannels(buffer, fileNames, new ArrayList<>());
+        if (!fileNames.equals(names)) {
+          throw new IOException(file + " has different channels from the rest of its session.");
+        }
+        final long count = buffer.getLong(TelemetryFormat.RECORD_COUNT_OFFSET);
+        buffer.position(buffer.getInt(TelemetryFormat.RECORDS_OFFSET_OFFSET));
+        for (long i = 0; i < count && buffer.remaining() >= TelemetryFormat.RECORD_SIZE; i++) {
+          final long timeNanos = buffer.getLong();
+          final int channel = buffer.getInt();
+          final long bits = buffer.getLong();
+          writer.write(timeNanos * 1e-6, channel, format(types.get(channel), bits));
+        }
+      }
+    }
+    return written;
+  }
+
+  /**
+   * @param file A telemetry file.
+   * @return The contents of the file.
+   * @throws IOException If the file can't be read or isn't a telemetry file.
+   */
+  @NotNull
+  private static ByteBuffer map(@NotNull final Path file) throws IOException {
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.limit() < TelemetryFormat.CHANNEL_TABLE_OFFSET
+          || buffer.getInt(0) != TelemetryFormat.MAGIC) {
+        throw new IOException(file + " isn't a telemetry file.");
+      }
+      if (buffer.getShort(4) != TelemetryFormat.VERSION) {
+        throw new IOException(file + " has unsupported version " + buffer.getShort(4));
+      }
+      return buffer;
+    }
+  }
+
+  /**
+   * Reads the channel table of a file.
+   *
+   * @param buffer The contents of the file.
+   * @param names The list to add the channel names to.
+   * @param types The list to add the channel types to.
+   */
+  private static void readChannels(
+      @NotNull final ByteBuffer buffer,
+      @NotNull final List<String> names,
+      @NotNull final List<TelemetryType> types) {
+    final int count = Short.toUnsignedInt(buffer.getShort(6));
+    buffer.position(TelemetryFormat.CHANNEL_TABLE_OFFSET);
+    for (int i = 0; i < count; i++) {
+      types.add(TelemetryType.fromCode(buffer.get()));
+      final byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+      buffer.get(name);
+      names.add(new String(name, StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * @param type The type of a channel.
+   * @param bits A value from that channel as 64 bits.
+   * @return The value as CSV text.
+   */
+  @NotNull
+  private static String format(@NotNull final TelemetryType type, final long bits) {
+    switch (type) {
+      case DOUBLE:
+        return Double.toString(Double.longBitsToDouble(bits));
+      case BOOLEAN:
+        return bits != 0 ? "true" : "false";
+      default:
+        return Long.toString(bits);
+    }
+  }
+
+  /**
+   * @param text Text to put in a CSV cell.
+   * @return The text, quoted if it needs to be.
+   */
+  @NotNull
+  private static String quote(@NotNull final String text) {
+    if (text.indexOf(',') < 0 && text.indexOf('"') < 0) return text;
+    return '"' + text.replace("\"", "\"\"") + '"';
+  }
+
+  /** Writes decoded records in one of the output formats. */
+  private interface RecordWriter extends AutoCloseable {
+    /**
+     * @param timeMillis The time of the record, in milliseconds.
+     * @param channel The channel id of the record.
+     * @param value The value of the record as CSV text.
+     * @throws IOException If the output can't be written.
+     */
+    void write(double timeMillis, int channel, @NotNull String value) throws IOException;
+
+    @Override
+    void close() throws IOException;
+  }
+
+  /** Writes one row per record. */
+  private static final class LongWriter implements RecordWriter {
+    @NotNull private final Writer out;
+    @NotNull private final List<String> names;
+
+    LongWriter(@NotNull final Writer out, @NotNull final List<String> names) throws IOException {
+      this.out = out;
+      this.names = names;
+      out.write("time,channel,value\n");
+    }
+
+    @Override
+    public void write(final double timeMillis, final int channel, @NotNull final String value)
+        throws IOException {
+      this.out.write(timeMillis + "," + quote(this.names.get(channel)) + "," + value + "\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.out.close();
+    }
+  }
+
+  /** Writes one row per timestamp, with a column per channel. */
+  private static final class WideWriter implements RecordWriter {
+    @NotNull private final Writer out;
+    /** The values in the row being built, or null for blanks. */
+    @NotNull private final String[] row;
+    /** The time of the row being built, or NaN before the first record. */
+    private double rowTime = Double.NaN;
+
+    WideWriter(@NotNull final Writer out, @NotNull final List<String> names) throws IOException {
+      this.out = out;
+      this.row = new String[names.size()];
+      out.write("time");
+      for (final String name : names) {
+        out.write("," + quote(name));
+      }
+      out.write("\n");
+    }
+
+    @Override
+    public void write(final double timeMillis, final int channel, @NotNull final String value)
+        throws IOException {
+      // A channel logged twice at the same time also starts a new row, so no value is lost.
+      if (timeMillis != this.rowTime || this.row[channel] != null) this.flush();
+      this.rowTime = timeMillis;
+      this.row[channel] = value;
+    }
+
+    /** Writes out the row being built and clears it. */
+    private void flush() throws IOException {
+      if (Double.isNaN(this.rowTime)) return;
+      this.out.write(Double.toString(this.rowTime));
+      for (int i = 0; i < this.row.length; i++) {
+        this.out.write(',');
+        if (this.row[i] != null) this.out.write(this.row[i]);
+        this.row[i] = null;
+      }
+      this.out.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.flush();
+      this.out.close();
+    }
+  }
+
+  /** Writes a separate time, value file for each channel. */
+  private static final class ColumnWriter implements RecordWriter {
+    @NotNull private final BufferedWriter[] outs;
+
+    ColumnWriter(@NotNull final Path dir, @NotNull final List<String> names) throws IOException {
+      Files.createDirectories(dir);
+      this.outs = new BufferedWriter[names.size()];
+      for (int i = 0; i < this.outs.length; i++) {
+        final String file = names.get(i).replaceAll("[^A-Za-z0-9._-]", "_") + ".csv";
+        this.outs[i] = Files.newBufferedWriter(dir.resolve(file));
+        this.outs[i].write("time,value\n");
+      }
+    }
+
+    @Override
+    public void write(final double timeMillis, final int channel, @NotNull final String value)
+        throws IOException {
+      this.outs[channel].write(timeMillis + "," + value + "\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (final BufferedWriter out : this.outs) {
+        out.close();
+      }
+    }
+  }
+}
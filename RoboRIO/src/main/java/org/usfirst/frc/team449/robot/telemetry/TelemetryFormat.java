@@ -0,0 +1,48 @@
+package org.usfirst.frc.team449.robot.telemetry;
+
+/**
+ * The layout of a binary telemetry file, shared by {@link BinaryTelemetryLogger} and {@link
+ * TelemetryDecoder}. All numbers are big-endian.
+ *
+ * <pre>
+ * offset  size  field
+ * 0       4     magic, "449T"
+ * 4       2     format version
+ * 6       2     number of channels
+ * 8       8     number of records written so far, updated as records are flushed
+ * 16      8     wall-clock time the file was opened, in milliseconds since the epoch
+ * 24      4     index of this file within its session
+ * 28      4     offset of the first record
+ * 32      ...   channel table: for each channel, a type code byte, a 2-byte name length and the
+ *               name in UTF-8
+ * ...     ...   records: an 8-byte time in nanoseconds since robot start, a 4-byte channel id and
+ *               an 8-byte value
+ * </pre>
+ */
+final class TelemetryFormat {
+
+  /** The first four bytes of every file. */
+  static final int MAGIC = 0x34343954;
+  /** The current format version. */
+  static final short VERSION = 1;
+
+  /** The offset of the record count in the header. */
+  static final int RECORD_COUNT_OFFSET = 8;
+  /** The offset of the wall-clock open time in the header. */
+  static final int OPEN_TIME_OFFSET = 16;
+  /** The offset of the file index in the header. */
+  static final int FILE_INDEX_OFFSET = 24;
+  /** The offset of the offset of the first record in the header. */
+  static final int RECORDS_OFFSET_OFFSET = 28;
+  /** The offset of the channel table. */
+  static final int CHANNEL_TABLE_OFFSET = 32;
+
+  /** The size of a single record, in bytes. */
+  static final int RECORD_SIZE = 8 + 4 + 8;
+
+  /** The extension of telemetry files. */
+  static final String EXTENSION = ".tlm";
+
+  /** Make constructor private so it can't be called */
+  private TelemetryFormat() {}
+}
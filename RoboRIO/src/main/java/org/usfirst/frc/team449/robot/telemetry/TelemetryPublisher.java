@@ -0,0 +1,557 @@
+package org.usfirst.frc.team449.robot.telemetry;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import io.github.oblarg.oblog.Loggable;
+import io.github.oblarg.oblog.Logger;
+import io.github.oblarg.oblog.annotations.Log;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.usfirst.frc.team449.robot.other.Clock;
+import org.usfirst.frc.team449.robot.other.LoopProfiler;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+import static org.usfirst.frc.team449.robot.other.Util.getLogPrefix;
+
+/**
+ * Publishes telemetry to NetworkTables under a bandwidth budget, replacing a plain call to {@link
+ * Logger#updateEntries()} every loop.
+ *
+ * <p>Entries added here each have a priority, a publish period in loops and, for numbers, a
+ * deadband. An entry's getter is only called when the entry is due, and its value is only sent if
+ * it moved by more than the deadband since it was last sent. Every loop, entries are handled in
+ * priority order against a bytes-per-second budget. {@link Priority#CRITICAL} entries are always
+ * sent. Lower priorities wait for budget, and pick up where they left off so none of them starve.
+ *
+ * <p>Oblog's {@code @Log} entries are all updated together once every few loops by default. Oblog
+ * has no way to rate-limit its entries one by one, so an entry that needs its own period or
+ * deadband is named in {@link #overrideOblog(String, Priority, int, double)} instead. Once Oblog's
+ * set up, {@link #bindOblogOverrides(Object)} finds the named members and publishes them here like
+ * any other entry, under the same name. Oblog's own widget for an overridden entry keeps the
+ * shared period.
+ *
+ * <p>The time spent in each half shows up as the "Telemetry" and "Oblog" stages in the {@link
+ * LoopProfiler}.
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.StringIdGenerator.class)
+public class TelemetryPublisher implements Loggable {
+
+  /** The bytes NT3 sends to update a double entry: message type, id, sequence, type, value. */
+  private static final int DOUBLE_UPDATE_BYTES = 1 + 2 + 2 + 1 + 8;
+  /** The bytes NT3 sends to update a boolean entry. */
+  private static final int BOOLEAN_UPDATE_BYTES = 1 + 2 + 2 + 1 + 1;
+  /** How many seconds of unused budget can be saved up for bursts. */
+  private static final double BURST_SECONDS = 0.1;
+  /** How quickly the published rate tracks changes, as the weight given to each new loop. */
+  private static final double RATE_SMOOTHING = 0.05;
+
+  /** The NetworkTables bytes per second that entries below critical are kept under. */
+  private final double bytesPerSecond;
+  /** The number of loops between updates of Oblog's entries. */
+  private final int oblogPeriodLoops;
+  /** The table entries are published in. */
+  @NotNull private final NetworkTable table;
+
+  /** The entries of each priority, indexed by {@link Priority#ordinal()}. */
+  @NotNull private final List<List<Entry>> entries = new ArrayList<>();
+  /** The overrides for Oblog entries, by name, that haven't been bound yet. */
+  @NotNull private final Map<String, OblogOverride> oblogOverrides = new LinkedHashMap<>();
+  /** Where each priority left off when it last ran out of budget. */
+  @NotNull private final int[] cursors = new int[Priority.values().length];
+
+  /** The profiler stages for the entries here and for Oblog's. */
+  @NotNull
+  private final LoopProfiler.Stage telemetryStage = LoopProfiler.createStage("Telemetry"),
+      oblogStage = LoopProfiler.createStage("Oblog");
+
+  /** The number of times {@link #update()} has run. */
+  private long loop;
+  /** The bytes that can be sent right now, which goes negative when critical entries overdraw. */
+  private double budget;
+  /** The time of the last update, in seconds, or NaN before the first. */
+  private double lastTime = Double.NaN;
+  /** The smoothed number of bytes sent per second. */
+  private double publishedBytesPerSecond;
+  /** The number of due entries put off last loop for lack of budget. */
+  private int deferred;
+
+  /**
+   * Default constructor.
+   *
+   * @param bytesPerSecond The NetworkTables bytes per second that entries below critical are kept
+   *     under. Defaults to 20,000.
+   * @param oblogPeriodLoops The number of loops between updates of Oblog's {@code @Log} entries.
+   *     Defaults to 5, which matches the default NetworkTables flush rate of 10 Hz.
+   * @param tableName The name of the NetworkTables table to publish entries in. Defaults to
+   *     "Telemetry".
+   */
+  @JsonCreator
+  public TelemetryPublisher(
+      @Nullable final Double bytesPerSecond,
+      @Nullable final Integer oblogPeriodLoops,
+      @Nullable final String tableName) {
+    this.bytesPerSecond = bytesPerSecond != null ? bytesPerSecond : 20_000;
+    this.oblogPeriodLoops = oblogPeriodLoops != null ? Math.max(1, oblogPeriodLoops) : 5;
+    this.table =
+        NetworkTableInstance.getDefault().getTable(tableName != null ? tableName : "Telemetry");
+    for (int i = 0; i < Priority.values().length; i++) {
+      this.entries.add(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Adds a number to publish.
+   *
+   * @param key The key to publish under, relative to this publisher's table.
+   * @param getter The getter for the value. Only called when the entry is due.
+   * @param priority The priority of the entry.
+   * @param periodLoops The number of loops between checks of the value, at least 1.
+   * @param deadband How much the value has to change by before it's sent again.
+   */
+  public void addDouble(
+      @NotNull final String key,
+      @NotNull final DoubleSupplier getter,
+      @NotNull final Priority priority,
+      final int periodLoops,
+      final double deadband) {
+    this.add(new DoubleEntry(this.table.getEntry(key), periodLoops, getter, deadband), priority);
+  }
+
+  /**
+   * Adds a boolean to publish. It's only sent when it changes.
+   *
+   * @param key The key to publish under, relative to this publisher's table.
+   * @param getter The getter for the value. Only called when the entry is due.
+   * @param priority The priority of the entry.
+   * @param periodLoops The number of loops between checks of the value, at least 1.
+   */
+  public void addBoolean(
+      @NotNull final String key,
+      @NotNull final BooleanSupplier getter,
+      @NotNull final Priority priority,
+      final int periodLoops) {
+    this.add(new BooleanEntry(this.table.getEntry(key), periodLoops, getter), priority);
+  }
+
+  /**
+   * Gives an Oblog entry its own priority, period and deadband instead of Oblog's shared period.
+   * Takes effect when {@link #bindOblogOverrides(Object)} is called.
+   *
+   * @param name The entry's name, as "logName/member". logName is what the entry's {@link
+   *     Loggable#configureLogName()} returns, and member is the name of the {@code @Log} field or
+   *     method. Numbers and booleans are supported.
+   * @param priority The priority of the entry.
+   * @param periodLoops The number of loops between checks of the value, at least 1.
+   * @param deadband How much a number has to change by before it's sent again. Ignored for
+   *     booleans.
+   */
+  public void overrideOblog(
+      @NotNull final String name,
+      @NotNull final Priority priority,
+      final int periodLoops,
+      final double deadband) {
+    this.oblogOverrides.put(name, new OblogOverride(priority, periodLoops, deadband));
+  }
+
+  /**
+   * Finds the members named in {@link #overrideOblog(String, Priority, int, double)} and adds them
+   * as entries here. Walks the same tree of {@link Loggable}s Oblog does, so call it with the same
+   * root container, once, after Oblog is configured. Names that aren't found are reported.
+   *
+   * @param rootContainer The object Oblog was configured with.
+   */
+  public void bindOblogOverrides(@NotNull final Object rootContainer) {
+    if (this.oblogOverrides.isEmpty()) return;
+    this.bindOblogOverrides(rootContainer, Collections.newSetFromMap(new IdentityHashMap<>()));
+    for (final String name : this.oblogOverrides.keySet()) {
+      System.err.println(getLogPrefix(this) + "No @Log number or boolean named " + name);
+    }
+    this.oblogOverrides.clear();
+  }
+
+  /**
+   * Binds the overrides for an object and everything loggable under it.
+   *
+   * @param obj The object to look through.
+   * @param seen The objects already looked through, so shared ones are only bound once.
+   */
+  private void bindOblogOverrides(@Nullable final Object obj, @NotNull final Set<Object> seen) {
+    if (obj == null || this.oblogOverrides.isEmpty() || !seen.add(obj)) return;
+    if (obj instanceof Collection) {
+      for (final Object element : (Collection<?>) obj) this.bindOblogOverrides(element, seen);
+      return;
+    }
+    if (obj instanceof Map) {
+      for (final Object value : ((Map<?, ?>) obj).values()) this.bindOblogOverrides(value, seen);
+      return;
+    }
+    if (obj instanceof Object[]) {
+      for (final Object element : (Object[]) obj) this.bindOblogOverrides(element, seen);
+      return;
+    }
+    if (obj instanceof Loggable) this.bindMembers((Loggable) obj);
+
+    for (Class<?> clazz = obj.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+      for (final Field field : clazz.getDeclaredFields()) {
+        if (Modifier.isStatic(field.getModifiers())
+            || field.getType().isPrimitive()
+            || field.isAnnotationPresent(Log.Exclude.class)) {
+          continue;
+        }
+        final Object value;
+        try {
+          field.setAccessible(true);
+          value = field.get(obj);
+        } catch (final RuntimeException | IllegalAccessException ex) {
+          continue;
+        }
+        if (value instanceof Loggable
+            || value instanceof Collection
+            || value instanceof Map
+            || value instanceof Object[]) {
+          this.bindOblogOverrides(value, seen);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds an entry for each overridden {@code @Log} member of a single loggable.
+   *
+   * @param loggable The loggable whose members to look at.
+   */
+  private void bindMembers(@NotNull final Loggable loggable) {
+    final String prefix = loggable.configureLogName() + "/";
+    final Iterator<Map.Entry<String, OblogOverride>> it = this.oblogOverrides.entrySet().iterator();
+    while (it.hasNext()) {
+      final Map.Entry<String, OblogOverride> override = it.next();
+      if (!override.getKey().startsWith(prefix)) continue;
+      final MethodHandle handle =
+          findLogGetter(loggable, override.getKey().substring(prefix.length()));
+      if (handle == null) continue;
+      final OblogOverride rate = override.getValue();
+      final Class<?> type = handle.type().returnType();
+      if (type == boolean.class || type == Boolean.class) {
+        final MethodHandle getter = handle.asType(MethodType.methodType(boolean.class));
+        this.addBoolean(
+            override.getKey(), () -> invokeBoolean(getter), rate.priority, rate.periodLoops);
+      } else {
+        final MethodHandle getter = handle.asType(MethodType.methodType(double.class));
+        this.addDouble(
+            override.getKey(),
+            () -> invokeDouble(getter),
+            rate.priority,
+            rate.periodLoops,
+            rate.deadband);
+      }
+      it.remove();
+    }
+  }
+
+  /**
+   * Finds a {@code @Log} field or no-argument method holding a number or boolean.
+   *
+   * @param target The object the member belongs to.
+   * @param member The name of the field or method.
+   * @return A handle taking no arguments that reads the member, or null if there isn't one.
+   */
+  @Nullable
+  private static MethodHandle findLogGetter(
+      @NotNull final Object target, @NotNull final String member) {
+    for (Class<?> clazz = target.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+      try {
+        for (final Method method : clazz.getDeclaredMethods()) {
+          if (method.getName().equals(member)
+              && method.getParameterCount() == 0
+              && !Modifier.isStatic(method.getModifiers())
+              && isLogged(method)
+              && isNumberOrBoolean(method.getReturnType())) {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method).bindTo(target);
+          }
+        }
+        for (final Field field : clazz.getDeclaredFields()) {
+          if (field.getName().equals(member)
+              && !Modifier.isStatic(field.getModifiers())
+              && isLogged(field)
+              && isNumberOrBoolean(field.getType())) {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field).bindTo(target);
+          }
+        }
+      } catch (final RuntimeException | IllegalAccessException ex) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param member A field or method.
+   * @return Whether it has {@code @Log} or one of the {@code @Log.*} widget annotations on it.
+   */
+  private static boolean isLogged(@NotNull final AccessibleObject member) {
+    for (final Annotation annotation : member.getDeclaredAnnotations()) {
+      final Class<?> type = annotation.annotationType();
+      if (type == Log.class || type.getEnclosingClass() == Log.class && type != Log.Exclude.class) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param type A type.
+   * @return Whether a value of it can be published as a number or boolean.
+   */
+  private static boolean isNumberOrBoolean(@NotNull final Class<?> type) {
+    return (type.isPrimitive() && type != void.class && type != char.class)
+        || Number.class.isAssignableFrom(type)
+        || type == Boolean.class;
+  }
+
+  /**
+   * @param getter A handle taking nothing and returning a double.
+   * @return What it returns.
+   */
+  private static double invokeDouble(@NotNull final MethodHandle getter) {
+    try {
+      return (double) getter.invokeExact();
+    } catch (final RuntimeException | Error ex) {
+      throw ex;
+    } catch (final Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /**
+   * @param getter A handle taking nothing and returning a boolean.
+   * @return What it returns.
+   */
+  private static boolean invokeBoolean(@NotNull final MethodHandle getter) {
+    try {
+      return (boolean) getter.invokeExact();
+    } catch (final RuntimeException | Error ex) {
+      throw ex;
+    } catch (final Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /**
+   * @param entry The entry to add.
+   * @param priority The priority of the entry.
+   */
+  private void add(@NotNull final Entry entry, @NotNull final Priority priority) {
+    this.entries.get(priority.ordinal()).add(entry);
+  }
+
+  /** Publishes whatever's due and fits in the budget, then updates Oblog if it's time to. */
+  public void update() {
+    this.telemetryStage.start();
+    final double now = Clock.currentTimeSeconds();
+    final double dt = Double.isNaN(this.lastTime) ? 0.02 : Math.max(0, now - this.lastTime);
+    this.lastTime = now;
+    this.budget =
+        Math.min(this.budget + this.bytesPerSecond * dt, this.bytesPerSecond * BURST_SECONDS);
+
+    int sent = 0;
+    this.deferred = 0;
+    for (final Priority priority : Priority.values()) {
+      sent += this.publish(priority);
+    }
+    if (dt > 0) {
+      this.publishedBytesPerSecond +=
+          RATE_SMOOTHING * (sent / dt - this.publishedBytesPerSecond);
+    }
+    this.loop++;
+    this.telemetryStage.end();
+
+    if (this.loop % this.oblogPeriodLoops == 0) {
+      this.oblogStage.start();
+      Logger.updateEntries();
+      this.oblogStage.end();
+    }
+  }
+
+  /**
+   * Publishes the due entries of a single priority, starting where it last left off.
+   *
+   * @param priority The priority to publish.
+   * @return The number of bytes sent.
+   */
+  private int publish(@NotNull final Priority priority) {
+    final List<Entry> list = this.entries.get(priority.ordinal());
+    final int size = list.size();
+    if (size == 0) return 0;
+    final int start = this.cursors[priority.ordinal()] % size;
+    int sent = 0;
+    for (int i = 0; i < size; i++) {
+      final int index = (start + i) % size;
+      final Entry entry = list.get(index);
+      if (this.loop - entry.lastCheckedLoop < entry.periodLoops) continue;
+      if (priority != Priority.CRITICAL && this.budget < entry.bytes) {
+        // Out of budget; start from this entry next time so the ones after it don't starve.
+        this.cursors[priority.ordinal()] = index;
+        for (int j = i; j < size; j++) {
+          final Entry waiting = list.get((start + j) % size);
+          if (this.loop - waiting.lastCheckedLoop >= waiting.periodLoops) this.deferred++;
+        }
+        break;
+      }
+      entry.lastCheckedLoop = this.loop;
+      if (entry.publishIfChanged()) {
+        this.budget -= entry.bytes;
+        sent += entry.bytes;
+      }
+    }
+    return sent;
+  }
+
+  /** @return The smoothed number of bytes per second sent by the entries added here. */
+  @Log
+  public double getPublishedBytesPerSecond() {
+    return this.publishedBytesPerSecond;
+  }
+
+  /** @return The number of due entries put off last loop for lack of budget. */
+  @Log
+  public int getDeferredEntries() {
+    return this.deferred;
+  }
+
+  @Override
+  public String configureLogName() {
+    return "TelemetryPublisher";
+  }
+
+  /** How important an entry is, which decides what gets sent first when the budget is tight. */
+  public enum Priority {
+    /** Always sent when due and changed, even past the budget. */
+    CRITICAL,
+    /** Sent when due and changed if there's budget left after critical entries. */
+    NORMAL,
+    /** Sent only with whatever budget is left after everything else. */
+    DEBUG
+  }
+
+  /** The priority, period and deadband given to an Oblog entry. */
+  private static final class OblogOverride {
+    @NotNull final Priority priority;
+    final int periodLoops;
+    final double deadband;
+
+    OblogOverride(@NotNull final Priority priority, final int periodLoops, final double deadband) {
+      this.priority = priority;
+      this.periodLoops = periodLoops;
+      this.deadband = deadband;
+    }
+  }
+
+  /** A single value to publish. */
+  private abstract static class Entry {
+    /** The NetworkTables entry to publish to. */
+    @NotNull final NetworkTableEntry ntEntry;
+    /** The number of loops between checks of the value. */
+    final int periodLoops;
+    /** The estimated bytes sent by each update. */
+    final int bytes;
+    /** The loop the value was last checked on. */
+    long lastCheckedLoop = Long.MIN_VALUE / 2;
+
+    /**
+     * @param ntEntry The NetworkTables entry to publish to.
+     * @param periodLoops The number of loops between checks of the value.
+     * @param bytes The estimated bytes sent by each update.
+     */
+    Entry(@NotNull final NetworkTableEntry ntEntry, final int periodLoops, final int bytes) {
+      this.ntEntry = ntEntry;
+      this.periodLoops = Math.max(1, periodLoops);
+      this.bytes = bytes;
+    }
+
+    /**
+     * Reads the value and sends it if it changed enough.
+     *
+     * @return Whether it was sent.
+     */
+    abstract boolean publishIfChanged();
+  }
+
+  /** A number, sent when it moves by more than a deadband. */
+  private static final class DoubleEntry extends Entry {
+    @NotNull private final DoubleSupplier getter;
+    private final double deadband;
+    /** The value last sent. */
+    private double last;
+    /** Whether any value has been sent yet. */
+    private boolean sentAny;
+
+    DoubleEntry(
+        @NotNull final NetworkTableEntry ntEntry,
+        final int periodLoops,
+        @NotNull final DoubleSupplier getter,
+        final double deadband) {
+      super(ntEntry, periodLoops, DOUBLE_UPDATE_BYTES);
+      this.getter = getter;
+      this.deadband = deadband;
+    }
+
+    @Override
+    boolean publishIfChanged() {
+      final double value = this.getter.getAsDouble();
+      // NaN compares unequal to everything, so going to or from NaN has to be checked on its own.
+      if (this.sentAny
+          && Double.isNaN(value) == Double.isNaN(this.last)
+          && (Double.isNaN(value) || Math.abs(value - this.last) <= this.deadband)) {
+        return false;
+      }
+      this.ntEntry.setDouble(value);
+      this.last = value;
+      this.sentAny = true;
+      return true;
+    }
+  }
+
+  /** A boolean, sent when it changes. */
+  private static final class BooleanEntry extends Entry {
+    @NotNull private final BooleanSupplier getter;
+    /** The value last sent. */
+    private boolean last;
+    /** Whether any value has been sent yet. */
+    private boolean sentAny;
+
+    BooleanEntry(
+        @NotNull final NetworkTableEntry ntEntry,
+        final int periodLoops,
+        @NotNull final BooleanSupplier getter) {
+      super(ntEntry, periodLoops, BOOLEAN_UPDATE_BYTES);
+      this.getter = getter;
+    }
+
+    @Override
+    boolean publishIfChanged() {
+      final boolean value = this.getter.getAsBoolean();
+      if (this.sentAny && value == this.last) return false;
+      this.ntEntry.setBoolean(value);
+      this.last = value;
+      this.sentAny = true;
+      return true;
+    }
+  }
+}
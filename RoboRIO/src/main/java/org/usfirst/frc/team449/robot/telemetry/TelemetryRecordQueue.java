@@ -0,0 +1,116 @@
+package org.usfirst.frc.team449.robot.telemetry;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue of telemetry records for exactly one producer thread and one consumer
+ * thread. Records are stored in parallel primitive arrays, so neither side ever allocates, and the
+ * producer never blocks: when the queue is full, the record is dropped and counted instead.
+ */
+public class TelemetryRecordQueue {
+
+  /** The times, channels and values of the records, indexed by sequence number & mask. */
+  @NotNull private final long[] times, values;
+
+  @NotNull private final int[] channels;
+  /** The capacity minus one, for wrapping sequence numbers into indices. */
+  private final int mask;
+
+  /** The sequence number of the next record to be written. Only the producer writes this. */
+  @NotNull private final AtomicLong head = new AtomicLong();
+  /** The sequence number of the next record to be read. Only the consumer writes this. */
+  @NotNull private final AtomicLong tail = new AtomicLong();
+  /** The producer's last view of the tail, so it only reads the real one when it looks full. */
+  private long cachedTail;
+  /** The number of records dropped because the queue was full. Only the producer writes this. */
+  private volatile long dropped;
+
+  /**
+   * Default constructor.
+   *
+   * @param capacity The maximum number of records held at once. Must be a power of 2.
+   */
+  public TelemetryRecordQueue(final int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("The capacity must be a power of 2.");
+    }
+    this.times = new long[capacity];
+    this.values = new long[capacity];
+    this.channels = new int[capacity];
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Adds a record. Should only be called from the producer thread.
+   *
+   * @param timeNanos The time of the record, in nanoseconds.
+   * @param channel The channel id of the record.
+   * @param value The value of the record as 64 bits.
+   * @return Whether there was room for the record.
+   */
+  public boolean offer(final long timeNanos, final int channel, final long value) {
+    final long sequence = this.head.get();
+    if (sequence - this.cachedTail > this.mask) {
+      this.cachedTail = this.tail.get();
+      if (sequence - this.cachedTail > this.mask) {
+        this.dropped++;
+        return false;
+      }
+    }
+    final int index = (int) sequence & this.mask;
+    this.times[index] = timeNanos;
+    this.channels[index] = channel;
+    this.values[index] = value;
+    // lazySet is enough to publish the record, since only the consumer reads it.
+    this.head.lazySet(sequence + 1);
+    return true;
+  }
+
+  /**
+   * Hands queued records to a sink, oldest first. Should only be called from the consumer thread.
+   *
+   * @param sink The sink to give the records to.
+   * @param max The maximum number of records to drain.
+   * @return The number of records drained.
+   */
+  public int drain(@NotNull final RecordSink sink, final int max) {
+    final long start = this.tail.get();
+    final int count = (int) Math.min(max, this.head.get() - start);
+    for (int i = 0; i < count; i++) {
+      final int index = (int) (start + i) & this.mask;
+      sink.accept(this.times[index], this.channels[index], this.values[index]);
+    }
+    this.tail.lazySet(start + count);
+    return count;
+  }
+
+  /** @return The number of records waiting to be drained. */
+  public int size() {
+    return (int) (this.head.get() - this.tail.get());
+  }
+
+  /** @return The maximum number of records held at once. */
+  public int capacity() {
+    return this.mask + 1;
+  }
+
+  /** @return The number of records dropped because the queue was full. */
+  public long getDropped() {
+    return this.dropped;
+  }
+
+  /** Something records can be drained into. */
+  @FunctionalInterface
+  public interface RecordSink {
+    /**
+     * Takes a single record.
+     *
+     * @param timeNanos The time of the record, in nanoseconds.
+     * @param channel The channel id of the record.
+     * @param value The value of the record as 64 bits.
+     */
+    void accept(long timeNanos, int channel, long value);
+  }
+}
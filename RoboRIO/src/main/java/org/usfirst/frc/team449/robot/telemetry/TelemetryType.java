@@ -0,0 +1,34 @@
+package org.usfirst.frc.team449.robot.telemetry;
+
+import org.jetbrains.annotations.NotNull;
+
+/** The type of the values on a telemetry channel. Every record stores its value as 64 bits. */
+public enum TelemetryType {
+  /** Values are stored with {@link Double#doubleToRawLongBits(double)}. */
+  DOUBLE((byte) 1),
+  /** Values are stored as-is. */
+  LONG((byte) 2),
+  /** Values are stored as 1 for true and 0 for false. */
+  BOOLEAN((byte) 3);
+
+  /** The code for this type in a file's channel table. */
+  final byte code;
+
+  /** @param code The code for this type in a file's channel table. */
+  TelemetryType(final byte code) {
+    this.code = code;
+  }
+
+  /**
+   * @param code A code read from a file's channel table.
+   * @return The type with that code.
+   * @throws IllegalArgumentException If no type has that code.
+   */
+  @NotNull
+  static TelemetryType fromCode(final byte code) {
+    for (final TelemetryType type : values()) {
+      if (type.code == code) return type;
+    }
+    throw new IllegalArgumentException("Unknown telemetry type code " + code);
+  }
+}